@@ -23,6 +23,7 @@
 #include <sys/stat.h>
 #include <sys/fcntl.h>
 #include <sys/time.h>
+#include <sys/mman.h>
 #include <utime.h>
 #include "files.h"
 
@@ -116,4 +117,64 @@ JNIEXPORT jboolean JNICALL Java_com_nfsdb_misc_Files_setLastModified
 JNIEXPORT jlong JNICALL Java_com_nfsdb_misc_Files_getStdOutFd
         (JNIEnv *e, jclass cl) {
     return (jlong) 1;
-}
\ No newline at end of file
+}
+
+JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Files_madvise0
+        (JNIEnv *e, jclass cl, jlong address, jlong len, jint advice) {
+    int a;
+    switch (advice) {
+        case com_nfsdb_misc_Files_MADV_RANDOM:
+            a = MADV_RANDOM;
+            break;
+        case com_nfsdb_misc_Files_MADV_SEQUENTIAL:
+            a = MADV_SEQUENTIAL;
+            break;
+        case com_nfsdb_misc_Files_MADV_WILLNEED:
+            a = MADV_WILLNEED;
+            break;
+        case com_nfsdb_misc_Files_MADV_DONTNEED:
+            a = MADV_DONTNEED;
+            break;
+        case com_nfsdb_misc_Files_MADV_HUGEPAGE:
+#ifdef MADV_HUGEPAGE
+            a = MADV_HUGEPAGE;
+            break;
+#else
+            return -1;
+#endif
+        default:
+            a = MADV_NORMAL;
+            break;
+    }
+    return madvise((void *) address, (size_t) len, a);
+}
+
+JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Files_fadvise0
+        (JNIEnv *e, jclass cl, jlong fd, jlong offset, jlong len, jint advice) {
+#ifdef __APPLE__
+    return -1;
+#else
+    int a;
+    switch (advice) {
+        case com_nfsdb_misc_Files_MADV_RANDOM:
+            a = POSIX_FADV_RANDOM;
+            break;
+        case com_nfsdb_misc_Files_MADV_SEQUENTIAL:
+            a = POSIX_FADV_SEQUENTIAL;
+            break;
+        case com_nfsdb_misc_Files_MADV_WILLNEED:
+            a = POSIX_FADV_WILLNEED;
+            break;
+        case com_nfsdb_misc_Files_MADV_DONTNEED:
+            a = POSIX_FADV_DONTNEED;
+            break;
+        case com_nfsdb_misc_Files_MADV_NORMAL:
+            a = POSIX_FADV_NORMAL;
+            break;
+        default:
+            return -1;
+    }
+
+    return posix_fadvise((int) fd, (off_t) offset, (off_t) len, a);
+#endif
+}
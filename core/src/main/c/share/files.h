@@ -7,6 +7,18 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+#undef com_nfsdb_misc_Files_MADV_NORMAL
+#define com_nfsdb_misc_Files_MADV_NORMAL 0L
+#undef com_nfsdb_misc_Files_MADV_RANDOM
+#define com_nfsdb_misc_Files_MADV_RANDOM 1L
+#undef com_nfsdb_misc_Files_MADV_SEQUENTIAL
+#define com_nfsdb_misc_Files_MADV_SEQUENTIAL 2L
+#undef com_nfsdb_misc_Files_MADV_WILLNEED
+#define com_nfsdb_misc_Files_MADV_WILLNEED 3L
+#undef com_nfsdb_misc_Files_MADV_DONTNEED
+#define com_nfsdb_misc_Files_MADV_DONTNEED 4L
+#undef com_nfsdb_misc_Files_MADV_HUGEPAGE
+#define com_nfsdb_misc_Files_MADV_HUGEPAGE 5L
 /*
  * Class:     com_nfsdb_misc_Files
  * Method:    append
@@ -87,6 +99,22 @@ JNIEXPORT jlong JNICALL Java_com_nfsdb_misc_Files_openAppend
 JNIEXPORT jboolean JNICALL Java_com_nfsdb_misc_Files_setLastModified
         (JNIEnv *, jclass, jlong, jlong);
 
+/*
+ * Class:     com_nfsdb_misc_Files
+ * Method:    madvise0
+ * Signature: (JJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Files_madvise0
+        (JNIEnv *, jclass, jlong, jlong, jint);
+
+/*
+ * Class:     com_nfsdb_misc_Files
+ * Method:    fadvise0
+ * Signature: (JJJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Files_fadvise0
+        (JNIEnv *, jclass, jlong, jlong, jlong, jint);
+
 /*
  * Class:     com_nfsdb_misc_Files
  * Method:    getStdOutFd
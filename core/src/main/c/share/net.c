@@ -28,6 +28,13 @@
 #include <sys/errno.h>
 #include "net.h"
 
+#ifdef __APPLE__
+#include <sys/types.h>
+#include <sys/uio.h>
+#else
+#include <sys/sendfile.h>
+#endif
+
 JNIEXPORT jlong JNICALL Java_com_nfsdb_misc_Net_socketTcp
         (JNIEnv *e, jobject cl, jboolean blocking) {
     int fd = socket(AF_INET, SOCK_STREAM, 0);
@@ -87,6 +94,21 @@ JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Net_send
 }
 
 
+JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Net_sendFile
+        (JNIEnv *e, jclass cl, jlong fd, jlong fileFd, jlong offset, jint len) {
+#ifdef __APPLE__
+    off_t n = len;
+    // on OSX sendfile() reports partial transfer of non-blocking socket as EAGAIN
+    if (sendfile((int) fileFd, (int) fd, (off_t) offset, &n, NULL, 0) == 0 || n > 0) {
+        return n > 0 ? (jint) n : com_nfsdb_misc_Net_EPEERDISCONNECT;
+    }
+    return (jint) (errno == EWOULDBLOCK ? com_nfsdb_misc_Net_ERETRY : com_nfsdb_misc_Net_EOTHERDISCONNECT);
+#else
+    off_t off = (off_t) offset;
+    return convert_error(sendfile((int) fd, (int) fileFd, &off, (size_t) len));
+#endif
+}
+
 JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Net_recv
         (JNIEnv *e, jclass cl, jlong fd, jlong ptr, jint len) {
     return convert_error(recv((int) fd, (void *) ptr, (size_t) len, 0));
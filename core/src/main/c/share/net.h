@@ -85,6 +85,14 @@ JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Net_recv
 JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Net_send
         (JNIEnv *, jclass, jlong, jlong, jint);
 
+/*
+ * Class:     com_nfsdb_misc_Net
+ * Method:    sendFile
+ * Signature: (JJJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Net_sendFile
+        (JNIEnv *, jclass, jlong, jlong, jlong, jint);
+
 /*
  * Class:     com_nfsdb_misc_Net
  * Method:    setRcvBuf
@@ -155,3 +155,12 @@ JNIEXPORT jlong JNICALL Java_com_nfsdb_misc_Files_getStdOutFd
     return (jlong) GetStdHandle(STD_OUTPUT_HANDLE);
 }
 
+JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Files_madvise0
+        (JNIEnv *e, jclass cl, jlong address, jlong len, jint advice) {
+    return -1;
+}
+
+JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Files_fadvise0
+        (JNIEnv *e, jclass cl, jlong fd, jlong offset, jlong len, jint advice) {
+    return -1;
+}
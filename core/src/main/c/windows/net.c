@@ -109,6 +109,11 @@ JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Net_send
     return convert_error(send((SOCKET) fd, (const char *) addr, len, 0));
 }
 
+JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Net_sendFile
+        (JNIEnv *e, jclass cl, jlong fd, jlong fileFd, jlong offset, jint len) {
+    return com_nfsdb_misc_Net_EOTHERDISCONNECT;
+}
+
 JNIEXPORT jint JNICALL Java_com_nfsdb_misc_Net_setSndBuf
         (JNIEnv *e, jclass cl, jlong fd, jint size) {
     jint sz = size;
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.TimeoutException;
+import com.nfsdb.misc.NamedDaemonThreadFactory;
+import com.nfsdb.mp.AlertedException;
+import com.nfsdb.mp.SCSequence;
+import com.nfsdb.mp.Sequence;
+import com.nfsdb.mp.TimeoutBlockingWaitStrategy;
+
+import java.io.Closeable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single thread consuming ring queue that many producers publish to. Subclass links its publisher
+ * sequence with {@link #subSeq} and processes everything available from given cursor in {@link #drain(long)}.
+ * When halted drainer processes whatever has been published before its thread exits.
+ */
+abstract class AbstractDrainer implements Closeable {
+    // bounds time drainer can miss a signal for
+    private static final long WAIT_MILLIS = 100;
+    protected final Sequence subSeq = new SCSequence(new TimeoutBlockingWaitStrategy(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    private final ExecutorService executor;
+    private final CountDownLatch haltLatch = new CountDownLatch(1);
+    private volatile boolean running = false;
+
+    AbstractDrainer(String threadName) {
+        this.executor = Executors.newSingleThreadExecutor(new NamedDaemonThreadFactory(threadName, false));
+    }
+
+    @Override
+    public void close() {
+        halt();
+    }
+
+    /**
+     * Stops drainer after it processes everything that has been published. Producers must stop
+     * publishing before drainer is halted.
+     */
+    public void halt() {
+        executor.shutdown();
+        subSeq.alert();
+        try {
+            if (running) {
+                haltLatch.await();
+            }
+        } catch (InterruptedException ignore) {
+        }
+    }
+
+    public void start() {
+        running = true;
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        try {
+                            drain(subSeq.waitForNext());
+                        } catch (TimeoutException ignore) {
+                            // check for published entries again
+                        }
+                    }
+                } catch (AlertedException ignore) {
+                    long cursor;
+                    while ((cursor = subSeq.next()) > -1) {
+                        drain(cursor);
+                    }
+                } finally {
+                    running = false;
+                    haltLatch.countDown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Processes entries available from given cursor and releases them with subSeq.done(). Must not throw,
+     * failures are to be reported to producers of failed entries.
+     *
+     * @param lo first available cursor
+     */
+    protected abstract void drain(long lo);
+}
@@ -31,6 +31,7 @@ import com.nfsdb.net.http.HttpServer;
 import com.nfsdb.net.http.HttpServerConfiguration;
 import com.nfsdb.net.http.MimeTypes;
 import com.nfsdb.net.http.SimpleUrlMatcher;
+import com.nfsdb.net.http.handlers.BinaryHandler;
 import com.nfsdb.net.http.handlers.DummyHandler;
 import com.nfsdb.net.http.handlers.ImportHandler;
 import com.nfsdb.net.http.handlers.JsonHandler;
@@ -76,7 +77,9 @@ class BootstrapMain {
         final SimpleUrlMatcher matcher = new SimpleUrlMatcher();
         JournalFactory factory = new JournalFactory(configuration.getDbPath().getAbsolutePath());
         matcher.put("/imp", new ImportHandler(factory));
-        matcher.put("/js", new JsonHandler(new JournalFactoryPool(factory.getConfiguration(), configuration.getJournalPoolSize())));
+        JournalFactoryPool factoryPool = new JournalFactoryPool(factory.getConfiguration(), configuration.getJournalPoolSize());
+        matcher.put("/js", new JsonHandler(factoryPool));
+        matcher.put("/bin", new BinaryHandler(factoryPool));
         matcher.put("/x", new DummyHandler());
         matcher.setDefaultHandler(new StaticContentHandler(configuration.getHttpPublic(), new MimeTypes(configuration.getMimeTypes())));
 
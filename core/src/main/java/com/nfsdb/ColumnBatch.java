@@ -0,0 +1,203 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.factory.configuration.ColumnMetadata;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.store.ColumnType;
+
+/**
+ * Column vectors for {@link JournalWriter#appendColumns(ColumnBatch)}. Every column of journal has to
+ * be given values for all rows of batch. Fixed width columns take primitive arrays or memory address
+ * of values in native byte order. Symbol columns take either keys of existing values or strings,
+ * string columns take strings. Journals with binary columns cannot be appended to from batch. Batch keeps
+ * references to arrays, it does not copy them.
+ * <pre>
+ * ColumnBatch b = new ColumnBatch(w.getMetadata()).of(n)
+ *      .putLongs("timestamp", timestamps)
+ *      .putStrs("sym", symbols)
+ *      .putDoubles("bid", bids);
+ * w.appendColumns(b);
+ * </pre>
+ * Timestamps must not decrease within batch. Batch can span several partitions.
+ */
+public class ColumnBatch {
+    private final JournalMetadata<?> metadata;
+    private final Object[] bases;
+    private final long[] offsets;
+    private final boolean[] set;
+    private final CharSequence[][] strings;
+    private int size;
+
+    public ColumnBatch(JournalMetadata<?> metadata) {
+        this.metadata = metadata;
+        int n = metadata.getColumnCount();
+        this.bases = new Object[n];
+        this.offsets = new long[n];
+        this.set = new boolean[n];
+        this.strings = new CharSequence[n][];
+    }
+
+    public ColumnBatch of(int size) {
+        this.size = size;
+        for (int i = 0; i < set.length; i++) {
+            bases[i] = null;
+            strings[i] = null;
+            set[i] = false;
+        }
+        return this;
+    }
+
+    /**
+     * Sets values of fixed width column from memory.
+     *
+     * @param column  column name
+     * @param address address of first value, values are laid out same way as in column file
+     * @return this batch
+     */
+    public ColumnBatch putAddress(String column, long address) {
+        int i = metadata.getColumnIndex(column);
+        switch (metadata.getColumnQuick(i).type) {
+            case STRING:
+            case BINARY:
+                throw new JournalRuntimeException("Fixed width column expected: %s", column);
+            default:
+                return put(i, null, address);
+        }
+    }
+
+    public ColumnBatch putBools(String column, boolean[] values) {
+        return put(column, values, values.length, Unsafe.BOOL_OFFSET, ColumnType.BOOLEAN, null);
+    }
+
+    public ColumnBatch putBytes(String column, byte[] values) {
+        return put(column, values, values.length, Unsafe.BYTE_OFFSET, ColumnType.BYTE, null);
+    }
+
+    public ColumnBatch putDoubles(String column, double[] values) {
+        return put(column, values, values.length, Unsafe.DOUBLE_OFFSET, ColumnType.DOUBLE, null);
+    }
+
+    public ColumnBatch putFloats(String column, float[] values) {
+        return put(column, values, values.length, Unsafe.FLOAT_OFFSET, ColumnType.FLOAT, null);
+    }
+
+    /**
+     * Sets values of INT column or keys of SYMBOL column. Symbol keys must exist in column's symbol table.
+     *
+     * @param column column name
+     * @param values values or symbol keys
+     * @return this batch
+     */
+    public ColumnBatch putInts(String column, int[] values) {
+        return put(column, values, values.length, Unsafe.INT_OFFSET, ColumnType.INT, ColumnType.SYMBOL);
+    }
+
+    public ColumnBatch putLongs(String column, long[] values) {
+        return put(column, values, values.length, Unsafe.LONG_OFFSET, ColumnType.LONG, ColumnType.DATE);
+    }
+
+    public ColumnBatch putShorts(String column, short[] values) {
+        return put(column, values, values.length, Unsafe.SHORT_OFFSET, ColumnType.SHORT, null);
+    }
+
+    /**
+     * Sets values of STRING or SYMBOL column. Null elements are stored as nulls.
+     *
+     * @param column column name
+     * @param values values
+     * @return this batch
+     */
+    public ColumnBatch putStrs(String column, CharSequence[] values) {
+        int i = metadata.getColumnIndex(column);
+        ColumnType type = metadata.getColumnQuick(i).type;
+        if (type != ColumnType.STRING && type != ColumnType.SYMBOL) {
+            throw new JournalRuntimeException("Expected type: %s", type);
+        }
+        checkLength(values.length);
+        strings[i] = values;
+        set[i] = true;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    Object base(int column) {
+        return Unsafe.arrayGet(bases, column);
+    }
+
+    long getLong(int column, int row) {
+        return Unsafe.getUnsafe().getLong(Unsafe.arrayGet(bases, column), Unsafe.arrayGet(offsets, column) + ((long) row << 3));
+    }
+
+    int getInt(int column, int row) {
+        return Unsafe.getUnsafe().getInt(Unsafe.arrayGet(bases, column), Unsafe.arrayGet(offsets, column) + ((long) row << 2));
+    }
+
+    long offset(int column, int row) {
+        return Unsafe.arrayGet(offsets, column) + (long) row * metadata.getColumnQuick(column).size;
+    }
+
+    CharSequence[] strs(int column) {
+        return Unsafe.arrayGet(strings, column);
+    }
+
+    void validate() {
+        for (int i = 0; i < set.length; i++) {
+            ColumnMetadata m = metadata.getColumnQuick(i);
+            if (m.type == ColumnType.BINARY) {
+                throw new JournalRuntimeException("Binary column is not supported: %s", m.name);
+            }
+            if (!Unsafe.arrayGet(set, i)) {
+                throw new JournalRuntimeException("No values for column: %s", m.name);
+            }
+        }
+    }
+
+    private void checkLength(int length) {
+        if (length < size) {
+            throw new JournalRuntimeException("Expected %d values, found %d", size, length);
+        }
+    }
+
+    private ColumnBatch put(String column, Object values, int length, long arrayOffset, ColumnType type, ColumnType altType) {
+        int i = metadata.getColumnIndex(column);
+        ColumnMetadata m = metadata.getColumnQuick(i);
+        if (m.type != type && m.type != altType) {
+            throw new JournalRuntimeException("Expected type: %s", m.type);
+        }
+        checkLength(length);
+        return put(i, values, arrayOffset);
+    }
+
+    private ColumnBatch put(int column, Object base, long offset) {
+        bases[column] = base;
+        offsets[column] = offset;
+        strings[column] = null;
+        set[column] = true;
+        return this;
+    }
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.log.Log;
+import com.nfsdb.log.LogFactory;
+import com.nfsdb.misc.Numbers;
+import com.nfsdb.mp.MPSequence;
+import com.nfsdb.mp.RingQueue;
+import com.nfsdb.mp.Sequence;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.std.ObjectFactory;
+import com.nfsdb.store.TxListener;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.util.List;
+
+/**
+ * Commits transactions of many producers through single journal writer. Producers submit objects
+ * together with listener and return immediately. Committer thread appends everything that has been
+ * submitted since its last commit and makes it durable with one tx log write and one force(), so that
+ * cost of fsync is shared by all transactions in the group. Listener is notified once its objects
+ * are durable.
+ * <p>
+ * Transactions in a group succeed or fail together. When objects of one submission cannot be appended
+ * the group is rolled back and listeners of all its submissions are notified of error.
+ * <p>
+ * Writer is owned by committer thread until committer is halted and must not be used elsewhere.
+ */
+public class GroupCommitter<T> extends AbstractDrainer {
+    private static final Log LOG = LogFactory.getLog(GroupCommitter.class);
+    private final JournalWriter<T> writer;
+    private final RingQueue<Request> queue;
+    private final Sequence pubSeq;
+    private final int maxGroupSize;
+    private final ObjList<TxListener> group = new ObjList<>();
+
+    public GroupCommitter(JournalWriter<T> writer, int queueSize) {
+        super("nfsdb-group-commit-" + writer.getLocation().getName());
+        this.writer = writer;
+        int cycle = Numbers.ceilPow2(queueSize);
+        this.queue = new RingQueue<>(new ObjectFactory<Request>() {
+            @Override
+            public Request newInstance() {
+                return new Request();
+            }
+        }, cycle);
+        this.maxGroupSize = cycle;
+        this.pubSeq = new MPSequence(cycle);
+        this.pubSeq.followedBy(subSeq);
+        this.subSeq.followedBy(pubSeq);
+    }
+
+    /**
+     * Queues objects to be appended and committed. This method blocks only when queue is full.
+     * Objects list must not be modified until listener is notified.
+     *
+     * @param objects  objects to append in one transaction
+     * @param listener notified when objects are durable or when transaction fails
+     */
+    public void submit(List<T> objects, TxListener listener) {
+        long cursor = pubSeq.nextBully();
+        Request r = queue.get(cursor);
+        r.objects = objects;
+        r.listener = listener;
+        pubSeq.done(cursor);
+    }
+
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS"})
+    @Override
+    protected void drain(long lo) {
+        long cursor = lo;
+        boolean ok = true;
+        do {
+            Request r = queue.get(cursor);
+            group.add(r.listener);
+            try {
+                for (int i = 0, n = r.objects.size(); i < n; i++) {
+                    writer.append(r.objects.get(i));
+                }
+            } catch (JournalException | RuntimeException e) {
+                // bad object must not take committer thread down, producers would wait for it forever
+                LOG.error().$("Failed to append to ").$(writer.getLocation()).$(": ").$(e).$();
+                ok = false;
+            }
+            r.objects = null;
+            r.listener = null;
+            subSeq.done(cursor);
+        } while (ok && group.size() < maxGroupSize && (cursor = subSeq.next()) > -1);
+
+        if (ok) {
+            try {
+                writer.commitDurable();
+            } catch (JournalException | RuntimeException e) {
+                LOG.error().$("Failed to commit ").$(writer.getLocation()).$(": ").$(e).$();
+                ok = false;
+            }
+        }
+
+        if (!ok) {
+            // rows of failed group must not be committed by the next one
+            try {
+                writer.rollback();
+            } catch (JournalException | RuntimeException e) {
+                LOG.error().$("Failed to rollback ").$(writer.getLocation()).$(": ").$(e).$();
+            }
+        }
+
+        for (int i = 0, n = group.size(); i < n; i++) {
+            TxListener l = group.getQuick(i);
+            if (l != null) {
+                try {
+                    if (ok) {
+                        l.onCommit();
+                    } else {
+                        l.onError();
+                    }
+                } catch (RuntimeException e) {
+                    LOG.error().$("Listener failed on ").$(writer.getLocation()).$(": ").$(e).$();
+                }
+            }
+        }
+        group.clear();
+    }
+
+    private class Request {
+        private List<T> objects;
+        private TxListener listener;
+    }
+}
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.log.Log;
+import com.nfsdb.log.LogFactory;
+import com.nfsdb.misc.Files;
+import com.nfsdb.misc.Interval;
+import com.nfsdb.misc.Misc;
+import com.nfsdb.misc.NamedDaemonThreadFactory;
+import com.nfsdb.std.ObjHashSet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds indexes of journal in background. Partitions are rebuilt in parallel by worker threads,
+ * each on its own copy of partition, so that writer can keep appending to active partition. New index
+ * values are written next to existing ones and replace them atomically once partition is done, until
+ * then readers continue to use previous index.
+ * <p>
+ * Names of completed partitions are recorded in journal directory. When build is halted or interrupted
+ * by crash, next build of same journal skips partitions that had been completed.
+ * <p>
+ * Indexes of active and lag partitions are rebuilt by {@link #finish()} on thread that owns writer
+ * and are published to readers by commit, together with tx index pointers. Out of order rows must not
+ * be merged into partitions that are being rebuilt.
+ */
+public class IndexBuilder<T> implements Closeable {
+    public static final String FILE_NAME = "_index";
+    private static final Log LOG = LogFactory.getLog(IndexBuilder.class);
+    private final JournalWriter<T> writer;
+    private final File checkpointFile;
+    private final ExecutorService executor;
+    private final ObjHashSet<String> completed = new ObjHashSet<>();
+    private CountDownLatch pendingLatch;
+    private FileOutputStream checkpoint;
+    private int backgroundPartitionCount;
+    private volatile boolean halted = false;
+    private volatile Throwable error;
+
+    public IndexBuilder(JournalWriter<T> writer, int workerCount) {
+        this.writer = writer;
+        this.checkpointFile = new File(writer.getLocation(), FILE_NAME);
+        this.executor = Executors.newFixedThreadPool(workerCount, new NamedDaemonThreadFactory("nfsdb-index-builder-" + writer.getLocation().getName(), true));
+    }
+
+    /**
+     * Checks if index build of journal had been started and not finished.
+     *
+     * @param location journal directory
+     * @return true if build should be resumed
+     */
+    public static boolean isPending(File location) {
+        return new File(location, FILE_NAME).exists();
+    }
+
+    @Override
+    public void close() {
+        halt();
+    }
+
+    /**
+     * Waits for background workers to complete, rebuilds indexes of remaining partitions and commits writer.
+     * Completed build is not recorded in journal directory anymore.
+     *
+     * @throws JournalException if any of partitions could not be rebuilt or builder has been halted
+     */
+    public void finish() throws JournalException {
+        if (pendingLatch == null) {
+            throw new JournalException("Index builder has not been started");
+        }
+
+        try {
+            pendingLatch.await();
+        } catch (InterruptedException e) {
+            throw new JournalException("Interrupted while waiting for index builder of %s", e, writer.getLocation());
+        }
+
+        if (error != null) {
+            throw new JournalException("Cannot rebuild indexes of %s", error, writer.getLocation());
+        }
+
+        if (halted) {
+            throw new JournalException("Index builder of %s has been halted", writer.getLocation());
+        }
+
+        // writer might have indexes of rebuilt partitions open
+        // with state prior to rebuild, they will be reopened on demand
+        for (int i = 0; i < backgroundPartitionCount; i++) {
+            writer.getPartition(i, false).close();
+        }
+
+        // partitions that writer was appending to and partitions added since build has started
+        for (int i = backgroundPartitionCount, n = writer.getPartitionCount(); i < n; i++) {
+            writer.getPartition(i, true).rebuildIndexes();
+        }
+        writer.beginTx();
+        writer.commit();
+
+        checkpoint = Misc.free(checkpoint);
+        Files.deleteOrException(checkpointFile);
+        executor.shutdown();
+        LOG.info().$("Rebuilt indexes of ").$(writer.getLocation()).$();
+    }
+
+    /**
+     * Number of partitions that are yet to be rebuilt by background workers.
+     *
+     * @return partition count
+     */
+    public long getPendingCount() {
+        return pendingLatch == null ? 0 : pendingLatch.getCount();
+    }
+
+    /**
+     * Stops workers after they complete partitions they are rebuilding. Progress is kept in journal
+     * directory and build can be resumed by another builder.
+     */
+    public void halt() {
+        halted = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ignore) {
+        }
+        checkpoint = Misc.free(checkpoint);
+    }
+
+    /**
+     * Submits all partitions except for active one to background workers. Partitions that have been
+     * rebuilt by previous build of same journal are skipped.
+     *
+     * @throws JournalException if build progress cannot be read or written
+     */
+    public void start() throws JournalException {
+        if (checkpointFile.exists()) {
+            String names[] = Files.readStringFromFile(checkpointFile).split("\n");
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].length() > 0) {
+                    completed.add(names[i]);
+                }
+            }
+        }
+
+        try {
+            checkpoint = new FileOutputStream(checkpointFile, true);
+            checkpoint.getFD().sync();
+        } catch (IOException e) {
+            throw new JournalException("Cannot write to %s", e, checkpointFile.getAbsolutePath());
+        }
+
+        backgroundPartitionCount = Math.max(0, writer.nonLagPartitionCount() - 1);
+        pendingLatch = new CountDownLatch(backgroundPartitionCount);
+
+        for (int i = 0; i < backgroundPartitionCount; i++) {
+            Partition<T> p = writer.getPartition(i, false);
+            if (completed.contains(p.getPartitionDir().getName())) {
+                pendingLatch.countDown();
+            } else {
+                executor.submit(new Task(i, p.getInterval(), p.getVersion()));
+            }
+        }
+    }
+
+    private void build(int partitionIndex, Interval interval, long version) throws JournalException, IOException {
+        try (Partition<T> p = new Partition<>(writer, interval, partitionIndex, Journal.TX_LIMIT_EVAL, null, version)) {
+            p.open();
+            p.rebuildIndexes();
+            p.force();
+            checkpoint(p.getPartitionDir().getName());
+        }
+    }
+
+    private synchronized void checkpoint(String name) throws IOException {
+        checkpoint.write((name + '\n').getBytes(Files.UTF_8));
+        checkpoint.getFD().sync();
+    }
+
+    private class Task implements Runnable {
+        private final int partitionIndex;
+        private final Interval interval;
+        private final long version;
+
+        private Task(int partitionIndex, Interval interval, long version) {
+            this.partitionIndex = partitionIndex;
+            this.interval = interval;
+            this.version = version;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!halted && error == null) {
+                    build(partitionIndex, interval, version);
+                }
+            } catch (Throwable e) {
+                LOG.error().$("Cannot rebuild indexes of ").$(interval).$(" in ").$(writer.getLocation()).$(e).$();
+                error = e;
+            } finally {
+                pendingLatch.countDown();
+            }
+        }
+    }
+}
@@ -457,8 +457,10 @@ public class Journal<T> implements Iterable<T>, Closeable {
     }
 
     public boolean refresh() throws JournalException {
+        long txn = tx.txn;
+        long txPin = tx.txPin;
         if (txLog.head(tx)) {
-            refreshInternal();
+            refreshInternal(txn, txPin);
             for (int i = 0, sz = symbolTables.size(); i < sz; i++) {
                 symbolTables.getQuick(i).applyTx(tx.symbolTableSizes[i], tx.symbolTableIndexPointers[i]);
             }
@@ -535,7 +537,7 @@ public class Journal<T> implements Iterable<T>, Closeable {
                 int tabIndex = symbolTables.size();
                 int tabSize = tx.symbolTableSizes.length > tabIndex ? tx.symbolTableSizes[tabIndex] : 0;
                 long indexTxAddress = tx.symbolTableIndexPointers.length > tabIndex ? tx.symbolTableIndexPointers[tabIndex] : 0;
-                SymbolTable tab = new SymbolTable(meta.distinctCountHint, meta.avgSize, getMetadata().getTxCountHint(), location, meta.name, getMode(), tabSize, indexTxAddress, meta.noCache);
+                SymbolTable tab = new SymbolTable(meta.distinctCountHint, meta.avgSize, getMetadata().getTxCountHint(), location, meta.name, getMode(), tabSize, indexTxAddress, meta.noCache, meta.compact);
                 symbolTables.add(tab);
                 symbolTableMap.put(meta.name, tab);
                 meta.symbolTable = tab;
@@ -559,7 +561,7 @@ public class Journal<T> implements Iterable<T>, Closeable {
         }
     }
 
-    private void configurePartitions() throws JournalException {
+    void configurePartitions() throws JournalException {
         File[] files = getLocation().listFiles(new FileFilter() {
             public boolean accept(File f) {
                 return f.isDirectory() && !f.getName().startsWith(Constants.TEMP_DIRECTORY_PREFIX);
@@ -569,43 +571,89 @@ public class Journal<T> implements Iterable<T>, Closeable {
         int partitionIndex = 0;
         if (files != null && tx.journalMaxRowID > 0) {
             Arrays.sort(files);
+            ObjList<Interval> intervals = new ObjList<>(files.length);
+            LongList versions = new LongList(files.length);
             for (int i = 0; i < files.length; i++) {
-                File f = files[i];
+                String name = files[i].getName();
+                int sep = name.indexOf(Partition.VERSION_SEPARATOR);
+                try {
+                    Interval interval = new Interval(sep == -1 ? name : name.substring(0, sep), getMetadata().getPartitionType());
+                    long version = sep == -1 ? 0 : Numbers.parseLong(name, sep + 1, name.length());
+                    int last = intervals.size() - 1;
+                    if (last > -1 && intervals.getQuick(last).equals(interval)) {
+                        // partition has been rewritten, directories sort next to each other
+                        if (isPreferredVersion(version, versions.getQuick(last))) {
+                            versions.setQuick(last, version);
+                        }
+                    } else {
+                        intervals.add(interval);
+                        versions.add(version);
+                    }
+                } catch (NumericException e) {
+                    LOG.info().$("Foreign directory: ").$(name).$();
+                }
+            }
 
-                if (partitionIndex > Rows.toPartitionIndex(tx.journalMaxRowID)) {
+            // directories of dropped partitions are deleted after transaction is committed,
+            // skip those that are still there
+            int txPartitionIndex = Rows.toPartitionIndex(tx.journalMaxRowID);
+            int lo = 0;
+            for (int i = intervals.size() - 1; i > txPartitionIndex; i--) {
+                if (intervals.getQuick(i).getLo() == tx.lastPartitionTimestamp) {
+                    lo = i - txPartitionIndex;
                     break;
                 }
+            }
 
+            for (int i = lo, n = intervals.size(); i < n && partitionIndex <= txPartitionIndex; i++) {
+                Interval interval = intervals.getQuick(i);
                 long txLimit = Journal.TX_LIMIT_EVAL;
                 long[] indexTxAddresses = null;
-                if (partitionIndex == Rows.toPartitionIndex(tx.journalMaxRowID)) {
+                if (partitionIndex == txPartitionIndex) {
                     txLimit = Rows.toLocalRowID(tx.journalMaxRowID);
                     indexTxAddresses = tx.indexPointers;
                 }
 
-                try {
-                    Interval interval = new Interval(f.getName(), getMetadata().getPartitionType());
-                    if (partitionIndex < partitions.size()) {
-                        Partition<T> partition = partitions.getQuick(partitionIndex);
-                        Interval that = partition.getInterval();
-                        if (that == null || that.equals(interval)) {
-                            partition.applyTx(txLimit, indexTxAddresses);
-                            partitionIndex++;
-                        } else {
-                            partition.close();
-                            partitions.remove(partitionIndex);
-                        }
-                    } else {
-                        partitions.add(new Partition<>(this, interval, partitionIndex++, txLimit, indexTxAddresses));
+                long version = versions.getQuick(i);
+                if (partitionIndex < partitions.size()) {
+                    Partition<T> partition = partitions.getQuick(partitionIndex);
+                    Interval that = partition.getInterval();
+                    if (that == null || (that.equals(interval) && partition.getVersion() == version)) {
+                        partition.applyTx(txLimit, indexTxAddresses);
+                        partitionIndex++;
+                        continue;
+                    }
+
+                    if (that.equals(interval)) {
+                        // partition has been rewritten by out of order rows, old directory is about to be deleted
+                        partition.close();
+                        partitions.setQuick(partitionIndex, new Partition<>(this, interval, partitionIndex, txLimit, indexTxAddresses, version));
+                        partitionIndex++;
+                        continue;
+                    }
+                    // partitions have been dropped, remaining ones are at different index now
+                    for (int k = partitions.size() - 1; k >= partitionIndex; k--) {
+                        partitions.getQuick(k).close();
+                        partitions.remove(k);
                     }
-                } catch (NumericException e) {
-                    LOG.info().$("Foreign directory: ").$(f.getName()).$();
                 }
+                partitions.add(new Partition<>(this, interval, partitionIndex++, txLimit, indexTxAddresses, version));
             }
         }
         configureIrregularPartition();
     }
 
+    /**
+     * Picks directory of rewritten partition. Newest version committed by current transaction wins,
+     * versions of transactions yet to be committed are used only when there is nothing else.
+     */
+    private boolean isPreferredVersion(long version, long than) {
+        if (version <= tx.txn) {
+            return than > tx.txn || version > than;
+        }
+        return than > tx.txn && version < than;
+    }
+
     private void configureSymbolTableSynonyms() {
         for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
             ColumnMetadata meta = metadata.getColumnQuick(i);
@@ -668,13 +716,16 @@ public class Journal<T> implements Iterable<T>, Closeable {
      * Replaces current Lag partition, which is cached in this instance of Partition Manager with Lag partition,
      * which was written to _lag file by another process.
      */
-    private void refreshInternal() throws JournalException {
+    private void refreshInternal(long prevTxn, long prevTxPin) throws JournalException {
 
         assert tx.address > 0;
 
         int txPartitionIndex = tx.journalMaxRowID == -1 ? 0 : Rows.toPartitionIndex(tx.journalMaxRowID);
-        if (partitions.size() != txPartitionIndex + 1 || tx.journalMaxRowID < 1) {
-            if (tx.journalMaxRowID < 1 || partitions.size() > txPartitionIndex + 1) {
+        boolean shifted = partitions.size() == txPartitionIndex + 1 && isShifted(partitions.getQuick(txPartitionIndex));
+        // out of order rows could have been merged into any partition, which is then found in new directory
+        boolean rewritten = getMetadata().isOutOfOrder() && txLog.hasRewritesAfter(prevTxn, prevTxPin);
+        if (partitions.size() != txPartitionIndex + 1 || tx.journalMaxRowID < 1 || shifted || rewritten) {
+            if (tx.journalMaxRowID < 1 || partitions.size() > txPartitionIndex + 1 || shifted) {
                 closePartitions();
             }
             configurePartitions();
@@ -685,6 +736,17 @@ public class Journal<T> implements Iterable<T>, Closeable {
         }
     }
 
+    /**
+     * Partitions dropped by writer shift remaining partitions towards start of journal. Partition
+     * at transaction's partition index is then not the one transaction was committed for.
+     */
+    private boolean isShifted(Partition<T> partition) {
+        Interval interval = partition.getInterval();
+        return interval != null
+                && getMetadata().getPartitionType() != PartitionType.NONE
+                && interval.getLo() != tx.lastPartitionTimestamp;
+    }
+
     void removeIrregularPartitionInternal() {
         if (irregularPartition != null) {
             if (irregularPartition.isOpen()) {
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.log.Log;
+import com.nfsdb.log.LogFactory;
+import com.nfsdb.misc.Numbers;
+import com.nfsdb.mp.MPSequence;
+import com.nfsdb.mp.RingQueue;
+import com.nfsdb.mp.Sequence;
+import com.nfsdb.std.ObjectFactory;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets many threads append to single journal. Producers claim pre-allocated rows in ring queue,
+ * populate them and publish:
+ * <pre>
+ * long cursor = w.next();
+ * Quote q = w.get(cursor);
+ * q.setSym("ABC");
+ * ...
+ * w.publish(cursor);
+ * </pre>
+ * Rows are reused, producer must set every field it cares about. Drainer thread takes all published
+ * rows at once, orders them by timestamp and appends them in single transaction. When journal has lag
+ * rows are merged into lag partition, otherwise rows older than last appended timestamp are rejected.
+ * Rows older than hard timestamp of journal are rejected in either case, unless journal keeps out of order rows.
+ * <p>
+ * Writer is owned by drainer thread until this writer is halted and must not be used elsewhere.
+ */
+public class JournalConcurrentWriter<T> extends AbstractDrainer implements ObjectFactory<T> {
+    private static final Log LOG = LogFactory.getLog(JournalConcurrentWriter.class);
+    private final JournalWriter<T> writer;
+    private final RingQueue<T> queue;
+    private final Sequence pubSeq;
+    private final int maxBatchSize;
+    private final ArrayList<T> batch;
+    private final boolean ordered;
+    private final boolean lag;
+    private final boolean keepLate;
+    private final Comparator<T> comparator;
+    private final AtomicLong stallCount = new AtomicLong();
+    private volatile long rowCount;
+    private volatile long rejectedCount;
+    private volatile long batchCount;
+    private volatile int maxObservedBatchSize;
+
+    public JournalConcurrentWriter(JournalWriter<T> writer, int queueSize) {
+        super("nfsdb-concurrent-writer-" + writer.getLocation().getName());
+        this.writer = writer;
+        int cycle = Numbers.ceilPow2(queueSize);
+        this.queue = new RingQueue<>(this, cycle);
+        this.maxBatchSize = cycle;
+        this.batch = new ArrayList<>(cycle);
+        this.pubSeq = new MPSequence(cycle);
+        this.pubSeq.followedBy(subSeq);
+        this.subSeq.followedBy(pubSeq);
+        this.ordered = writer.getMetadata().getTimestampIndex() != -1;
+        this.lag = writer.getMetadata().getLag() > 0;
+        this.keepLate = writer.getMetadata().isOutOfOrder();
+        this.comparator = new Comparator<T>() {
+            @Override
+            public int compare(T o1, T o2) {
+                long t1 = JournalConcurrentWriter.this.writer.getTimestamp(o1);
+                long t2 = JournalConcurrentWriter.this.writer.getTimestamp(o2);
+                return t1 < t2 ? -1 : (t1 > t2 ? 1 : 0);
+            }
+        };
+    }
+
+    public T get(long cursor) {
+        return queue.get(cursor);
+    }
+
+    /**
+     * @return number of appended batches
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * @return largest number of rows appended in one batch
+     */
+    public int getMaxBatchSize() {
+        return maxObservedBatchSize;
+    }
+
+    /**
+     * @return number of rows rejected for being out of order or failing to append
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return number of appended rows
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return number of times producer found queue full and had to wait for drainer
+     */
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    @Override
+    public T newInstance() {
+        return writer.newObject();
+    }
+
+    /**
+     * Claims next row, waiting for drainer when queue is full.
+     *
+     * @return cursor of row
+     */
+    public long next() {
+        long cursor = pubSeq.next();
+        if (cursor < 0) {
+            if (cursor == -1) {
+                stallCount.incrementAndGet();
+            }
+            cursor = pubSeq.nextBully();
+        }
+        return cursor;
+    }
+
+    public void publish(long cursor) {
+        pubSeq.done(cursor);
+    }
+
+    /**
+     * Claims next row without waiting.
+     *
+     * @return cursor of row or -1 when queue is full
+     */
+    public long tryNext() {
+        long cursor;
+        do {
+            cursor = pubSeq.next();
+        } while (cursor == -2);
+        return cursor;
+    }
+
+    private int append() throws JournalException {
+        if (!ordered) {
+            for (int i = 0, n = batch.size(); i < n; i++) {
+                writer.append(batch.get(i));
+            }
+            return batch.size();
+        }
+
+        Collections.sort(batch, comparator);
+
+        int n = batch.size();
+        int lo = 0;
+        if (!keepLate) {
+            // rows older than hard timestamp would be dropped by mergeAppend() without telling, skip and count them here
+            long hard = writer.getAppendTimestampLo();
+            while (lo < n && writer.getTimestamp(batch.get(lo)) < hard) {
+                lo++;
+            }
+        }
+
+        if (lag) {
+            if (lo < n) {
+                writer.mergeAppend(lo == 0 ? batch : batch.subList(lo, n));
+            }
+            return n - lo;
+        }
+
+        int appended = 0;
+        for (int i = lo; i < n; i++) {
+            T obj = batch.get(i);
+            if (keepLate || writer.getTimestamp(obj) >= writer.getAppendTimestampLo()) {
+                writer.append(obj);
+                appended++;
+            }
+        }
+        return appended;
+    }
+
+    @SuppressFBWarnings({"VO_VOLATILE_INCREMENT"})
+    @Override
+    protected void drain(long lo) {
+        long hi = Math.min(pubSeq.availableIndex(lo), lo + maxBatchSize - 1);
+        for (long cursor = lo; cursor <= hi; cursor++) {
+            batch.add(queue.get(cursor));
+        }
+
+        int size = batch.size();
+        try {
+            int appended = append();
+            writer.commit();
+            rowCount += appended;
+            rejectedCount += size - appended;
+        } catch (JournalException | RuntimeException e) {
+            LOG.error().$("Failed to append ").$(size).$(" rows to ").$(writer.getLocation()).$(": ").$(e).$();
+            rejectedCount += size;
+            try {
+                writer.rollback();
+            } catch (JournalException | RuntimeException e1) {
+                LOG.error().$("Failed to rollback ").$(writer.getLocation()).$(": ").$(e1).$();
+            }
+        } finally {
+            batch.clear();
+            subSeq.done(hi);
+        }
+
+        batchCount++;
+        if (size > maxObservedBatchSize) {
+            maxObservedBatchSize = size;
+        }
+    }
+}
@@ -24,6 +24,7 @@ package com.nfsdb;
 import com.nfsdb.ex.IncompatibleJournalException;
 import com.nfsdb.ex.JournalException;
 import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.ex.NumericException;
 import com.nfsdb.factory.configuration.Constants;
 import com.nfsdb.factory.configuration.JournalConfiguration;
 import com.nfsdb.factory.configuration.JournalMetadata;
@@ -39,6 +40,8 @@ import com.nfsdb.mp.SCSequence;
 import com.nfsdb.mp.SPSequence;
 import com.nfsdb.mp.Sequence;
 import com.nfsdb.query.ResultSet;
+import com.nfsdb.std.CharSequenceHashSet;
+import com.nfsdb.std.ObjList;
 import com.nfsdb.std.PeekingListIterator;
 import com.nfsdb.store.*;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -63,11 +66,15 @@ public class JournalWriter<T> extends Journal<T> {
     private final long lagMillis;
     private final long lagSwellMillis;
     private final boolean checkOrder;
+    private final boolean outOfOrder;
     private final PeekingListIterator<T> peekingListIterator = new PeekingListIterator<>();
     private final MergingIterator<T> mergingIterator = new MergingIterator<>();
     private final JournalEntryWriterImpl journalEntryWriter;
     // discard.txt related
     private final File discardTxt;
+    private ObjList<Partition<T>> droppedPartitions;
+    // partitions replaced by their rewritten copies in current transaction
+    private ObjList<Partition<T>> rewrittenPartitions;
     private Lock writeLock;
     private TxListener txListener;
     private boolean txActive = false;
@@ -82,6 +89,7 @@ public class JournalWriter<T> extends Journal<T> {
     private long appendTimestampHi = -1;
     private RandomAccessFile discardTxtRaf;
     private FlexBufferSink discardSink;
+    private OutOfOrderBuffer<T> lateRows;
 
     public JournalWriter(JournalMetadata<T> metadata, JournalKey<T> key) throws JournalException {
         super(metadata, key);
@@ -92,12 +100,15 @@ public class JournalWriter<T> extends Journal<T> {
         this.lagMillis = TimeUnit.HOURS.toMillis(getMetadata().getLag());
         this.lagSwellMillis = lagMillis * 3;
         this.checkOrder = key.isOrdered() && getTimestampOffset() != -1;
+        this.outOfOrder = checkOrder && metadata.isOutOfOrder();
         this.journalEntryWriter = new JournalEntryWriterImpl(this);
         this.discardTxt = new File(metadata.getLocation(), "discard.txt");
     }
 
     /**
-     * Add an object to the end of the Journal.
+     * Add an object to the end of the Journal. When journal is configured to accept out of order data
+     * objects older than {@link #getAppendTimestampLo()} are kept aside and merged into their
+     * partitions on commit.
      *
      * @param obj the object to add
      * @throws com.nfsdb.ex.JournalException if there is an error
@@ -115,6 +126,11 @@ public class JournalWriter<T> extends Journal<T> {
         if (checkOrder) {
             long timestamp = getTimestamp(obj);
 
+            if (outOfOrder && timestamp < getAppendTimestampLo()) {
+                getLateRows().add(obj, timestamp);
+                return;
+            }
+
             if (timestamp > appendTimestampHi) {
                 switchAppendPartition(timestamp);
             }
@@ -168,6 +184,59 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    /**
+     * Appends rows given as column vectors. Values of fixed width columns are copied into column
+     * files block by block rather than row by row.
+     *
+     * @param batch column values
+     * @throws com.nfsdb.ex.JournalException if batch is out of order or cannot be appended
+     */
+    public void appendColumns(ColumnBatch batch) throws JournalException {
+        batch.validate();
+        int n = batch.size();
+        if (n == 0) {
+            return;
+        }
+
+        if (!txActive) {
+            beginTx();
+        }
+
+        if (!checkOrder) {
+            getAppendPartition().appendColumns(batch, 0, n);
+            return;
+        }
+
+        int tsIndex = getMetadata().getTimestampIndex();
+        for (int i = 1; i < n; i++) {
+            if (batch.getLong(tsIndex, i) < batch.getLong(tsIndex, i - 1)) {
+                throw new JournalException("Batch is out of order at row %d: %s", i, this);
+            }
+        }
+
+        int lo = 0;
+        while (lo < n) {
+            long timestamp = batch.getLong(tsIndex, lo);
+            if (timestamp > appendTimestampHi) {
+                switchAppendPartition(timestamp);
+            }
+
+            if (timestamp < appendTimestampLo) {
+                throw new JournalException("Cannot insert records out of order. maxHardTimestamp=%d (%s), timestamp=%d (%s): %s"
+                        , appendTimestampLo, Dates.toString(appendTimestampLo), timestamp, Dates.toString(timestamp), this);
+            }
+
+            int hi = lo + 1;
+            while (hi < n && batch.getLong(tsIndex, hi) <= appendTimestampHi) {
+                hi++;
+            }
+
+            appendPartition.appendColumns(batch, lo, hi);
+            appendTimestampLo = batch.getLong(tsIndex, hi - 1);
+            lo = hi;
+        }
+    }
+
     public void beginTx() {
         if (!txActive) {
             this.txActive = true;
@@ -182,6 +251,14 @@ public class JournalWriter<T> extends Journal<T> {
                 if (isCommitOnClose()) {
                     commit();
                 }
+                lateRows = Misc.free(lateRows);
+                if (rewrittenPartitions != null) {
+                    // transaction has not been committed, copies are deleted when writer is opened again
+                    for (int i = 0, n = rewrittenPartitions.size(); i < n; i++) {
+                        rewrittenPartitions.getQuick(i).close();
+                    }
+                    rewrittenPartitions.clear();
+                }
                 if (partitionCleaner != null) {
                     purgeTempPartitions();
                     partitionCleaner.halt();
@@ -253,7 +330,7 @@ public class JournalWriter<T> extends Journal<T> {
             beginTx();
             commit();
         }
-        if (getMetadata().getLag() != -1) {
+        if (getMetadata().getLag() != -1 || getMetadata().getTtl() > 0) {
             this.partitionCleaner = new PartitionCleaner(this, getLocation().getName());
             this.partitionCleaner.start();
         }
@@ -266,6 +343,13 @@ public class JournalWriter<T> extends Journal<T> {
 
     public void commit(boolean force, long txn, long txPin) throws JournalException {
         if (txActive) {
+            if (lateRows != null && lateRows.size() > 0) {
+                mergeLateRows();
+            }
+            // replicas drop partitions when master does
+            if (txn == -1 && getMetadata().getTtl() > 0) {
+                dropExpiredPartitions();
+            }
             commit(force ? Tx.TX_FORCE : Tx.TX_NORMAL, txn, txPin);
             notifyTxListener();
             expireOpenFiles();
@@ -302,6 +386,52 @@ public class JournalWriter<T> extends Journal<T> {
         Files.deleteOrException(getLocation());
     }
 
+    /**
+     * Drops partitions, which contain only data older than given timestamp. Partitions are removed
+     * from this writer straight away and from disk once transaction is committed, readers stop seeing them
+     * on refresh after commit. Lag partition is never dropped.
+     *
+     * @param timestamp partitions ending at or before this timestamp are dropped
+     * @return number of dropped partitions
+     * @throws JournalException if there are out of order rows waiting for commit
+     */
+    public int dropPartitions(long timestamp) throws JournalException {
+        if (lateRows != null && lateRows.size() > 0) {
+            throw new JournalException("Cannot drop partitions of %s with uncommitted out of order rows", this);
+        }
+
+        int count = 0;
+        for (int n = nonLagPartitionCount(); count < n; count++) {
+            Interval interval = partitions.getQuick(count).getInterval();
+            if (interval == null || interval.getHi() > timestamp) {
+                break;
+            }
+        }
+
+        if (count > 0) {
+            beginTx();
+            if (droppedPartitions == null) {
+                droppedPartitions = new ObjList<>();
+            }
+            for (int i = 0; i < count; i++) {
+                Partition<T> p = partitions.getQuick(0);
+                partitions.remove(0);
+                droppedPartitions.add(p);
+                if (p == appendPartition) {
+                    appendPartition = null;
+                    appendTimestampHi = -1;
+                }
+            }
+
+            for (int i = 0, n = partitions.size(); i < n; i++) {
+                partitions.getQuick(i).setPartitionIndex(i);
+            }
+            txPartitionIndex = Math.max(0, txPartitionIndex - count);
+            LOG.info().$("Dropped ").$(count).$(" partition(s) of ").$(getLocation()).$(" before ").$ts(timestamp).$();
+        }
+        return count;
+    }
+
     public JournalEntryWriter entryWriter() throws JournalException {
         return entryWriter(0);
     }
@@ -409,6 +539,12 @@ public class JournalWriter<T> extends Journal<T> {
         long hard = getAppendTimestampLo();
 
         if (dataMaxTimestamp < hard) {
+            if (outOfOrder) {
+                while (data.hasNext()) {
+                    T obj = data.next();
+                    getLateRows().add(obj, getTimestamp(obj));
+                }
+            }
             return;
         }
 
@@ -546,7 +682,14 @@ public class JournalWriter<T> extends Journal<T> {
         partitionCleaner.purge();
     }
 
+    /**
+     * Rebuilds indexes of all partitions on calling thread. Readers see rebuilt indexes of active
+     * partition after next commit. To rebuild indexes of large journal in background use {@link IndexBuilder}.
+     *
+     * @throws JournalException if index cannot be rebuilt
+     */
     public void rebuildIndexes() throws JournalException {
+        beginTx();
         int partitionCount = getPartitionCount();
         for (int i = 0; i < partitionCount; i++) {
             getPartition(i, true).rebuildIndexes();
@@ -558,6 +701,63 @@ public class JournalWriter<T> extends Journal<T> {
         removeIrregularPartitionInternal();
     }
 
+    /**
+     * Replaces partition with empty copy, which is written to new directory. Readers switch over to
+     * the copy when transaction is committed and directory of replaced partition is deleted after that.
+     * Rollback deletes the copy. Replaced partition remains readable until then.
+     *
+     * @param partitionIndex index of partition to rewrite
+     * @return empty partition for same interval
+     * @throws JournalException if partition has already been rewritten by current transaction or copy cannot be created
+     */
+    public Partition<T> rewritePartition(int partitionIndex) throws JournalException {
+        return rewritePartition(partitionIndex, 0);
+    }
+
+    /**
+     * Same as {@link #rewritePartition(int)}, except that copy keeps first rowCount rows of replaced partition.
+     * These rows are copied file by file rather than appended one by one.
+     *
+     * @param partitionIndex index of partition to rewrite
+     * @param rowCount       number of rows to keep
+     * @return partition for same interval, which contains first rowCount rows
+     * @throws JournalException if partition has already been rewritten by current transaction or copy cannot be created
+     */
+    public Partition<T> rewritePartition(int partitionIndex, long rowCount) throws JournalException {
+        beginTx();
+        Partition<T> partition = getPartition(partitionIndex, true);
+        long version = txLog.getCurrentTxn() + 1;
+        if (partition.getVersion() >= version) {
+            throw new JournalException("Partition %s has already been rewritten by current transaction", partition);
+        }
+
+        Partition<T> result = new Partition<>(this, partition.getInterval(), partitionIndex, TX_LIMIT_EVAL, null, version);
+        if (result.getPartitionDir().exists()) {
+            // left behind by transaction that has not been committed
+            Files.deleteOrException(result.getPartitionDir());
+        }
+        if (rowCount > 0) {
+            partition.copyTo(result.getPartitionDir(), rowCount);
+        }
+        result.open();
+        result.truncate(rowCount);
+
+        partitions.setQuick(partitionIndex, result);
+        if (rewrittenPartitions == null) {
+            rewrittenPartitions = new ObjList<>();
+        }
+        rewrittenPartitions.add(partition);
+
+        if (partition == appendPartition) {
+            appendPartition = null;
+            appendTimestampHi = -1;
+        }
+        if (partitionIndex < txPartitionIndex) {
+            txPartitionIndex = partitionIndex;
+        }
+        return result;
+    }
+
     public void rollback() throws JournalException {
         if (txActive) {
             rollback0(txLog.getCurrentTxAddress(), false);
@@ -575,6 +775,9 @@ public class JournalWriter<T> extends Journal<T> {
 
     public void truncate() throws JournalException {
         beginTx();
+        if (lateRows != null) {
+            lateRows.clear();
+        }
         int partitionCount = getPartitionCount();
         for (int i = 0; i < partitionCount; i++) {
             Partition<T> partition = getPartition(i, true);
@@ -597,7 +800,7 @@ public class JournalWriter<T> extends Journal<T> {
         Partition<T> partition = lastNonEmptyNonLag();
         Partition<T> lag = getIrregularPartition();
 
-        tx.command = command;
+        tx.command = rewrittenPartitions != null && rewrittenPartitions.size() > 0 ? (byte) (command | Tx.TX_REWRITE) : command;
         tx.txn = txn;
         tx.txPin = txPin;
         tx.prevTxAddress = txLog.getCurrentTxAddress();
@@ -655,12 +858,40 @@ public class JournalWriter<T> extends Journal<T> {
         if (force) {
             txLog.force();
         }
+
+        if (droppedPartitions != null && droppedPartitions.size() > 0) {
+            removePartitions(droppedPartitions);
+        }
+
+        if (rewrittenPartitions != null && rewrittenPartitions.size() > 0) {
+            removePartitions(rewrittenPartitions);
+        }
+    }
+
+    private void deleteRewrites(ObjList<Partition<T>> list, long txn) throws JournalException {
+        for (int i = 0, n = list.size(); i < n; i++) {
+            Partition<T> p = list.getQuick(i);
+            if (p.getVersion() > txn) {
+                p.close();
+                Files.deleteOrException(p.getPartitionDir());
+            }
+        }
     }
 
     private Partition<T> createTempPartition() throws JournalException {
         return createTempPartition(Constants.TEMP_DIRECTORY_PREFIX + '.' + System.currentTimeMillis() + '.' + UUID.randomUUID());
     }
 
+    private void dropExpiredPartitions() throws JournalException {
+        if (getMetadata().getTimestampIndex() == -1) {
+            return;
+        }
+        long timestamp = getAppendTimestampLo();
+        if (timestamp > 0) {
+            dropPartitions(timestamp - getMetadata().getTtl());
+        }
+    }
+
     private Partition<T> getAppendPartition() throws JournalException {
         if (this.appendPartition != null) {
             return appendPartition;
@@ -677,12 +908,55 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    private OutOfOrderBuffer<T> getLateRows() {
+        if (lateRows == null) {
+            lateRows = new OutOfOrderBuffer<>(this);
+        }
+        return lateRows;
+    }
+
+    private void mergeLateRows() throws JournalException {
+        try {
+            lateRows.merge();
+        } catch (Throwable e) {
+            // restore partitions that have been rewritten and last partition to its committed size
+            rollback0(txLog.getCurrentTxAddress(), false);
+            throw e;
+        }
+    }
+
     private void notifyTxListener() {
         if (txListener != null) {
             txListener.onCommit();
         }
     }
 
+    /**
+     * Deletes directories of partitions dropped or replaced by committed transaction. When there is partition cleaner
+     * directories are renamed and deleted by cleaner thread. Directories that are left behind by crash
+     * are ignored by readers and deleted when writer is opened.
+     */
+    private void removePartitions(ObjList<Partition<T>> list) {
+        for (int i = 0, n = list.size(); i < n; i++) {
+            Partition<T> p = list.getQuick(i);
+            p.close();
+            File dir = p.getPartitionDir();
+            if (partitionCleaner != null) {
+                File temp = new File(getLocation(), Constants.TEMP_DIRECTORY_PREFIX + '.' + System.currentTimeMillis() + '.' + dir.getName());
+                if (dir.renameTo(temp)) {
+                    continue;
+                }
+            }
+            if (!Files.delete(dir)) {
+                LOG.error().$("Could not delete partition: ").$(dir).$();
+            }
+        }
+        list.clear();
+        if (partitionCleaner != null) {
+            purgeTempPartitions();
+        }
+    }
+
     private void replaceIrregularPartition(Partition<T> temp) {
         setIrregularPartition(temp);
         purgeTempPartitions();
@@ -701,11 +975,46 @@ public class JournalWriter<T> extends Journal<T> {
             throw new JournalException("Invalid transaction address");
         }
 
+        // committed partitions rewritten after transaction do not exist any more
+        long txn = txLog.getCurrentTxn();
+        for (int i = 0, n = nonLagPartitionCount(); i < n; i++) {
+            long version = partitions.getQuick(i).getVersion();
+            if (version > tx.txn && version <= txn) {
+                throw new JournalException("Cannot roll back %s to txn %d, partition %s has been rewritten by txn %d"
+                        , this, tx.txn, partitions.getQuick(i).getName(), version);
+            }
+        }
+
         if (writeDiscard) {
             LOG.info().$("Journal").$(metadata.getLocation()).$(" is rolling back to transaction ").$(tx.txn).$(", timestamp ").$ts(tx.timestamp).$();
             writeDiscardFile(tx.journalMaxRowID);
         }
 
+        boolean reconfigure = false;
+        if (rewrittenPartitions != null && rewrittenPartitions.size() > 0) {
+            // rewritten copies are deleted, replaced partitions are still on disk
+            deleteRewrites(partitions, txn);
+            if (droppedPartitions != null) {
+                deleteRewrites(droppedPartitions, txn);
+            }
+            for (int i = 0, n = rewrittenPartitions.size(); i < n; i++) {
+                rewrittenPartitions.getQuick(i).close();
+            }
+            rewrittenPartitions.clear();
+            reconfigure = true;
+        }
+
+        if (droppedPartitions != null && droppedPartitions.size() > 0) {
+            // dropped partitions are still on disk
+            droppedPartitions.clear();
+            reconfigure = true;
+        }
+
+        if (reconfigure) {
+            closePartitions();
+            configurePartitions();
+        }
+
         // partitions need to be dealt with first to make sure new lag is assigned a correct partitionIndex
         rollbackPartitions(tx);
 
@@ -730,6 +1039,9 @@ public class JournalWriter<T> extends Journal<T> {
                 getSymbolTable(i).truncate(tx.symbolTableSizes[i]);
             }
         }
+        if (lateRows != null) {
+            lateRows.clear();
+        }
         appendTimestampLo = -1;
         appendTimestampHi = -1;
         appendPartition = null;
@@ -745,10 +1057,42 @@ public class JournalWriter<T> extends Journal<T> {
         });
 
         if (files != null) {
-            Arrays.sort(files);
-            for (int i = getPartitionCount(); i < files.length; i++) {
-                Files.deleteOrException(files[i]);
+            int n = nonLagPartitionCount();
+            PartitionType type = getMetadata().getPartitionType();
+            String first = n == 0 ? null : partitions.getQuick(0).getInterval().getDirName(type);
+            String last = n == 0 ? null : partitions.getQuick(n - 1).getInterval().getDirName(type);
+            CharSequenceHashSet names = new CharSequenceHashSet();
+            for (int i = 0; i < n; i++) {
+                names.add(partitions.getQuick(i).getName());
             }
+
+            for (int i = 0; i < files.length; i++) {
+                String name = files[i].getName();
+                int sep = name.indexOf(Partition.VERSION_SEPARATOR);
+                String base = sep == -1 ? name : name.substring(0, sep);
+                if (last == null || base.compareTo(last) > 0) {
+                    // partitions created after last transaction
+                    Files.deleteOrException(files[i]);
+                } else if (base.compareTo(first) < 0 && isPartitionDir(base)) {
+                    // partitions dropped by last transaction
+                    Files.deleteOrException(files[i]);
+                } else if ((isPartitionDir(base) || base.equals(last)) && !names.contains(name)) {
+                    // partitions replaced by last transaction or rewritten by transaction that has not been committed
+                    Files.deleteOrException(files[i]);
+                }
+            }
+        }
+    }
+
+    private boolean isPartitionDir(String name) {
+        if (getMetadata().getPartitionType() == PartitionType.NONE) {
+            return false;
+        }
+        try {
+            new Interval(name, getMetadata().getPartitionType());
+            return true;
+        } catch (NumericException e) {
+            return false;
         }
     }
 
@@ -778,7 +1122,10 @@ public class JournalWriter<T> extends Journal<T> {
         while (it.hasNext()) {
             T obj = it.next();
             if (doDiscard && getTimestamp(obj) < hard) {
-                // discard
+                // discard unless journal takes out of order data
+                if (outOfOrder) {
+                    getLateRows().add(obj, getTimestamp(obj));
+                }
                 continue;
             } else if (doDiscard) {
                 doDiscard = false;
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.factory.configuration.Constants;
+import com.nfsdb.iter.MergingIterator;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.misc.Files;
+import com.nfsdb.misc.Interval;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.std.AbstractImmutableIterator;
+import com.nfsdb.store.FixedColumn;
+
+import java.io.Closeable;
+import java.util.UUID;
+
+/**
+ * Rows that are older than last committed timestamp of journal. Rows are appended to temporary
+ * partition in order of arrival, their timestamps and row ids are kept in native memory. On merge
+ * entries are sorted by timestamp and merged into partitions rows belong to. Each of these partitions
+ * is rewritten into new directory, which readers and replicas switch over to when transaction is committed.
+ * Committed partition is not modified, so failed merge or crash leaves it as it was.
+ * Late rows with same timestamp as existing rows go after them.
+ */
+class OutOfOrderBuffer<T> implements Closeable {
+    // timestamp and row id in temp partition
+    private static final int ENTRY_SIZE = 16;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private static final long MIN_CAPACITY = 1024;
+    private final JournalWriter<T> writer;
+    private final LateRowIterator lateRowIterator;
+    private final MergingIterator<T> mergingIterator = new MergingIterator<>();
+    private TempPartition<T> rows;
+    private Partition<T> lastTarget;
+    private long address;
+    private long capacity;
+    private long size;
+
+    OutOfOrderBuffer(JournalWriter<T> writer) {
+        this.writer = writer;
+        this.lateRowIterator = new LateRowIterator();
+    }
+
+    @Override
+    public void close() {
+        if (address != 0) {
+            Unsafe.getUnsafe().freeMemory(address);
+            address = 0;
+        }
+        rows = delete(rows);
+    }
+
+    void add(T obj, long timestamp) throws JournalException {
+        if (lastTarget == null || !contains(lastTarget, timestamp)) {
+            Partition<T> p = writer.getPartition(partitionIndexOf(timestamp), false);
+            if (PartitionSealer.isSealed(p)) {
+                throw new JournalException("%s belongs to sealed partition %s", Dates.toString(timestamp), p);
+            }
+            lastTarget = p;
+        }
+
+        if (rows == null) {
+            rows = createPartition();
+        }
+
+        long row = rows.size();
+        rows.append(obj);
+
+        if (size == capacity) {
+            long cap = Math.max(capacity * 2, MIN_CAPACITY);
+            address = Unsafe.getUnsafe().reallocateMemory(address, cap * ENTRY_SIZE);
+            capacity = cap;
+        }
+        long p = address + size++ * ENTRY_SIZE;
+        Unsafe.getUnsafe().putLong(p, timestamp);
+        Unsafe.getUnsafe().putLong(p + 8, row);
+    }
+
+    void clear() throws JournalException {
+        size = 0;
+        lastTarget = null;
+        if (rows != null) {
+            rows.truncate(0);
+        }
+    }
+
+    /**
+     * Merges buffered rows into their partitions and clears buffer. Partitions are replaced by their
+     * rewritten copies in writer, which commits or rolls them back with the rest of transaction.
+     *
+     * @throws JournalException if partition cannot be written to
+     */
+    void merge() throws JournalException {
+        if (size == 0) {
+            return;
+        }
+
+        sort(0, size - 1);
+
+        long lo = 0;
+        while (lo < size) {
+            Partition<T> p = writer.getPartition(partitionIndexOf(timestampAt(lo)), true);
+            long hi = lo + 1;
+            while (hi < size && contains(p, timestampAt(hi))) {
+                hi++;
+            }
+            merge(p, lo, hi);
+            lo = hi;
+        }
+
+        clear();
+    }
+
+    long size() {
+        return size;
+    }
+
+    private static boolean contains(Partition<?> p, long timestamp) {
+        Interval interval = p.getInterval();
+        return interval == null || interval.contains(timestamp);
+    }
+
+    private static <T> TempPartition<T> delete(TempPartition<T> p) {
+        if (p != null) {
+            p.close();
+            Files.delete(p.getPartitionDir());
+        }
+        return null;
+    }
+
+    /**
+     * Finds first row that is newer than given timestamp.
+     */
+    private static long upperBound(FixedColumn column, long timestamp, long count) {
+        long lo = 0;
+        long hi = count;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (column.getLong(mid) <= timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private TempPartition<T> createPartition() throws JournalException {
+        TempPartition<T> p = new TempPartition<>(writer, null, writer.nonLagPartitionCount()
+                , Constants.TEMP_DIRECTORY_PREFIX + '.' + System.currentTimeMillis() + '.' + UUID.randomUUID());
+        p.open();
+        return p;
+    }
+
+    private boolean less(long a, long b) {
+        long ta = timestampAt(a);
+        long tb = timestampAt(b);
+        return ta < tb || (ta == tb && rowAt(a) < rowAt(b));
+    }
+
+    private void merge(Partition<T> p, long lo, long hi) throws JournalException {
+        long count = p.size();
+        long split = upperBound(p.getTimestampColumn(), timestampAt(lo), count);
+
+        // rows before first late row are unchanged and are copied at file level
+        Partition<T> target = writer.rewritePartition(p.getPartitionIndex(), split);
+        // on equal timestamps merging iterator takes from second iterator first
+        target.append(mergingIterator.$new(lateRowIterator.of(lo, hi), p.bufferedIterator(split, count - 1), writer.getTimestampComparator()));
+    }
+
+    private long partition(long lo, long hi) {
+        long mid = (lo + hi) >>> 1;
+        // median of three goes to hi
+        if (less(mid, lo)) {
+            swap(mid, lo);
+        }
+        if (less(hi, lo)) {
+            swap(hi, lo);
+        }
+        if (less(mid, hi)) {
+            swap(mid, hi);
+        }
+
+        long i = lo;
+        for (long j = lo; j < hi; j++) {
+            if (less(j, hi)) {
+                swap(i++, j);
+            }
+        }
+        swap(i, hi);
+        return i;
+    }
+
+    private int partitionIndexOf(long timestamp) throws JournalException {
+        for (int i = writer.nonLagPartitionCount() - 1; i > -1; i--) {
+            Interval interval = writer.getPartition(i, false).getInterval();
+            if (interval == null || interval.contains(timestamp)) {
+                return i;
+            }
+
+            if (interval.getHi() <= timestamp) {
+                break;
+            }
+        }
+        throw new JournalException("%s cannot be merged into %s, there is no partition for it", Dates.toString(timestamp), writer);
+    }
+
+    private long rowAt(long index) {
+        return Unsafe.getUnsafe().getLong(address + index * ENTRY_SIZE + 8);
+    }
+
+    private void sort(long lo, long hi) {
+        long l = lo;
+        long h = hi;
+        while (h - l > INSERTION_SORT_THRESHOLD) {
+            long p = partition(l, h);
+            // recurse into smaller part to keep stack shallow
+            if (p - l < h - p) {
+                sort(l, p - 1);
+                l = p + 1;
+            } else {
+                sort(p + 1, h);
+                h = p - 1;
+            }
+        }
+
+        for (long i = l + 1; i <= h; i++) {
+            for (long j = i; j > l && less(j, j - 1); j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private void swap(long a, long b) {
+        long pa = address + a * ENTRY_SIZE;
+        long pb = address + b * ENTRY_SIZE;
+        long t = Unsafe.getUnsafe().getLong(pa);
+        long r = Unsafe.getUnsafe().getLong(pa + 8);
+        Unsafe.getUnsafe().putLong(pa, Unsafe.getUnsafe().getLong(pb));
+        Unsafe.getUnsafe().putLong(pa + 8, Unsafe.getUnsafe().getLong(pb + 8));
+        Unsafe.getUnsafe().putLong(pb, t);
+        Unsafe.getUnsafe().putLong(pb + 8, r);
+    }
+
+    private long timestampAt(long index) {
+        return Unsafe.getUnsafe().getLong(address + index * ENTRY_SIZE);
+    }
+
+    private class LateRowIterator extends AbstractImmutableIterator<T> {
+        private final T obj = writer.newObject();
+        private long lo;
+        private long hi;
+
+        @Override
+        public boolean hasNext() {
+            return lo < hi;
+        }
+
+        @Override
+        public T next() {
+            rows.read(rowAt(lo++), obj);
+            return obj;
+        }
+
+        LateRowIterator of(long lo, long hi) {
+            this.lo = lo;
+            this.hi = hi;
+            return this;
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package com.nfsdb;
 
 import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalNoSuchFileException;
 import com.nfsdb.ex.JournalRuntimeException;
 import com.nfsdb.factory.configuration.ColumnMetadata;
 import com.nfsdb.factory.configuration.JournalMetadata;
@@ -44,14 +45,18 @@ import java.util.concurrent.TimeUnit;
 
 @SuppressFBWarnings({"PL_PARALLEL_LISTS", "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS"})
 public class Partition<T> implements Closeable {
+    public static final char VERSION_SEPARATOR = '.';
     private static final Log LOG = LogFactory.getLog(Partition.class);
     private final Journal<T> journal;
     private final ObjList<SymbolIndexProxy<T>> indexProxies = new ObjList<>();
     private final Interval interval;
     private final int columnCount;
     private final ColumnMetadata[] columnMetadata;
+    private final long version;
     SymbolIndexProxy<T> sparseIndexProxies[];
     AbstractColumn[] columns;
+    private ZoneMap[] zoneMaps;
+    private BitmapIndex[] bitmapIndexes;
     private int partitionIndex;
     private File partitionDir;
     private long lastAccessed = System.currentTimeMillis();
@@ -59,19 +64,39 @@ public class Partition<T> implements Closeable {
     private FixedColumn timestampColumn;
 
     Partition(Journal<T> journal, Interval interval, int partitionIndex, long txLimit, long[] indexTxAddresses) {
+        this(journal, interval, partitionIndex, txLimit, indexTxAddresses, 0);
+    }
+
+    Partition(Journal<T> journal, Interval interval, int partitionIndex, long txLimit, long[] indexTxAddresses, long version) {
         JournalMetadata<T> meta = journal.getMetadata();
         this.journal = journal;
         this.partitionIndex = partitionIndex;
         this.interval = interval;
         this.txLimit = txLimit;
+        this.version = version;
         this.columnCount = meta.getColumnCount();
         this.columnMetadata = new ColumnMetadata[columnCount];
         meta.copyColumnMetadata(columnMetadata);
         if (interval != null) {
-            setPartitionDir(new File(this.journal.getLocation(), interval.getDirName(meta.getPartitionType())), indexTxAddresses);
+            setPartitionDir(new File(this.journal.getLocation(), getDirName(interval, meta.getPartitionType(), version)), indexTxAddresses);
         }
     }
 
+    /**
+     * Directory name of partition. Partitions rewritten by out of order rows are written to new
+     * directory named after interval and transaction of rewrite, readers switch over to it once
+     * that transaction is committed.
+     *
+     * @param interval interval of partition
+     * @param type     partition type of journal
+     * @param version  transaction partition has been rewritten by or 0
+     * @return directory name
+     */
+    static String getDirName(Interval interval, PartitionType type, long version) {
+        String name = interval.getDirName(type);
+        return version == 0 ? name : name + VERSION_SEPARATOR + version;
+    }
+
     public void applyTx(long txLimit, long[] indexTxAddresses) {
         if (this.txLimit != txLimit) {
             this.txLimit = txLimit;
@@ -96,6 +121,8 @@ public class Partition<T> implements Closeable {
                 Misc.free(Unsafe.arrayGet(columns, i));
             }
             columns = null;
+            closeZoneMaps();
+            closeBitmapIndexes();
             LOG.debug().$("Partition").$(partitionDir).$(" is closed").$();
         }
 
@@ -131,6 +158,18 @@ public class Partition<T> implements Closeable {
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
             indexProxies.getQuick(i).getIndex().compact();
         }
+
+        for (int i = 0; i < zoneMaps.length; i++) {
+            if (zoneMaps[i] != null) {
+                zoneMaps[i].compact();
+            }
+        }
+
+        for (int i = 0; i < bitmapIndexes.length; i++) {
+            if (bitmapIndexes[i] != null) {
+                bitmapIndexes[i].compact();
+            }
+        }
     }
 
     public FixedColumn fixCol(int i) {
@@ -215,6 +254,37 @@ public class Partition<T> implements Closeable {
         return partitionDir;
     }
 
+    /**
+     * @return transaction that has rewritten this partition with out of order rows, 0 when partition has never been rewritten
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Compressed bitmap index of symbol column.
+     *
+     * @param columnIndex index of column
+     * @return bitmap index or null when column is not configured to have one or partition was written
+     * by older version.
+     */
+    public BitmapIndex getBitmapIndex(int columnIndex) {
+        checkColumnIndex(columnIndex);
+        return bitmapIndexes == null ? null : Unsafe.arrayGet(bitmapIndexes, columnIndex);
+    }
+
+    /**
+     * Min/max block summary of numeric column.
+     *
+     * @param columnIndex index of column
+     * @return zone map or null when column does not have one, for example when column is not numeric
+     * or partition was written by older version.
+     */
+    public ZoneMap getZoneMap(int columnIndex) {
+        checkColumnIndex(columnIndex);
+        return zoneMaps == null ? null : Unsafe.arrayGet(zoneMaps, columnIndex);
+    }
+
     public int getPartitionIndex() {
         return partitionIndex;
     }
@@ -470,6 +540,82 @@ public class Partition<T> implements Closeable {
         }
     }
 
+    void appendColumns(ColumnBatch batch, int lo, int hi) throws JournalException {
+        // keys are checked upfront to avoid leaving columns of uneven size behind
+        for (int i = 0; i < columnCount; i++) {
+            ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+            if (m.type == ColumnType.SYMBOL && batch.strs(i) == null) {
+                int count = m.symbolTable.size();
+                for (int r = lo; r < hi; r++) {
+                    int key = batch.getInt(i, r);
+                    if (key != SymbolTable.VALUE_IS_NULL && (key < 0 || key >= count)) {
+                        throw new JournalException("Invalid key %d for symbol column %s", key, m.name);
+                    }
+                }
+            }
+        }
+
+        try {
+            for (int i = 0; i < columnCount; i++) {
+                ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+                AbstractColumn col = Unsafe.arrayGet(columns, i);
+                CharSequence[] strs = batch.strs(i);
+                switch (m.type) {
+                    case STRING:
+                        for (int r = lo; r < hi; r++) {
+                            CharSequence s = strs[r];
+                            long offset = ((VariableColumn) col).putStr(s);
+                            if (m.indexed) {
+                                sparseIndexProxies[i].getIndex().add(
+                                        s == null ? SymbolTable.VALUE_IS_NULL : Hash.boundedHash(s, m.distinctCountHint)
+                                        , offset
+                                );
+                            }
+                            col.commit();
+                        }
+                        break;
+                    case SYMBOL:
+                        if (strs != null) {
+                            for (int r = lo; r < hi; r++) {
+                                CharSequence sym = strs[r];
+                                int key = sym == null ? SymbolTable.VALUE_IS_NULL : m.symbolTable.put(sym);
+                                long row = ((FixedColumn) col).putInt(key);
+                                if (m.indexed) {
+                                    sparseIndexProxies[i].getIndex().add(key, row);
+                                }
+                                col.commit();
+                            }
+                        } else {
+                            appendBlock(batch, i, lo, hi);
+                        }
+                        break;
+                    default:
+                        appendBlock(batch, i, lo, hi);
+                        break;
+                }
+                col.commit();
+            }
+
+            applyTx(Journal.TX_LIMIT_EVAL, null);
+        } catch (Throwable e) {
+            ((JournalWriter) this.journal).rollback();
+            throw e;
+        }
+    }
+
+    private void appendBlock(ColumnBatch batch, int i, int lo, int hi) throws JournalException {
+        ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+        long row = ((FixedColumn) Unsafe.arrayGet(columns, i)).putBlock(batch.base(i), batch.offset(i, lo), hi - lo);
+        if (m.indexed) {
+            KVIndex index = sparseIndexProxies[i].getIndex();
+            boolean sym = m.type == ColumnType.SYMBOL;
+            for (int r = lo; r < hi; r++) {
+                int v = batch.getInt(i, r);
+                index.add(sym ? v : v & m.distinctCountHint, row++);
+            }
+        }
+    }
+
     private void appendBin(T obj, int i, ColumnMetadata meta) {
         ByteBuffer buf = (ByteBuffer) Unsafe.getUnsafe().getObject(obj, meta.offset);
         if (buf == null) {
@@ -490,6 +636,31 @@ public class Partition<T> implements Closeable {
         applyTx(Journal.TX_LIMIT_EVAL, null);
     }
 
+    /**
+     * Number of bytes file has to be copied up to for copy to contain given number of rows.
+     */
+    private long copyLength(String name, long rowCount, long size) {
+        for (int i = 0; i < columnCount; i++) {
+            ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+            if (!name.startsWith(m.name) || name.length() != m.name.length() + 2) {
+                continue;
+            }
+            AbstractColumn c = Unsafe.arrayGet(columns, i);
+            if (name.endsWith(".d")) {
+                if (c instanceof VariableColumn) {
+                    return MemoryFile.DATA_OFFSET + (rowCount < size ? c.getOffset(rowCount) : c.getOffset());
+                }
+                return MemoryFile.DATA_OFFSET + c.getOffset(rowCount);
+            }
+
+            if (name.endsWith(".i") && c instanceof VariableColumn) {
+                // variable column truncation reads offset of first row it drops
+                return MemoryFile.DATA_OFFSET + Math.min(rowCount + 1, size) * 8;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
     private void closePartiallyOpenColumns() {
         for (int i = 0, n = columns.length; i < n; i++) {
             AbstractColumn c = columns[i];
@@ -498,12 +669,52 @@ public class Partition<T> implements Closeable {
                 columns[i] = null;
             }
         }
+        closeZoneMaps();
+        closeBitmapIndexes();
+    }
+
+    private void closeBitmapIndexes() {
+        if (bitmapIndexes != null) {
+            for (int i = 0; i < bitmapIndexes.length; i++) {
+                Misc.free(Unsafe.arrayGet(bitmapIndexes, i));
+            }
+            bitmapIndexes = null;
+        }
+    }
+
+    private void closeZoneMaps() {
+        if (zoneMaps != null) {
+            for (int i = 0; i < zoneMaps.length; i++) {
+                Misc.free(Unsafe.arrayGet(zoneMaps, i));
+            }
+            zoneMaps = null;
+        }
     }
 
     void commit() throws JournalException {
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
             indexProxies.getQuick(i).getIndex().commit();
         }
+
+        if (zoneMaps != null) {
+            long sz = size();
+            for (int i = 0; i < zoneMaps.length; i++) {
+                ZoneMap z = Unsafe.arrayGet(zoneMaps, i);
+                if (z != null) {
+                    z.update(fixCol(i), sz);
+                }
+            }
+        }
+
+        if (bitmapIndexes != null) {
+            long sz = size();
+            for (int i = 0; i < bitmapIndexes.length; i++) {
+                BitmapIndex b = Unsafe.arrayGet(bitmapIndexes, i);
+                if (b != null) {
+                    b.update(fixCol(i), sz);
+                }
+            }
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -537,6 +748,24 @@ public class Partition<T> implements Closeable {
                 }
             }
         }
+
+        if (zoneMaps != null) {
+            for (int i = 0; i < zoneMaps.length; i++) {
+                ZoneMap z = Unsafe.arrayGet(zoneMaps, i);
+                if (z != null) {
+                    z.force();
+                }
+            }
+        }
+
+        if (bitmapIndexes != null) {
+            for (int i = 0; i < bitmapIndexes.length; i++) {
+                BitmapIndex b = Unsafe.arrayGet(bitmapIndexes, i);
+                if (b != null) {
+                    b.force();
+                }
+            }
+        }
     }
 
     void getIndexPointers(long[] pointers) throws JournalException {
@@ -557,26 +786,16 @@ public class Partition<T> implements Closeable {
                     case BINARY:
                         Unsafe.arrayPut(columns, i,
                                 new VariableColumn(
-                                        new MemoryFile(
-                                                new File(partitionDir, Unsafe.arrayGet(columnMetadata, i).name + ".d"),
-                                                Unsafe.arrayGet(columnMetadata, i).bitHint, journal.getMode()
-                                        ),
-                                        new MemoryFile(
-                                                new File(partitionDir, Unsafe.arrayGet(columnMetadata, i).name + ".i"),
-                                                Unsafe.arrayGet(columnMetadata, i).indexBitHint,
-                                                journal.getMode()
-                                        )
+                                        openFile(Unsafe.arrayGet(columnMetadata, i), ".d", Unsafe.arrayGet(columnMetadata, i).bitHint),
+                                        openFile(Unsafe.arrayGet(columnMetadata, i), ".i", Unsafe.arrayGet(columnMetadata, i).indexBitHint),
+                                        Unsafe.arrayGet(columnMetadata, i).compact
                                 )
                         );
                         break;
                     default:
                         Unsafe.arrayPut(columns, i,
                                 new FixedColumn(
-                                        new MemoryFile(
-                                                new File(partitionDir, Unsafe.arrayGet(columnMetadata, i).name + ".d"),
-                                                Unsafe.arrayGet(columnMetadata, i).bitHint,
-                                                journal.getMode()
-                                        ),
+                                        openFile(Unsafe.arrayGet(columnMetadata, i), ".d", Unsafe.arrayGet(columnMetadata, i).bitHint),
                                         Unsafe.arrayGet(columnMetadata, i).size
                                 )
                         );
@@ -592,6 +811,65 @@ public class Partition<T> implements Closeable {
         if (tsIndex > -1) {
             timestampColumn = fixCol(tsIndex);
         }
+
+        openZoneMaps(tsIndex);
+        openBitmapIndexes();
+    }
+
+    private void openBitmapIndexes() throws JournalException {
+        bitmapIndexes = new BitmapIndex[columns.length];
+        try {
+            for (int i = 0; i < bitmapIndexes.length; i++) {
+                ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+                if (!m.bitmapIndexed || m.type != ColumnType.SYMBOL) {
+                    continue;
+                }
+
+                try {
+                    Unsafe.arrayPut(bitmapIndexes, i, new BitmapIndex(new File(partitionDir, m.name), journal.getMode()));
+                } catch (JournalNoSuchFileException ignore) {
+                    // partition has not been written to since index was configured, column will be scanned
+                }
+            }
+        } catch (JournalException e) {
+            closePartiallyOpenColumns();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens column file, preferring its compressed copy when partition has been sealed.
+     */
+    private MappedFile openFile(ColumnMetadata m, String suffix, int bitHint) throws JournalException {
+        String name = m.name + suffix;
+        File f = new File(partitionDir, name + CompressedFile.FILE_SUFFIX);
+        if (f.exists()) {
+            return new CompressedFile(f);
+        }
+        return new MemoryFile(new File(partitionDir, name), bitHint, journal.getMode(), m.randomAccess, m.hugePages);
+    }
+
+    private void openZoneMaps(int tsIndex) throws JournalException {
+        zoneMaps = new ZoneMap[columns.length];
+        try {
+            for (int i = 0; i < zoneMaps.length; i++) {
+                ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+                // timestamp is already covered by interval queries
+                if (i == tsIndex || !ZoneMap.isSupported(m.type)) {
+                    continue;
+                }
+
+                try {
+                    Unsafe.arrayPut(zoneMaps, i, new ZoneMap(new File(partitionDir, m.name + ".z"), m.type, journal.getMode()));
+                } catch (JournalNoSuchFileException ignore) {
+                    // partition was created before zone maps were introduced
+                    // and has not been written to since, it will be scanned in full.
+                }
+            }
+        } catch (JournalException e) {
+            closePartiallyOpenColumns();
+            throw e;
+        }
     }
 
     private void readBin(long localRowID, T obj, int i, ColumnMetadata m) {
@@ -617,44 +895,53 @@ public class Partition<T> implements Closeable {
     }
 
     /**
-     * Rebuild the index of a column using the default keyCountHint and recordCountHint values.
+     * Rebuild the index of a column. Index is built into new files, which replace existing ones,
+     * so readers keep using previous index while it is being rebuilt and space taken by previous
+     * index is reclaimed. Index of partition, which committed transactions keep index addresses for,
+     * cannot be replaced. Its new values are written next to existing ones and replace them atomically
+     * on commit. Either way index is not left half built when rebuild is interrupted.
      *
      * @param columnIndex the column index
      * @throws com.nfsdb.ex.JournalException if the operation fails
      */
     private void rebuildIndex(int columnIndex) throws JournalException {
-        JournalMetadata<T> meta = journal.getMetadata();
-        rebuildIndex(columnIndex,
-                columnMetadata[columnIndex].distinctCountHint,
-                meta.getRecordHint(),
-                meta.getTxCountHint());
-    }
-
-    /**
-     * Rebuild the index of a column.
-     *
-     * @param columnIndex     the column index
-     * @param keyCountHint    the key count hint override
-     * @param recordCountHint the record count hint override
-     * @throws com.nfsdb.ex.JournalException if the operation fails
-     */
-    private void rebuildIndex(int columnIndex, int keyCountHint, int recordCountHint, int txCountHint) throws JournalException {
         final long time = System.nanoTime();
 
-        getIndexForColumn(columnIndex).close();
+        if (partitionIndex >= Rows.toPartitionIndex(journal.tx.journalMaxRowID) || !replaceIndex(columnIndex)) {
+            KVIndex index = getIndexForColumn(columnIndex);
+            index.clear();
+            buildIndex(index, columnIndex);
+        }
+
+        LOG.debug().$("REBUILT ").$(partitionDir).$(File.separatorChar).$(columnMetadata[columnIndex].name).$(" in ").$(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time)).$("ms").$();
+    }
 
-        File base = new File(partitionDir, columnMetadata[columnIndex].name);
-        KVIndex.delete(base);
+    private boolean replaceIndex(int columnIndex) throws JournalException {
+        ColumnMetadata m = Unsafe.arrayGet(columnMetadata, columnIndex);
+        File base = new File(partitionDir, m.name);
+        File tmp = KVIndex.tempBase(base);
+        KVIndex.delete(tmp);
+        try (KVIndex index = new KVIndex(tmp, m.distinctCountHint, journal.getMetadata().getRecordHint(), journal.getMetadata().getTxCountHint(), JournalMode.APPEND, 0)) {
+            buildIndex(index, columnIndex);
+            index.force();
+        }
 
-        try (KVIndex index = new KVIndex(base, keyCountHint, recordCountHint, txCountHint, JournalMode.APPEND, 0)) {
-            FixedColumn col = fixCol(columnIndex);
-            for (long localRowID = 0, sz = size(); localRowID < sz; localRowID++) {
-                index.add(col.getInt(localRowID), localRowID);
-            }
-            index.commit();
+        SymbolIndexProxy<T> proxy = sparseIndexProxies[columnIndex];
+        proxy.close();
+        proxy.setTxAddress(0);
+        if (KVIndex.replace(base)) {
+            return true;
         }
+        KVIndex.delete(tmp);
+        return false;
+    }
 
-        LOG.debug().$("REBUILT ").$(base).$(" in ").$(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time)).$("ms").$();
+    private void buildIndex(KVIndex index, int columnIndex) {
+        FixedColumn col = fixCol(columnIndex);
+        for (long localRowID = 0, sz = size(); localRowID < sz; localRowID++) {
+            index.add(col.getInt(localRowID), localRowID);
+        }
+        index.commit();
     }
 
     final void setPartitionDir(File partitionDir, long[] indexTxAddresses) {
@@ -665,6 +952,36 @@ public class Partition<T> implements Closeable {
         }
     }
 
+    /**
+     * Copies files of this partition to another directory, so that copy has at least first rowCount rows.
+     * Column files are copied up to the end of last of these rows, other files are copied whole. Copy
+     * is expected to be opened and truncated to rowCount rows, which brings its index and zone map files
+     * in line with columns. Uncommitted index changes are committed before files are copied.
+     *
+     * @param dir      directory to copy files to
+     * @param rowCount number of rows to copy
+     * @throws JournalException if files cannot be copied
+     */
+    void copyTo(File dir, long rowCount) throws JournalException {
+        commit();
+        if (!dir.mkdirs()) {
+            throw new JournalException("Cannot create directory: %s", dir);
+        }
+
+        File[] files = partitionDir.listFiles();
+        if (files == null) {
+            throw new JournalException("Cannot list %s", partitionDir);
+        }
+
+        long sz = size();
+        for (int i = 0; i < files.length; i++) {
+            File f = files[i];
+            if (f.isFile()) {
+                Files.copy(f, new File(dir, f.getName()), copyLength(f.getName(), rowCount, sz));
+            }
+        }
+    }
+
     void truncate(long newSize) throws JournalException {
         if (isOpen() && size() > newSize) {
             for (int i = 0, k = indexProxies.size(); i < k; i++) {
@@ -674,6 +991,14 @@ public class Partition<T> implements Closeable {
                 if (Unsafe.arrayGet(columns, i) != null) {
                     Unsafe.arrayGet(columns, i).truncate(newSize);
                 }
+                ZoneMap z = Unsafe.arrayGet(zoneMaps, i);
+                if (z != null) {
+                    z.truncate(newSize);
+                }
+                BitmapIndex b = Unsafe.arrayGet(bitmapIndexes, i);
+                if (b != null) {
+                    b.truncate(newSize);
+                }
             }
 
             commitColumns();
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.factory.configuration.ColumnMetadata;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.log.Log;
+import com.nfsdb.log.LogFactory;
+import com.nfsdb.misc.Files;
+import com.nfsdb.mp.SynchronizedJob;
+import com.nfsdb.store.ColumnType;
+import com.nfsdb.store.CompressedFile;
+
+import java.io.File;
+
+/**
+ * Background job that compresses partitions, which are no longer appended to. Last partition
+ * and lag partition are never sealed. Column data and string index files are replaced with
+ * their block compressed copies, symbol, bitmap and zone map indexes remain as they are.
+ * <p>
+ * Partition that is sealed while another journal instance has it open continues to be read
+ * from original files until that instance closes the partition.
+ * <p>
+ * Each run seals at most one partition, so that job can share worker with other jobs.
+ */
+public class PartitionSealer extends SynchronizedJob {
+    public static final int DEFAULT_BLOCK_BITS = 16;
+    private static final Log LOG = LogFactory.getLog(PartitionSealer.class);
+    private final Journal<?> journal;
+    private final int blockBits;
+
+    public PartitionSealer(Journal<?> journal) {
+        this(journal, DEFAULT_BLOCK_BITS);
+    }
+
+    public PartitionSealer(Journal<?> journal, int blockBits) {
+        this.journal = journal;
+        this.blockBits = blockBits;
+    }
+
+    public static boolean isSealed(Partition<?> partition) {
+        JournalMetadata<?> meta = partition.getJournal().getMetadata();
+        File dir = partition.getPartitionDir();
+        for (int i = 0, n = meta.getColumnCount(); i < n; i++) {
+            ColumnMetadata m = meta.getColumnQuick(i);
+            if (new File(dir, m.name + ".d").exists() || (isVariable(m) && new File(dir, m.name + ".i").exists())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Seals oldest partition that has not been sealed yet.
+     *
+     * @return true if partition has been sealed, false if there was nothing to seal
+     * @throws JournalException when partition files cannot be compressed
+     */
+    public boolean seal() throws JournalException {
+        journal.refresh();
+        if (journal.getMetadata().getPartitionType() == PartitionType.NONE) {
+            return false;
+        }
+
+        for (int i = 0, n = journal.nonLagPartitionCount() - 1; i < n; i++) {
+            Partition<?> partition = journal.getPartition(i, false);
+            if (!isSealed(partition)) {
+                seal(partition);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Seals all partitions that can be sealed.
+     *
+     * @return number of partitions sealed
+     * @throws JournalException when partition files cannot be compressed
+     */
+    public int sealAll() throws JournalException {
+        int count = 0;
+        while (seal()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    protected boolean runSerially() {
+        try {
+            return seal();
+        } catch (JournalException e) {
+            LOG.error().$("Failed to seal partition of ").$(journal.getLocation()).$(": ").$(e.getMessage()).$();
+            return false;
+        }
+    }
+
+    private static boolean isVariable(ColumnMetadata m) {
+        return m.type == ColumnType.STRING || m.type == ColumnType.BINARY;
+    }
+
+    private void compress(File dir, String name) throws JournalException {
+        File raw = new File(dir, name);
+        if (!raw.exists()) {
+            return;
+        }
+
+        File target = new File(dir, name + CompressedFile.FILE_SUFFIX);
+        // compressed copy is complete if it exists, raw file was not removed in time
+        if (!target.exists()) {
+            CompressedFile.compress(raw, target, blockBits);
+        }
+        Files.deleteOrException(raw);
+    }
+
+    private void seal(Partition<?> partition) throws JournalException {
+        partition.close();
+        JournalMetadata<?> meta = journal.getMetadata();
+        File dir = partition.getPartitionDir();
+        for (int i = 0, n = meta.getColumnCount(); i < n; i++) {
+            ColumnMetadata m = meta.getColumnQuick(i);
+            compress(dir, m.name + ".d");
+            if (isVariable(m)) {
+                compress(dir, m.name + ".i");
+            }
+        }
+        LOG.info().$("Sealed ").$(dir).$();
+    }
+}
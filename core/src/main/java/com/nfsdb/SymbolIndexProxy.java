@@ -80,12 +80,18 @@ class SymbolIndexProxy<T> implements Closeable {
             throw new JournalException("There is no index for column: %s", columnMetadata.name);
         }
 
+        File base = new File(partition.getPartitionDir(), columnMetadata.name);
+        JournalMode mode = partition.getJournal().getMode();
+        if (mode == JournalMode.APPEND || mode == JournalMode.BULK_APPEND) {
+            KVIndex.recover(base);
+        }
+
         index = new KVIndex(
-                new File(partition.getPartitionDir(), columnMetadata.name),
+                base,
                 columnMetadata.distinctCountHint,
                 meta.getRecordHint(),
                 meta.getTxCountHint(),
-                partition.getJournal().getMode(),
+                mode,
                 txAddress
         );
     }
@@ -39,6 +39,10 @@ public class ColumnMetadata implements RecordColumnMetadata {
     public int distinctCountHint;
     public String sameAs;
     public boolean noCache = false;
+    public boolean bitmapIndexed;
+    public boolean compact;
+    public boolean randomAccess;
+    public boolean hugePages;
     public SymbolTable symbolTable;
 
     public ColumnMetadata copy(ColumnMetadata from) {
@@ -53,6 +57,10 @@ public class ColumnMetadata implements RecordColumnMetadata {
         this.distinctCountHint = from.distinctCountHint;
         this.sameAs = from.sameAs;
         this.noCache = from.noCache;
+        this.bitmapIndexed = from.bitmapIndexed;
+        this.compact = from.compact;
+        this.randomAccess = from.randomAccess;
+        this.hugePages = from.hugePages;
         return this;
     }
 
@@ -102,7 +110,11 @@ public class ColumnMetadata implements RecordColumnMetadata {
         result = 31 * result + indexBitHint;
         result = 31 * result + distinctCountHint;
         result = 31 * result + (sameAs != null ? sameAs.hashCode() : 0);
-        return 31 * result + (noCache ? 1 : 0);
+        result = 31 * result + (noCache ? 1 : 0);
+        result = 31 * result + (bitmapIndexed ? 1 : 0);
+        result = 31 * result + (compact ? 1 : 0);
+        result = 31 * result + (randomAccess ? 1 : 0);
+        return 31 * result + (hugePages ? 1 : 0);
     }
 
     @Override
@@ -118,6 +130,10 @@ public class ColumnMetadata implements RecordColumnMetadata {
                 && indexBitHint == that.indexBitHint
                 && indexed == that.indexed
                 && noCache == that.noCache
+                && bitmapIndexed == that.bitmapIndexed
+                && compact == that.compact
+                && randomAccess == that.randomAccess
+                && hugePages == that.hugePages
                 && size == that.size
                 && name.equals(that.name)
                 && !(sameAs != null ? !sameAs.equals(that.sameAs) : that.sameAs != null)
@@ -139,6 +155,10 @@ public class ColumnMetadata implements RecordColumnMetadata {
                 ", distinctCountHint=" + distinctCountHint +
                 ", sameAs='" + sameAs + '\'' +
                 ", noCache=" + noCache +
+                ", bitmapIndexed=" + bitmapIndexed +
+                ", compact=" + compact +
+                ", randomAccess=" + randomAccess +
+                ", hugePages=" + hugePages +
                 '}';
     }
 
@@ -39,6 +39,15 @@ public class GenericStringBuilder extends AbstractGenericMetadataBuilder {
         return this;
     }
 
+    /**
+     * Stores ASCII values one byte per char instead of UTF-16. Values with other chars
+     * are still stored as UTF-16.
+     */
+    public GenericStringBuilder compact() {
+        this.meta.compact = true;
+        return this;
+    }
+
     public GenericStringBuilder index() {
         this.meta.indexed = true;
         return this;
@@ -31,6 +31,24 @@ public class GenericSymbolBuilder extends AbstractGenericMetadataBuilder {
         meta.size = 4;
     }
 
+    /**
+     * Maintains compressed bitmap index for this column. Bitmaps of several symbol predicates
+     * are combined before rows are read, which suits columns with few distinct values.
+     */
+    public GenericSymbolBuilder bitmapIndex() {
+        this.meta.bitmapIndexed = true;
+        return this;
+    }
+
+    /**
+     * Stores ASCII values one byte per char instead of UTF-16. Values with other chars
+     * are still stored as UTF-16.
+     */
+    public GenericSymbolBuilder compact() {
+        this.meta.compact = true;
+        return this;
+    }
+
     public GenericSymbolBuilder index() {
         this.meta.indexed = true;
         return this;
@@ -29,6 +29,11 @@ import java.io.File;
 public interface JournalConfiguration {
 
     String FILE_NAME = "_meta2";
+    int DEFAULT_MAP_KEY_CAPACITY = 4096;
+    float DEFAULT_MAP_LOAD_FACTOR = 0.5f;
+    int DEFAULT_MAP_PAGE_SIZE = 1024 * 1024;
+    int DEFAULT_RECORD_PAGE_SIZE = 1024 * 1024;
+    long DEFAULT_SORT_MEMORY_BUDGET = 64 * 1024 * 1024;
 
     <T> JournalMetadata<T> buildWithRootLocation(MetadataBuilder<T> builder) throws JournalException;
 
@@ -38,6 +43,31 @@ public interface JournalConfiguration {
 
     File getJournalBase();
 
+    /**
+     * Initial number of keys query hash maps are sized for, unless query provides better estimate.
+     * Maps grow beyond this number as required.
+     */
+    int getMapKeyCapacity();
+
+    float getMapLoadFactor();
+
+    /**
+     * Granularity of off-heap key and value area of query hash maps. Area starts with one page
+     * and grows in whole pages.
+     */
+    int getMapPageSize();
+
+    /**
+     * Page size of off-heap record storage used by hash joins.
+     */
+    int getRecordPageSize();
+
+    /**
+     * Number of bytes "order by" can sort in memory. Larger data sets are sorted in runs, which
+     * are written to temporary files and merged.
+     */
+    long getSortMemoryBudget();
+
     enum JournalExistenceCheck {
         EXISTS, DOES_NOT_EXIST, EXISTS_FOREIGN
     }
@@ -31,6 +31,11 @@ import java.util.List;
 
 public class JournalConfigurationBuilder {
     private final List<MetadataBuilder> builders = new ArrayList<>();
+    private int mapKeyCapacity = JournalConfiguration.DEFAULT_MAP_KEY_CAPACITY;
+    private float mapLoadFactor = JournalConfiguration.DEFAULT_MAP_LOAD_FACTOR;
+    private int mapPageSize = JournalConfiguration.DEFAULT_MAP_PAGE_SIZE;
+    private int recordPageSize = JournalConfiguration.DEFAULT_RECORD_PAGE_SIZE;
+    private long sortMemoryBudget = JournalConfiguration.DEFAULT_SORT_MEMORY_BUDGET;
 
     public <T> JournalMetadataBuilder<T> $(Class<T> clazz) {
         JournalMetadataBuilder<T> builder = new JournalMetadataBuilder<>(clazz);
@@ -65,6 +70,46 @@ public class JournalConfigurationBuilder {
             JournalMetadata meta = builders.get(i).build();
             metadata.put(meta.getId(), meta);
         }
-        return new JournalConfigurationImpl(journalBase, metadata);
+        return new JournalConfigurationImpl(journalBase, metadata, mapKeyCapacity, mapLoadFactor, mapPageSize, recordPageSize, sortMemoryBudget);
+    }
+
+    public JournalConfigurationBuilder mapKeyCapacity(int mapKeyCapacity) {
+        if (mapKeyCapacity < 1) {
+            throw new JournalConfigurationException("Invalid map key capacity: %d", mapKeyCapacity);
+        }
+        this.mapKeyCapacity = mapKeyCapacity;
+        return this;
+    }
+
+    public JournalConfigurationBuilder mapLoadFactor(float mapLoadFactor) {
+        if (mapLoadFactor <= 0f || mapLoadFactor >= 1f) {
+            throw new JournalConfigurationException("Invalid map load factor: %s", mapLoadFactor);
+        }
+        this.mapLoadFactor = mapLoadFactor;
+        return this;
+    }
+
+    public JournalConfigurationBuilder mapPageSize(int mapPageSize) {
+        if (mapPageSize < 1024) {
+            throw new JournalConfigurationException("Map page size is too small: %d", mapPageSize);
+        }
+        this.mapPageSize = mapPageSize;
+        return this;
+    }
+
+    public JournalConfigurationBuilder recordPageSize(int recordPageSize) {
+        if (recordPageSize < 1024) {
+            throw new JournalConfigurationException("Record page size is too small: %d", recordPageSize);
+        }
+        this.recordPageSize = recordPageSize;
+        return this;
+    }
+
+    public JournalConfigurationBuilder sortMemoryBudget(long sortMemoryBudget) {
+        if (sortMemoryBudget < 1024) {
+            throw new JournalConfigurationException("Sort memory budget is too small: %d", sortMemoryBudget);
+        }
+        this.sortMemoryBudget = sortMemoryBudget;
+        return this;
     }
 }
@@ -37,10 +37,31 @@ public class JournalConfigurationImpl implements JournalConfiguration {
 
     private final ObjObjHashMap<String, JournalMetadata> journalMetadata;
     private final File journalBase;
+    private final int mapKeyCapacity;
+    private final float mapLoadFactor;
+    private final int mapPageSize;
+    private final int recordPageSize;
+    private final long sortMemoryBudget;
 
     public JournalConfigurationImpl(File journalBase, ObjObjHashMap<String, JournalMetadata> journalMetadata) {
+        this(journalBase, journalMetadata, DEFAULT_MAP_KEY_CAPACITY, DEFAULT_MAP_LOAD_FACTOR, DEFAULT_MAP_PAGE_SIZE, DEFAULT_RECORD_PAGE_SIZE, DEFAULT_SORT_MEMORY_BUDGET);
+    }
+
+    public JournalConfigurationImpl(
+            File journalBase,
+            ObjObjHashMap<String, JournalMetadata> journalMetadata,
+            int mapKeyCapacity,
+            float mapLoadFactor,
+            int mapPageSize,
+            int recordPageSize,
+            long sortMemoryBudget) {
         this.journalBase = journalBase;
         this.journalMetadata = journalMetadata;
+        this.mapKeyCapacity = mapKeyCapacity;
+        this.mapLoadFactor = mapLoadFactor;
+        this.mapPageSize = mapPageSize;
+        this.recordPageSize = recordPageSize;
+        this.sortMemoryBudget = sortMemoryBudget;
     }
 
     public <T> JournalMetadata<T> buildWithRootLocation(MetadataBuilder<T> builder) throws JournalException {
@@ -131,6 +152,31 @@ public class JournalConfigurationImpl implements JournalConfiguration {
         return journalBase;
     }
 
+    @Override
+    public int getMapKeyCapacity() {
+        return mapKeyCapacity;
+    }
+
+    @Override
+    public float getMapLoadFactor() {
+        return mapLoadFactor;
+    }
+
+    @Override
+    public int getMapPageSize() {
+        return mapPageSize;
+    }
+
+    @Override
+    public int getRecordPageSize() {
+        return recordPageSize;
+    }
+
+    @Override
+    public long getSortMemoryBudget() {
+        return sortMemoryBudget;
+    }
+
     private String getLocation(JournalKey key) {
         String loc = key.getLocation();
         if (loc != null) {
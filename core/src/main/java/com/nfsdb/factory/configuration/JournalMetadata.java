@@ -53,6 +53,8 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
     private final CharSequenceIntHashMap columnIndexLookup;
     private final int timestampColumnIndex;
     private final int lag;
+    private final boolean outOfOrder;
+    private final long ttl;
     private final boolean partialMapping;
     private final JournalKey<T> key;
     private final ColumnName columnName = new ColumnName();
@@ -70,6 +72,8 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
             , int ioBlockRecordCount
             , int ioBlockTxCount
             , int lag
+            , boolean outOfOrder
+            , long ttl
             , boolean partialMapping
     ) {
         this.id = id;
@@ -91,6 +95,8 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
             columnIndexLookup.put(columnMetadata[i].name, i);
         }
         this.lag = lag;
+        this.outOfOrder = outOfOrder;
+        this.ttl = ttl;
         this.partialMapping = partialMapping;
         if (modelClass != null) {
             this.key = new JournalKey<>(modelClass, location);
@@ -125,6 +131,27 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         ioBlockTxCount = buf.getInt();
         keyColumn = buf.getStr();
         lag = buf.getInt();
+        // bitmap index flags are written after original layout, metadata of older journals does not have them
+        if (buf.getPos() < buf.getAppendOffset()) {
+            for (int i = 0; i < columnCount; i++) {
+                columnMetadata[i].bitmapIndexed = buf.getBool();
+            }
+        }
+        // so are compact string flags
+        if (buf.getPos() < buf.getAppendOffset()) {
+            for (int i = 0; i < columnCount; i++) {
+                columnMetadata[i].compact = buf.getBool();
+            }
+        }
+        // and access hints
+        if (buf.getPos() < buf.getAppendOffset()) {
+            for (int i = 0; i < columnCount; i++) {
+                columnMetadata[i].randomAccess = buf.getBool();
+                columnMetadata[i].hugePages = buf.getBool();
+            }
+        }
+        outOfOrder = buf.getPos() < buf.getAppendOffset() && buf.getBool();
+        ttl = buf.getPos() < buf.getAppendOffset() ? buf.getLong() : 0;
         constructor = null;
         partialMapping = false;
         this.key = new JournalKey<>(id);
@@ -247,6 +274,8 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
                     || thisM.size != thatM.size
                     || thisM.distinctCountHint != thatM.distinctCountHint
                     || thisM.indexed != thatM.indexed
+                    || thisM.bitmapIndexed != thatM.bitmapIndexed
+                    || thisM.compact != thatM.compact
                     || (thisM.sameAs == null && thatM.sameAs != null)
                     || (thisM.sameAs != null && !thisM.sameAs.equals(thatM.sameAs))
                     ) {
@@ -257,6 +286,21 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         return true;
     }
 
+    /**
+     * Age of partitions, in milliseconds, after which they are dropped. Age is measured from
+     * latest timestamp in journal rather than from wall clock, so that replicas and journals loaded
+     * with historical data keep what their timestamps say. 0 means that partitions are never dropped.
+     *
+     * @return time to live of partitions
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    public boolean isOutOfOrder() {
+        return outOfOrder;
+    }
+
     public boolean isPartialMapped() {
         return partialMapping;
     }
@@ -316,6 +360,18 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         buf.put(ioBlockTxCount);
         buf.put(keyColumn);
         buf.put(lag);
+        for (int i = 0; i < columnMetadata.length; i++) {
+            buf.put(columnMetadata[i].bitmapIndexed);
+        }
+        for (int i = 0; i < columnMetadata.length; i++) {
+            buf.put(columnMetadata[i].compact);
+        }
+        for (int i = 0; i < columnMetadata.length; i++) {
+            buf.put(columnMetadata[i].randomAccess);
+            buf.put(columnMetadata[i].hugePages);
+        }
+        buf.put(outOfOrder);
+        buf.put(ttl);
         buf.setAppendOffset(buf.getPos());
     }
 
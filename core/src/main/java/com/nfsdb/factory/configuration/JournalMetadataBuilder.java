@@ -53,6 +53,8 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
     private String keyColumn;
     private long openFileTTL = TimeUnit.MINUTES.toMillis(3);
     private int lag = -1;
+    private boolean outOfOrder = false;
+    private long ttl = 0;
 
     public JournalMetadataBuilder(Class<T> modelClass) {
         this.modelClass = modelClass;
@@ -70,6 +72,8 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
         this.keyColumn = model.getKeyQuiet();
         this.openFileTTL = model.getOpenFileTTL();
         this.lag = model.getLag();
+        this.outOfOrder = model.isOutOfOrder();
+        this.ttl = model.getTtl();
         for (int i = 0, n = model.getColumnCount(); i < n; i++) {
             ColumnMetadata from = model.getColumnQuick(i);
             columnMetadata.get(from.name).copy(from);
@@ -141,7 +145,7 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
             switch (meta.type) {
                 case STRING:
                     meta.size = meta.avgSize + 4;
-                    meta.bitHint = ByteBuffers.getBitHint(meta.avgSize * 2, recordCountHint);
+                    meta.bitHint = ByteBuffers.getBitHint(meta.compact ? meta.avgSize : meta.avgSize * 2, recordCountHint);
                     meta.indexBitHint = ByteBuffers.getBitHint(8, recordCountHint);
                     break;
                 case BINARY:
@@ -170,6 +174,8 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
                 , recordCountHint
                 , txCountHint
                 , lag
+                , outOfOrder
+                , ttl
                 , false
         );
     }
@@ -196,6 +202,17 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
         return this;
     }
 
+    /**
+     * Tells OS that column is read in no particular order, so that it does not read ahead.
+     *
+     * @param name column name
+     * @return this builder
+     */
+    public JournalMetadataBuilder<T> randomAccess(String name) {
+        getMeta(name).randomAccess = true;
+        return this;
+    }
+
     @Override
     public JournalMetadataBuilder<T> recordCountHint(int count) {
         if (count > 0) {
@@ -204,6 +221,17 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
         return this;
     }
 
+    /**
+     * Asks OS to back mapped windows of column by huge pages, where window is large enough.
+     *
+     * @param name column name
+     * @return this builder
+     */
+    public JournalMetadataBuilder<T> hugePages(String name) {
+        getMeta(name).hugePages = true;
+        return this;
+    }
+
     public JournalMetadataBuilder<T> keyColumn(String key) {
         this.keyColumn = key;
         return this;
@@ -214,11 +242,35 @@ public class JournalMetadataBuilder<T> implements MetadataBuilder<T> {
         return this;
     }
 
+    /**
+     * Accepts objects older than last committed timestamp. Such objects are buffered and merged
+     * into partitions they belong to on commit, instead of being rejected.
+     *
+     * @return this builder
+     */
+    public JournalMetadataBuilder<T> outOfOrder() {
+        this.outOfOrder = true;
+        return this;
+    }
+
     public JournalMetadataBuilder<T> openFileTTL(long time, TimeUnit unit) {
         this.openFileTTL = unit.toMillis(time);
         return this;
     }
 
+    /**
+     * Drops partitions once all of their data is older than given time, counting back from
+     * latest timestamp in journal.
+     *
+     * @param time time to keep partitions for
+     * @param unit unit of time
+     * @return this builder
+     */
+    public JournalMetadataBuilder<T> ttl(long time, TimeUnit unit) {
+        this.ttl = unit.toMillis(time);
+        return this;
+    }
+
     public JournalMetadataBuilder<T> txCountHint(int count) {
         this.txCountHint = count;
         return this;
@@ -30,6 +30,7 @@ import com.nfsdb.misc.Chars;
 import com.nfsdb.misc.Numbers;
 import com.nfsdb.misc.Unsafe;
 import com.nfsdb.std.CharSequenceIntHashMap;
+import com.nfsdb.std.IntList;
 import com.nfsdb.std.ObjList;
 import com.nfsdb.store.ColumnType;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -56,6 +57,8 @@ public class JournalStructure implements MetadataBuilder<Object> {
     private String key;
     private long openFileTTL = TimeUnit.MINUTES.toMillis(3);
     private int lag = -1;
+    private boolean outOfOrder = false;
+    private long ttl = 0;
     private Class<Object> modelClass;
     private Constructor<Object> constructor;
     private boolean partialMapping = false;
@@ -82,6 +85,8 @@ public class JournalStructure implements MetadataBuilder<Object> {
         this.key = model.getKeyQuiet();
         this.openFileTTL = model.getOpenFileTTL();
         this.lag = model.getLag();
+        this.outOfOrder = model.isOutOfOrder();
+        this.ttl = model.getTtl();
         for (int i = 0, n = model.getColumnCount(); i < n; i++) {
             ColumnMetadata to = new ColumnMetadata();
             metadata.add(to.copy(model.getColumnQuick(i)));
@@ -170,7 +175,7 @@ public class JournalStructure implements MetadataBuilder<Object> {
             switch (meta.type) {
                 case STRING:
                     meta.size = meta.avgSize + 4;
-                    meta.bitHint = ByteBuffers.getBitHint(meta.avgSize * 2, recordCountHint);
+                    meta.bitHint = ByteBuffers.getBitHint(meta.compact ? meta.avgSize : meta.avgSize * 2, recordCountHint);
                     meta.indexBitHint = ByteBuffers.getBitHint(8, recordCountHint);
                     break;
                 case BINARY:
@@ -199,6 +204,8 @@ public class JournalStructure implements MetadataBuilder<Object> {
                 , recordCountHint
                 , txCountHint
                 , lag
+                , outOfOrder
+                , ttl
                 , partialMapping
         );
     }
@@ -226,6 +233,17 @@ public class JournalStructure implements MetadataBuilder<Object> {
         return this;
     }
 
+    /**
+     * Tells OS that column is read in no particular order, so that it does not read ahead.
+     *
+     * @param name column name
+     * @return this structure
+     */
+    public JournalStructure randomAccess(String name) {
+        getMeta(name).randomAccess = true;
+        return this;
+    }
+
     public JournalStructure recordCountHint(int count) {
         if (count > 0) {
             this.recordCountHint = count;
@@ -233,6 +251,17 @@ public class JournalStructure implements MetadataBuilder<Object> {
         return this;
     }
 
+    /**
+     * Asks OS to back mapped windows of column by huge pages, where window is large enough.
+     *
+     * @param name column name
+     * @return this structure
+     */
+    public JournalStructure hugePages(String name) {
+        getMeta(name).hugePages = true;
+        return this;
+    }
+
     public JournalStructure key(String key) {
         this.key = key;
         return this;
@@ -243,6 +272,17 @@ public class JournalStructure implements MetadataBuilder<Object> {
         return this;
     }
 
+    /**
+     * Accepts records older than last committed timestamp. Such records are buffered and merged
+     * into partitions they belong to on commit, instead of being rejected.
+     *
+     * @return this structure
+     */
+    public JournalStructure outOfOrder() {
+        this.outOfOrder = true;
+        return this;
+    }
+
     @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS", "LEST_LOST_EXCEPTION_STACK_TRACE"})
     @SuppressWarnings("unchecked")
     public JournalMetadata map(Class clazz) {
@@ -286,6 +326,47 @@ public class JournalStructure implements MetadataBuilder<Object> {
         return this;
     }
 
+    /**
+     * Drops partitions once all of their data is older than given time, counting back from
+     * latest timestamp in journal.
+     *
+     * @param time time to keep partitions for
+     * @param unit unit of time
+     * @return this builder
+     */
+    public JournalStructure ttl(long time, TimeUnit unit) {
+        this.ttl = unit.toMillis(time);
+        return this;
+    }
+
+    /**
+     * Removes all columns but those at given indexes. Key is dropped when its column is removed.
+     *
+     * @param indexes column indexes in ascending order
+     * @return this structure
+     */
+    public JournalStructure retainColumns(IntList indexes) {
+        String tsName = tsColumnIndex == -1 ? null : metadata.get(tsColumnIndex).name;
+        List<ColumnMetadata> retained = new ArrayList<>(indexes.size());
+        for (int i = 0, n = indexes.size(); i < n; i++) {
+            retained.add(metadata.get(indexes.getQuick(i)));
+        }
+
+        metadata.clear();
+        nameToIndexMap.clear();
+        for (int i = 0, n = retained.size(); i < n; i++) {
+            ColumnMetadata meta = retained.get(i);
+            metadata.add(meta);
+            nameToIndexMap.put(meta.name, i);
+        }
+
+        tsColumnIndex = tsName == null ? -1 : nameToIndexMap.get(tsName);
+        if (key != null && nameToIndexMap.get(key) == -1) {
+            key = null;
+        }
+        return this;
+    }
+
     public JournalStructure txCountHint(int count) {
         this.txCountHint = count;
         return this;
@@ -319,6 +400,14 @@ public class JournalStructure implements MetadataBuilder<Object> {
         return type.getSuperclass() != null ? getAllFields(fields, type.getSuperclass()) : fields;
     }
 
+    private ColumnMetadata getMeta(String name) {
+        int index = nameToIndexMap.get(name);
+        if (index == -1) {
+            throw new JournalConfigurationException("No such column: %s", name);
+        }
+        return metadata.get(index);
+    }
+
     private boolean missingMappings() {
         boolean mappingMissing = false;
         for (int i = 0, metadataSize = metadata.size(); i < metadataSize; i++) {
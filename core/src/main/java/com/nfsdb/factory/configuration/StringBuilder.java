@@ -35,6 +35,15 @@ public class StringBuilder<T> extends AbstractMetadataBuilder<T> {
         return this;
     }
 
+    /**
+     * Stores ASCII values one byte per char instead of UTF-16. Values with other chars
+     * are still stored as UTF-16.
+     */
+    public StringBuilder<T> compact() {
+        this.meta.compact = true;
+        return this;
+    }
+
     public StringBuilder<T> index() {
         this.meta.indexed = true;
         return this;
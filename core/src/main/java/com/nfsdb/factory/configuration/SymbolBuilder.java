@@ -35,6 +35,24 @@ public class SymbolBuilder<T> extends AbstractMetadataBuilder<T> {
         meta.size = 4;
     }
 
+    /**
+     * Maintains compressed bitmap index for this column. Bitmaps of several symbol predicates
+     * are combined before rows are read, which suits columns with few distinct values.
+     */
+    public SymbolBuilder<T> bitmapIndex() {
+        this.meta.bitmapIndexed = true;
+        return this;
+    }
+
+    /**
+     * Stores ASCII values one byte per char instead of UTF-16. Values with other chars
+     * are still stored as UTF-16.
+     */
+    public SymbolBuilder<T> compact() {
+        this.meta.compact = true;
+        return this;
+    }
+
     public SymbolBuilder<T> index() {
         this.meta.indexed = true;
         return this;
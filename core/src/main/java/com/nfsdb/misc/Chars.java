@@ -29,6 +29,38 @@ public final class Chars {
     private Chars() {
     }
 
+    /**
+     * Lexicographical comparison of char sequences. Null is less than any other value.
+     *
+     * @param l left sequence
+     * @param r right sequence
+     * @return negative, zero or positive number when left is less than, equal to or greater than right
+     */
+    public static int compare(CharSequence l, CharSequence r) {
+        if (l == r) {
+            return 0;
+        }
+
+        if (l == null) {
+            return -1;
+        }
+
+        if (r == null) {
+            return 1;
+        }
+
+        int ll = l.length();
+        int rl = r.length();
+
+        for (int i = 0, n = Math.min(ll, rl); i < n; i++) {
+            int d = l.charAt(i) - r.charAt(i);
+            if (d != 0) {
+                return d;
+            }
+        }
+        return ll - rl;
+    }
+
     public static boolean containts(CharSequence _this, CharSequence that) {
         int m = that.length();
         if (m == 0) {
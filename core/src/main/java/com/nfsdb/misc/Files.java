@@ -30,12 +30,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.attribute.BasicFileAttributes;
 
 @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS"})
 public final class Files {
 
     public static final Charset UTF_8;
+    public static final int MADV_NORMAL = 0;
+    public static final int MADV_RANDOM = 1;
+    public static final int MADV_SEQUENTIAL = 2;
+    public static final int MADV_WILLNEED = 3;
+    public static final int MADV_DONTNEED = 4;
+    public static final int MADV_HUGEPAGE = 5;
 
     private Files() {
     } // Prevent construction.
@@ -44,6 +52,28 @@ public final class Files {
 
     public native static int close(long fd);
 
+    /**
+     * Copies first len bytes of file, or the whole file when it is shorter than that.
+     *
+     * @param from file to copy
+     * @param to   file to create or overwrite
+     * @param len  number of bytes to copy
+     * @throws JournalException when file cannot be read or written
+     */
+    public static void copy(File from, File to, long len) throws JournalException {
+        try {
+            try (FileChannel in = new FileInputStream(from).getChannel(); FileChannel out = new FileOutputStream(to).getChannel()) {
+                long n = Math.min(len, in.size());
+                long pos = 0;
+                while (pos < n) {
+                    pos += in.transferTo(pos, n - pos, out);
+                }
+            }
+        } catch (IOException e) {
+            throw new JournalException("Cannot copy %s to %s", e, from.getAbsolutePath(), to.getAbsolutePath());
+        }
+    }
+
     @SuppressFBWarnings("EXS_EXCEPTION_SOFTENING_RETURN_FALSE")
     public static boolean delete(File file) {
         try {
@@ -77,16 +107,66 @@ public final class Files {
         return getLastModified(lpsz) != -1;
     }
 
+    /**
+     * Advises OS how file content is going to be accessed, without file having to be mapped.
+     * Advice is best effort, it is silently ignored when OS or native library does not support it.
+     *
+     * @param fd     file descriptor
+     * @param offset file offset
+     * @param len    number of bytes
+     * @param advice one of MADV_* constants except MADV_HUGEPAGE
+     * @return true when advice was taken
+     */
+    public static boolean fadvise(long fd, long offset, long len, int advice) {
+        return Advice.SUPPORTED && fadvise0(fd, offset, len, advice) == 0;
+    }
+
     public static long getLastModified(LPSZ lpsz) {
         return getLastModified(lpsz.address());
     }
 
+    /**
+     * File system identity of file, which survives renames and is never shared by
+     * file that is deleted and created again while old one is still open.
+     *
+     * @param file file
+     * @return opaque key or null when file does not exist or file system does not provide key
+     */
+    public static Object getFileKey(File file) {
+        try {
+            return java.nio.file.Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     public native static long getStdOutFd();
 
+    public static boolean isAdviceSupported() {
+        return Advice.SUPPORTED;
+    }
+
     public static long length(LPSZ lpsz) {
         return length(lpsz.address());
     }
 
+    /**
+     * Advises OS how mapped memory is going to be accessed. Address does not have to be page aligned.
+     * Advice is best effort, it is silently ignored when OS or native library does not support it.
+     *
+     * @param address start of mapped memory
+     * @param len     number of bytes
+     * @param advice  one of MADV_* constants
+     * @return true when advice was taken
+     */
+    public static boolean madvise(long address, long len, int advice) {
+        if (!Advice.SUPPORTED) {
+            return false;
+        }
+        long aligned = address & -Advice.PAGE_SIZE;
+        return madvise0(aligned, len + address - aligned, advice) == 0;
+    }
+
     public static File makeTempDir() {
         File result;
         try {
@@ -171,10 +251,14 @@ public final class Files {
         }
     }
 
+    private native static int fadvise0(long fd, long offset, long len, int advice);
+
     private native static long getLastModified(long lpszName);
 
     private native static long length(long lpszName);
 
+    private native static int madvise0(long address, long len, int advice);
+
     private native static long openRO(long lpszName);
 
     private native static long openRW(long lpszName);
@@ -224,4 +308,21 @@ public final class Files {
     static {
         UTF_8 = Charset.forName("UTF-8");
     }
+
+    private static final class Advice {
+        private static final boolean SUPPORTED;
+        private static final long PAGE_SIZE = Unsafe.getUnsafe().pageSize();
+
+        static {
+            boolean supported;
+            try {
+                Os.init();
+                // native library, which predates advice functions does not have them
+                supported = madvise0(0, 0, MADV_NORMAL) == 0;
+            } catch (LinkageError e) {
+                supported = false;
+            }
+            SUPPORTED = supported;
+        }
+    }
 }
@@ -58,12 +58,28 @@ public final class Net {
 
     public native static int getPeerPort(long fd);
 
+    public static boolean isSendFileSupported() {
+        return SendFile.SUPPORTED;
+    }
+
     public native static void listen(long fd, int backlog);
 
     public static native int recv(long fd, long ptr, int len);
 
     public static native int send(long fd, long ptr, int len);
 
+    /**
+     * Sends file content to socket straight from OS file cache, without copying it through
+     * user space. Check {@link #isSendFileSupported()} before calling this method.
+     *
+     * @param fd     socket
+     * @param fileFd file open for reading
+     * @param offset file offset
+     * @param len    maximum number of bytes to send
+     * @return number of bytes sent, {@link #ERETRY} when socket cannot take more data or negative value when socket is disconnected
+     */
+    public static native int sendFile(long fd, long fileFd, long offset, int len);
+
     public native static int setRcvBuf(long fd, int size);
 
     public native static int setSndBuf(long fd, int size);
@@ -99,4 +115,20 @@ public final class Net {
     static {
         EWOULDBLOCK = getEwouldblock();
     }
+
+    private static final class SendFile {
+        private static final boolean SUPPORTED;
+
+        static {
+            boolean supported;
+            try {
+                // native library, which predates sendFile() does not have it
+                sendFile(-1, -1, 0, 0);
+                supported = Os.type != Os.WINDOWS;
+            } catch (LinkageError e) {
+                supported = false;
+            }
+            SUPPORTED = supported;
+        }
+    }
 }
@@ -26,6 +26,7 @@ import com.nfsdb.ex.FatalError;
 import java.lang.reflect.Field;
 
 public final class Unsafe {
+    public static final long BOOL_OFFSET;
     public static final long CHAR_OFFSET;
     public static final long BYTE_OFFSET;
     public final static int CACHE_LINE_SIZE = 64;
@@ -33,10 +34,12 @@ public final class Unsafe {
     public static final long INT_SCALE;
     public static final long LONG_OFFSET;
     public static final long LONG_SCALE;
+    public static final long SHORT_OFFSET;
+    public static final long FLOAT_OFFSET;
+    public static final long DOUBLE_OFFSET;
     private static final sun.misc.Unsafe UNSAFE;
     private static final long OBJ_OFFSET;
     private static final long OBJ_SCALE;
-    private static final long BOOL_OFFSET;
     private static final long BOOL_SCALE;
 
 
@@ -100,6 +103,9 @@ public final class Unsafe {
 
             CHAR_OFFSET = Unsafe.getUnsafe().arrayBaseOffset(char[].class);
             BYTE_OFFSET = Unsafe.getUnsafe().arrayBaseOffset(byte[].class);
+            SHORT_OFFSET = Unsafe.getUnsafe().arrayBaseOffset(short[].class);
+            FLOAT_OFFSET = Unsafe.getUnsafe().arrayBaseOffset(float[].class);
+            DOUBLE_OFFSET = Unsafe.getUnsafe().arrayBaseOffset(double[].class);
 
             BOOL_OFFSET = Unsafe.getUnsafe().arrayBaseOffset(boolean[].class);
             BOOL_SCALE = Unsafe.getUnsafe().arrayIndexScale(boolean[].class);
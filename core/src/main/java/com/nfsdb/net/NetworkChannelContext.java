@@ -0,0 +1,36 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net;
+
+import java.io.Closeable;
+
+/**
+ * State attached to a connection that is served by one of the IO dispatchers. Dispatchers
+ * do not know anything about the protocol, they only track the channel and close context
+ * when connection is idle or broken.
+ */
+public interface NetworkChannelContext extends Closeable {
+    @Override
+    void close();
+
+    NetworkChannel getChannel();
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net;
+
+import com.nfsdb.store.AbstractColumn;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel, which can send column content straight from file to socket instead of
+ * having it copied into channel buffers first.
+ */
+public interface ZeroCopyChannel extends WritableByteChannel {
+    /**
+     * Queues len bytes of column starting at offset to be sent after data written to channel so far.
+     * Column must remain open and unchanged within the range until channel is flushed.
+     *
+     * @return false when channel cannot send this range by reference, in which case caller has to write the bytes
+     */
+    boolean transfer(AbstractColumn column, long offset, long len);
+}
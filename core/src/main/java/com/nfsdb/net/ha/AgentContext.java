@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha;
+
+import com.nfsdb.misc.Misc;
+import com.nfsdb.misc.Net;
+import com.nfsdb.net.NetworkChannel;
+import com.nfsdb.net.NetworkChannelContext;
+import com.nfsdb.net.NetworkChannelImpl;
+import com.nfsdb.net.ha.auth.AuthorizationHandler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class AgentContext implements NetworkChannelContext {
+    final SpooledByteChannel buffer;
+    final JournalServerAgent agent;
+    final SocketAddress socketAddress;
+    private final JournalServer server;
+    private final NetworkChannel channel;
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    AgentContext(JournalServer server, NetworkChannel channel, SocketAddress socketAddress, AuthorizationHandler authorizationHandler, long drainTimeout) {
+        this.server = server;
+        this.channel = channel;
+        // encrypted channel has to see every byte, so column content is copied for it
+        this.buffer = new SpooledByteChannel(channel, channel instanceof NetworkChannelImpl, drainTimeout);
+        this.socketAddress = socketAddress;
+        this.agent = new JournalServerAgent(server, socketAddress, authorizationHandler);
+    }
+
+    @Override
+    public void close() {
+        if (open.compareAndSet(true, false)) {
+            agent.close();
+            buffer.close();
+            Misc.free(channel);
+            server.removeContext(this);
+        }
+    }
+
+    @Override
+    public NetworkChannel getChannel() {
+        return channel;
+    }
+
+    static SocketAddress getPeerAddress(long fd) {
+        long ip = Net.getPeerIP(fd);
+        int port = Net.getPeerPort(fd);
+        if (ip < 0 || port < 0) {
+            return null;
+        }
+
+        try {
+            return new InetSocketAddress(
+                    InetAddress.getByAddress(new byte[]{(byte) ip, (byte) (ip >> 8), (byte) (ip >> 16), (byte) (ip >> 24)}),
+                    port
+            );
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -45,15 +45,19 @@ import com.nfsdb.net.ha.comsumer.HugeBufferConsumer;
 import com.nfsdb.net.ha.comsumer.JournalDeltaConsumer;
 import com.nfsdb.net.ha.config.ClientConfig;
 import com.nfsdb.net.ha.config.ServerNode;
+import com.nfsdb.net.ha.mcast.JournalDeltaReceiver;
 import com.nfsdb.net.ha.model.Command;
 import com.nfsdb.net.ha.model.IndexedJournal;
 import com.nfsdb.net.ha.model.IndexedJournalKey;
+import com.nfsdb.net.ha.model.JournalSubscription;
+import com.nfsdb.net.ha.model.SubscriptionFilter;
 import com.nfsdb.net.ha.producer.JournalClientStateProducer;
 import com.nfsdb.net.ha.protocol.CommandConsumer;
 import com.nfsdb.net.ha.protocol.CommandProducer;
 import com.nfsdb.net.ha.protocol.Version;
 import com.nfsdb.net.ha.protocol.commands.*;
 import com.nfsdb.std.IntList;
+import com.nfsdb.std.LongList;
 import com.nfsdb.std.ObjList;
 import com.nfsdb.store.TxListener;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -61,6 +65,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -72,20 +77,31 @@ public class JournalClient {
     private static final AtomicInteger counter = new AtomicInteger(0);
     private static final Log LOG = LogFactory.getLog(JournalClient.class);
     private final static ThreadFactory CLIENT_THREAD_FACTORY = new NamedDaemonThreadFactory("journal-client", false);
+    // journal state has to be sent to server to receive delta over TCP
+    private static final int STATE_REQUIRED = 0;
+    // journal state has been sent, server replies with delta over TCP when there is one
+    private static final int STATE_SENT = 1;
+    // journal is in sync and receives deltas over multicast
+    private static final int STATE_MULTICAST = 2;
     private final ObjList<JournalKey> remoteKeys = new ObjList<>();
     private final ObjList<JournalKey> localKeys = new ObjList<>();
     private final ObjList<TxListener> listeners = new ObjList<>();
+    private final ObjList<SubscriptionFilter> filters = new ObjList<>();
     private final ObjList<JournalWriter> writers = new ObjList<>();
     private final ObjList<JournalDeltaConsumer> deltaConsumers = new ObjList<>();
     private final IntList statusSentList = new IntList();
+    // highest txn multicast while journal was synchronising over TCP
+    private final LongList multicastTxns = new LongList();
     private final JournalWriterFactory factory;
     private final CommandProducer commandProducer = new CommandProducer();
     private final CommandConsumer commandConsumer = new CommandConsumer();
     private final SetKeyRequestProducer setKeyRequestProducer = new SetKeyRequestProducer();
+    private final SubscriptionRequestProducer subscriptionRequestProducer = new SubscriptionRequestProducer();
     private final CharSequenceResponseConsumer charSequenceResponseConsumer = new CharSequenceResponseConsumer();
     private final JournalClientStateProducer journalClientStateProducer = new JournalClientStateProducer();
     private final IntResponseConsumer intResponseConsumer = new IntResponseConsumer();
     private final IntResponseProducer intResponseProducer = new IntResponseProducer();
+    private final LongResponseConsumer longResponseConsumer = new LongResponseConsumer();
     private final ByteArrayResponseProducer byteArrayResponseProducer = new ByteArrayResponseProducer();
 
     private final ClientConfig config;
@@ -96,6 +112,11 @@ public class JournalClient {
     private ByteChannel channel;
     private StatsCollectingReadableByteChannel statsChannel;
     private Future handlerFuture;
+    private JournalDeltaReceiver deltaReceiver;
+    // server accepted multicast and sends multicast txns with heartbeat
+    private boolean multicastAccepted = false;
+    private boolean packed = false;
+    private int serverVersion;
 
     public JournalClient(JournalWriterFactory factory) {
         this(factory, null);
@@ -178,13 +199,29 @@ public class JournalClient {
         remoteKeys.add(remoteKey);
         localKeys.add(writer.getKey());
         listeners.add(txListener);
+        filters.add(null);
         set0(remoteKeys.size() - 1, writer, txListener);
     }
 
     public void subscribe(JournalKey remote, JournalKey local, TxListener txListener) {
+        subscribe(remote, local, txListener, null);
+    }
+
+    /**
+     * Configures client to subscribe some of remote journal columns and rows. Local journal
+     * is created with subscribed columns only. Filtered subscriptions require server, which
+     * understands {@link Version#FILTER_PROTOCOL_VERSION}.
+     *
+     * @param remote     key of journal on server
+     * @param local      key of journal on client
+     * @param txListener optional callback listener to receive commit notifications
+     * @param filter     columns and rows to subscribe, null subscribes entire journal
+     */
+    public void subscribe(JournalKey remote, JournalKey local, TxListener txListener, SubscriptionFilter filter) {
         remoteKeys.add(remote);
         localKeys.add(local);
         listeners.add(txListener);
+        filters.add(filter);
     }
 
     private void checkAck() throws JournalNetworkException {
@@ -212,6 +249,7 @@ public class JournalClient {
 
     private void close0() {
 
+        haltDeltaReceiver();
         closeChannel();
         for (int i = 0, sz = writers.size(); i < sz; i++) {
             writers.getQuick(i).close();
@@ -219,6 +257,7 @@ public class JournalClient {
 
         writers.clear();
         statusSentList.clear();
+        multicastTxns.clear();
         deltaConsumers.clear();
     }
 
@@ -247,6 +286,7 @@ public class JournalClient {
         commandConsumer.free();
         charSequenceResponseConsumer.free();
         intResponseConsumer.free();
+        longResponseConsumer.free();
     }
 
     private byte[] getToken() throws JournalNetworkException {
@@ -258,10 +298,19 @@ public class JournalClient {
         }
     }
 
+    private void haltDeltaReceiver() {
+        if (deltaReceiver != null) {
+            deltaReceiver.halt();
+            deltaReceiver = null;
+        }
+    }
+
     private void handshake() throws JournalNetworkException {
         openChannel(null);
         sendProtocolVersion();
         sendKeys();
+        sendSubscriptions();
+        sendMulticast();
         checkAuthAndSendCredential();
         sendState();
         counter.incrementAndGet();
@@ -288,6 +337,10 @@ public class JournalClient {
         }
     }
 
+    private boolean isMulticast(int index) {
+        return deltaReceiver != null && filters.getQuick(index) == null;
+    }
+
     private CharSequence readString() throws JournalNetworkException {
         charSequenceResponseConsumer.read(channel);
         return charSequenceResponseConsumer.getValue();
@@ -321,7 +374,12 @@ public class JournalClient {
 
             try {
                 if (writers.getQuiet(i) == null) {
-                    set0(i, factory.writer(new JournalStructure(metadata).location(localKeys.getQuick(i).derivedLocation())), listeners.getQuick(i));
+                    JournalStructure structure = new JournalStructure(metadata).location(localKeys.getQuick(i).derivedLocation());
+                    SubscriptionFilter filter = filters.getQuick(i);
+                    if (filter != null) {
+                        structure.retainColumns(filter.project(metadata));
+                    }
+                    set0(i, factory.writer(structure), listeners.getQuick(i));
                 }
             } catch (JournalException e) {
                 throw new JournalNetworkException(e);
@@ -329,10 +387,78 @@ public class JournalClient {
         }
     }
 
+    private void readMulticastTxns() throws JournalNetworkException {
+        for (int i = 0, n = intResponseConsumer.getValue(channel); i < n; i++) {
+            long txn = longResponseConsumer.getValue(channel);
+            if (i < writers.size() && isMulticast(i)) {
+                JournalDeltaConsumer consumer = deltaConsumers.getQuick(i);
+                synchronized (consumer) {
+                    if (statusSentList.getQuick(i) != STATE_MULTICAST) {
+                        if (txn > multicastTxns.getQuick(i)) {
+                            multicastTxns.setQuick(i, txn);
+                        }
+                    } else if (txn > writers.getQuick(i).getTxn()) {
+                        // delta is either lost or still on its way, TCP delta is correct either way
+                        LOG.info().$("Missed last multicast delta of ").$(writers.getQuick(i).getLocation()).$(", requesting over TCP").$();
+                        statusSentList.setQuick(i, STATE_REQUIRED);
+                    }
+                }
+            }
+        }
+    }
+
+    private void sendMulticast() throws JournalNetworkException {
+        multicastAccepted = false;
+        // multicast deltas are packed and not filtered
+        if (!config.isDeltaMultiCastEnabled() || !packed) {
+            return;
+        }
+
+        if (serverVersion < Version.MULTICAST_PROTOCOL_VERSION) {
+            LOG.info().$("Server does not support delta multicast, using TCP").$();
+            return;
+        }
+
+        commandProducer.write(channel, Command.MULTICAST_CMD);
+        CharSequence response = readString();
+        if (!Chars.equals("OK", response)) {
+            LOG.info().$(response).$(", using TCP").$();
+            return;
+        }
+        multicastAccepted = true;
+
+        JournalDeltaReceiver receiver = new JournalDeltaReceiver(config, new DeltaListener());
+        boolean subscribed = false;
+        for (int i = 0, sz = writers.size(); i < sz; i++) {
+            if (filters.getQuick(i) == null) {
+                receiver.subscribe(i, remoteKeys.getQuick(i).derivedLocation());
+                subscribed = true;
+            }
+        }
+
+        if (subscribed) {
+            receiver.start();
+            deltaReceiver = receiver;
+        }
+    }
+
     private void sendProtocolVersion() throws JournalNetworkException {
-        commandProducer.write(channel, Command.PROTOCOL_VERSION);
-        intResponseProducer.write(channel, Version.PROTOCOL_VERSION);
-        checkAck();
+        int version = config.getProtocolVersion();
+        while (true) {
+            commandProducer.write(channel, Command.PROTOCOL_VERSION);
+            intResponseProducer.write(channel, version);
+            CharSequence response = readString();
+            if (Chars.equals("OK", response)) {
+                break;
+            }
+            // older server, try previous version
+            fail(version > Version.MIN_PROTOCOL_VERSION, response.toString());
+            LOG.info().$("Server does not support protocol version ").$(version).$(", trying ").$(version - 1).$();
+            version--;
+        }
+
+        serverVersion = version;
+        packed = config.isPackedDeltas() && version >= Version.PACKED_PROTOCOL_VERSION;
     }
 
     private void sendReady() throws JournalNetworkException {
@@ -342,19 +468,46 @@ public class JournalClient {
 
     private void sendState() throws JournalNetworkException {
         for (int i = 0, sz = writers.size(); i < sz; i++) {
-            if (statusSentList.get(i) == 0) {
-                commandProducer.write(channel, Command.DELTA_REQUEST_CMD);
-                journalClientStateProducer.write(channel, new IndexedJournal(i, writers.getQuick(i)));
-                checkAck();
-                statusSentList.setQuick(i, 1);
+            // multicast receiver applies deltas under consumer lock
+            synchronized (deltaConsumers.getQuick(i)) {
+                if (statusSentList.get(i) == STATE_REQUIRED) {
+                    commandProducer.write(channel, Command.DELTA_REQUEST_CMD);
+                    journalClientStateProducer.write(channel, new IndexedJournal(i, writers.getQuick(i)));
+                    checkAck();
+                    statusSentList.setQuick(i, STATE_SENT);
+                }
             }
         }
         sendReady();
     }
 
+    private void sendSubscriptions() throws JournalNetworkException {
+        for (int i = 0, sz = writers.size(); i < sz; i++) {
+            SubscriptionFilter filter = filters.getQuick(i);
+            if (serverVersion >= Version.FILTER_PROTOCOL_VERSION) {
+                // server packs deltas by default, subscription is only needed to change that
+                if (filter != null || !packed) {
+                    commandProducer.write(channel, Command.SUBSCRIPTION_CMD);
+                    subscriptionRequestProducer.write(channel, new JournalSubscription(i, packed, filter));
+                    checkAck();
+                }
+            } else {
+                fail(filter == null, "Server does not support filtered subscriptions");
+            }
+
+            JournalDeltaConsumer consumer = deltaConsumers.getQuick(i);
+            consumer.setVersion(serverVersion);
+            consumer.setPacked(packed);
+            consumer.setFiltered(filter != null && filter.getSymbolColumn() != null);
+        }
+    }
+
     private <T> void set0(int index, JournalWriter<T> writer, TxListener txListener) {
-        statusSentList.extendAndSet(index, 0);
-        deltaConsumers.extendAndSet(index, new JournalDeltaConsumer(writer.setCommitOnClose(false)));
+        statusSentList.extendAndSet(index, STATE_REQUIRED);
+        multicastTxns.extendAndSet(index, -1);
+        JournalDeltaConsumer consumer = new JournalDeltaConsumer(writer.setCommitOnClose(false));
+        consumer.setPacked(packed);
+        deltaConsumers.extendAndSet(index, consumer);
         writers.extendAndSet(index, writer);
         if (txListener != null) {
             writer.setTxListener(txListener);
@@ -426,6 +579,7 @@ public class JournalClient {
 
         private void disconnect(DisconnectReason reason) {
             LOG.info().$("Client disconnecting").$();
+            haltDeltaReceiver();
             counter.decrementAndGet();
             running.set(false);
             // set future to null to prevent deadlock
@@ -438,6 +592,59 @@ public class JournalClient {
         }
     }
 
+    private final class DeltaListener implements JournalDeltaReceiver.Listener {
+        @Override
+        public void onDelta(int index, long prevTxn, long txn, ReadableByteChannel channel) throws JournalNetworkException {
+            JournalDeltaConsumer consumer = deltaConsumers.getQuick(index);
+            synchronized (consumer) {
+                if (statusSentList.getQuick(index) != STATE_MULTICAST) {
+                    // delta is on its way over TCP, but might not include this one
+                    if (txn > multicastTxns.getQuick(index)) {
+                        multicastTxns.setQuick(index, txn);
+                    }
+                    return;
+                }
+
+                JournalWriter writer = writers.getQuick(index);
+                long localTxn = writer.getTxn();
+                if (txn <= localTxn) {
+                    return;
+                }
+
+                if (prevTxn != localTxn) {
+                    LOG.info().$("Missed multicast delta of ").$(writer.getLocation()).$(", requesting over TCP").$();
+                    statusSentList.setQuick(index, STATE_REQUIRED);
+                    return;
+                }
+
+                try {
+                    consumer.read(channel);
+                } catch (JournalNetworkException e) {
+                    statusSentList.setQuick(index, STATE_REQUIRED);
+                    try {
+                        writer.rollback();
+                    } catch (JournalException ex) {
+                        LOG.error().$("Could not rollback ").$(writer.getLocation()).$(ex).$();
+                    }
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void onLoss(int index) {
+            JournalDeltaConsumer consumer = deltaConsumers.getQuick(index);
+            synchronized (consumer) {
+                if (statusSentList.getQuick(index) == STATE_MULTICAST) {
+                    statusSentList.setQuick(index, STATE_REQUIRED);
+                } else {
+                    // txn of lost delta is unknown
+                    multicastTxns.setQuick(index, Long.MAX_VALUE);
+                }
+            }
+        }
+    }
+
     private final class Handler implements Runnable {
         @Override
         public void run() {
@@ -451,8 +658,15 @@ public class JournalClient {
                         case JOURNAL_DELTA_CMD:
                             statsChannel.setDelegate(channel);
                             int index = intResponseConsumer.getValue(statsChannel);
-                            deltaConsumers.getQuick(index).read(statsChannel);
-                            statusSentList.set(index, 0);
+                            JournalDeltaConsumer consumer = deltaConsumers.getQuick(index);
+                            synchronized (consumer) {
+                                consumer.read(statsChannel);
+                                // once in sync, multicast journals are not requested until they miss a delta,
+                                // which includes deltas multicast before this one arrived
+                                boolean synced = isMulticast(index) && multicastTxns.getQuick(index) <= writers.getQuick(index).getTxn();
+                                statusSentList.set(index, synced ? STATE_MULTICAST : STATE_REQUIRED);
+                                multicastTxns.setQuick(index, -1);
+                            }
                             statsChannel.logStats();
                             break;
                         case SERVER_READY_CMD:
@@ -465,8 +679,12 @@ public class JournalClient {
                             }
                             break;
                         case SERVER_HEARTBEAT:
+                            if (multicastAccepted) {
+                                readMulticastTxns();
+                            }
                             if (isRunning()) {
-                                sendReady();
+                                // journals that missed multicast deltas catch up here
+                                sendState();
                             } else {
                                 sendDisconnect();
                                 reason = DisconnectReason.CLIENT_HALT;
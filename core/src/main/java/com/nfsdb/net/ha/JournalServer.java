@@ -23,31 +23,45 @@ package com.nfsdb.net.ha;
 
 import com.nfsdb.JournalKey;
 import com.nfsdb.JournalWriter;
-import com.nfsdb.ex.JournalDisconnectedChannelException;
-import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.ex.*;
 import com.nfsdb.factory.JournalReaderFactory;
+import com.nfsdb.iter.clock.Clock;
+import com.nfsdb.iter.clock.MilliClock;
 import com.nfsdb.log.Log;
 import com.nfsdb.log.LogFactory;
+import com.nfsdb.misc.Misc;
 import com.nfsdb.misc.NamedDaemonThreadFactory;
-import com.nfsdb.net.SecureSocketChannel;
+import com.nfsdb.misc.Net;
+import com.nfsdb.misc.Os;
+import com.nfsdb.mp.*;
+import com.nfsdb.net.NetworkChannel;
+import com.nfsdb.net.NetworkChannelContextFactory;
+import com.nfsdb.net.NioNetworkChannel;
+import com.nfsdb.net.NonBlockingSecureSocketChannel;
 import com.nfsdb.net.ha.auth.AuthorizationHandler;
 import com.nfsdb.net.ha.bridge.JournalEventBridge;
 import com.nfsdb.net.ha.config.ServerConfig;
 import com.nfsdb.net.ha.config.ServerNode;
+import com.nfsdb.net.ha.mcast.JournalDeltaMulticaster;
 import com.nfsdb.net.ha.mcast.OnDemandAddressSender;
 import com.nfsdb.net.ha.model.Command;
 import com.nfsdb.net.ha.model.IndexedJournalKey;
 import com.nfsdb.net.ha.protocol.CommandProducer;
 import com.nfsdb.net.ha.protocol.commands.IntResponseConsumer;
 import com.nfsdb.net.ha.protocol.commands.IntResponseProducer;
+import com.nfsdb.net.http.*;
+import com.nfsdb.std.ObjHashSet;
 import com.nfsdb.std.ObjIntHashMap;
+import com.nfsdb.std.ObjList;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.StandardSocketOptions;
 import java.nio.channels.ByteChannel;
-import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.List;
 import java.util.concurrent.*;
@@ -55,23 +69,37 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Serves journal updates to replicas. Client connections are non-blocking and are multiplexed by
+ * IO dispatcher of the operating system, the same way as in {@link HttpServer}. Small number of worker
+ * threads process client commands, flush responses as fast as client sockets would take them and
+ * wake up clients that are waiting for journal updates.
+ */
 public class JournalServer {
 
     private static final Log LOG = LogFactory.getLog(JournalServer.class);
+    private static final int IO_QUEUE_SIZE = 1024;
     private final AtomicInteger writerIdGenerator = new AtomicInteger(0);
     private final ObjIntHashMap<JournalWriter> writers = new ObjIntHashMap<>();
     private final JournalReaderFactory factory;
     private final JournalEventBridge bridge;
     private final ServerConfig config;
-    private final ThreadPoolExecutor service;
+    private final ExecutorService service;
     private final AtomicBoolean running = new AtomicBoolean(false);
-    private final List<SocketChannelHolder> channels = new CopyOnWriteArrayList<>();
+    private final List<AgentContext> contexts = new CopyOnWriteArrayList<>();
     private final OnDemandAddressSender addressSender;
+    private final JournalDeltaMulticaster deltaMulticaster;
     private final AuthorizationHandler authorizationHandler;
     private final int uid;
     private final IntResponseConsumer intResponseConsumer = new IntResponseConsumer();
     private final IntResponseProducer intResponseProducer = new IntResponseProducer();
-    private ServerSocketChannel serverSocketChannel;
+    private final ObjList<Worker> workers = new ObjList<>();
+    private final Clock clock = MilliClock.INSTANCE;
+    private IODispatcher<AgentContext> dispatcher;
+    private RingQueue<IOEvent<AgentContext>> ioQueue;
+    private RingQueue<IOEvent<AgentContext>> parkQueue;
+    private MPSequence parkPubSequence;
+    private CountDownLatch workerHaltLatch;
     private boolean leader = false;
     private boolean participant = false;
     private boolean passiveNotified = false;
@@ -97,20 +125,18 @@ public class JournalServer {
     public JournalServer(ServerConfig config, JournalReaderFactory factory, AuthorizationHandler authorizationHandler, int instance) {
         this.config = config;
         this.factory = factory;
-        this.service = new ThreadPoolExecutor(
-                0
-                , Integer.MAX_VALUE
-                , 60L
-                , TimeUnit.SECONDS
-                , new SynchronousQueue<Runnable>()
-                , new NamedDaemonThreadFactory("nfsdb-server-" + instance + "-agent", true)
-        );
+        this.service = Executors.newCachedThreadPool(new NamedDaemonThreadFactory("nfsdb-server-" + instance + "-election", true));
         this.bridge = new JournalEventBridge(config.getHeartbeatFrequency(), TimeUnit.MILLISECONDS);
         if (config.isMultiCastEnabled()) {
             this.addressSender = new OnDemandAddressSender(config, 230, 235, instance);
         } else {
             this.addressSender = null;
         }
+        if (config.isDeltaMultiCastEnabled()) {
+            this.deltaMulticaster = new JournalDeltaMulticaster(config, bridge, instance);
+        } else {
+            this.deltaMulticaster = null;
+        }
         this.authorizationHandler = authorizationHandler;
         this.uid = instance;
     }
@@ -120,14 +146,14 @@ public class JournalServer {
     }
 
     public int getConnectedClients() {
-        return channels.size();
+        return contexts.size();
     }
 
     public JournalReaderFactory getFactory() {
         return factory;
     }
 
-    @SuppressFBWarnings({"PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS"})
+    @SuppressFBWarnings({"PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS"})
     public void halt(long timeout, TimeUnit unit) {
         if (!running.compareAndSet(true, false)) {
             return;
@@ -135,41 +161,52 @@ public class JournalServer {
         LOG.info().$("Stopping agent services ").$(uid).$();
         service.shutdown();
 
-        LOG.info().$("Stopping acceptor").$();
-        try {
-            serverSocketChannel.close();
-        } catch (IOException e) {
-            LOG.debug().$("Error closing socket").$(e).$();
-        }
-
-
+        // clients are notified of shutdown on their next dispatch
+        // and disconnected after notification is sent
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
         if (timeout > 0) {
-            try {
-                LOG.info().$("Waiting for ").$(service.getActiveCount()).$(" agent services to complete data exchange on ").$(uid).$();
-                service.awaitTermination(timeout, unit);
-            } catch (InterruptedException e) {
-                LOG.debug().$("Interrupted wait").$(e).$();
+            LOG.info().$("Waiting for ").$(contexts.size()).$(" agent services to complete data exchange on ").$(uid).$();
+            while (contexts.size() > 0 && System.currentTimeMillis() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
             }
         }
 
         if (addressSender != null) {
-            LOG.info().$("Stopping mcast sender on %d").$(uid).$();
+            LOG.info().$("Stopping mcast sender on ").$(uid).$();
             addressSender.halt();
         }
 
-        LOG.info().$("Closing channels on %d").$(uid).$();
-        closeChannels();
+        if (deltaMulticaster != null) {
+            LOG.info().$("Stopping delta multicaster on ").$(uid).$();
+            deltaMulticaster.halt();
+        }
+
+        LOG.info().$("Stopping workers on ").$(uid).$();
+        for (int i = 0, n = workers.size(); i < n; i++) {
+            workers.getQuick(i).halt();
+        }
 
         try {
-            if (timeout > 0) {
-                LOG.info().$("Waiting for ").$(service.getActiveCount()).$(" agent services to stop on ").$(uid).$();
-                service.awaitTermination(timeout, unit);
+            workerHaltLatch.await();
+        } catch (InterruptedException e) {
+            LOG.debug().$("Interrupted wait").$(e).$();
+        }
+        workers.clear();
+        dispatcher = Misc.free(dispatcher);
+
+        LOG.info().$("Closing channels on ").$(uid).$();
+        closeContexts();
+
+        try {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining > 0) {
+                LOG.info().$("Waiting for election services to stop on ").$(uid).$();
+                service.awaitTermination(remaining, TimeUnit.MILLISECONDS);
             }
-            LOG.info().$("Server %d is shutdown").$(uid).$();
+            LOG.info().$("Server ").$(uid).$(" is shutdown").$();
         } catch (InterruptedException e) {
             LOG.info().$("Server ").$(uid).$(" is shutdown, but some connections are still lingering.").$();
         }
-
     }
 
     public void halt() {
@@ -180,6 +217,10 @@ public class JournalServer {
         return leader;
     }
 
+    public boolean isDeltaMultiCastEnabled() {
+        return deltaMulticaster != null;
+    }
+
     public boolean isRunning() {
         return running.get();
     }
@@ -200,43 +241,117 @@ public class JournalServer {
         for (ObjIntHashMap.Entry<JournalWriter> e : writers) {
             JournalEventPublisher publisher = new JournalEventPublisher(e.value, bridge);
             e.key.setTxListener(publisher);
+            if (deltaMulticaster != null) {
+                try {
+                    deltaMulticaster.add(e.value, factory.reader(readerKey(e.key.getKey())));
+                } catch (JournalException ex) {
+                    throw new JournalNetworkException(ex);
+                }
+            }
+        }
+
+        ioQueue = new RingQueue<>(IOEvent.<AgentContext>factory(), IO_QUEUE_SIZE);
+        SPSequence ioPubSequence = new SPSequence(IO_QUEUE_SIZE);
+        MCSequence ioSubSequence = new MCSequence(IO_QUEUE_SIZE, null);
+        ioPubSequence.followedBy(ioSubSequence);
+        ioSubSequence.followedBy(ioPubSequence);
+
+        parkQueue = new RingQueue<>(IOEvent.<AgentContext>factory(), IO_QUEUE_SIZE);
+        parkPubSequence = new MPSequence(IO_QUEUE_SIZE);
+        SCSequence parkSubSequence = new SCSequence();
+        parkPubSequence.followedBy(parkSubSequence);
+        parkSubSequence.followedBy(parkPubSequence);
+
+        InetSocketAddress address = config.getSocketAddress(uid);
+        try {
+            dispatcher = createDispatcher(address, ioPubSequence);
+        } catch (NetworkError e) {
+            throw new JournalNetworkException("Cannot open server socket [" + address + ']', e);
         }
+        LOG.info().$("Server is now listening on ").$(address).$();
 
-        serverSocketChannel = config.openServerSocketChannel(uid);
         if (config.isMultiCastEnabled()) {
             addressSender.start();
         }
+
+        if (deltaMulticaster != null) {
+            deltaMulticaster.start();
+        }
         running.set(true);
-        service.execute(new Acceptor());
+
+        ObjHashSet<Job> jobs = new ObjHashSet<>();
+        jobs.add(dispatcher);
+        jobs.add(new AgentIOJob(ioSubSequence));
+        jobs.add(new AgentWakeupJob(parkSubSequence));
+
+        int workerCount = config.getWorkerCount();
+        workerHaltLatch = new CountDownLatch(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            Worker w = new Worker(jobs, workerHaltLatch);
+            w.setName("nfsdb-server-" + uid + "-worker-" + i);
+            w.setDaemon(true);
+            workers.add(w);
+            w.start();
+        }
     }
 
-    private void addChannel(SocketChannelHolder holder) {
-        channels.add(holder);
+    @SuppressWarnings("unchecked")
+    private static JournalKey readerKey(JournalKey key) {
+        return new JournalKey(key.getId(), key.getModelClass(), key.getLocation(), key.getRecordHint());
     }
 
-    private void closeChannel(SocketChannelHolder holder, boolean force) {
-        if (holder != null) {
-            try {
-                if (holder.socketAddress != null) {
-                    if (force) {
-                        LOG.info().$("Server node ").$(uid).$(": Client forced out: ").$(holder.socketAddress.toString()).$();
-                    } else {
-                        LOG.info().$("Server node ").$(uid).$(": Client disconnected: ").$(holder.socketAddress.toString()).$();
-                    }
-                }
-                holder.byteChannel.close();
+    private void closeContexts() {
+        for (AgentContext context : contexts) {
+            LOG.info().$("Server node ").$(uid).$(": Client forced out: ").$(context.socketAddress).$();
+            context.close();
+        }
+        contexts.clear();
+    }
 
-            } catch (IOException e) {
-                LOG.error().$("Server node ").$(uid).$(": Cannot close channel [").$(holder.byteChannel).$("]: ").$(e.getMessage()).$();
+    private IODispatcher<AgentContext> createDispatcher(InetSocketAddress address, Sequence ioSequence) throws JournalNetworkException {
+        final int soRcvBuf = config.getSoRcvBuf();
+        final NetworkChannelContextFactory<AgentContext> contextFactory = new NetworkChannelContextFactory<AgentContext>() {
+            @Override
+            public AgentContext newInstance(NetworkChannel channel) {
+                SocketAddress socketAddress;
+                if (channel instanceof NioNetworkChannel) {
+                    // receive buffer size is inherited from server socket
+                    socketAddress = ((NioNetworkChannel) channel).getRemoteAddress();
+                } else {
+                    Net.setRcvBuf(channel.getFd(), soRcvBuf);
+                    socketAddress = AgentContext.getPeerAddress(channel.getFd());
+                }
+                AgentContext context = new AgentContext(
+                        JournalServer.this,
+                        config.getSslConfig().isSecure() ? new NonBlockingSecureSocketChannel(channel, config.getSslConfig()) : channel,
+                        socketAddress,
+                        authorizationHandler,
+                        config.getIdleTimeout()
+                );
+                contexts.add(context);
+                LOG.info().$("Server node ").$(uid).$(": Connected ").$(context.socketAddress).$();
+                return context;
             }
+        };
+
+        InetAddress addr = address.getAddress();
+        if (addr != null && !(addr instanceof Inet4Address)) {
+            // native dispatchers bind IPv4 addresses only
+            return new NioSelectDispatcher<>(config.openServerSocketChannel(uid), ioQueue, ioSequence, clock, config.getMaxConnections(), config.getIdleTimeout(), contextFactory);
         }
-    }
 
-    private void closeChannels() {
-        for (SocketChannelHolder h : channels) {
-            closeChannel(h, true);
+        String ip = addr == null || addr.isAnyLocalAddress() ? "0.0.0.0" : addr.getHostAddress();
+        int port = address.getPort();
+        switch (Os.type) {
+            case Os.OSX:
+                return new KQueueDispatcher<>(ip, port, ioQueue, ioSequence, clock, config.getMaxConnections(), config.getIdleTimeout(), contextFactory);
+            case Os.WINDOWS:
+                return new Win32SelectDispatcher<>(ip, port, ioQueue, ioSequence, clock, config.getMaxConnections(), config.getIdleTimeout(), contextFactory);
+            case Os.LINUX:
+                return new EpollDispatcher<>(ip, port, ioQueue, ioSequence, clock, config.getMaxConnections(), config.getIdleTimeout(), contextFactory);
+            default:
+                throw new FatalError("Unsupported operating system");
         }
-        channels.clear();
     }
 
     private synchronized void fwdElectionMessage(ElectionMessageReason reason, int uid, Command command, int count) {
@@ -244,12 +359,20 @@ public class JournalServer {
         service.submit(new ElectionForwarder(reason, uid, command, count));
     }
 
+    long getHeartbeatFrequency() {
+        return config.getHeartbeatFrequency();
+    }
+
+    long getMulticastTxn(int writerIndex) {
+        return deltaMulticaster == null ? -1 : deltaMulticaster.getTxn(writerIndex);
+    }
+
     @SuppressWarnings("unchecked")
     IndexedJournalKey getWriterIndex0(JournalKey key) {
         for (ObjIntHashMap.Entry<JournalWriter> e : writers.immutableIterator()) {
             JournalKey jk = e.key.getKey();
             if (jk.derivedLocation().equals(key.derivedLocation())) {
-                return new IndexedJournalKey(e.value, new JournalKey(jk.getId(), jk.getModelClass(), jk.getLocation(), jk.getRecordHint()));
+                return new IndexedJournalKey(e.value, readerKey(jk));
             }
         }
         return null;
@@ -355,9 +478,15 @@ public class JournalServer {
         }
     }
 
-    private void removeChannel(SocketChannelHolder holder) {
-        if (channels.remove(holder)) {
-            closeChannel(holder, false);
+    private void park(AgentContext context) {
+        long cursor = parkPubSequence.nextBully();
+        parkQueue.get(cursor).context = context;
+        parkPubSequence.done(cursor);
+    }
+
+    void removeContext(AgentContext context) {
+        if (contexts.remove(context)) {
+            LOG.info().$("Server node ").$(uid).$(": Client disconnected: ").$(context.socketAddress).$();
         }
     }
 
@@ -407,77 +536,134 @@ public class JournalServer {
         }
     }
 
-    private class Acceptor implements Runnable {
+    private class AgentIOJob implements Job {
+        private final Sequence ioSequence;
+
+        AgentIOJob(Sequence ioSequence) {
+            this.ioSequence = ioSequence;
+        }
+
         @Override
-        public void run() {
+        public boolean run() {
+            long cursor = ioSequence.next();
+            if (cursor < 0) {
+                return false;
+            }
+
+            IOEvent<AgentContext> evt = ioQueue.get(cursor);
+            final AgentContext context = evt.context;
+            final ChannelStatus status = evt.status;
+            ioSequence.done(cursor);
+
+            ChannelStatus result = process(context, status);
+            if (result != null) {
+                dispatcher.registerChannel(context, result);
+            }
+            return true;
+        }
+
+        /**
+         * Feeds client commands to agent and writes out agent responses without blocking.
+         *
+         * @return status to register context with dispatcher or null when context is parked
+         */
+        private ChannelStatus process(AgentContext context, ChannelStatus status) {
+            final SpooledByteChannel buffer = context.buffer;
+            final JournalServerAgent agent = context.agent;
             try {
-                while (true) {
-                    if (!running.get()) {
-                        break;
-                    }
-                    SocketChannel channel = serverSocketChannel.accept();
-                    if (channel != null) {
-                        SocketChannelHolder holder = new SocketChannelHolder(
-                                config.getSslConfig().isSecure() ? new SecureSocketChannel(channel, config.getSslConfig()) : channel
-                                , channel.getRemoteAddress()
-                        );
-                        addChannel(holder);
-                        try {
-                            service.submit(new Handler(holder));
-                            LOG.info().$("Server node ").$(uid).$(": Connected ").$(holder.socketAddress).$();
-                        } catch (RejectedExecutionException e) {
-//                            LOG.info("Node %d ignoring connection from %s. Server is shutting down.", uid, holder.socketAddress);
-                            LOG.info().$("Node ").$(uid).$(" ignoring connection from ").$(holder.socketAddress).$(". Server is shutting down.").$();
+                switch (status) {
+                    case READ:
+                        if (!buffer.fill(context.getChannel())) {
+                            return ChannelStatus.EOF;
                         }
-                    }
+
+                        while (buffer.hasInput() && !agent.isClientReady()) {
+                            buffer.mark();
+                            try {
+                                agent.process(buffer);
+                            } catch (JournalNetworkException e) {
+                                if (e.getCause() != SlowReadableChannelException.INSTANCE) {
+                                    throw e;
+                                }
+                                // command is incomplete, retry when rest of it arrives
+                                buffer.reset();
+                                break;
+                            }
+                        }
+                        break;
+                    case WRITE:
+                        agent.dispatch(buffer, clock.getTicks());
+                        break;
+                    default:
+                        LOG.error().$("Unexpected status: ").$(status).$();
+                        return ChannelStatus.DISCONNECTED;
+                }
+
+                if (!buffer.flush(context.getChannel())) {
+                    return ChannelStatus.WRITE;
+                }
+
+                // halting server carries on serving client until it is up to date
+                // and has been told to go away
+                if (agent.isShutdownSent()) {
+                    return ChannelStatus.DISCONNECTED;
                 }
-            } catch (Exception e) {
+
+                if (agent.isClientReady()) {
+                    park(context);
+                    return null;
+                }
+                return ChannelStatus.READ;
+            } catch (JournalDisconnectedChannelException | DisconnectedChannelException e) {
+                return ChannelStatus.DISCONNECTED;
+            } catch (JournalNetworkException | IOException e) {
                 if (running.get()) {
-                    LOG.error().$("Acceptor dying").$(e).$();
+                    LOG.info().$("Server node ").$(uid).$(": Client died ").$(context.socketAddress).$(": ").$(e.getMessage()).$();
                 }
+                return ChannelStatus.DISCONNECTED;
+            } catch (Throwable e) {
+                LOG.error().$("Unhandled exception in server process").$(e).$();
+                return ChannelStatus.DISCONNECTED;
             }
-            LOG.info().$("Acceptor shutdown on ").$(uid).$();
         }
     }
 
-    class Handler implements Runnable {
-
-        private final JournalServerAgent agent;
-        private final SocketChannelHolder holder;
+    /**
+     * Keeps clients that wait for journal updates and hands them back to dispatcher
+     * when there is something to send.
+     */
+    private class AgentWakeupJob extends SynchronizedJob {
+        private final Sequence parkSequence;
+        private final ObjList<AgentContext> parked = new ObjList<>();
 
-        Handler(SocketChannelHolder holder) {
-            this.holder = holder;
-            this.agent = new JournalServerAgent(JournalServer.this, holder.socketAddress, authorizationHandler);
+        AgentWakeupJob(Sequence parkSequence) {
+            this.parkSequence = parkSequence;
         }
 
         @Override
-        public void run() {
-            try {
-                while (true) {
-                    if (!running.get()) {
-                        break;
-                    }
-                    try {
-                        agent.process(holder.byteChannel);
-                    } catch (JournalDisconnectedChannelException e) {
-                        break;
-                    } catch (JournalNetworkException e) {
-                        if (running.get()) {
-                            LOG.info().$("Server node ").$(uid).$(": Client died ").$(holder.socketAddress).$(": ").$(e.getMessage()).$();
-                        }
-                        break;
-                    } catch (Error e) {
-                        LOG.error().$("Unhandled exception in server process").$(e).$();
-                        throw e;
-                    } catch (Throwable e) {
-                        LOG.error().$("Unhandled exception in server process").$(e).$();
-                        break;
-                    }
+        protected boolean runSerially() {
+            boolean useful = false;
+            long cursor;
+            while ((cursor = parkSequence.next()) > -1) {
+                parked.add(parkQueue.get(cursor).context);
+                parkSequence.done(cursor);
+                useful = true;
+            }
+
+            long now = clock.getTicks();
+            for (int i = 0, n = parked.size(); i < n; ) {
+                AgentContext context = parked.getQuick(i);
+                if (context.agent.isDispatchDue(now)) {
+                    parked.remove(i);
+                    n--;
+                    // socket is writable, dispatcher will pass context on to IO job straight away
+                    dispatcher.registerChannel(context, ChannelStatus.WRITE);
+                    useful = true;
+                } else {
+                    i++;
                 }
-            } finally {
-                agent.close();
-                removeChannel(holder);
             }
+            return useful;
         }
     }
 }
@@ -23,6 +23,7 @@ package com.nfsdb.net.ha;
 
 import com.nfsdb.Journal;
 import com.nfsdb.JournalKey;
+import com.nfsdb.ex.JournalConfigurationException;
 import com.nfsdb.ex.JournalDisconnectedChannelException;
 import com.nfsdb.ex.JournalException;
 import com.nfsdb.ex.JournalNetworkException;
@@ -37,6 +38,7 @@ import com.nfsdb.net.ha.config.ServerConfig;
 import com.nfsdb.net.ha.model.Command;
 import com.nfsdb.net.ha.model.IndexedJournalKey;
 import com.nfsdb.net.ha.model.JournalClientState;
+import com.nfsdb.net.ha.model.JournalSubscription;
 import com.nfsdb.net.ha.producer.HugeBufferProducer;
 import com.nfsdb.net.ha.producer.JournalDeltaProducer;
 import com.nfsdb.net.ha.protocol.CommandConsumer;
@@ -65,10 +67,12 @@ public class JournalServerAgent {
     private final CommandConsumer commandConsumer = new CommandConsumer();
     private final CommandProducer commandProducer = new CommandProducer();
     private final SetKeyRequestConsumer setKeyRequestConsumer = new SetKeyRequestConsumer();
+    private final SubscriptionRequestConsumer subscriptionRequestConsumer = new SubscriptionRequestConsumer();
     private final StringResponseProducer stringResponseProducer = new StringResponseProducer();
     private final JournalClientStateConsumer journalClientStateConsumer = new JournalClientStateConsumer();
     private final IntResponseProducer intResponseProducer = new IntResponseProducer();
     private final IntResponseConsumer intResponseConsumer = new IntResponseConsumer();
+    private final LongResponseProducer longResponseProducer = new LongResponseProducer();
     private final ObjList<Journal> readers = new ObjList<>();
     private final ObjList<JournalDeltaProducer> producers = new ObjList<>();
     private final ObjList<JournalClientState> clientStates = new ObjList<>();
@@ -78,7 +82,14 @@ public class JournalServerAgent {
     private final AuthorizationHandler authorizationHandler;
     private final ByteArrayResponseConsumer byteArrayResponseConsumer = new ByteArrayResponseConsumer();
     private final SocketAddress socketAddress;
+    private final long heartbeatFrequency;
     private boolean authorized;
+    private boolean packed = false;
+    private int version = Version.PROTOCOL_VERSION;
+    private boolean multicast = false;
+    private boolean clientReady = false;
+    private boolean shutdownSent = false;
+    private long readyTime;
 
     public JournalServerAgent(JournalServer server, SocketAddress socketAddress, AuthorizationHandler authorizationHandler) {
         this.server = server;
@@ -87,6 +98,7 @@ public class JournalServerAgent {
         this.eventProcessor = new JournalEventProcessor(server.getBridge());
         this.authorizationHandler = authorizationHandler;
         this.authorized = authorizationHandler == null;
+        this.heartbeatFrequency = server.getHeartbeatFrequency();
         readerToWriterMap.zero(JOURNAL_INDEX_NOT_FOUND);
     }
 
@@ -95,22 +107,90 @@ public class JournalServerAgent {
         journalClientStateConsumer.free();
         commandConsumer.free();
         setKeyRequestConsumer.free();
+        subscriptionRequestConsumer.free();
         intResponseConsumer.free();
         byteArrayResponseConsumer.free();
         commandProducer.free();
         stringResponseProducer.free();
         intResponseProducer.free();
+        longResponseProducer.free();
         for (int i = 0, k = producers.size(); i < k; i++) {
             producers.getQuick(i).free();
         }
     }
 
+    /**
+     * Responds to client that has sent CLIENT_READY command. Journals that received updates are sent to
+     * client, otherwise client receives heartbeat or shutdown notification when it is due. This method
+     * does not wait for updates, when there is nothing to send yet client remains in ready state
+     * and dispatch has to be retried later.
+     *
+     * @param channel channel to write response to
+     * @param now     current time in milliseconds
+     * @throws JournalNetworkException when channel is broken
+     */
+    public void dispatch(WritableByteChannel channel, long now) throws JournalNetworkException {
+        if (!clientReady) {
+            return;
+        }
+
+        statsChannel.setDelegate(channel);
+        if (processJournalEvents(statsChannel)) {
+            statsChannel.logStats();
+            clientReady = false;
+        } else if (!server.isRunning()) {
+            commandProducer.write(channel, Command.SERVER_SHUTDOWN);
+            clientReady = false;
+            shutdownSent = true;
+        } else if (now - readyTime >= heartbeatFrequency) {
+            commandProducer.write(channel, Command.SERVER_HEARTBEAT);
+            if (multicast) {
+                sendMulticastTxns(channel);
+            }
+            clientReady = false;
+        }
+    }
+
+    public boolean isClientReady() {
+        return clientReady;
+    }
+
+    public boolean isShutdownSent() {
+        return shutdownSent;
+    }
+
+    /**
+     * Checks if waiting client has to be dispatched, either because journals received updates
+     * or because heartbeat is due.
+     *
+     * @param now current time in milliseconds
+     * @return true if dispatch would send something to client
+     */
+    public boolean isDispatchDue(long now) {
+        return clientReady && (!server.isRunning() || now - readyTime >= heartbeatFrequency || eventProcessor.hasEvents());
+    }
+
     public void process(ByteChannel channel) throws JournalNetworkException {
         commandConsumer.read(channel);
         switch (commandConsumer.getValue()) {
             case SET_KEY_CMD:
                 setClientKey(channel);
                 break;
+            case SUBSCRIPTION_CMD:
+                subscriptionRequestConsumer.read(channel);
+                setSubscription(channel, subscriptionRequestConsumer.getValue());
+                break;
+            case MULTICAST_CMD:
+                if (!server.isDeltaMultiCastEnabled()) {
+                    error(channel, "Delta multicast is not enabled");
+                } else if (version < Version.PROTOCOL_VERSION) {
+                    // multicast deltas are written in current format for all clients
+                    error(channel, "Delta multicast requires protocol version " + Version.PROTOCOL_VERSION);
+                } else {
+                    multicast = true;
+                    ok(channel);
+                }
+                break;
             case DELTA_REQUEST_CMD:
                 checkAuthorized(channel);
                 LOG.debug().$(socketAddress).$(" DeltaRequest command received").$();
@@ -119,9 +199,9 @@ public class JournalServerAgent {
                 break;
             case CLIENT_READY_CMD:
                 checkAuthorized(channel);
-                statsChannel.setDelegate(channel);
-                dispatch(statsChannel);
-                statsChannel.logStats();
+                clientReady = true;
+                readyTime = System.currentTimeMillis();
+                dispatch(channel, readyTime);
                 break;
             case CLIENT_DISCONNECT:
                 throw new JournalDisconnectedChannelException();
@@ -181,7 +261,9 @@ public class JournalServerAgent {
     }
 
     private void checkProtocolVersion(ByteChannel channel, int version) throws JournalNetworkException {
-        if (version == Version.PROTOCOL_VERSION) {
+        if (version >= Version.MIN_PROTOCOL_VERSION && version <= Version.PROTOCOL_VERSION) {
+            this.packed = version >= Version.PACKED_PROTOCOL_VERSION;
+            this.version = version;
             ok(channel);
         } else {
             error(channel, "Unsupported protocol version. Client: " + version + ", Server: " + Version.PROTOCOL_VERSION);
@@ -196,13 +278,9 @@ public class JournalServerAgent {
 
         JournalDeltaProducer producer = producers.getQuiet(index);
         if (producer == null) {
-            producers.extendAndSet(index, new JournalDeltaProducer(journal));
-        }
-    }
-
-    private void dispatch(WritableByteChannel channel) throws JournalNetworkException {
-        if (!processJournalEvents(channel, false)) {
-            processJournalEvents(channel, true);
+            producer = new JournalDeltaProducer(journal, packed);
+            producer.setVersion(version);
+            producers.extendAndSet(index, producer);
         }
     }
 
@@ -227,8 +305,9 @@ public class JournalServerAgent {
 
 
         try {
-            boolean dataSent = dispatchProducer(channel, state.getTxn(), state.getTxPin(), getProducer(journalIndex), journalIndex);
+            boolean dataSent = dispatchProducer(channel, state, getProducer(journalIndex), journalIndex);
             if (dataSent) {
+                // client sends its state again when it wants next delta over TCP
                 state.invalidateClientState();
             } else {
                 state.setClientStateSyncTime(time);
@@ -242,12 +321,16 @@ public class JournalServerAgent {
 
     private boolean dispatchProducer(
             WritableByteChannel channel
-            , long txn
-            , long txPin
+            , JournalClientState state
             , JournalDeltaProducer journalDeltaProducer
             , int index) throws JournalNetworkException, JournalException {
 
-        journalDeltaProducer.configure(txn, txPin);
+        if (state.isDeltaConfigured()) {
+            state.setDeltaConfigured(false);
+        } else {
+            journalDeltaProducer.configure(state.getTxn(), state.getTxPin());
+        }
+
         if (journalDeltaProducer.hasContent()) {
             LOG.debug().$(socketAddress).$(" Sending data").$();
             commandProducer.write(channel, Command.JOURNAL_DELTA_CMD);
@@ -276,36 +359,26 @@ public class JournalServerAgent {
         stringResponseProducer.write(channel, "OK");
     }
 
-    private boolean processJournalEvents(final WritableByteChannel channel, boolean blocking) throws JournalNetworkException {
+    private boolean processJournalEvents(final WritableByteChannel channel) throws JournalNetworkException {
 
         handler.setChannel(channel);
-        boolean dataSent = false;
-        if (eventProcessor.process(handler, blocking)) {
-            dataSent = handler.isDataSent();
-
-            // handler would have dispatched those journals, which received updates
-            // this loop does two things:
-            // 1. attempts to dispatch0 journals that didn't receive updates, dispatch0 method would check timeout and decide.
-            // 2. reset writer update received status
-            for (int i = 0, k = clientStates.size(); i < k; i++) {
-                JournalClientState state = clientStates.getQuick(i);
-                if (state.isWaitingOnEvents()) {
-                    dataSent = dispatch0(channel, i) || dataSent;
-                }
-                state.setWaitingOnEvents(true);
+        eventProcessor.process(handler, false);
+        boolean dataSent = handler.isDataSent();
+
+        // handler would have dispatched those journals, which received updates
+        // this loop does two things:
+        // 1. attempts to dispatch0 journals that didn't receive updates, dispatch0 method would check timeout and decide.
+        // 2. reset writer update received status
+        for (int i = 0, k = clientStates.size(); i < k; i++) {
+            JournalClientState state = clientStates.getQuick(i);
+            if (state.isWaitingOnEvents()) {
+                dataSent = dispatch0(channel, i) || dataSent;
             }
+            state.setWaitingOnEvents(true);
+        }
 
-            if (dataSent) {
-                commandProducer.write(channel, Command.SERVER_READY_CMD);
-            } else if (blocking) {
-                LOG.info().$(socketAddress).$(" Client appears to be refusing new data from server, corrupt client").$();
-            }
-        } else {
-            if (server.isRunning()) {
-                commandProducer.write(channel, Command.SERVER_HEARTBEAT);
-            } else {
-                commandProducer.write(channel, Command.SERVER_SHUTDOWN);
-            }
+        if (dataSent) {
+            commandProducer.write(channel, Command.SERVER_READY_CMD);
         }
         return dataSent;
     }
@@ -317,6 +390,19 @@ public class JournalServerAgent {
     }
 
     @SuppressWarnings("unchecked")
+    /**
+     * Tells client txn each of its journals has been multicast up to. Multicast delta can be lost
+     * without client noticing when no other delta follows it, heartbeat is how client finds out.
+     */
+    private void sendMulticastTxns(WritableByteChannel channel) throws JournalNetworkException {
+        int n = readers.size();
+        intResponseProducer.write(channel, n);
+        for (int i = 0; i < n; i++) {
+            int writerIndex = readerToWriterMap.getQuiet(i);
+            longResponseProducer.write(channel, writerIndex == JOURNAL_INDEX_NOT_FOUND ? -1 : server.getMulticastTxn(writerIndex));
+        }
+    }
+
     private void setClientKey(ByteChannel channel) throws JournalNetworkException {
         LOG.debug().$(socketAddress).$(" SetKey command received").$();
         setKeyRequestConsumer.read(channel);
@@ -341,6 +427,28 @@ public class JournalServerAgent {
         }
     }
 
+    private void setSubscription(WritableByteChannel channel, JournalSubscription subscription) throws JournalNetworkException {
+        int index = subscription.getIndex();
+        Journal journal = readers.getQuiet(index);
+
+        if (journal == null) {
+            error(channel, "Journal index does not match key request");
+        } else {
+            try {
+                JournalDeltaProducer producer = new JournalDeltaProducer(journal, subscription.isPacked(), subscription.getFilter());
+                producer.setVersion(version);
+                JournalDeltaProducer old = producers.getQuiet(index);
+                if (old != null) {
+                    old.free();
+                }
+                producers.extendAndSet(index, producer);
+                ok(channel);
+            } catch (JournalConfigurationException e) {
+                error(channel, "Invalid subscription for " + journal.getLocation() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
     private void storeDeltaRequest(WritableByteChannel channel, JournalClientState request) throws JournalNetworkException {
         int index = request.getJournalIndex();
 
@@ -353,10 +461,21 @@ public class JournalServerAgent {
                 clientStates.extendAndSet(index, r);
             }
             request.deepCopy(r);
-            r.invalidateClientState();
+            r.validateClientState();
             r.setClientStateSyncTime(0);
             r.setWaitingOnEvents(true);
 
+            // client state has to be compared with journal as it is when client is acknowledged,
+            // commits made after that can bring server to the same txn and hide that client is ahead
+            JournalDeltaProducer producer = getProducer(index);
+            try {
+                producer.configure(r.getTxn(), r.getTxPin());
+                r.setDeltaConfigured(producer.hasContent());
+            } catch (JournalException e) {
+                LOG.error().$(socketAddress).$(" Cannot compare client state of ").$(index).$(e).$();
+                r.setDeltaConfigured(false);
+            }
+
             ok(channel);
         }
     }
@@ -0,0 +1,303 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha;
+
+import com.nfsdb.ex.DisconnectedChannelException;
+import com.nfsdb.ex.SlowReadableChannelException;
+import com.nfsdb.ex.SlowWritableChannelException;
+import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.net.NetworkChannel;
+import com.nfsdb.net.ZeroCopyChannel;
+import com.nfsdb.std.LongList;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.store.AbstractColumn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffers both directions of non-blocking connection, so that blocking protocol
+ * producers and consumers can be used on it. Reads are served from data received
+ * so far and fail with {@link SlowReadableChannelException} when message is incomplete,
+ * in which case caller resets to the mark and retries when more data arrives.
+ * Writes are accumulated in memory until they can be flushed to socket. When
+ * zero copy is enabled large column ranges are not copied, but recorded by reference
+ * and sent from file when their turn comes. Output spooled for slow client is bounded,
+ * once it exceeds spool limit writer waits for socket to drain it.
+ */
+class SpooledByteChannel implements ByteChannel, ZeroCopyChannel {
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int RETAINED_CAPACITY = 1024 * 1024;
+    // smaller ranges are cheaper to copy than to send with extra system call
+    private static final int ZERO_COPY_THRESHOLD = 32 * 1024;
+    // output spooled before writer has to wait for socket
+    private static final int SPOOL_LIMIT = 16 * 1024 * 1024;
+    private final NetworkChannel channel;
+    private final boolean zeroCopy;
+    private final long drainTimeout;
+    // column ranges queued for transfer and triplets of (out position, column offset, length) for each of them
+    private final ObjList<AbstractColumn> columns = new ObjList<>();
+    private final LongList regions = new LongList();
+    private ByteBuffer in;
+    private ByteBuffer out;
+    private int flushed = 0;
+    private int mark = 0;
+    private int region = 0;
+    private long transferred = 0;
+
+    /**
+     * @param channel      socket output is flushed to
+     * @param zeroCopy     true when channel can send column ranges straight from file
+     * @param drainTimeout milliseconds writer waits for socket to drain spool before giving up on client
+     */
+    SpooledByteChannel(NetworkChannel channel, boolean zeroCopy, long drainTimeout) {
+        this.channel = channel;
+        this.zeroCopy = zeroCopy;
+        this.drainTimeout = drainTimeout;
+        this.in = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+        this.in.limit(0);
+        this.out = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return in != null;
+    }
+
+    @Override
+    public void close() {
+        in = ByteBuffers.release(in);
+        out = ByteBuffers.release(out);
+        columns.clear();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!in.hasRemaining()) {
+            throw SlowReadableChannelException.INSTANCE;
+        }
+        int p = dst.position();
+        ByteBuffers.copy(in, dst);
+        return dst.position() - p;
+    }
+
+    @Override
+    public boolean transfer(AbstractColumn column, long offset, long len) {
+        if (!zeroCopy || len < ZERO_COPY_THRESHOLD) {
+            return false;
+        }
+        columns.add(column);
+        regions.add(out.position());
+        regions.add(offset);
+        regions.add(len);
+        return true;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int len = src.remaining();
+        if (out.position() + (long) len > SPOOL_LIMIT && hasOutput()) {
+            awaitDrain();
+        }
+
+        if (out.remaining() < len) {
+            out = grow(out, out.position() + (long) len);
+        }
+        ByteBuffers.copy(src, out);
+        return len;
+    }
+
+    /**
+     * Reads everything socket has to offer.
+     *
+     * @param channel non-blocking channel
+     * @return false when peer has closed channel
+     * @throws IOException when channel is broken
+     */
+    boolean fill(ReadableByteChannel channel) throws IOException {
+        in.compact();
+        try {
+            while (true) {
+                if (!in.hasRemaining()) {
+                    in.flip();
+                    in = grow(in, in.capacity() * 2L);
+                }
+
+                int n;
+                try {
+                    n = channel.read(in);
+                } catch (SlowReadableChannelException e) {
+                    return true;
+                }
+
+                if (n == 0) {
+                    return true;
+                }
+
+                if (n < 0) {
+                    return false;
+                }
+            }
+        } finally {
+            in.flip();
+        }
+    }
+
+    /**
+     * Writes buffered output to socket, sending queued column ranges straight from their files.
+     *
+     * @param channel non-blocking channel
+     * @return true when all output has been written
+     * @throws IOException when channel is broken
+     */
+    boolean flush(NetworkChannel channel) throws IOException {
+        ByteBuffer b = out.duplicate();
+        b.position(flushed);
+        try {
+            for (int k = columns.size(); region < k; region++) {
+                int i = region * 3;
+                b.limit((int) regions.getQuick(i));
+                if (!drain(channel, b)) {
+                    return false;
+                }
+
+                AbstractColumn column = columns.getQuick(region);
+                long offset = regions.getQuick(i + 1);
+                long len = regions.getQuick(i + 2);
+                while (transferred < len) {
+                    long n = column.transferTo(channel.getFd(), offset + transferred, len - transferred);
+
+                    if (n == 0) {
+                        return false;
+                    }
+
+                    if (n < 0) {
+                        throw DisconnectedChannelException.INSTANCE;
+                    }
+                    transferred += n;
+                }
+                transferred = 0;
+            }
+
+            b.limit(out.position());
+            if (!drain(channel, b)) {
+                return false;
+            }
+        } finally {
+            flushed = b.position();
+        }
+
+        flushed = 0;
+        region = 0;
+        columns.clear();
+        regions.clear();
+        if (out.capacity() > RETAINED_CAPACITY) {
+            ByteBuffers.release(out);
+            out = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+        } else {
+            out.clear();
+        }
+        return true;
+    }
+
+    boolean hasInput() {
+        return in.hasRemaining();
+    }
+
+    boolean hasOutput() {
+        return out.position() > 0 || columns.size() > 0;
+    }
+
+    void mark() {
+        mark = in.position();
+    }
+
+    void reset() {
+        in.position(mark);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buf, long minCapacity) throws IOException {
+        if (minCapacity > Integer.MAX_VALUE) {
+            throw new IOException("Spool capacity exceeded: " + minCapacity);
+        }
+
+        long capacity = buf.capacity();
+        while (capacity < minCapacity) {
+            capacity *= 2;
+        }
+        ByteBuffer b = ByteBuffer.allocateDirect((int) Math.min(capacity, Integer.MAX_VALUE));
+        buf.flip();
+        ByteBuffers.copy(buf, b);
+        ByteBuffers.release(buf);
+        return b;
+    }
+
+    private static boolean drain(WritableByteChannel channel, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            int n;
+            try {
+                n = channel.write(b);
+            } catch (SlowWritableChannelException e) {
+                return false;
+            }
+
+            if (n == 0) {
+                return false;
+            }
+
+            if (n < 0) {
+                throw DisconnectedChannelException.INSTANCE;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Flushes spooled output to socket, waiting for slow client to take it. Client that
+     * does not take any of spooled output within drain timeout is given up on.
+     */
+    private void awaitDrain() throws IOException {
+        long deadline = System.currentTimeMillis() + drainTimeout;
+        while (true) {
+            int f = flushed;
+            int r = region;
+            long t = transferred;
+
+            if (flush(channel)) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (f != flushed || r != region || t != transferred) {
+                deadline = now + drainTimeout;
+            } else if (now > deadline) {
+                throw new IOException("Client has not accepted spooled output for " + drainTimeout + "ms");
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -23,13 +23,15 @@ package com.nfsdb.net.ha;
 
 import com.nfsdb.log.Log;
 import com.nfsdb.log.LogFactory;
+import com.nfsdb.net.ZeroCopyChannel;
+import com.nfsdb.store.AbstractColumn;
 
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 
-class StatsCollectingWritableByteChannel implements WritableByteChannel {
+class StatsCollectingWritableByteChannel implements ZeroCopyChannel {
 
     private final static Log LOG = LogFactory.getLog(StatsCollectingWritableByteChannel.class);
 
@@ -67,6 +69,16 @@ class StatsCollectingWritableByteChannel implements WritableByteChannel {
         this.callCount = 0;
     }
 
+    @Override
+    public boolean transfer(AbstractColumn column, long offset, long len) {
+        if (delegate instanceof ZeroCopyChannel && ((ZeroCopyChannel) delegate).transfer(column, offset, len)) {
+            callCount++;
+            byteCount += len;
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public int write(ByteBuffer src) throws IOException {
         callCount++;
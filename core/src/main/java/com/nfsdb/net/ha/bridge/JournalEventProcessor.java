@@ -40,6 +40,10 @@ public class JournalEventProcessor {
         return sequence;
     }
 
+    public boolean hasEvents() {
+        return sequence.next() > -1;
+    }
+
     @SuppressFBWarnings("EXS_EXCEPTION_SOFTENING_RETURN_FALSE")
     public boolean process(JournalEventHandler handler, boolean blocking) {
         try {
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.comsumer;
+
+import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.net.ha.AbstractChannelConsumer;
+import com.nfsdb.store.FixedColumn;
+import com.nfsdb.store.VariableColumn;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Consumes values of variable width column sent by {@link com.nfsdb.net.ha.producer.FilteredColumnDeltaProducer}.
+ * Values are appended to data column as they are, their offsets are rebased to end of data column.
+ */
+public class FilteredColumnDeltaConsumer extends AbstractChannelConsumer {
+
+    private static final int OFFSET_BUFFER_SIZE = 8 * 1024;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(OFFSET_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final long address = ByteBuffers.getAddress(buffer);
+    private final VariableColumn column;
+    private final FixedColumnDeltaConsumer dataConsumer;
+    private long targetOffset = -1;
+
+    public FilteredColumnDeltaConsumer(VariableColumn column) {
+        this.column = column;
+        this.dataConsumer = new FixedColumnDeltaConsumer(column);
+    }
+
+    @Override
+    public void free() {
+        dataConsumer.free();
+        ByteBuffers.release(buffer);
+    }
+
+    @Override
+    protected void commit() {
+        if (targetOffset != -1) {
+            column.getIndexColumn().preCommit(targetOffset);
+        }
+    }
+
+    @Override
+    protected void doRead(ReadableByteChannel channel) throws JournalNetworkException {
+        // data column is not committed until partition is, so this is where received values start
+        long base = column.getOffset();
+        dataConsumer.read(channel);
+
+        buffer.position(0).limit(8);
+        ByteBuffers.copy(channel, buffer);
+        long len = Unsafe.getUnsafe().getLong(address);
+
+        FixedColumn indexColumn = column.getIndexColumn();
+        long offset = indexColumn.getOffset();
+        while (len > 0) {
+            int n = (int) Math.min(len, OFFSET_BUFFER_SIZE);
+            buffer.position(0).limit(n);
+            ByteBuffers.copy(channel, buffer);
+            for (int p = 0; p < n; p += 8) {
+                Unsafe.getUnsafe().putLong(address + p, base + Unsafe.getUnsafe().getLong(address + p));
+            }
+
+            buffer.position(0);
+            while (buffer.hasRemaining()) {
+                int sz = buffer.remaining();
+                ByteBuffers.copy(buffer, indexColumn.getBuffer(offset, 1));
+                offset += sz - buffer.remaining();
+            }
+            len -= n;
+        }
+        targetOffset = offset;
+    }
+}
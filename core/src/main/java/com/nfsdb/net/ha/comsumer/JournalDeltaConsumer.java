@@ -41,6 +41,10 @@ public class JournalDeltaConsumer extends AbstractChannelConsumer {
     private final ObjList<PartitionDeltaConsumer> partitionDeltaConsumers = new ObjList<>();
     private JournalServerState state;
     private PartitionDeltaConsumer lagPartitionDeltaConsumer;
+    private boolean packed = false;
+    private boolean lagPacked = false;
+    private boolean filtered = false;
+    private boolean lagFiltered = false;
 
     public JournalDeltaConsumer(JournalWriter journal) {
         this.journal = journal;
@@ -59,6 +63,35 @@ public class JournalDeltaConsumer extends AbstractChannelConsumer {
         }
     }
 
+    /**
+     * Sets format of column deltas agreed with server. Format can change when client reconnects
+     * to another server.
+     *
+     * @param packed true when server packs column deltas
+     */
+    public void setPacked(boolean packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * Sets protocol version agreed with server. Version can change when client reconnects
+     * to another server.
+     *
+     * @param version protocol version
+     */
+    public void setVersion(int version) {
+        journalServerStateConsumer.setVersion(version);
+    }
+
+    /**
+     * Sets whether server sends only rows client has subscribed to.
+     *
+     * @param filtered true when subscription filters rows
+     */
+    public void setFiltered(boolean filtered) {
+        this.filtered = filtered;
+    }
+
     @Override
     protected void commit() throws JournalNetworkException {
         try {
@@ -89,6 +122,9 @@ public class JournalDeltaConsumer extends AbstractChannelConsumer {
             }
 
             journal.beginTx();
+            if (state.getDropBefore() != 0) {
+                journal.dropPartitions(state.getDropBefore());
+            }
             createPartitions(state);
 
             if (state.isSymbolTables()) {
@@ -110,8 +146,15 @@ public class JournalDeltaConsumer extends AbstractChannelConsumer {
                 if (lagPartitionDeltaConsumer == null || !journal.hasIrregularPartition()
                         || !state.getLagPartitionName().equals(journal.getIrregularPartition().getName())) {
                     Partition temp = journal.createTempPartition(state.getLagPartitionName());
-                    lagPartitionDeltaConsumer = new PartitionDeltaConsumer(temp.open());
+                    lagPartitionDeltaConsumer = new PartitionDeltaConsumer(temp.open(), packed, filtered);
+                    lagPacked = packed;
+                    lagFiltered = filtered;
                     journal.setIrregularPartition(temp);
+                } else if (lagPacked != packed || lagFiltered != filtered) {
+                    lagPartitionDeltaConsumer.free();
+                    lagPartitionDeltaConsumer = new PartitionDeltaConsumer(journal.getIrregularPartition().open(), packed, filtered);
+                    lagPacked = packed;
+                    lagFiltered = filtered;
                 }
                 lagPartitionDeltaConsumer.read(channel);
             }
@@ -127,6 +170,9 @@ public class JournalDeltaConsumer extends AbstractChannelConsumer {
             if (partitionMetadata.getPartitionIndex() > pc) {
                 Interval interval = new Interval(partitionMetadata.getIntervalEnd(), partitionMetadata.getIntervalStart());
                 journal.createPartition(interval, partitionMetadata.getPartitionIndex());
+            } else if (partitionMetadata.isRewritten()) {
+                // out of order rows have been merged into partition on server, it is sent in full
+                journal.rewritePartition(partitionMetadata.getPartitionIndex());
             }
         }
     }
@@ -134,7 +180,7 @@ public class JournalDeltaConsumer extends AbstractChannelConsumer {
     private PartitionDeltaConsumer getPartitionDeltaConsumer(int partitionIndex) throws JournalException {
         PartitionDeltaConsumer consumer = partitionDeltaConsumers.getQuiet(partitionIndex);
         if (consumer == null) {
-            consumer = new PartitionDeltaConsumer(journal.getPartition(partitionIndex, true));
+            consumer = new PartitionDeltaConsumer(journal.getPartition(partitionIndex, true), packed, filtered);
             partitionDeltaConsumers.extendAndSet(partitionIndex, consumer);
         }
 
@@ -147,7 +193,10 @@ public class JournalDeltaConsumer extends AbstractChannelConsumer {
             if (c != null) {
                 c.free();
             }
-            journal.getPartition(i, false).close();
+            // partitions could have been dropped since last read
+            if (i < journal.nonLagPartitionCount()) {
+                journal.getPartition(i, false).close();
+            }
         }
     }
 }
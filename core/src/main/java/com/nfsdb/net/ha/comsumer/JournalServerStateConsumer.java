@@ -23,12 +23,23 @@ package com.nfsdb.net.ha.comsumer;
 
 import com.nfsdb.net.ha.AbstractMutableObjectConsumer;
 import com.nfsdb.net.ha.model.JournalServerState;
+import com.nfsdb.net.ha.protocol.Version;
 
 import java.nio.ByteBuffer;
 
 public class JournalServerStateConsumer extends AbstractMutableObjectConsumer<JournalServerState> {
 
     private char lagPartitionNameChars[];
+    private int version = Version.PROTOCOL_VERSION;
+
+    /**
+     * Sets protocol version agreed with server, state is read in format server writes it.
+     *
+     * @param version protocol version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
 
     @Override
     protected JournalServerState newInstance() {
@@ -45,7 +56,7 @@ public class JournalServerStateConsumer extends AbstractMutableObjectConsumer<Jo
 
         obj.setNonLagPartitionCount(partitionCount);
         for (int i = 0; i < partitionCount; i++) {
-            obj.addPartitionMetadata(buffer.getInt(), buffer.getLong(), buffer.getLong(), buffer.get());
+            obj.addPartitionMetadata(buffer.getInt(), buffer.getLong(), buffer.getLong(), buffer.get(), version >= Version.REWRITE_PROTOCOL_VERSION && buffer.get() == 1);
         }
 
         int len = buffer.getChar();
@@ -62,5 +73,8 @@ public class JournalServerStateConsumer extends AbstractMutableObjectConsumer<Jo
         }
 
         obj.setLagPartitionMetadata(buffer.getInt(), buffer.getLong(), buffer.getLong(), buffer.get());
+        if (version >= Version.RETENTION_PROTOCOL_VERSION) {
+            obj.setDropBefore(buffer.getLong());
+        }
     }
 }
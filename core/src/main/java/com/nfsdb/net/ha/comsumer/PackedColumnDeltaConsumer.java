@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.comsumer;
+
+import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.net.ha.AbstractChannelConsumer;
+import com.nfsdb.net.ha.protocol.ColumnCodec;
+import com.nfsdb.store.AbstractColumn;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads column delta sent by {@link com.nfsdb.net.ha.producer.PackedColumnDeltaProducer} and decodes
+ * values straight into column memory.
+ */
+public class PackedColumnDeltaConsumer extends AbstractChannelConsumer {
+
+    private final ByteBuffer header = ByteBuffer.allocateDirect(8).order(ByteOrder.LITTLE_ENDIAN);
+    private final long headerAddress = ByteBuffers.getAddress(header);
+    private final AbstractColumn column;
+    private final ColumnCodec codec;
+    private final int width;
+    private ByteBuffer block;
+    private long targetOffset = -1;
+
+    public PackedColumnDeltaConsumer(AbstractColumn column, ColumnCodec codec) {
+        this.column = column;
+        this.codec = codec;
+        this.width = codec.width();
+    }
+
+    public void free() {
+        ByteBuffers.release(header);
+        block = ByteBuffers.release(block);
+    }
+
+    @Override
+    protected void commit() {
+        column.preCommit(targetOffset);
+    }
+
+    @Override
+    protected void doRead(ReadableByteChannel channel) throws JournalNetworkException {
+        header.position(0);
+        ByteBuffers.copy(channel, header);
+        long offset = column.getOffset();
+        targetOffset = offset + Unsafe.getUnsafe().getLong(headerAddress);
+        codec.reset();
+
+        while (offset < targetOffset) {
+            header.position(0).limit(4);
+            ByteBuffers.copy(channel, header);
+            header.clear();
+            int len = Unsafe.getUnsafe().getInt(headerAddress);
+
+            if (block == null || block.capacity() < len) {
+                ByteBuffers.release(block);
+                block = ByteBuffer.allocateDirect(len);
+            }
+            block.position(0).limit(len);
+            ByteBuffers.copy(channel, block);
+
+            long p = ByteBuffers.getAddress(block);
+            long hi = Math.min(offset + ColumnCodec.BLOCK_SIZE, targetOffset);
+            while (offset < hi) {
+                ByteBuffer b = column.getBuffer(offset, width);
+                int count = (int) (Math.min(b.remaining(), hi - offset) / width);
+                p = codec.decode(p, count, ByteBuffers.getAddress(b) + b.position());
+                offset += count * width;
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@ import com.nfsdb.Journal;
 import com.nfsdb.Partition;
 import com.nfsdb.ex.JournalNetworkException;
 import com.nfsdb.net.ha.ChannelConsumer;
+import com.nfsdb.net.ha.protocol.ColumnCodec;
 import com.nfsdb.store.AbstractColumn;
 import com.nfsdb.store.VariableColumn;
 
@@ -34,17 +35,35 @@ public class PartitionDeltaConsumer extends ChannelConsumerGroup {
     private long oldSize;
 
     public PartitionDeltaConsumer(Partition partition) {
-        super(getColumnConsumers(partition));
+        this(partition, false);
+    }
+
+    public PartitionDeltaConsumer(Partition partition, boolean packed) {
+        this(partition, packed, false);
+    }
+
+    /**
+     * @param partition partition to append deltas to
+     * @param packed    true when server packs column deltas
+     * @param filtered  true when server sends only rows client has subscribed to
+     */
+    public PartitionDeltaConsumer(Partition partition, boolean packed, boolean filtered) {
+        super(getColumnConsumers(partition, packed, filtered));
         this.partition = partition;
         this.oldSize = partition.size();
     }
 
-    private static ChannelConsumer[] getColumnConsumers(Partition partition) {
+    private static ChannelConsumer[] getColumnConsumers(Partition partition, boolean packed, boolean filtered) {
         ChannelConsumer consumers[] = new ChannelConsumer[partition.getJournal().getMetadata().getColumnCount()];
         for (int i = 0; i < consumers.length; i++) {
             AbstractColumn column = partition.getAbstractColumn(i);
-            if (column instanceof VariableColumn) {
+            ColumnCodec codec;
+            if (filtered) {
+                consumers[i] = column instanceof VariableColumn ? new FilteredColumnDeltaConsumer((VariableColumn) column) : new FixedColumnDeltaConsumer(column);
+            } else if (column instanceof VariableColumn) {
                 consumers[i] = new VariableColumnDeltaConsumer((VariableColumn) column);
+            } else if (packed && (codec = ColumnCodec.forType(partition.getJournal().getMetadata().getColumnQuick(i).type)) != null) {
+                consumers[i] = new PackedColumnDeltaConsumer(column, codec);
             } else {
                 consumers[i] = new FixedColumnDeltaConsumer(column);
             }
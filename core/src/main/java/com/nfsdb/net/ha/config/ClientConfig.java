@@ -25,6 +25,7 @@ import com.nfsdb.ex.JournalNetworkException;
 import com.nfsdb.log.Log;
 import com.nfsdb.log.LogFactory;
 import com.nfsdb.net.ha.mcast.OnDemandAddressPoller;
+import com.nfsdb.net.ha.protocol.Version;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.IOException;
@@ -47,6 +48,8 @@ public class ClientConfig extends NetworkConfig {
     private boolean tcpNoDelay = true;
     private int linger = 0;
     private long connectionTimeout = 500; //millis
+    private boolean packedDeltas = true;
+    private int protocolVersion = Version.PROTOCOL_VERSION;
 
     public ClientConfig() {
         this(null);
@@ -68,6 +71,31 @@ public class ClientConfig extends NetworkConfig {
         this.connectionTimeout = connectionTimeout;
     }
 
+    /**
+     * Column deltas are packed by default to save bandwidth. Clients on fast network can turn packing
+     * off, which saves CPU on both ends and lets server send column content straight from files.
+     */
+    public boolean isPackedDeltas() {
+        return packedDeltas;
+    }
+
+    public void setPackedDeltas(boolean packedDeltas) {
+        this.packedDeltas = packedDeltas;
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Highest protocol version client offers to server. Client falls back to older versions
+     * until server accepts one, so this only has to be lowered to keep client on older format
+     * while cluster is being upgraded.
+     */
+    public void setProtocolVersion(int protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
     public ClientReconnectPolicy getReconnectPolicy() {
         return reconnectPolicy;
     }
@@ -76,6 +104,10 @@ public class ClientConfig extends NetworkConfig {
         return openDatagramChannel(getMultiCastInterface());
     }
 
+    public DatagramChannelWrapper openDeltaDatagramChannel() throws JournalNetworkException {
+        return openDeltaDatagramChannel(getMultiCastInterface());
+    }
+
     @SuppressFBWarnings({"LII_LIST_INDEXED_ITERATING"})
     public SocketChannel openSocketChannel() throws JournalNetworkException {
         if (getNodeCount() == 0) {
@@ -38,6 +38,7 @@ public class NetworkConfig {
     private static final String DEFAULT_MULTICAST_ADDRESS_IPV6_1 = "FF02:231::4500";
 
     private static final int DEFAULT_MULTICAST_PORT = 4446;
+    private static final int DEFAULT_DELTA_MULTICAST_PORT = 4447;
     private static final int DEFAULT_SO_RCVBUF = 1024 * 1024;
     private final List<ServerNode> nodes2 = new ArrayList<>();
     private final IntIntHashMap nodeLookup = new IntIntHashMap();
@@ -46,7 +47,9 @@ public class NetworkConfig {
     private InetAddress multiCastAddress;
     private int multiCastPort = DEFAULT_MULTICAST_PORT;
     private int soRcvBuf = DEFAULT_SO_RCVBUF;
+    private int deltaMultiCastPort = DEFAULT_DELTA_MULTICAST_PORT;
     private boolean enableMultiCast = true;
+    private boolean enableDeltaMultiCast = false;
     private String ifName = null;
     private NetworkInterface defaultInterface = null;
 
@@ -84,6 +87,24 @@ public class NetworkConfig {
         return sslConfig;
     }
 
+    public boolean isDeltaMultiCastEnabled() {
+        return enableDeltaMultiCast;
+    }
+
+    /**
+     * Server multicasts column deltas of each committed transaction once for all replicas to
+     * receive, instead of sending them to every replica separately. Clients that enable
+     * delta multicast apply these deltas and use their TCP connection only to catch up when
+     * they miss datagrams. Deltas are sent to the same multicast group as server address
+     * announcements, but on separate port. Client commit listeners of multicast journals
+     * are called from receiver thread.
+     *
+     * @param enableDeltaMultiCast true to replicate over multicast
+     */
+    public void setEnableDeltaMultiCast(boolean enableDeltaMultiCast) {
+        this.enableDeltaMultiCast = enableDeltaMultiCast;
+    }
+
     public boolean isMultiCastEnabled() {
         return enableMultiCast;
     }
@@ -159,6 +180,10 @@ public class NetworkConfig {
         this.multiCastAddress = multiCastAddress;
     }
 
+    public void setDeltaMultiCastPort(int deltaMultiCastPort) {
+        this.deltaMultiCastPort = deltaMultiCastPort;
+    }
+
     private int getMultiCastPort() {
         return multiCastPort;
     }
@@ -171,7 +196,7 @@ public class NetworkConfig {
         return nodes2;
     }
 
-    int getSoRcvBuf() {
+    public int getSoRcvBuf() {
         return soRcvBuf;
     }
 
@@ -180,6 +205,24 @@ public class NetworkConfig {
     }
 
     DatagramChannelWrapper openDatagramChannel(NetworkInterface ifn) throws JournalNetworkException {
+        return openDatagramChannel(ifn, getMultiCastPort());
+    }
+
+    DatagramChannelWrapper openDeltaDatagramChannel(NetworkInterface ifn) throws JournalNetworkException {
+        DatagramChannelWrapper dcw = openDatagramChannel(ifn, deltaMultiCastPort);
+        try {
+            dcw.getChannel().setOption(StandardSocketOptions.SO_RCVBUF, getSoRcvBuf());
+        } catch (IOException e) {
+            try {
+                dcw.close();
+            } catch (IOException ignore) {
+            }
+            throw new JournalNetworkException(e);
+        }
+        return dcw;
+    }
+
+    private DatagramChannelWrapper openDatagramChannel(NetworkInterface ifn, int port) throws JournalNetworkException {
         InetAddress address = getMultiCastAddress();
         if (address == null) {
             address = getDefaultMultiCastAddress(ifn);
@@ -190,10 +233,10 @@ public class NetworkConfig {
             DatagramChannel dc = DatagramChannel.open(family)
                     .setOption(StandardSocketOptions.SO_REUSEADDR, Boolean.TRUE)
                     .setOption(StandardSocketOptions.IP_MULTICAST_IF, ifn)
-                    .bind(new InetSocketAddress(getMultiCastPort()));
+                    .bind(new InetSocketAddress(port));
 
             dc.join(address, ifn);
-            return new DatagramChannelWrapper(dc, new InetSocketAddress(address, getMultiCastPort()));
+            return new DatagramChannelWrapper(dc, new InetSocketAddress(address, port));
         } catch (IOException e) {
             throw new JournalNetworkException(e);
         }
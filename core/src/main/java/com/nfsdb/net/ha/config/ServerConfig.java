@@ -36,9 +36,15 @@ import java.util.concurrent.TimeUnit;
 public class ServerConfig extends NetworkConfig {
     public static final long SYNC_TIMEOUT = TimeUnit.SECONDS.toMillis(15);
     private static final long DEFAULT_HEARTBEAT_FREQUENCY = TimeUnit.SECONDS.toMillis(5);
+    private static final int DEFAULT_WORKER_COUNT = 1;
+    private static final int DEFAULT_MAX_CONNECTIONS = 1024;
+    private static final int DEFAULT_IDLE_TIMEOUT = (int) TimeUnit.MINUTES.toMillis(5);
     private static final Log LOG = LogFactory.getLog(ServerConfig.class);
 
     private long heartbeatFrequency = DEFAULT_HEARTBEAT_FREQUENCY;
+    private int workerCount = DEFAULT_WORKER_COUNT;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int idleTimeout = DEFAULT_IDLE_TIMEOUT;
 
     public long getHeartbeatFrequency() {
         return heartbeatFrequency;
@@ -48,6 +54,28 @@ public class ServerConfig extends NetworkConfig {
         this.heartbeatFrequency = heartbeatFrequency;
     }
 
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Connections that do not send or accept data for given number of milliseconds
+     * are closed by server. Clients waiting for journal updates are not subject to this timeout.
+     *
+     * @param idleTimeout timeout in milliseconds
+     */
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
     public NetworkInterface getMultiCastInterface(int instance) throws JournalNetworkException {
         NetworkInterface ifn = getMultiCastInterface0(instance);
         try {
@@ -95,10 +123,28 @@ public class ServerConfig extends NetworkConfig {
         throw new JournalNetworkException("There are no usable IP addresses on " + getIfName());
     }
 
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Number of threads that serve client connections. Connections are non-blocking, so a few
+     * threads can serve many clients.
+     *
+     * @param workerCount number of threads
+     */
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
     public DatagramChannelWrapper openDatagramChannel(int instance) throws JournalNetworkException {
         return openDatagramChannel(getMultiCastInterface(instance));
     }
 
+    public DatagramChannelWrapper openDeltaDatagramChannel(int instance) throws JournalNetworkException {
+        return openDeltaDatagramChannel(getMultiCastInterface(instance));
+    }
+
     public ServerSocketChannel openServerSocketChannel(int instance) throws JournalNetworkException {
         InetSocketAddress address = null;
         try {
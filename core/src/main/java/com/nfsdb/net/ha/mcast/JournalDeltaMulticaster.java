@@ -0,0 +1,305 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.mcast;
+
+import com.nfsdb.Journal;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.log.Log;
+import com.nfsdb.log.LogFactory;
+import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.misc.Misc;
+import com.nfsdb.mp.AlertedException;
+import com.nfsdb.net.ha.bridge.JournalEventBridge;
+import com.nfsdb.net.ha.bridge.JournalEventHandler;
+import com.nfsdb.net.ha.bridge.JournalEventProcessor;
+import com.nfsdb.net.ha.config.DatagramChannelWrapper;
+import com.nfsdb.net.ha.config.ServerConfig;
+import com.nfsdb.net.ha.producer.JournalDeltaProducer;
+import com.nfsdb.std.LongList;
+import com.nfsdb.std.ObjList;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Multicasts column deltas of every committed transaction once, so that server egress does not
+ * grow with number of replicas. Delta is the same packed delta replica would have received over TCP.
+ * It is split into datagrams, each of which carries journal location, per-journal message sequence,
+ * server txn delta starts from and txn it brings replica to, fragment index and last fragment flag.
+ * Replicas apply deltas that start from their own txn and catch up over TCP when they detect a gap.
+ * Loss of the last delta before a quiet period cannot be detected that way, so server also tells
+ * replicas last multicast txn of every journal with its heartbeat, see {@link #getTxn(int)}.
+ */
+public class JournalDeltaMulticaster {
+    public static final int DELTA_MESSAGE_CODE = 240;
+    // fits into ethernet frame together with IP and UDP headers
+    static final int DATAGRAM_SIZE = 1400;
+    private static final Log LOG = LogFactory.getLog(JournalDeltaMulticaster.class);
+    private final ServerConfig serverConfig;
+    private final JournalEventBridge bridge;
+    private final JournalEventProcessor eventProcessor;
+    private final int instance;
+    private final ObjList<Journal> readers = new ObjList<>();
+    private final ObjList<JournalDeltaProducer> producers = new ObjList<>();
+    private final ObjList<String> locations = new ObjList<>();
+    private final LongList txns = new LongList();
+    private final LongList txPins = new LongList();
+    private final LongList sequences = new LongList();
+    private final EventHandler handler = new EventHandler();
+    private DatagramChannelWrapper dcw;
+    private FragmentingChannel channel;
+    private CountDownLatch latch;
+    private volatile AtomicLongArray sentTxns;
+    private volatile boolean running = false;
+
+    public JournalDeltaMulticaster(ServerConfig serverConfig, JournalEventBridge bridge, int instance) {
+        this.serverConfig = serverConfig;
+        this.bridge = bridge;
+        this.eventProcessor = new JournalEventProcessor(bridge);
+        this.instance = instance;
+    }
+
+    /**
+     * Adds journal to be multicast. Only transactions committed after multicaster has been started are sent.
+     *
+     * @param index  index of journal writer events are published with
+     * @param reader reader of the journal, owned by multicaster from now on
+     */
+    public void add(int index, Journal reader) {
+        String location = reader.getKey().derivedLocation();
+        if (2 + location.length() * 2 > DATAGRAM_SIZE / 2) {
+            LOG.error().$("Location is too long to multicast: ").$(location).$();
+            reader.close();
+            return;
+        }
+        readers.extendAndSet(index, reader);
+        producers.extendAndSet(index, new JournalDeltaProducer(reader, true));
+        locations.extendAndSet(index, location);
+        txns.extendAndSet(index, 0);
+        txPins.extendAndSet(index, 0);
+        sequences.extendAndSet(index, 0);
+    }
+
+    /**
+     * Txn replicas of journal are brought to by deltas multicast so far. Delta might still be on its way
+     * when its txn is returned.
+     *
+     * @param index index of journal writer
+     * @return txn or -1 when journal is not multicast
+     */
+    public long getTxn(int index) {
+        AtomicLongArray txns = sentTxns;
+        return txns == null || index < 0 || index >= txns.length() ? -1 : txns.get(index);
+    }
+
+    public void halt() {
+        if (running) {
+            running = false;
+            eventProcessor.getSequence().alert();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new JournalRuntimeException(e);
+            }
+        } else {
+            // never started, sequence would hold publisher back all the same
+            bridge.removeAgentSequence(eventProcessor.getSequence());
+        }
+    }
+
+    public void start() throws JournalNetworkException {
+        if (!running) {
+            dcw = serverConfig.openDeltaDatagramChannel(instance);
+            channel = new FragmentingChannel(dcw.getChannel(), dcw.getGroup());
+            AtomicLongArray sent = new AtomicLongArray(readers.size());
+            for (int i = 0, n = readers.size(); i < n; i++) {
+                Journal r = readers.getQuick(i);
+                if (r != null) {
+                    try {
+                        r.refresh();
+                    } catch (JournalException e) {
+                        throw new JournalNetworkException(e);
+                    }
+                    txns.setQuick(i, r.getTxn());
+                    txPins.setQuick(i, r.getTxPin());
+                    sent.set(i, r.getTxn());
+                } else {
+                    sent.set(i, -1);
+                }
+            }
+            sentTxns = sent;
+
+            running = true;
+            latch = new CountDownLatch(1);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    start0();
+                }
+            });
+            thread.setName("nfsdb-mcast-delta-sender-" + instance);
+            thread.setDaemon(true);
+            thread.start();
+            LOG.info().$("Multicasting deltas to ").$(dcw.getGroup()).$();
+        }
+    }
+
+    private void free() {
+        // stuck sequence would stop journal writers from publishing events once bridge queue is full
+        bridge.removeAgentSequence(eventProcessor.getSequence());
+        sentTxns = null;
+        for (int i = 0, n = readers.size(); i < n; i++) {
+            Journal r = readers.getQuick(i);
+            if (r != null) {
+                producers.getQuick(i).free();
+                r.close();
+            }
+        }
+        readers.clear();
+        producers.clear();
+        channel.free();
+        dcw = Misc.free(dcw);
+    }
+
+    private void start0() {
+        try {
+            while (running) {
+                eventProcessor.process(handler, true);
+            }
+        } catch (AlertedException ignore) {
+            // halted
+        } catch (Throwable e) {
+            LOG.error().$("Delta multicaster crashed").$(e).$();
+        } finally {
+            free();
+            latch.countDown();
+        }
+    }
+
+    private static class FragmentingChannel implements WritableByteChannel {
+        private final DatagramChannel channel;
+        private final SocketAddress group;
+        private ByteBuffer buf = ByteBuffer.allocateDirect(DATAGRAM_SIZE);
+        private int fragmentPosition;
+        private int payloadPosition;
+        private int fragment;
+
+        private FragmentingChannel(DatagramChannel channel, SocketAddress group) {
+            this.channel = channel;
+            this.group = group;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int len = src.remaining();
+            while (src.hasRemaining()) {
+                if (!buf.hasRemaining()) {
+                    send(false);
+                }
+                int n = Math.min(src.remaining(), buf.remaining());
+                ByteBuffer b = src.duplicate();
+                b.limit(b.position() + n);
+                buf.put(b);
+                src.position(src.position() + n);
+            }
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void begin(String location, long sequence, long prevTxn, long txn) {
+            buf.clear();
+            buf.putInt(DELTA_MESSAGE_CODE);
+            ByteBuffers.putStringW(buf, location);
+            buf.putLong(sequence);
+            buf.putLong(prevTxn);
+            buf.putLong(txn);
+            fragmentPosition = buf.position();
+            buf.putInt(0);
+            buf.put((byte) 0);
+            payloadPosition = buf.position();
+            fragment = 0;
+        }
+
+        void end() throws IOException {
+            send(true);
+        }
+
+        void free() {
+            buf = ByteBuffers.release(buf);
+        }
+
+        private void send(boolean last) throws IOException {
+            buf.putInt(fragmentPosition, fragment++);
+            buf.put(fragmentPosition + 4, (byte) (last ? 1 : 0));
+            buf.flip();
+            channel.send(buf, group);
+            buf.clear();
+            buf.position(payloadPosition);
+        }
+    }
+
+    private class EventHandler implements JournalEventHandler {
+        @Override
+        public void handle(int index) {
+            Journal reader = readers.getQuiet(index);
+            if (reader == null) {
+                return;
+            }
+
+            JournalDeltaProducer producer = producers.getQuick(index);
+            long txn = txns.getQuick(index);
+            try {
+                producer.configure(txn, txPins.getQuick(index));
+                if (producer.hasContent()) {
+                    // sequence is consumed even if send fails, so that replicas see the gap
+                    long sequence = sequences.getQuick(index) + 1;
+                    sequences.setQuick(index, sequence);
+                    // same for txn, replica learns about lost delta from heartbeat when no delta follows
+                    sentTxns.set(index, reader.getTxn());
+                    channel.begin(locations.getQuick(index), sequence, txn, reader.getTxn());
+                    producer.write(channel);
+                    channel.end();
+                    txns.setQuick(index, reader.getTxn());
+                    txPins.setQuick(index, reader.getTxPin());
+                }
+            } catch (Exception e) {
+                // one bad delta must not stop multicast of the others
+                LOG.error().$("Could not multicast delta of ").$(locations.getQuick(index)).$(e).$();
+            }
+        }
+    }
+}
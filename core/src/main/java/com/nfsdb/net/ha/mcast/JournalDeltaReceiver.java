@@ -0,0 +1,316 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.mcast;
+
+import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.log.Log;
+import com.nfsdb.log.LogFactory;
+import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.misc.Misc;
+import com.nfsdb.net.ha.config.ClientConfig;
+import com.nfsdb.net.ha.config.DatagramChannelWrapper;
+import com.nfsdb.std.IntList;
+import com.nfsdb.std.LongList;
+import com.nfsdb.std.ObjList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Receives column deltas multicast by {@link JournalDeltaMulticaster} and reassembles them from
+ * datagrams. Complete deltas are passed to listener. Missing messages and fragments are detected from
+ * sequence numbers and reported to listener, which is expected to catch up by other means.
+ */
+public class JournalDeltaReceiver {
+    private static final Log LOG = LogFactory.getLog(JournalDeltaReceiver.class);
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int RETAINED_CAPACITY = 1024 * 1024;
+    private final ClientConfig clientConfig;
+    private final Listener listener;
+    private final ObjList<String> locations = new ObjList<>();
+    // per journal: sequence of last delivered message and of message being assembled,
+    // index of next expected fragment and assembled payload
+    private final LongList lastSequences = new LongList();
+    private final LongList sequences = new LongList();
+    private final IntList fragments = new IntList();
+    private final ObjList<ByteBuffer> payloads = new ObjList<>();
+    private final PayloadChannel payloadChannel = new PayloadChannel();
+    private DatagramChannelWrapper dcw;
+    private Selector selector;
+    private CountDownLatch latch;
+    private volatile boolean running = false;
+
+    public JournalDeltaReceiver(ClientConfig clientConfig, Listener listener) {
+        this.clientConfig = clientConfig;
+        this.listener = listener;
+    }
+
+    public void halt() {
+        if (running) {
+            running = false;
+            selector.wakeup();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new JournalRuntimeException(e);
+            }
+        }
+    }
+
+    public void start() throws JournalNetworkException {
+        if (!running) {
+            dcw = clientConfig.openDeltaDatagramChannel();
+            try {
+                selector = Selector.open();
+                DatagramChannel dc = dcw.getChannel();
+                dc.configureBlocking(false);
+                dc.register(selector, SelectionKey.OP_READ);
+            } catch (IOException e) {
+                free();
+                throw new JournalNetworkException(e);
+            }
+
+            running = true;
+            latch = new CountDownLatch(1);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    start0();
+                }
+            });
+            thread.setName("nfsdb-mcast-delta-receiver");
+            thread.setDaemon(true);
+            thread.start();
+            LOG.info().$("Receiving deltas from ").$(dcw.getGroup()).$();
+        }
+    }
+
+    /**
+     * Receives deltas of journal at given location on server. Has to be called before receiver is started.
+     *
+     * @param index    index listener identifies journal with
+     * @param location derived location of journal on server
+     */
+    public void subscribe(int index, String location) {
+        locations.extendAndSet(index, location);
+        lastSequences.extendAndSet(index, -1);
+        sequences.extendAndSet(index, -1);
+        fragments.extendAndSet(index, 0);
+        payloads.extendAndSet(index, null);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buf, int minCapacity) {
+        int capacity = buf.capacity();
+        while (capacity < minCapacity) {
+            capacity *= 2;
+        }
+        ByteBuffer b = ByteBuffer.allocateDirect(capacity);
+        buf.flip();
+        b.put(buf);
+        ByteBuffers.release(buf);
+        return b;
+    }
+
+    private void free() {
+        for (int i = 0, n = payloads.size(); i < n; i++) {
+            ByteBuffers.release(payloads.getQuick(i));
+        }
+        payloads.clear();
+        selector = Misc.free(selector);
+        dcw = Misc.free(dcw);
+    }
+
+    private int indexOf(ByteBuffer buf, int len) {
+        int p = buf.position();
+        OUT:
+        for (int i = 0, n = locations.size(); i < n; i++) {
+            String location = locations.getQuick(i);
+            if (location == null || location.length() != len) {
+                continue;
+            }
+            for (int k = 0; k < len; k++) {
+                if (buf.getChar(p + k * 2) != location.charAt(k)) {
+                    continue OUT;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void loss(int index, long sequence) {
+        LOG.info().$("Lost multicast delta ").$(sequence).$(" of ").$(locations.getQuick(index)).$();
+        lastSequences.setQuick(index, sequence);
+        sequences.setQuick(index, -1);
+        listener.onLoss(index);
+    }
+
+    private void receive(ByteBuffer buf) throws JournalNetworkException {
+        if (buf.remaining() < 6 || buf.getInt() != JournalDeltaMulticaster.DELTA_MESSAGE_CODE) {
+            return;
+        }
+
+        int len = buf.getChar();
+        if (buf.remaining() < len * 2 + 29) {
+            return;
+        }
+
+        int index = indexOf(buf, len);
+        if (index == -1) {
+            return;
+        }
+        buf.position(buf.position() + len * 2);
+
+        long sequence = buf.getLong();
+        long prevTxn = buf.getLong();
+        long txn = buf.getLong();
+        int fragment = buf.getInt();
+        boolean last = buf.get() == 1;
+
+        if (sequence <= lastSequences.getQuick(index)) {
+            // duplicate or remainder of lost message
+            return;
+        }
+
+        ByteBuffer payload = payloads.getQuick(index);
+        if (fragment == 0) {
+            long lastSequence = lastSequences.getQuick(index);
+            if (sequences.getQuick(index) != -1 || (lastSequence != -1 && sequence > lastSequence + 1)) {
+                // previous message is incomplete or there are messages missing before this one
+                loss(index, sequence - 1);
+            }
+            sequences.setQuick(index, sequence);
+            fragments.setQuick(index, 0);
+            if (payload == null) {
+                payloads.setQuick(index, payload = ByteBuffer.allocateDirect(INITIAL_CAPACITY));
+            } else {
+                payload.clear();
+            }
+        } else if (sequences.getQuick(index) != sequence || fragments.getQuick(index) != fragment) {
+            // some of previous fragments are missing, the rest of message is ignored
+            loss(index, sequence);
+            return;
+        }
+
+        if (payload.remaining() < buf.remaining()) {
+            payloads.setQuick(index, payload = grow(payload, payload.position() + buf.remaining()));
+        }
+        payload.put(buf);
+        fragments.setQuick(index, fragment + 1);
+
+        if (last) {
+            payload.flip();
+            sequences.setQuick(index, -1);
+            lastSequences.setQuick(index, sequence);
+            listener.onDelta(index, prevTxn, txn, payloadChannel.of(payload));
+            if (payload.capacity() > RETAINED_CAPACITY) {
+                payloads.setQuick(index, ByteBuffers.release(payload));
+            }
+        }
+    }
+
+    private void start0() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(JournalDeltaMulticaster.DATAGRAM_SIZE);
+        try {
+            DatagramChannel dc = dcw.getChannel();
+            while (running) {
+                selector.select();
+                selector.selectedKeys().clear();
+                while (running) {
+                    buf.clear();
+                    if (dc.receive(buf) == null) {
+                        break;
+                    }
+                    buf.flip();
+                    try {
+                        receive(buf);
+                    } catch (JournalNetworkException e) {
+                        LOG.error().$("Could not apply multicast delta").$(e).$();
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            LOG.error().$("Delta receiver crashed").$(e).$();
+        } finally {
+            ByteBuffers.release(buf);
+            free();
+            latch.countDown();
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called with complete delta of journal.
+         *
+         * @param index   index journal was subscribed with
+         * @param prevTxn server txn delta starts from
+         * @param txn     server txn delta brings journal to
+         * @param channel delta content
+         * @throws JournalNetworkException when delta cannot be applied
+         */
+        void onDelta(int index, long prevTxn, long txn, ReadableByteChannel channel) throws JournalNetworkException;
+
+        /**
+         * Called when one or more deltas of journal have been lost.
+         *
+         * @param index index journal was subscribed with
+         */
+        void onLoss(int index);
+    }
+
+    private static class PayloadChannel implements ReadableByteChannel {
+        private ByteBuffer payload;
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!payload.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(payload.remaining(), dst.remaining());
+            ByteBuffer b = payload.duplicate();
+            b.limit(b.position() + n);
+            dst.put(b);
+            payload.position(payload.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        PayloadChannel of(ByteBuffer payload) {
+            this.payload = payload;
+            return this;
+        }
+    }
+}
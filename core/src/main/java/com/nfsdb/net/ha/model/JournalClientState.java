@@ -23,8 +23,9 @@ package com.nfsdb.net.ha.model;
 
 public class JournalClientState {
     private int journalIndex;
-    private boolean clientStateInvalid = true;
+    private boolean clientStateValid = false;
     private boolean waitingOnEvents = false;
+    private boolean deltaConfigured = false;
     private long clientStateSyncTime = 0;
     private long txn;
     private long txPin;
@@ -68,11 +69,28 @@ public class JournalClientState {
     }
 
     public void invalidateClientState() {
-        this.clientStateInvalid = true;
+        this.clientStateValid = false;
     }
 
     public boolean isClientStateInvalid() {
-        return !clientStateInvalid;
+        return !clientStateValid;
+    }
+
+    public void validateClientState() {
+        this.clientStateValid = true;
+    }
+
+    /**
+     * Delta producer has been configured against this state when state arrived and has to be sent as is.
+     *
+     * @return true when delta is configured
+     */
+    public boolean isDeltaConfigured() {
+        return deltaConfigured;
+    }
+
+    public void setDeltaConfigured(boolean deltaConfigured) {
+        this.deltaConfigured = deltaConfigured;
     }
 
     public boolean isWaitingOnEvents() {
@@ -87,8 +105,9 @@ public class JournalClientState {
     public String toString() {
         return "JournalClientState{" +
                 "journalIndex=" + journalIndex +
-                ", clientStateInvalid=" + clientStateInvalid +
+                ", clientStateValid=" + clientStateValid +
                 ", waitingOnEvents=" + waitingOnEvents +
+                ", deltaConfigured=" + deltaConfigured +
                 ", clientStateSyncTime=" + clientStateSyncTime +
                 ", txn=" + txn +
                 ", txPin=" + txPin +
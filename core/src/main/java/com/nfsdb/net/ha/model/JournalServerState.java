@@ -34,13 +34,28 @@ public class JournalServerState {
     private boolean detachLag = false;
     private long txn;
     private long txPin;
+    private long dropBefore = 0;
 
-    public void addPartitionMetadata(int partitionIndex, long intervalStart, long intervalEnd, byte empty) {
+    public void addPartitionMetadata(int partitionIndex, long intervalStart, long intervalEnd, byte empty, boolean rewritten) {
         PartitionMetadata partitionMetadata = getMeta(addIndex++);
         partitionMetadata.partitionIndex = partitionIndex;
         partitionMetadata.intervalStart = intervalStart;
         partitionMetadata.intervalEnd = intervalEnd;
         partitionMetadata.empty = empty;
+        partitionMetadata.rewritten = rewritten;
+    }
+
+    /**
+     * Partitions ending at or before this timestamp have been dropped on server.
+     *
+     * @return timestamp or 0 when there is nothing to drop
+     */
+    public long getDropBefore() {
+        return dropBefore;
+    }
+
+    public void setDropBefore(long dropBefore) {
+        this.dropBefore = dropBefore;
     }
 
     public PartitionMetadata getLagPartitionMetadata() {
@@ -101,7 +116,7 @@ public class JournalServerState {
     }
 
     public boolean notEmpty() {
-        return nonLagPartitionCount != 0 || symbolTables || lagPartitionName != null || detachLag || txn == -1;
+        return nonLagPartitionCount != 0 || symbolTables || lagPartitionName != null || detachLag || txn == -1 || dropBefore != 0;
     }
 
     public void reset() {
@@ -114,6 +129,7 @@ public class JournalServerState {
         detachLag = false;
         txn = 0;
         txPin = 0;
+        dropBefore = 0;
         lagPartitionName = null;
     }
 
@@ -133,6 +149,7 @@ public class JournalServerState {
         private long intervalStart;
         private long intervalEnd;
         private byte empty = 0;
+        private boolean rewritten = false;
 
         public byte getEmpty() {
             return empty;
@@ -149,5 +166,15 @@ public class JournalServerState {
         public int getPartitionIndex() {
             return partitionIndex;
         }
+
+        /**
+         * Partition has been rewritten on server since client's transaction, client has to replace
+         * its copy with rows that follow.
+         *
+         * @return true when partition is sent in full
+         */
+        public boolean isRewritten() {
+            return rewritten;
+        }
     }
 }
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.model;
+
+/**
+ * Options client sets for journal it has subscribed to.
+ */
+public class JournalSubscription {
+    private final int index;
+    private final boolean packed;
+    private final SubscriptionFilter filter;
+
+    public JournalSubscription(int index, boolean packed, SubscriptionFilter filter) {
+        this.index = index;
+        this.packed = packed;
+        this.filter = filter;
+    }
+
+    /**
+     * @return filter or null when journal is replicated in full
+     */
+    public SubscriptionFilter getFilter() {
+        return filter;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isPacked() {
+        return packed;
+    }
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.model;
+
+import com.nfsdb.ex.JournalConfigurationException;
+import com.nfsdb.factory.configuration.ColumnMetadata;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.std.IntList;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.store.ColumnType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Narrows down replicated journal to some of its columns and to rows, which have one of given values
+ * in symbol column. Client journal is created with projected columns only. Timestamp column and columns,
+ * whose symbol tables are shared by projected columns, are always projected.
+ */
+public class SubscriptionFilter {
+    private final ObjList<String> columns = new ObjList<>();
+    private final ObjList<String> symbols = new ObjList<>();
+    private String symbolColumn;
+
+    public static SubscriptionFilter fromBuffer(ByteBuffer buffer) {
+        SubscriptionFilter filter = new SubscriptionFilter();
+        for (int i = 0, n = buffer.getInt(); i < n; i++) {
+            filter.columns.add(getString(buffer));
+        }
+        filter.symbolColumn = getString(buffer);
+        for (int i = 0, n = buffer.getInt(); i < n; i++) {
+            filter.symbols.add(getString(buffer));
+        }
+        return filter;
+    }
+
+    /**
+     * Sets columns to replicate. All columns are replicated when none are set.
+     */
+    public SubscriptionFilter columns(String... names) {
+        for (int i = 0; i < names.length; i++) {
+            columns.add(names[i]);
+        }
+        return this;
+    }
+
+    public int getBufferSize() {
+        int size = 4 + getBufferSize(symbolColumn) + 4;
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            size += getBufferSize(columns.getQuick(i));
+        }
+        for (int i = 0, n = symbols.size(); i < n; i++) {
+            size += getBufferSize(symbols.getQuick(i));
+        }
+        return size;
+    }
+
+    public String getSymbolColumn() {
+        return symbolColumn;
+    }
+
+    /**
+     * @return index of symbol column rows are filtered on or -1 when rows are not filtered
+     * @throws JournalConfigurationException when journal has no such symbol column
+     */
+    public int getSymbolColumnIndex(JournalMetadata metadata) {
+        if (symbolColumn == null) {
+            return -1;
+        }
+        int index = metadata.getColumnIndexQuiet(symbolColumn);
+        if (index == -1 || metadata.getColumnQuick(index).type != ColumnType.SYMBOL) {
+            throw new JournalConfigurationException("Not a symbol column: %s", symbolColumn);
+        }
+        return index;
+    }
+
+    public ObjList<String> getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @return indexes of projected columns in ascending order
+     * @throws JournalConfigurationException when journal has no such column
+     */
+    public IntList project(JournalMetadata metadata) {
+        int count = metadata.getColumnCount();
+        boolean keep[] = new boolean[count];
+
+        if (columns.size() == 0) {
+            for (int i = 0; i < count; i++) {
+                keep[i] = true;
+            }
+        } else {
+            if (metadata.getTimestampIndex() > -1) {
+                keep[metadata.getTimestampIndex()] = true;
+            }
+
+            for (int i = 0, n = columns.size(); i < n; i++) {
+                int index = metadata.getColumnIndexQuiet(columns.getQuick(i));
+                if (index == -1) {
+                    throw new JournalConfigurationException("Invalid column: %s", columns.getQuick(i));
+                }
+                keep[index] = true;
+            }
+
+            for (int i = 0; i < count; i++) {
+                ColumnMetadata m = metadata.getColumnQuick(i);
+                if (keep[i] && m.sameAs != null) {
+                    keep[metadata.getColumnIndexQuiet(m.sameAs)] = true;
+                }
+            }
+        }
+
+        IntList result = new IntList(count);
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replicates only rows, which have one of values in symbol column.
+     */
+    public SubscriptionFilter symbols(String column, String... values) {
+        this.symbolColumn = column;
+        this.symbols.clear();
+        for (int i = 0; i < values.length; i++) {
+            symbols.add(values[i]);
+        }
+        return this;
+    }
+
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(columns.size());
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            ByteBuffers.putStringDW(buffer, columns.getQuick(i));
+        }
+        ByteBuffers.putStringDW(buffer, symbolColumn);
+        buffer.putInt(symbols.size());
+        for (int i = 0, n = symbols.size(); i < n; i++) {
+            ByteBuffers.putStringDW(buffer, symbols.getQuick(i));
+        }
+    }
+
+    private static int getBufferSize(String value) {
+        return 4 + (value == null ? 0 : value.length() * 2);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int len = buffer.getInt();
+        if (len == 0) {
+            return null;
+        }
+        char chars[] = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.producer;
+
+import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.std.LongList;
+import com.nfsdb.store.AbstractColumn;
+import com.nfsdb.store.VariableColumn;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Sends values of selected rows only. Values are sent in the same format as {@link FixedColumnDeltaProducer}
+ * does, so that fixed width columns are consumed by {@link com.nfsdb.net.ha.comsumer.FixedColumnDeltaConsumer}.
+ * Variable width columns are followed by offsets of values relative to first sent value, which client
+ * rebases to its own column.
+ */
+public class FilteredColumnDeltaProducer implements ColumnDeltaProducer {
+
+    private static final int REPLICATION_FRAGMENT_HEADER_SIZE = 8;
+    private static final int OFFSET_BUFFER_SIZE = 8 * 1024;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(REPLICATION_FRAGMENT_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final AbstractColumn column;
+    private final VariableColumn varColumn;
+    private final LongList rows;
+    private final int width;
+    private long dataSize;
+    private boolean hasContent = false;
+
+    /**
+     * @param column column to send values of
+     * @param width  value width of fixed width column, ignored for variable width column
+     * @param rows   local row ids of rows to send, populated by owner of this producer before it is configured
+     */
+    public FilteredColumnDeltaProducer(AbstractColumn column, int width, LongList rows) {
+        this.column = column;
+        this.varColumn = column instanceof VariableColumn ? (VariableColumn) column : null;
+        this.width = width;
+        this.rows = rows;
+    }
+
+    @Override
+    public void configure(long localRowID, long limit) {
+        int n = rows.size();
+        if (varColumn == null) {
+            dataSize = (long) n * width;
+        } else {
+            dataSize = 0;
+            for (int i = 0; i < n; i++) {
+                long row = rows.getQuick(i);
+                dataSize += getEndOffset(row) - varColumn.getOffset(row);
+            }
+        }
+        hasContent = n > 0;
+    }
+
+    @Override
+    public void free() {
+        ByteBuffers.release(header);
+    }
+
+    @Override
+    public boolean hasContent() {
+        return hasContent;
+    }
+
+    @Override
+    public void write(WritableByteChannel channel) throws JournalNetworkException {
+        if (hasContent()) {
+            writeHeader(channel, dataSize);
+            for (int i = 0, n = rows.size(); i < n; i++) {
+                long row = rows.getQuick(i);
+                long offset = column.getOffset(row);
+                long targetOffset = varColumn == null ? offset + width : getEndOffset(row);
+                while (offset < targetOffset) {
+                    offset += ByteBuffers.copy(column.getBuffer(offset, 1), channel, targetOffset - offset);
+                }
+            }
+
+            if (varColumn != null) {
+                writeOffsets(channel);
+            }
+            hasContent = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FilteredColumnDelta{" +
+                "rows=" + rows.size() +
+                ", dataSize=" + dataSize +
+                ", column=" + column +
+                '}';
+    }
+
+    private long getEndOffset(long row) {
+        return row + 1 < varColumn.size() ? varColumn.getOffset(row + 1) : varColumn.getOffset();
+    }
+
+    private void writeHeader(WritableByteChannel channel, long value) throws JournalNetworkException {
+        header.clear();
+        header.putLong(value);
+        header.flip();
+        ByteBuffers.copy(header, channel);
+    }
+
+    private void writeOffsets(WritableByteChannel channel) throws JournalNetworkException {
+        int n = rows.size();
+        writeHeader(channel, (long) n * 8);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.min(n * 8, OFFSET_BUFFER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            long address = ByteBuffers.getAddress(buffer);
+            long offset = 0;
+            int p = 0;
+            for (int i = 0; i < n; i++) {
+                long row = rows.getQuick(i);
+                Unsafe.getUnsafe().putLong(address + p, offset);
+                offset += getEndOffset(row) - varColumn.getOffset(row);
+                p += 8;
+                if (p == buffer.capacity() || i == n - 1) {
+                    buffer.limit(p).position(0);
+                    while (buffer.hasRemaining()) {
+                        ByteBuffers.copy(buffer, channel);
+                    }
+                    buffer.clear();
+                    p = 0;
+                }
+            }
+        } finally {
+            ByteBuffers.release(buffer);
+        }
+    }
+}
@@ -23,6 +23,7 @@ package com.nfsdb.net.ha.producer;
 
 import com.nfsdb.ex.JournalNetworkException;
 import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.net.ZeroCopyChannel;
 import com.nfsdb.store.AbstractColumn;
 
 import java.nio.ByteBuffer;
@@ -68,6 +69,9 @@ public class FixedColumnDeltaProducer implements ColumnDeltaProducer {
     public void write(WritableByteChannel channel) throws JournalNetworkException {
         if (hasContent()) {
             ByteBuffers.copy(header, channel);
+            if (channel instanceof ZeroCopyChannel && ((ZeroCopyChannel) channel).transfer(column, offset, targetOffset - offset)) {
+                offset = targetOffset;
+            }
             while (offset < targetOffset) {
                 offset += ByteBuffers.copy(column.getBuffer(offset, 1), channel, targetOffset - offset);
             }
@@ -30,6 +30,8 @@ import com.nfsdb.log.LogFactory;
 import com.nfsdb.misc.Rows;
 import com.nfsdb.net.ha.ChannelProducer;
 import com.nfsdb.net.ha.model.JournalServerState;
+import com.nfsdb.net.ha.model.SubscriptionFilter;
+import com.nfsdb.net.ha.protocol.Version;
 import com.nfsdb.std.ObjList;
 import com.nfsdb.store.Tx;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -45,17 +47,48 @@ public class JournalDeltaProducer implements ChannelProducer {
     private final ObjList<PartitionDeltaProducer> partitionDeltaProducers = new ObjList<>();
     private final ObjList<PartitionDeltaProducer> partitionDeltaProducerCache = new ObjList<>();
     private final JournalSymbolTableProducer journalSymbolTableProducer;
+    private final boolean packed;
+    private final SubscriptionFilter filter;
     private PartitionDeltaProducer lagPartitionDeltaProducer;
     private boolean rollback;
+    private int version = Version.PROTOCOL_VERSION;
 
     public JournalDeltaProducer(Journal journal) {
+        this(journal, false);
+    }
+
+    /**
+     * @param journal journal to send deltas of
+     * @param packed  true when client understands column deltas packed by {@link com.nfsdb.net.ha.protocol.ColumnCodec}
+     */
+    public JournalDeltaProducer(Journal journal, boolean packed) {
+        this(journal, packed, null);
+    }
+
+    /**
+     * @param journal journal to send deltas of
+     * @param packed  true when client understands column deltas packed by {@link com.nfsdb.net.ha.protocol.ColumnCodec}
+     * @param filter  columns and rows client has subscribed to or null to send entire journal
+     * @throws com.nfsdb.ex.JournalConfigurationException when filter does not match journal
+     */
+    public JournalDeltaProducer(Journal journal, boolean packed, SubscriptionFilter filter) {
         this.journal = journal;
-        journalSymbolTableProducer = new JournalSymbolTableProducer(journal);
+        this.packed = packed;
+        this.filter = filter;
+        if (filter == null) {
+            journalSymbolTableProducer = new JournalSymbolTableProducer(journal);
+        } else {
+            // validate filter up front, so that invalid subscription is rejected rather than failing dispatch
+            filter.getSymbolColumnIndex(journal.getMetadata());
+            journalSymbolTableProducer = new JournalSymbolTableProducer(journal, filter.project(journal.getMetadata()));
+        }
     }
 
     public void configure(long txn, long txPin) throws JournalException {
 
         journalServerState.reset();
+        // producers of previous delta reference partitions, which could have been replaced since
+        partitionDeltaProducers.clear();
 
         // ignore return value because client can be significantly behind server
         // even though journal has not refreshed we have to compare client and server txns
@@ -71,6 +104,12 @@ public class JournalDeltaProducer implements ChannelProducer {
             if (tx == null) {
                 // indicate to client that their txn is invalid
                 journalServerState.setTxn(-1);
+            } else if (version < Version.REWRITE_PROTOCOL_VERSION && hasRewrites(tx)) {
+                LOG.info().$("Client of ").$(journal.getLocation()).$(" cannot replace rewritten partitions, protocol version ").$(version).$();
+                journalServerState.setTxn(-1);
+            } else if (version < Version.RETENTION_PROTOCOL_VERSION && hasDrops(tx)) {
+                LOG.info().$("Client of ").$(journal.getLocation()).$(" cannot drop partitions, protocol version ").$(version).$();
+                journalServerState.setTxn(-1);
             } else {
                 configure0(tx);
             }
@@ -93,6 +132,16 @@ public class JournalDeltaProducer implements ChannelProducer {
         }
     }
 
+    /**
+     * Sets protocol version agreed with client, deltas are written in format client understands.
+     *
+     * @param version protocol version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+        this.journalServerStateProducer.setVersion(version);
+    }
+
     @Override
     public boolean hasContent() {
         return rollback || journalServerState.notEmpty();
@@ -132,6 +181,10 @@ public class JournalDeltaProducer implements ChannelProducer {
 
         // get non lag partition information
         int nonLagPartitionCount = journal.nonLagPartitionCount();
+        // last partition client has, -1 when client has none
+        int clientPartitionIndex = -1;
+        // partitions client has in full, which are checked for being rewritten
+        int rewriteLimit = 0;
 
         if (tx.journalMaxRowID == -1) {
             startPartitionIndex = 0;
@@ -141,31 +194,58 @@ public class JournalDeltaProducer implements ChannelProducer {
             startPartitionIndex = Rows.toPartitionIndex(tx.journalMaxRowID);
             localRowID = Rows.toLocalRowID(tx.journalMaxRowID);
 
+            int partitionIndex = partitionIndexOf(tx.lastPartitionTimestamp, Math.min(startPartitionIndex, nonLagPartitionCount - 1));
+            if (partitionIndex != startPartitionIndex) {
+                // partitions have been dropped since client's transaction, client has to drop them too
+                journalServerState.setDropBefore(nonLagPartitionCount == 0 ? Long.MAX_VALUE : journal.getPartition(0, false).getInterval().getLo());
+                if (partitionIndex == -1) {
+                    // including partition client has last written to
+                    localRowID = 0;
+                    startPartitionIndex = 0;
+                } else {
+                    startPartitionIndex = partitionIndex;
+                    clientPartitionIndex = partitionIndex;
+                }
+            } else {
+                clientPartitionIndex = startPartitionIndex;
+            }
+
             if (startPartitionIndex < nonLagPartitionCount) {
-                // if slave partition is exactly the same as master partition, advance one partition forward
-                // and start building fragment from that
-                if (localRowID >= journal.getPartition(startPartitionIndex, true).size()) {
+                Partition partition = journal.getPartition(startPartitionIndex, true);
+                if (isRewritten(partition, clientPartitionIndex, tx)) {
+                    // partition client has last written to has been rewritten, it is sent again from first row
+                    localRowID = 0;
+                } else if (localRowID >= partition.size()) {
+                    // if slave partition is exactly the same as master partition, advance one partition forward
+                    // and start building fragment from that
                     localRowID = 0;
                     startPartitionIndex = startPartitionIndex + 1;
                 }
-                journalServerState.setNonLagPartitionCount(Math.max(0, nonLagPartitionCount - startPartitionIndex));
-            } else {
-                journalServerState.setNonLagPartitionCount(0);
             }
+
+            if (journal.getMetadata().isOutOfOrder()) {
+                rewriteLimit = Math.min(startPartitionIndex, clientPartitionIndex + 1);
+            }
+
+            int count = Math.max(0, nonLagPartitionCount - startPartitionIndex);
+            for (int i = 0; i < rewriteLimit; i++) {
+                if (isRewritten(journal.getPartition(i, false), clientPartitionIndex, tx)) {
+                    count++;
+                }
+            }
+            journalServerState.setNonLagPartitionCount(count);
         }
 
         // non-lag partition producers
-        partitionDeltaProducers.clear();
-        for (int i = startPartitionIndex; i < nonLagPartitionCount; i++) {
-            PartitionDeltaProducer producer = getPartitionDeltaProducer(i);
-            producer.configure(localRowID);
-            partitionDeltaProducers.add(producer);
-            Partition partition = journal.getPartition(i, false);
-            journalServerState.addPartitionMetadata(partition.getPartitionIndex()
-                    , partition.getInterval().getLo()
-                    , partition.getInterval().getHi()
-                    , (byte) (producer.hasContent() ? 0 : 1));
+        for (int i = 0; i < rewriteLimit; i++) {
+            // partitions client has in full are sent again when out of order rows have been merged into them
+            if (isRewritten(journal.getPartition(i, false), clientPartitionIndex, tx)) {
+                addPartitionDeltaProducer(i, 0, true);
+            }
+        }
 
+        for (int i = startPartitionIndex; i < nonLagPartitionCount; i++) {
+            addPartitionDeltaProducer(i, localRowID, isRewritten(journal.getPartition(i, false), clientPartitionIndex, tx));
             localRowID = 0;
         }
 
@@ -177,7 +257,7 @@ public class JournalDeltaProducer implements ChannelProducer {
         if (lag != null) {
 
             if (lagPartitionDeltaProducer == null || lagPartitionDeltaProducer.getPartition() != lag) {
-                lagPartitionDeltaProducer = new PartitionDeltaProducer(lag.open());
+                lagPartitionDeltaProducer = new PartitionDeltaProducer(lag.open(), packed, filter);
             }
 
             if (lag.getName().equals(tx.lagName)) {
@@ -195,10 +275,71 @@ public class JournalDeltaProducer implements ChannelProducer {
         }
     }
 
+    /**
+     * Partition client already has, which has been replaced by its rewritten copy after client's transaction.
+     */
+    private static boolean isRewritten(Partition partition, int clientPartitionIndex, Tx tx) {
+        return partition.getPartitionIndex() <= clientPartitionIndex && partition.getVersion() > tx.txn;
+    }
+
+    /**
+     * Checks if partitions client has written to have been dropped since client's transaction.
+     */
+    private boolean hasDrops(Tx tx) throws JournalException {
+        if (tx.journalMaxRowID == -1) {
+            return false;
+        }
+        int partitionIndex = Rows.toPartitionIndex(tx.journalMaxRowID);
+        return partitionIndexOf(tx.lastPartitionTimestamp, Math.min(partitionIndex, journal.nonLagPartitionCount() - 1)) != partitionIndex;
+    }
+
+    /**
+     * Checks if any of partitions client has written to has been rewritten since client's transaction.
+     */
+    private boolean hasRewrites(Tx tx) throws JournalException {
+        if (tx.journalMaxRowID == -1 || !journal.getMetadata().isOutOfOrder()) {
+            return false;
+        }
+
+        for (int i = 0, n = Math.min(Rows.toPartitionIndex(tx.journalMaxRowID) + 1, journal.nonLagPartitionCount()); i < n; i++) {
+            if (journal.getPartition(i, false).getVersion() > tx.txn) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addPartitionDeltaProducer(int partitionIndex, long localRowID, boolean rewritten) throws JournalException {
+        PartitionDeltaProducer producer = getPartitionDeltaProducer(partitionIndex);
+        producer.configure(localRowID);
+        partitionDeltaProducers.add(producer);
+        Partition partition = journal.getPartition(partitionIndex, false);
+        journalServerState.addPartitionMetadata(partition.getPartitionIndex()
+                , partition.getInterval().getLo()
+                , partition.getInterval().getHi()
+                , (byte) (producer.hasContent() ? 0 : 1)
+                , rewritten);
+    }
+
+    private int partitionIndexOf(long intervalLo, int hi) throws JournalException {
+        for (int i = hi; i > -1; i--) {
+            if (journal.getPartition(i, false).getInterval().getLo() == intervalLo) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private PartitionDeltaProducer getPartitionDeltaProducer(int partitionIndex) throws JournalException {
         PartitionDeltaProducer producer = partitionDeltaProducerCache.getQuiet(partitionIndex);
+        if (producer != null && producer.getPartition() != journal.getPartition(partitionIndex, false)) {
+            // partition index is taken by another partition after older partitions have been dropped
+            producer.free();
+            producer = null;
+        }
+
         if (producer == null) {
-            producer = new PartitionDeltaProducer(journal.getPartition(partitionIndex, true));
+            producer = new PartitionDeltaProducer(journal.getPartition(partitionIndex, true), packed, filter);
             partitionDeltaProducerCache.extendAndSet(partitionIndex, producer);
         }
 
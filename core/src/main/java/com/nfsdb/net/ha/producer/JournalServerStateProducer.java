@@ -24,18 +24,31 @@ package com.nfsdb.net.ha.producer;
 import com.nfsdb.misc.ByteBuffers;
 import com.nfsdb.net.ha.AbstractObjectProducer;
 import com.nfsdb.net.ha.model.JournalServerState;
+import com.nfsdb.net.ha.protocol.Version;
 
 import java.nio.ByteBuffer;
 
 public class JournalServerStateProducer extends AbstractObjectProducer<JournalServerState> {
 
     private static final int SUMMARY_RECORD_SIZE = (4 /* partitionIndex */ + 8 /* interval start */ + 8 /* interval end*/ + 1 /* empty */);
+    private int version = Version.PROTOCOL_VERSION;
+
+    /**
+     * Sets protocol version agreed with client, state is written in format client understands.
+     *
+     * @param version protocol version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
 
     @Override
     protected int getBufferSize(JournalServerState value) {
-        return 8 + 8 + 4 + 1 + value.getNonLagPartitionCount() * SUMMARY_RECORD_SIZE
+        int partitionRecordSize = SUMMARY_RECORD_SIZE + (version >= Version.REWRITE_PROTOCOL_VERSION ? 1 /* rewritten */ : 0);
+        return 8 + 8 + 4 + 1 + value.getNonLagPartitionCount() * partitionRecordSize
                 + 2 + (value.getLagPartitionName() != null ? 2 * value.getLagPartitionName().length() : 0)
-                + SUMMARY_RECORD_SIZE;
+                + SUMMARY_RECORD_SIZE
+                + (version >= Version.RETENTION_PROTOCOL_VERSION ? 8 /* drop before */ : 0);
     }
 
     @Override
@@ -50,11 +63,17 @@ public class JournalServerStateProducer extends AbstractObjectProducer<JournalSe
             buffer.putLong(partitionMetadata.getIntervalStart());
             buffer.putLong(partitionMetadata.getIntervalEnd());
             buffer.put(partitionMetadata.getEmpty());
+            if (version >= Version.REWRITE_PROTOCOL_VERSION) {
+                buffer.put((byte) (partitionMetadata.isRewritten() ? 1 : 0));
+            }
         }
         ByteBuffers.putStringW(buffer, value.getLagPartitionName());
         buffer.putInt(value.getLagPartitionMetadata().getPartitionIndex());
         buffer.putLong(value.getLagPartitionMetadata().getIntervalStart());
         buffer.putLong(value.getLagPartitionMetadata().getIntervalEnd());
         buffer.put(value.getLagPartitionMetadata().getEmpty());
+        if (version >= Version.RETENTION_PROTOCOL_VERSION) {
+            buffer.putLong(value.getDropBefore());
+        }
     }
 }
@@ -23,9 +23,13 @@ package com.nfsdb.net.ha.producer;
 
 import com.nfsdb.Journal;
 import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.factory.configuration.ColumnMetadata;
+import com.nfsdb.factory.configuration.JournalMetadata;
 import com.nfsdb.misc.ByteBuffers;
 import com.nfsdb.net.ha.ChannelProducer;
+import com.nfsdb.std.IntList;
 import com.nfsdb.std.ObjList;
+import com.nfsdb.store.ColumnType;
 import com.nfsdb.store.SymbolTable;
 import com.nfsdb.store.Tx;
 
@@ -37,17 +41,35 @@ public class JournalSymbolTableProducer implements ChannelProducer {
 
     private final ObjList<VariableColumnDeltaProducer> symbolTableProducers = new ObjList<>();
     private final ObjList<SymbolTable> symbolTables = new ObjList<>();
+    private final IntList tabIndexes = new IntList();
     private final ByteBuffer buffer;
     private boolean hasContent = false;
 
     public JournalSymbolTableProducer(Journal journal) {
-        int tabCount = journal.getSymbolTableCount();
-        for (int i = 0; i < tabCount; i++) {
-            SymbolTable tab = journal.getSymbolTable(i);
-            symbolTables.add(tab);
-            symbolTableProducers.add(new VariableColumnDeltaProducer(tab.getDataColumn()));
+        this(journal, null);
+    }
+
+    /**
+     * @param journal journal to send symbol tables of
+     * @param columns indexes of columns client has subscribed to in ascending order or null for all columns.
+     *                Only symbol tables of these columns are sent.
+     */
+    public JournalSymbolTableProducer(Journal journal, IntList columns) {
+        JournalMetadata metadata = journal.getMetadata();
+        int tabIndex = 0;
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            ColumnMetadata m = metadata.getColumnQuick(i);
+            if (m.type == ColumnType.SYMBOL && m.sameAs == null) {
+                if (columns == null || columns.binarySearch(i) > -1) {
+                    SymbolTable tab = journal.getSymbolTable(tabIndex);
+                    symbolTables.add(tab);
+                    tabIndexes.add(tabIndex);
+                    symbolTableProducers.add(new VariableColumnDeltaProducer(tab.getDataColumn()));
+                }
+                tabIndex++;
+            }
         }
-        buffer = ByteBuffer.allocateDirect(journal.getMetadata().getColumnCount()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer = ByteBuffer.allocateDirect(metadata.getColumnCount()).order(ByteOrder.LITTLE_ENDIAN);
     }
 
     public void configure(Tx tx) {
@@ -57,7 +79,8 @@ public class JournalSymbolTableProducer implements ChannelProducer {
             SymbolTable tab = symbolTables.getQuick(i);
             if (tab != null) {
                 VariableColumnDeltaProducer p = symbolTableProducers.getQuick(i);
-                p.configure(i < tx.symbolTableSizes.length ? tx.symbolTableSizes[i] : 0, tab.size());
+                int tabIndex = tabIndexes.getQuick(i);
+                p.configure(tabIndex < tx.symbolTableSizes.length ? tx.symbolTableSizes[tabIndex] : 0, tab.size());
                 if (p.hasContent()) {
                     buffer.put((byte) 1);
                     hasContent = true;
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.producer;
+
+import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.net.ha.protocol.ColumnCodec;
+import com.nfsdb.store.AbstractColumn;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Sends fixed width column delta encoded by column codec. Delta is preceded by its raw length, same
+ * as in {@link FixedColumnDeltaProducer}, and is split into blocks of at most {@link ColumnCodec#BLOCK_SIZE}
+ * raw bytes, each of which is preceded by its encoded length.
+ */
+public class PackedColumnDeltaProducer implements ColumnDeltaProducer {
+
+    private static final int REPLICATION_FRAGMENT_HEADER_SIZE = 8;
+    private static final int BLOCK_HEADER_SIZE = 4;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(REPLICATION_FRAGMENT_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final AbstractColumn column;
+    private final ColumnCodec codec;
+    private final int width;
+    private ByteBuffer block;
+    private long offset;
+    private long targetOffset;
+    private boolean hasContent = false;
+
+    public PackedColumnDeltaProducer(AbstractColumn column, ColumnCodec codec) {
+        this.column = column;
+        this.codec = codec;
+        this.width = codec.width();
+    }
+
+    public void configure(long localRowID, long limit) {
+        long sz = column.size() - 1;
+        this.offset = localRowID > sz ? column.getOffset() : column.getOffset(localRowID);
+        this.targetOffset = limit > sz ? column.getOffset() : column.getOffset(limit);
+        this.header.rewind();
+        this.header.putLong(targetOffset - offset);
+        this.header.flip();
+        this.hasContent = targetOffset - offset > 0;
+    }
+
+    @Override
+    public void free() {
+        ByteBuffers.release(header);
+        block = ByteBuffers.release(block);
+    }
+
+    @Override
+    public boolean hasContent() {
+        return hasContent;
+    }
+
+    @Override
+    public void write(WritableByteChannel channel) throws JournalNetworkException {
+        if (hasContent()) {
+            ByteBuffers.copy(header, channel);
+            codec.reset();
+
+            // sized for worst case, there is no telling how well values would pack
+            int capacity = BLOCK_HEADER_SIZE
+                    + (int) (Math.min(targetOffset - offset, ColumnCodec.BLOCK_SIZE) / width * codec.maxEncodedSize());
+            if (block == null || block.capacity() < capacity) {
+                ByteBuffers.release(block);
+                block = ByteBuffer.allocateDirect(capacity);
+            }
+
+            long address = ByteBuffers.getAddress(block);
+            while (offset < targetOffset) {
+                long hi = Math.min(offset + ColumnCodec.BLOCK_SIZE, targetOffset);
+                long p = address + BLOCK_HEADER_SIZE;
+                while (offset < hi) {
+                    ByteBuffer b = column.getBuffer(offset, width);
+                    int count = (int) (Math.min(b.remaining(), hi - offset) / width);
+                    p = codec.encode(ByteBuffers.getAddress(b) + b.position(), count, p);
+                    offset += count * width;
+                }
+
+                int len = (int) (p - address);
+                Unsafe.getUnsafe().putInt(address, len - BLOCK_HEADER_SIZE);
+                block.limit(len).position(0);
+                while (block.hasRemaining()) {
+                    ByteBuffers.copy(block, channel);
+                }
+                block.clear();
+            }
+            hasContent = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PackedColumnDelta{" +
+                "offset=" + offset +
+                ", targetOffset=" + targetOffset +
+                ", column=" + column +
+                '}';
+    }
+}
@@ -24,8 +24,16 @@ package com.nfsdb.net.ha.producer;
 import com.nfsdb.Partition;
 import com.nfsdb.ex.JournalException;
 import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.net.ha.model.SubscriptionFilter;
+import com.nfsdb.net.ha.protocol.ColumnCodec;
+import com.nfsdb.std.IntHashSet;
+import com.nfsdb.std.IntList;
+import com.nfsdb.std.LongList;
 import com.nfsdb.std.ObjList;
 import com.nfsdb.store.AbstractColumn;
+import com.nfsdb.store.FixedColumn;
+import com.nfsdb.store.SymbolTable;
 import com.nfsdb.store.VariableColumn;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -35,18 +43,56 @@ import java.nio.channels.WritableByteChannel;
 public class PartitionDeltaProducer extends ChannelProducerGroup<ColumnDeltaProducer> {
 
     private final Partition partition;
+    private final LongList rows = new LongList();
+    private final IntHashSet keys = new IntHashSet();
+    private final ObjList<String> symbols;
+    private final SymbolTable symbolTable;
+    private final int symbolColumnIndex;
 
     public PartitionDeltaProducer(Partition partition) {
+        this(partition, false);
+    }
+
+    public PartitionDeltaProducer(Partition partition, boolean packed) {
+        this(partition, packed, null);
+    }
+
+    /**
+     * @param partition partition to send deltas of
+     * @param packed    true when client understands column deltas packed by {@link ColumnCodec}
+     * @param filter    columns and rows client has subscribed to or null to send entire partition.
+     *                  Values of filtered rows are sent as they are stored.
+     */
+    public PartitionDeltaProducer(Partition partition, boolean packed, SubscriptionFilter filter) {
         this.partition = partition;
-        for (int i = 0, c = partition.getJournal().getMetadata().getColumnCount(); i < c; i++) {
-            AbstractColumn col = partition.getAbstractColumn(i);
-            addProducer(col instanceof VariableColumn ? new VariableColumnDeltaProducer((VariableColumn) col) : new FixedColumnDeltaProducer(col));
+        JournalMetadata metadata = partition.getJournal().getMetadata();
+        this.symbolColumnIndex = filter == null ? -1 : filter.getSymbolColumnIndex(metadata);
+        this.symbols = symbolColumnIndex == -1 ? null : filter.getSymbols();
+        this.symbolTable = symbolColumnIndex == -1 ? null : metadata.getColumnQuick(symbolColumnIndex).getSymbolTable();
+
+        IntList columns = filter == null ? null : filter.project(metadata);
+        for (int i = 0, c = columns == null ? metadata.getColumnCount() : columns.size(); i < c; i++) {
+            int index = columns == null ? i : columns.getQuick(i);
+            AbstractColumn col = partition.getAbstractColumn(index);
+            ColumnCodec codec;
+            if (symbolColumnIndex != -1) {
+                addProducer(new FilteredColumnDeltaProducer(col, metadata.getColumnQuick(index).size, rows));
+            } else if (col instanceof VariableColumn) {
+                addProducer(new VariableColumnDeltaProducer((VariableColumn) col));
+            } else if (packed && (codec = ColumnCodec.forType(metadata.getColumnQuick(index).type)) != null) {
+                addProducer(new PackedColumnDeltaProducer(col, codec));
+            } else {
+                addProducer(new FixedColumnDeltaProducer(col));
+            }
         }
     }
 
     public void configure(long localRowID) throws JournalException {
         partition.open();
         long limit = partition.size();
+        if (symbolColumnIndex != -1) {
+            filterRows(localRowID, limit);
+        }
         ObjList<ColumnDeltaProducer> producers = getProducers();
         for (int i = 0, sz = producers.size(); i < sz; i++) {
             producers.getQuick(i).configure(localRowID, limit);
@@ -70,4 +116,25 @@ public class PartitionDeltaProducer extends ChannelProducerGroup<ColumnDeltaProd
             throw new JournalNetworkException(e);
         }
     }
+
+    private void filterRows(long lo, long hi) {
+        // symbols can be added to journal after subscription, resolve their keys every time
+        keys.clear();
+        for (int i = 0, n = symbols.size(); i < n; i++) {
+            int key = symbolTable.getQuick(symbols.getQuick(i));
+            if (key >= 0) {
+                keys.add(key);
+            }
+        }
+
+        rows.clear();
+        if (keys.size() > 0) {
+            FixedColumn column = partition.fixCol(symbolColumnIndex);
+            for (long row = lo; row < hi; row++) {
+                if (keys.contains(column.getInt(row))) {
+                    rows.add(row);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.protocol;
+
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.store.ColumnType;
+
+/**
+ * Packs fixed width column values for replication. Values are encoded relative to preceding
+ * value of the same column delta, so codec state is reset at the beginning of each delta and
+ * encoder and decoder have to see values in the same order.
+ */
+public abstract class ColumnCodec {
+
+    /**
+     * Number of raw column bytes encoded into single block. Blocks bound memory either side has to allocate.
+     */
+    public static final int BLOCK_SIZE = 256 * 1024;
+
+    /**
+     * @return new codec instance for column type or null when values of this type are sent as they are.
+     */
+    public static ColumnCodec forType(ColumnType type) {
+        switch (type) {
+            case DATE:
+                return new DeltaOfDeltaCodec();
+            case DOUBLE:
+                return new XorCodec();
+            case INT:
+            case SYMBOL:
+                return new IntDeltaCodec();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Decodes count values.
+     *
+     * @param src   address of encoded values
+     * @param count number of values to decode
+     * @param dst   address values are decoded to
+     * @return address of first byte after decoded values in src
+     */
+    public abstract long decode(long src, int count, long dst);
+
+    /**
+     * Encodes count values.
+     *
+     * @param src   address of values
+     * @param count number of values to encode
+     * @param dst   address to encode values to, there has to be at least count * maxEncodedSize() bytes available
+     * @return address of first byte after encoded values in dst
+     */
+    public abstract long encode(long src, int count, long dst);
+
+    public abstract int maxEncodedSize();
+
+    public abstract void reset();
+
+    public abstract int width();
+
+    private static long getVarLong(long address, long[] value) {
+        long r = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = Unsafe.getUnsafe().getByte(address++);
+            r |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        value[0] = r;
+        return address;
+    }
+
+    private static long putVarLong(long address, long value) {
+        while ((value & ~0x7fL) != 0) {
+            Unsafe.getUnsafe().putByte(address++, (byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        Unsafe.getUnsafe().putByte(address++, (byte) value);
+        return address;
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Timestamps are mostly increasing at steady pace, so difference between consecutive deltas is close to zero.
+     */
+    private static class DeltaOfDeltaCodec extends ColumnCodec {
+        private final long[] value = new long[1];
+        private long prev;
+        private long prevDelta;
+
+        @Override
+        public long decode(long src, int count, long dst) {
+            for (int i = 0; i < count; i++) {
+                src = getVarLong(src, value);
+                prevDelta += unZigZag(value[0]);
+                prev += prevDelta;
+                Unsafe.getUnsafe().putLong(dst, prev);
+                dst += 8;
+            }
+            return src;
+        }
+
+        @Override
+        public long encode(long src, int count, long dst) {
+            for (int i = 0; i < count; i++) {
+                long v = Unsafe.getUnsafe().getLong(src);
+                long delta = v - prev;
+                dst = putVarLong(dst, zigZag(delta - prevDelta));
+                prev = v;
+                prevDelta = delta;
+                src += 8;
+            }
+            return dst;
+        }
+
+        @Override
+        public int maxEncodedSize() {
+            return 10;
+        }
+
+        @Override
+        public void reset() {
+            prev = 0;
+            prevDelta = 0;
+        }
+
+        @Override
+        public int width() {
+            return 8;
+        }
+    }
+
+    /**
+     * Prices change by few units of least significant digits, which leaves most bits of consecutive
+     * values unchanged. Value is XOR-ed with previous one and only bytes that differ are sent
+     * preceded by byte with count of trailing zero bytes and count of bytes that follow.
+     */
+    private static class XorCodec extends ColumnCodec {
+        private long prev;
+
+        @Override
+        public long decode(long src, int count, long dst) {
+            for (int i = 0; i < count; i++) {
+                int control = Unsafe.getUnsafe().getByte(src++) & 0xff;
+                int n = control & 0x0f;
+                long x = 0;
+                for (int k = 0; k < n; k++) {
+                    x |= (Unsafe.getUnsafe().getByte(src++) & 0xffL) << (k << 3);
+                }
+                prev ^= x << ((control >>> 4) << 3);
+                Unsafe.getUnsafe().putLong(dst, prev);
+                dst += 8;
+            }
+            return src;
+        }
+
+        @Override
+        public long encode(long src, int count, long dst) {
+            for (int i = 0; i < count; i++) {
+                long v = Unsafe.getUnsafe().getLong(src);
+                long x = v ^ prev;
+                if (x == 0) {
+                    Unsafe.getUnsafe().putByte(dst++, (byte) 0);
+                } else {
+                    int tz = Long.numberOfTrailingZeros(x) >>> 3;
+                    int n = 8 - tz - (Long.numberOfLeadingZeros(x) >>> 3);
+                    Unsafe.getUnsafe().putByte(dst++, (byte) ((tz << 4) | n));
+                    x >>>= tz << 3;
+                    for (int k = 0; k < n; k++) {
+                        Unsafe.getUnsafe().putByte(dst++, (byte) x);
+                        x >>>= 8;
+                    }
+                }
+                prev = v;
+                src += 8;
+            }
+            return dst;
+        }
+
+        @Override
+        public int maxEncodedSize() {
+            return 9;
+        }
+
+        @Override
+        public void reset() {
+            prev = 0;
+        }
+
+        @Override
+        public int width() {
+            return 8;
+        }
+    }
+
+    /**
+     * Symbol keys and most int values are small or change in small steps, so that
+     * difference between consecutive values fits into one or two bytes.
+     */
+    private static class IntDeltaCodec extends ColumnCodec {
+        private final long[] value = new long[1];
+        private int prev;
+
+        @Override
+        public long decode(long src, int count, long dst) {
+            for (int i = 0; i < count; i++) {
+                src = getVarLong(src, value);
+                prev += (int) unZigZag(value[0]);
+                Unsafe.getUnsafe().putInt(dst, prev);
+                dst += 4;
+            }
+            return src;
+        }
+
+        @Override
+        public long encode(long src, int count, long dst) {
+            for (int i = 0; i < count; i++) {
+                int v = Unsafe.getUnsafe().getInt(src);
+                // int arithmetic wraps around identically on decode
+                dst = putVarLong(dst, zigZag(v - prev) & 0xffffffffL);
+                prev = v;
+                src += 4;
+            }
+            return dst;
+        }
+
+        @Override
+        public int maxEncodedSize() {
+            return 5;
+        }
+
+        @Override
+        public void reset() {
+            prev = 0;
+        }
+
+        @Override
+        public int width() {
+            return 4;
+        }
+    }
+}
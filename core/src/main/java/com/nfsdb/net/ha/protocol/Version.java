@@ -23,7 +23,31 @@ package com.nfsdb.net.ha.protocol;
 
 public final class Version {
 
-    public static final int PROTOCOL_VERSION = 2;
+    public static final int PROTOCOL_VERSION = 7;
+    /**
+     * Oldest version server still talks to. Version 2 clients receive column deltas as they are stored.
+     */
+    public static final int MIN_PROTOCOL_VERSION = 2;
+    /**
+     * First version, which packs column deltas with {@link ColumnCodec}.
+     */
+    public static final int PACKED_PROTOCOL_VERSION = 3;
+    /**
+     * First version, which lets client subscribe to some of journal columns and rows.
+     */
+    public static final int FILTER_PROTOCOL_VERSION = 4;
+    /**
+     * First version, which lets client receive column deltas over multicast.
+     */
+    public static final int MULTICAST_PROTOCOL_VERSION = 5;
+    /**
+     * First version, which tells client to replace partitions out of order rows have been merged into.
+     */
+    public static final int REWRITE_PROTOCOL_VERSION = 6;
+    /**
+     * First version, which tells client to drop partitions that have been dropped on server.
+     */
+    public static final int RETENTION_PROTOCOL_VERSION = 7;
 
     private Version() {
     }
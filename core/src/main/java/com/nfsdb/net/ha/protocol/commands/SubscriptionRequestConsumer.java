@@ -0,0 +1,38 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.protocol.commands;
+
+import com.nfsdb.net.ha.AbstractImmutableObjectConsumer;
+import com.nfsdb.net.ha.model.JournalSubscription;
+import com.nfsdb.net.ha.model.SubscriptionFilter;
+
+import java.nio.ByteBuffer;
+
+public class SubscriptionRequestConsumer extends AbstractImmutableObjectConsumer<JournalSubscription> {
+
+    @Override
+    protected JournalSubscription read(ByteBuffer buffer) {
+        int index = buffer.getInt();
+        boolean packed = buffer.get() == 1;
+        return new JournalSubscription(index, packed, buffer.get() == 1 ? SubscriptionFilter.fromBuffer(buffer) : null);
+    }
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha.protocol.commands;
+
+import com.nfsdb.net.ha.AbstractObjectProducer;
+import com.nfsdb.net.ha.model.JournalSubscription;
+
+import java.nio.ByteBuffer;
+
+public class SubscriptionRequestProducer extends AbstractObjectProducer<JournalSubscription> {
+
+    @Override
+    protected int getBufferSize(JournalSubscription value) {
+        return 4 + 1 + 1 + (value.getFilter() == null ? 0 : value.getFilter().getBufferSize());
+    }
+
+    @Override
+    protected void write(JournalSubscription value, ByteBuffer buffer) {
+        buffer.putInt(value.getIndex());
+        buffer.put((byte) (value.isPacked() ? 1 : 0));
+        if (value.getFilter() == null) {
+            buffer.put((byte) 0);
+        } else {
+            buffer.put((byte) 1);
+            value.getFilter().write(buffer);
+        }
+    }
+}
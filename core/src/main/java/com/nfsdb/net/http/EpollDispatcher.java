@@ -32,27 +32,28 @@ import com.nfsdb.misc.Os;
 import com.nfsdb.mp.*;
 import com.nfsdb.net.Epoll;
 import com.nfsdb.net.NetworkChannelImpl;
-import com.nfsdb.net.NonBlockingSecureSocketChannel;
+import com.nfsdb.net.NetworkChannelContext;
+import com.nfsdb.net.NetworkChannelContextFactory;
 import com.nfsdb.std.LongMatrix;
 
 import java.io.IOException;
 
-public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
+public class EpollDispatcher<C extends NetworkChannelContext> extends SynchronizedJob implements IODispatcher<C> {
     private static final int M_TIMESTAMP = 1;
     private static final int M_FD = 2;
     private static final int M_ID = 0;
     private static final Log LOG = LogFactory.getLog(EpollDispatcher.class);
     private final long socketFd;
-    private final RingQueue<IOEvent> ioQueue;
+    private final RingQueue<IOEvent<C>> ioQueue;
     private final Sequence ioSequence;
-    private final RingQueue<IOEvent> interestQueue;
+    private final RingQueue<IOEvent<C>> interestQueue;
     private final MPSequence interestPubSequence;
     private final SCSequence interestSubSequence = new SCSequence();
     private final Clock clock;
-    private final HttpServerConfiguration configuration;
+    private final NetworkChannelContextFactory<C> contextFactory;
     private final Epoll epoll;
     private final int timeout;
-    private final LongMatrix<IOContext> pending = new LongMatrix<>(4);
+    private final LongMatrix<C> pending = new LongMatrix<>(4);
     private final int maxConnections;
     private int connectionCount = 0;
     private long fdid = 1;
@@ -60,21 +61,23 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
     public EpollDispatcher(
             CharSequence ip,
             int port,
-            RingQueue<IOEvent> ioQueue,
+            RingQueue<IOEvent<C>> ioQueue,
             Sequence ioSequence,
             Clock clock,
-            HttpServerConfiguration configuration
+            int maxConnections,
+            int timeout,
+            NetworkChannelContextFactory<C> contextFactory
     ) {
         this.ioQueue = ioQueue;
         this.ioSequence = ioSequence;
-        this.interestQueue = new RingQueue<>(IOEvent.FACTORY, ioQueue.getCapacity());
+        this.interestQueue = new RingQueue<>(IOEvent.<C>factory(), ioQueue.getCapacity());
         this.interestPubSequence = new MPSequence(interestQueue.getCapacity());
         this.interestPubSequence.followedBy(this.interestSubSequence);
         this.interestSubSequence.followedBy(this.interestPubSequence);
         this.clock = clock;
-        this.configuration = configuration;
-        this.maxConnections = configuration.getHttpMaxConnections();
-        this.timeout = configuration.getHttpTimeout();
+        this.contextFactory = contextFactory;
+        this.maxConnections = maxConnections;
+        this.timeout = timeout;
 
         // bind socket
         this.epoll = new Epoll();
@@ -104,12 +107,12 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
     }
 
     @Override
-    public void registerChannel(IOContext context, ChannelStatus status) {
+    public void registerChannel(C context, ChannelStatus status) {
         long cursor = interestPubSequence.nextBully();
-        IOEvent evt = interestQueue.get(cursor);
+        IOEvent<C> evt = interestQueue.get(cursor);
         evt.context = context;
         evt.status = status;
-        LOG.debug().$("Re-queuing ").$(context.channel.getFd()).$();
+        LOG.debug().$("Re-queuing ").$(context.getChannel().getFd()).$();
         interestPubSequence.done(cursor);
     }
 
@@ -153,23 +156,11 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
         pending.set(r, M_FD, _fd);
         pending.set(r, M_ID, fdid++);
 
-        NetworkChannelImpl channel = new NetworkChannelImpl(_fd);
-        pending.set(r, new IOContext(
-                        configuration.getSslConfig().isSecure() ?
-                                new NonBlockingSecureSocketChannel(channel, configuration.getSslConfig()) :
-                                channel,
-                        clock,
-                        configuration.getHttpBufReqHeader(),
-                        configuration.getHttpBufReqContent(),
-                        configuration.getHttpBufReqMultipart(),
-                        configuration.getHttpBufRespHeader(),
-                        configuration.getHttpBufRespContent()
-                )
-        );
+        pending.set(r, contextFactory.newInstance(new NetworkChannelImpl(_fd)));
     }
 
-    private void disconnect(IOContext context, DisconnectReason reason) {
-        LOG.debug().$("Disconnected ").$(context.channel.getFd()).$(": ").$(reason).$();
+    private void disconnect(C context, DisconnectReason reason) {
+        LOG.debug().$("Disconnected ").$(context.getChannel().getFd()).$(": ").$(reason).$();
         context.close();
         connectionCount--;
     }
@@ -199,12 +190,12 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
         int offset = 0;
         while ((cursor = interestSubSequence.next()) > -1) {
             useful = true;
-            IOEvent evt = interestQueue.get(cursor);
-            IOContext context = evt.context;
+            IOEvent<C> evt = interestQueue.get(cursor);
+            C context = evt.context;
             ChannelStatus op = evt.status;
             interestSubSequence.done(cursor);
 
-            int fd = (int) context.channel.getFd();
+            int fd = (int) context.getChannel().getFd();
             LOG.debug().$("Registering ").$(fd).$(" status ").$(op).$();
             epoll.setOffset(offset);
             offset += Epoll.SIZEOF_EVENT;
@@ -262,13 +253,13 @@ public class EpollDispatcher extends SynchronizedJob implements IODispatcher {
                         continue;
                     }
 
-                    final IOContext context = pending.get(row);
+                    final C context = pending.get(row);
                     long cursor = ioSequence.nextBully();
-                    IOEvent evt = ioQueue.get(cursor);
+                    IOEvent<C> evt = ioQueue.get(cursor);
                     evt.context = context;
                     evt.status = (epoll.getEvent() & Epoll.EPOLLIN) > 0 ? ChannelStatus.READ : ChannelStatus.WRITE;
                     ioSequence.done(cursor);
-                    LOG.debug().$("Queuing ").$(id).$(" on ").$(context.channel.getFd()).$();
+                    LOG.debug().$("Queuing ").$(id).$(" on ").$(context.getChannel().getFd()).$();
                     pending.deleteRow(row);
                     watermark--;
                 }
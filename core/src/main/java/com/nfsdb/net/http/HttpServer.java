@@ -27,6 +27,9 @@ import com.nfsdb.iter.clock.MilliClock;
 import com.nfsdb.misc.Misc;
 import com.nfsdb.misc.Os;
 import com.nfsdb.mp.*;
+import com.nfsdb.net.NetworkChannel;
+import com.nfsdb.net.NetworkChannelContextFactory;
+import com.nfsdb.net.NonBlockingSecureSocketChannel;
 import com.nfsdb.std.ObjHashSet;
 import com.nfsdb.std.ObjList;
 
@@ -45,8 +48,8 @@ public class HttpServer {
     private final HttpServerConfiguration configuration;
     private volatile boolean running = true;
     private Clock clock = MilliClock.INSTANCE;
-    private IODispatcher dispatcher;
-    private RingQueue<IOEvent> ioQueue;
+    private IODispatcher<IOContext> dispatcher;
+    private RingQueue<IOEvent<IOContext>> ioQueue;
 
     public HttpServer(HttpServerConfiguration configuration, UrlMatcher urlMatcher) {
         this.address = new InetSocketAddress(configuration.getHttpPort());
@@ -72,7 +75,7 @@ public class HttpServer {
             dispatcher.close();
 
             for (int i = 0; i < ioQueue.getCapacity(); i++) {
-                IOEvent ev = ioQueue.get(i);
+                IOEvent<IOContext> ev = ioQueue.get(i);
                 if (ev != null && ev.context != null) {
                     ev.context = Misc.free(ev.context);
                 }
@@ -86,7 +89,7 @@ public class HttpServer {
 
     public void start(ObjHashSet<? extends Job> extraJobs) {
         this.running = true;
-        ioQueue = new RingQueue<>(IOEvent.FACTORY, ioQueueSize);
+        ioQueue = new RingQueue<>(IOEvent.<IOContext>factory(), ioQueueSize);
         SPSequence ioPubSequence = new SPSequence(ioQueueSize);
         MCSequence ioSubSequence = new MCSequence(ioQueueSize, null);
         ioPubSequence.followedBy(ioSubSequence);
@@ -115,22 +118,41 @@ public class HttpServer {
         start(null);
     }
 
-    private IODispatcher createDispatcher(
+    private IODispatcher<IOContext> createDispatcher(
             CharSequence ip,
             int port,
-            RingQueue<IOEvent> ioQueue,
+            RingQueue<IOEvent<IOContext>> ioQueue,
             Sequence ioSequence,
-            Clock clock,
-            HttpServerConfiguration configuration
+            final Clock clock,
+            final HttpServerConfiguration configuration
     ) {
 
+        final int maxConnections = configuration.getHttpMaxConnections();
+        final int timeout = configuration.getHttpTimeout();
+        final NetworkChannelContextFactory<IOContext> contextFactory = new NetworkChannelContextFactory<IOContext>() {
+            @Override
+            public IOContext newInstance(NetworkChannel channel) {
+                return new IOContext(
+                        configuration.getSslConfig().isSecure() ?
+                                new NonBlockingSecureSocketChannel(channel, configuration.getSslConfig()) :
+                                channel,
+                        clock,
+                        configuration.getHttpBufReqHeader(),
+                        configuration.getHttpBufReqContent(),
+                        configuration.getHttpBufReqMultipart(),
+                        configuration.getHttpBufRespHeader(),
+                        configuration.getHttpBufRespContent()
+                );
+            }
+        };
+
         switch (Os.type) {
             case Os.OSX:
-                return new KQueueDispatcher(ip, port, ioQueue, ioSequence, clock, configuration);
+                return new KQueueDispatcher<>(ip, port, ioQueue, ioSequence, clock, maxConnections, timeout, contextFactory);
             case Os.WINDOWS:
-                return new Win32SelectDispatcher(ip, port, ioQueue, ioSequence, clock, configuration);
+                return new Win32SelectDispatcher<>(ip, port, ioQueue, ioSequence, clock, maxConnections, timeout, contextFactory);
             case Os.LINUX:
-                return new EpollDispatcher(ip, port, ioQueue, ioSequence, clock, configuration);
+                return new EpollDispatcher<>(ip, port, ioQueue, ioSequence, clock, maxConnections, timeout, contextFactory);
             default:
                 throw new FatalError("Unsupported operating system");
         }
@@ -26,15 +26,15 @@ import com.nfsdb.ex.SlowWritableChannelException;
 import com.nfsdb.iter.clock.Clock;
 import com.nfsdb.misc.Misc;
 import com.nfsdb.net.NetworkChannel;
+import com.nfsdb.net.NetworkChannelContext;
 import com.nfsdb.std.FlyweightCharSequence;
 import com.nfsdb.std.LocalValueMap;
 import com.nfsdb.std.Locality;
 import com.nfsdb.std.Mutable;
 
-import java.io.Closeable;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-public class IOContext implements Closeable, Mutable, Locality {
+public class IOContext implements NetworkChannelContext, Mutable, Locality {
     public final NetworkChannel channel;
     public final Request request;
     public final FlyweightCharSequence ext = new FlyweightCharSequence();
@@ -73,6 +73,11 @@ public class IOContext implements Closeable, Mutable, Locality {
         return response.asFixedSize();
     }
 
+    @Override
+    public NetworkChannel getChannel() {
+        return channel;
+    }
+
     @Override
     public LocalValueMap getMap() {
         return map;
@@ -1,4 +1,4 @@
-/*
+/*******************************************************************************
  *  _  _ ___ ___     _ _
  * | \| | __/ __| __| | |__
  * | .` | _|\__ \/ _` | '_ \
@@ -17,16 +17,17 @@
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
  * See the License for the specific language governing permissions and
  * limitations under the License.
- */
+ ******************************************************************************/
 
 package com.nfsdb.net.http;
 
 import com.nfsdb.mp.Job;
+import com.nfsdb.net.NetworkChannelContext;
 
 import java.io.Closeable;
 
-interface IODispatcher extends Closeable, Job {
+public interface IODispatcher<C extends NetworkChannelContext> extends Closeable, Job {
     int getConnectionCount();
 
-    void registerChannel(IOContext context, ChannelStatus status);
+    void registerChannel(C context, ChannelStatus status);
 }
@@ -23,13 +23,18 @@ package com.nfsdb.net.http;
 
 import com.nfsdb.std.ObjectFactory;
 
-public class IOEvent {
-    public static final ObjectFactory<IOEvent> FACTORY = new ObjectFactory<IOEvent>() {
+public class IOEvent<C> {
+    private static final ObjectFactory<IOEvent> FACTORY = new ObjectFactory<IOEvent>() {
         @Override
         public IOEvent newInstance() {
             return new IOEvent();
         }
     };
     public ChannelStatus status;
-    public IOContext context;
+    public C context;
+
+    @SuppressWarnings("unchecked")
+    public static <C> ObjectFactory<IOEvent<C>> factory() {
+        return (ObjectFactory<IOEvent<C>>) (ObjectFactory) FACTORY;
+    }
 }
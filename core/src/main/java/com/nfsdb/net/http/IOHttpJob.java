@@ -36,12 +36,12 @@ public class IOHttpJob implements Job {
     private final static Log ACCESS = LogFactory.getLog("access");
     private final static Log LOG = LogFactory.getLog(IOHttpJob.class);
 
-    private final RingQueue<IOEvent> ioQueue;
+    private final RingQueue<IOEvent<IOContext>> ioQueue;
     private final Sequence ioSequence;
-    private final IODispatcher ioDispatcher;
+    private final IODispatcher<IOContext> ioDispatcher;
     private final UrlMatcher urlMatcher;
 
-    public IOHttpJob(RingQueue<IOEvent> ioQueue, Sequence ioSequence, IODispatcher ioDispatcher, UrlMatcher urlMatcher) {
+    public IOHttpJob(RingQueue<IOEvent<IOContext>> ioQueue, Sequence ioSequence, IODispatcher<IOContext> ioDispatcher, UrlMatcher urlMatcher) {
         this.ioQueue = ioQueue;
         this.ioSequence = ioSequence;
         this.ioDispatcher = ioDispatcher;
@@ -55,7 +55,7 @@ public class IOHttpJob implements Job {
             return false;
         }
 
-        IOEvent evt = ioQueue.get(cursor);
+        IOEvent<IOContext> evt = ioQueue.get(cursor);
 
         final IOContext ioContext = evt.context;
         final ChannelStatus op = evt.status;
@@ -31,46 +31,49 @@ import com.nfsdb.misc.Net;
 import com.nfsdb.mp.*;
 import com.nfsdb.net.Kqueue;
 import com.nfsdb.net.NetworkChannelImpl;
-import com.nfsdb.net.NonBlockingSecureSocketChannel;
+import com.nfsdb.net.NetworkChannelContext;
+import com.nfsdb.net.NetworkChannelContextFactory;
 import com.nfsdb.std.LongMatrix;
 
 import java.io.IOException;
 
-public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
+public class KQueueDispatcher<C extends NetworkChannelContext> extends SynchronizedJob implements IODispatcher<C> {
     private static final Log LOG = LogFactory.getLog(KQueueDispatcher.class);
 
     private final long socketFd;
-    private final RingQueue<IOEvent> ioQueue;
+    private final RingQueue<IOEvent<C>> ioQueue;
     private final Sequence ioSequence;
-    private final RingQueue<IOEvent> interestQueue;
+    private final RingQueue<IOEvent<C>> interestQueue;
     private final MPSequence interestPubSequence;
     private final SCSequence interestSubSequence = new SCSequence();
     private final Clock clock;
-    private final HttpServerConfiguration configuration;
+    private final NetworkChannelContextFactory<C> contextFactory;
     private final Kqueue kqueue;
     private final int timeout;
-    private final LongMatrix<IOContext> pending = new LongMatrix<>(2);
+    private final LongMatrix<C> pending = new LongMatrix<>(2);
     private final int maxConnections;
     private int connectionCount = 0;
 
     public KQueueDispatcher(
             CharSequence ip,
             int port,
-            RingQueue<IOEvent> ioQueue,
+            RingQueue<IOEvent<C>> ioQueue,
             Sequence ioSequence,
             Clock clock,
-            HttpServerConfiguration configuration
+            int maxConnections,
+            int timeout,
+            NetworkChannelContextFactory<C> contextFactory
     ) {
         this.ioQueue = ioQueue;
         this.ioSequence = ioSequence;
-        this.interestQueue = new RingQueue<>(IOEvent.FACTORY, ioQueue.getCapacity());
+        this.interestQueue = new RingQueue<>(IOEvent.<C>factory(), ioQueue.getCapacity());
         this.interestPubSequence = new MPSequence(interestQueue.getCapacity());
         this.interestPubSequence.followedBy(this.interestSubSequence);
         this.interestSubSequence.followedBy(this.interestPubSequence);
         this.clock = clock;
-        this.configuration = configuration;
-        this.maxConnections = configuration.getHttpMaxConnections();
-        this.timeout = configuration.getHttpTimeout();
+        this.contextFactory = contextFactory;
+        this.maxConnections = maxConnections;
+        this.timeout = timeout;
 
         // bind socket
         this.kqueue = new Kqueue();
@@ -101,12 +104,12 @@ public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
     }
 
     @Override
-    public void registerChannel(IOContext context, ChannelStatus status) {
+    public void registerChannel(C context, ChannelStatus status) {
         long cursor = interestPubSequence.nextBully();
-        IOEvent evt = interestQueue.get(cursor);
+        IOEvent<C> evt = interestQueue.get(cursor);
         evt.context = context;
         evt.status = status;
-        LOG.debug().$("Re-queuing ").$(context.channel.getFd()).$();
+        LOG.debug().$("Re-queuing ").$(context.getChannel().getFd()).$();
         interestPubSequence.done(cursor);
     }
 
@@ -145,23 +148,11 @@ public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
         LOG.debug().$(" Matrix row ").$(r).$(" for ").$(_fd).$();
         pending.set(r, 0, timestamp);
         pending.set(r, 1, _fd);
-        NetworkChannelImpl channel = new NetworkChannelImpl(_fd);
-        pending.set(r, new IOContext(
-                        configuration.getSslConfig().isSecure() ?
-                                new NonBlockingSecureSocketChannel(channel, configuration.getSslConfig()) :
-                                channel,
-                        clock,
-                        configuration.getHttpBufReqHeader(),
-                        configuration.getHttpBufReqContent(),
-                        configuration.getHttpBufReqMultipart(),
-                        configuration.getHttpBufRespHeader(),
-                        configuration.getHttpBufRespContent()
-                )
-        );
+        pending.set(r, contextFactory.newInstance(new NetworkChannelImpl(_fd)));
     }
 
-    private void disconnect(IOContext context, DisconnectReason reason) {
-        LOG.debug().$("Disconnected ").$(context.channel.getFd()).$(": ").$(reason).$();
+    private void disconnect(C context, DisconnectReason reason) {
+        LOG.debug().$("Disconnected ").$(context.getChannel().getFd()).$(": ").$(reason).$();
         context.close();
         connectionCount--;
     }
@@ -211,12 +202,12 @@ public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
         int offset = 0;
         while ((cursor = interestSubSequence.next()) > -1) {
             useful = true;
-            IOEvent evt = interestQueue.get(cursor);
-            IOContext context = evt.context;
+            IOEvent<C> evt = interestQueue.get(cursor);
+            C context = evt.context;
             ChannelStatus op = evt.status;
             interestSubSequence.done(cursor);
 
-            int fd = (int) context.channel.getFd();
+            int fd = (int) context.getChannel().getFd();
             LOG.debug().$("Registering ").$(fd).$(" status ").$(op).$();
             kqueue.setOffset(offset);
             offset += Kqueue.SIZEOF_KEVENT;
@@ -291,7 +282,7 @@ public class KQueueDispatcher extends SynchronizedJob implements IODispatcher {
                         disconnect(pending.get(row), DisconnectReason.PEER);
                     } else {
                         long cursor = ioSequence.nextBully();
-                        IOEvent evt = ioQueue.get(cursor);
+                        IOEvent<C> evt = ioQueue.get(cursor);
                         evt.context = pending.get(row);
                         evt.status = kqueue.getFilter() == Kqueue.EVFILT_READ ? ChannelStatus.READ : ChannelStatus.WRITE;
                         ioSequence.done(cursor);
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.http;
+
+import com.nfsdb.ex.NetworkError;
+import com.nfsdb.iter.clock.Clock;
+import com.nfsdb.log.Log;
+import com.nfsdb.log.LogFactory;
+import com.nfsdb.misc.Misc;
+import com.nfsdb.mp.*;
+import com.nfsdb.net.NetworkChannelContext;
+import com.nfsdb.net.NetworkChannelContextFactory;
+import com.nfsdb.net.NioNetworkChannel;
+
+import java.io.IOException;
+import java.nio.channels.*;
+import java.util.IdentityHashMap;
+
+/**
+ * Dispatcher on top of java.nio selector. It is slower than native dispatchers, but accepts connections
+ * on any server socket channel, which makes it the choice for IPv6 addresses native dispatchers cannot bind.
+ */
+public class NioSelectDispatcher<C extends NetworkChannelContext> extends SynchronizedJob implements IODispatcher<C> {
+    private static final Log LOG = LogFactory.getLog(NioSelectDispatcher.class);
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final RingQueue<IOEvent<C>> ioQueue;
+    private final Sequence ioSequence;
+    private final RingQueue<IOEvent<C>> interestQueue;
+    private final MPSequence interestPubSequence;
+    private final SCSequence interestSubSequence = new SCSequence();
+    private final Clock clock;
+    private final NetworkChannelContextFactory<C> contextFactory;
+    private final int timeout;
+    private final int maxConnections;
+    // contexts can wrap channel, so key cannot be found from channel of context
+    private final IdentityHashMap<C, SelectionKey> keys = new IdentityHashMap<>();
+    private int connectionCount = 0;
+    private long nextIdleCheck = 0;
+
+    public NioSelectDispatcher(
+            ServerSocketChannel serverChannel,
+            RingQueue<IOEvent<C>> ioQueue,
+            Sequence ioSequence,
+            Clock clock,
+            int maxConnections,
+            int timeout,
+            NetworkChannelContextFactory<C> contextFactory
+    ) {
+        this.serverChannel = serverChannel;
+        this.ioQueue = ioQueue;
+        this.ioSequence = ioSequence;
+        this.interestQueue = new RingQueue<>(IOEvent.<C>factory(), ioQueue.getCapacity());
+        this.interestPubSequence = new MPSequence(interestQueue.getCapacity());
+        this.interestPubSequence.followedBy(this.interestSubSequence);
+        this.interestSubSequence.followedBy(this.interestPubSequence);
+        this.clock = clock;
+        this.contextFactory = contextFactory;
+        this.maxConnections = maxConnections;
+        this.timeout = timeout;
+
+        try {
+            this.selector = Selector.open();
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new NetworkError(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment != null) {
+                Misc.free(((Registration) attachment).context);
+            }
+        }
+        selector.close();
+        serverChannel.close();
+    }
+
+    @Override
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    @Override
+    public void registerChannel(C context, ChannelStatus status) {
+        long cursor = interestPubSequence.nextBully();
+        IOEvent<C> evt = interestQueue.get(cursor);
+        evt.context = context;
+        evt.status = status;
+        interestPubSequence.done(cursor);
+    }
+
+    private void accept(long timestamp) {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                LOG.error().$("Error in accept(): ").$(e.getMessage()).$();
+                break;
+            }
+
+            if (channel == null) {
+                break;
+            }
+
+            connectionCount++;
+
+            try {
+                if (connectionCount > maxConnections) {
+                    LOG.info().$("Too many connections, kicking out ").$(channel.getRemoteAddress()).$();
+                    channel.close();
+                    connectionCount--;
+                    return;
+                }
+
+                channel.configureBlocking(false);
+                Registration r = new Registration(contextFactory.newInstance(new NioNetworkChannel(channel)));
+                r.timestamp = timestamp;
+                keys.put(r.context, channel.register(selector, SelectionKey.OP_READ, r));
+            } catch (IOException e) {
+                LOG.error().$("Cannot register channel: ").$(e.getMessage()).$();
+                Misc.free(channel);
+                connectionCount--;
+            }
+        }
+    }
+
+    private void disconnect(C context, DisconnectReason reason) {
+        LOG.debug().$("Disconnected: ").$(reason).$();
+        keys.remove(context);
+        context.close();
+        connectionCount--;
+    }
+
+    private void processIdleConnections(long deadline) {
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment != null && key.isValid() && key.interestOps() != 0) {
+                Registration r = (Registration) attachment;
+                if (r.timestamp < deadline) {
+                    key.cancel();
+                    disconnect(r.context, DisconnectReason.IDLE);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean processRegistrations(long timestamp) {
+        long cursor;
+        boolean useful = false;
+        while ((cursor = interestSubSequence.next()) > -1) {
+            useful = true;
+            IOEvent<C> evt = interestQueue.get(cursor);
+            C context = evt.context;
+            ChannelStatus op = evt.status;
+            interestSubSequence.done(cursor);
+
+            SelectionKey key = keys.get(context);
+            switch (op) {
+                case READ:
+                case WRITE:
+                    if (key == null || !key.isValid()) {
+                        disconnect(context, DisconnectReason.SILLY);
+                        continue;
+                    }
+                    key.interestOps(op == ChannelStatus.READ ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+                    ((Registration) key.attachment()).timestamp = timestamp;
+                    break;
+                case DISCONNECTED:
+                    disconnect(context, DisconnectReason.SILLY);
+                    break;
+                case EOF:
+                    disconnect(context, DisconnectReason.PEER);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return useful;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected boolean runSerially() {
+        boolean useful = false;
+        final long timestamp = clock.getTicks();
+        int n;
+        try {
+            n = selector.selectNow();
+        } catch (IOException e) {
+            LOG.error().$("Error in select(): ").$(e.getMessage()).$();
+            return false;
+        }
+
+        if (n > 0) {
+            for (SelectionKey key : selector.selectedKeys()) {
+                if (!key.isValid()) {
+                    continue;
+                }
+
+                if (key.isAcceptable()) {
+                    accept(timestamp);
+                    continue;
+                }
+
+                // context is owned by IO job until it is registered again
+                boolean read = key.isReadable();
+                key.interestOps(0);
+                long cursor = ioSequence.nextBully();
+                IOEvent<C> evt = ioQueue.get(cursor);
+                evt.context = ((Registration) key.attachment()).context;
+                evt.status = read ? ChannelStatus.READ : ChannelStatus.WRITE;
+                ioSequence.done(cursor);
+            }
+            selector.selectedKeys().clear();
+            useful = true;
+        }
+
+        // scanning all keys is not cheap, checking idle connections every now and then is enough
+        if (timestamp >= nextIdleCheck) {
+            processIdleConnections(timestamp - timeout);
+            nextIdleCheck = timestamp + Math.min(timeout, 1000);
+        }
+
+        return processRegistrations(timestamp) || useful;
+    }
+
+    private class Registration {
+        private final C context;
+        private long timestamp;
+
+        private Registration(C context) {
+            this.context = context;
+        }
+    }
+}
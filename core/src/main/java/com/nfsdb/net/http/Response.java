@@ -381,6 +381,16 @@ public class Response implements Closeable, Mutable {
         public void status(int status, CharSequence contentType) {
             hb.status(status, contentType, -1);
         }
+
+        @Override
+        public void write(long address, int len) {
+            if (_wPtr + len <= limit) {
+                Unsafe.getUnsafe().copyMemory(address, _wPtr, len);
+                _wPtr += len;
+            } else {
+                throw ResponseContentBufferTooSmallException.INSTANCE;
+            }
+        }
     }
 
     private class FixedSizeResponseImpl implements FixedSizeResponse {
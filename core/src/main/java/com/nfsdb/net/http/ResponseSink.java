@@ -25,4 +25,13 @@ import com.nfsdb.io.sink.CharSink;
 
 public interface ResponseSink extends CharSink {
     void status(int status, CharSequence contentType);
+
+    /**
+     * Copies bytes from memory into response content buffer.
+     *
+     * @param address address of first byte
+     * @param len     number of bytes to copy
+     * @throws com.nfsdb.ex.ResponseContentBufferTooSmallException when bytes do not fit remaining buffer space
+     */
+    void write(long address, int len);
 }
@@ -28,13 +28,14 @@ import com.nfsdb.log.LogFactory;
 import com.nfsdb.misc.*;
 import com.nfsdb.mp.*;
 import com.nfsdb.net.NetworkChannelImpl;
-import com.nfsdb.net.NonBlockingSecureSocketChannel;
+import com.nfsdb.net.NetworkChannelContext;
+import com.nfsdb.net.NetworkChannelContextFactory;
 import com.nfsdb.std.LongIntHashMap;
 import com.nfsdb.std.LongMatrix;
 
 import java.io.IOException;
 
-public class Win32SelectDispatcher extends SynchronizedJob implements IODispatcher {
+public class Win32SelectDispatcher<C extends NetworkChannelContext> extends SynchronizedJob implements IODispatcher<C> {
 
     private static final int M_TIMESTAMP = 0;
     private static final int M_FD = 1;
@@ -47,15 +48,15 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
     private final FDSet readFdSet = new FDSet(1024);
     private final FDSet writeFdSet = new FDSet(1024);
     private final long socketFd;
-    private final RingQueue<IOEvent> ioQueue;
+    private final RingQueue<IOEvent<C>> ioQueue;
     private final Sequence ioSequence;
-    private final RingQueue<IOEvent> interestQueue;
+    private final RingQueue<IOEvent<C>> interestQueue;
     private final MPSequence interestPubSequence;
     private final SCSequence interestSubSequence = new SCSequence();
     private final Clock clock;
-    private final HttpServerConfiguration configuration;
+    private final NetworkChannelContextFactory<C> contextFactory;
     private final int timeout;
-    private final LongMatrix<IOContext> pending = new LongMatrix<>(4);
+    private final LongMatrix<C> pending = new LongMatrix<>(4);
     private final int maxConnections;
     private final LongIntHashMap fds = new LongIntHashMap();
     private int connectionCount = 0;
@@ -63,21 +64,23 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
     public Win32SelectDispatcher(
             CharSequence ip,
             int port,
-            RingQueue<IOEvent> ioQueue,
+            RingQueue<IOEvent<C>> ioQueue,
             Sequence ioSequence,
             Clock clock,
-            HttpServerConfiguration configuration
+            int maxConnections,
+            int timeout,
+            NetworkChannelContextFactory<C> contextFactory
     ) {
         this.ioQueue = ioQueue;
         this.ioSequence = ioSequence;
-        this.interestQueue = new RingQueue<>(IOEvent.FACTORY, ioQueue.getCapacity());
+        this.interestQueue = new RingQueue<>(IOEvent.<C>factory(), ioQueue.getCapacity());
         this.interestPubSequence = new MPSequence(interestQueue.getCapacity());
         this.interestPubSequence.followedBy(this.interestSubSequence);
         this.interestSubSequence.followedBy(this.interestPubSequence);
         this.clock = clock;
-        this.configuration = configuration;
-        this.maxConnections = configuration.getHttpMaxConnections();
-        this.timeout = configuration.getHttpTimeout();
+        this.contextFactory = contextFactory;
+        this.maxConnections = maxConnections;
+        this.timeout = timeout;
 
         // bind socket
         this.socketFd = Net.socketTcp(false);
@@ -113,12 +116,12 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
     }
 
     @Override
-    public void registerChannel(IOContext context, ChannelStatus status) {
+    public void registerChannel(C context, ChannelStatus status) {
         long cursor = interestPubSequence.nextBully();
-        IOEvent evt = interestQueue.get(cursor);
+        IOEvent<C> evt = interestQueue.get(cursor);
         evt.context = context;
         evt.status = status;
-        LOG.debug().$("Re-queuing ").$(status).$(" on ").$(context.channel.getFd()).$();
+        LOG.debug().$("Re-queuing ").$(status).$(" on ").$(context.getChannel().getFd()).$();
         interestPubSequence.done(cursor);
     }
 
@@ -167,34 +170,22 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
         pending.set(r, M_TIMESTAMP, timestamp);
         pending.set(r, M_FD, _fd);
         pending.set(r, M_OPERATION, ChannelStatus.READ.ordinal());
-        NetworkChannelImpl channel = new NetworkChannelImpl(_fd);
-        pending.set(r, new IOContext(
-                        configuration.getSslConfig().isSecure() ?
-                                new NonBlockingSecureSocketChannel(channel, configuration.getSslConfig()) :
-                                channel,
-                        clock,
-                        configuration.getHttpBufReqHeader(),
-                        configuration.getHttpBufReqContent(),
-                        configuration.getHttpBufReqMultipart(),
-                        configuration.getHttpBufRespHeader(),
-                        configuration.getHttpBufRespContent()
-                )
-        );
+        pending.set(r, contextFactory.newInstance(new NetworkChannelImpl(_fd)));
     }
 
-    private void disconnect(IOContext context, DisconnectReason reason) {
-        LOG.debug().$("Disconnected ").$(context.channel.getFd()).$(": ").$(reason).$();
+    private void disconnect(C context, DisconnectReason reason) {
+        LOG.debug().$("Disconnected ").$(context.getChannel().getFd()).$(": ").$(reason).$();
         context.close();
         connectionCount--;
     }
 
-    private void enqueue(IOContext context, ChannelStatus status) {
+    private void enqueue(C context, ChannelStatus status) {
         long cursor = ioSequence.nextBully();
-        IOEvent evt = ioQueue.get(cursor);
+        IOEvent<C> evt = ioQueue.get(cursor);
         evt.context = context;
         evt.status = status;
         ioSequence.done(cursor);
-        LOG.debug().$("Queuing ").$(status).$(" on ").$(context.channel.getFd()).$();
+        LOG.debug().$("Queuing ").$(status).$(" on ").$(context.getChannel().getFd()).$();
 
     }
 
@@ -203,14 +194,14 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
         boolean useful = false;
         while ((cursor = interestSubSequence.next()) > -1) {
             useful = true;
-            IOEvent evt = interestQueue.get(cursor);
-            IOContext context = evt.context;
+            IOEvent<C> evt = interestQueue.get(cursor);
+            C context = evt.context;
             ChannelStatus op = evt.status;
             interestSubSequence.done(cursor);
 
             int r = pending.addRow();
             pending.set(r, M_TIMESTAMP, timestamp);
-            pending.set(r, M_FD, context.channel.getFd());
+            pending.set(r, M_FD, context.getChannel().getFd());
             pending.set(r, M_OPERATION, op.ordinal());
             pending.set(r, context);
         }
@@ -316,7 +307,7 @@ public class Win32SelectDispatcher extends SynchronizedJob implements IODispatch
                 // this fd just has fired
                 // publish event
                 // and remove from pending
-                final IOContext context = pending.get(i);
+                final C context = pending.get(i);
 
                 if ((_new_op & FD_READ) > 0) {
                     enqueue(context, ChannelStatus.READ);
@@ -0,0 +1,590 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.http.handlers;
+
+import com.nfsdb.ex.*;
+import com.nfsdb.factory.JournalCachingFactory;
+import com.nfsdb.factory.JournalFactoryPool;
+import com.nfsdb.factory.configuration.RecordColumnMetadata;
+import com.nfsdb.factory.configuration.RecordMetadata;
+import com.nfsdb.log.Log;
+import com.nfsdb.log.LogFactory;
+import com.nfsdb.log.LogRecord;
+import com.nfsdb.misc.Chars;
+import com.nfsdb.misc.Numbers;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.net.http.ChunkedResponse;
+import com.nfsdb.net.http.ContextHandler;
+import com.nfsdb.net.http.IOContext;
+import com.nfsdb.ql.Record;
+import com.nfsdb.ql.RecordCursor;
+import com.nfsdb.ql.RecordSource;
+import com.nfsdb.ql.parser.QueryCompiler;
+import com.nfsdb.ql.parser.QueryError;
+import com.nfsdb.std.*;
+import com.nfsdb.std.ThreadLocal;
+import com.nfsdb.store.ColumnType;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Streams query results as batches of binary columns. Accepts same "query", "limit" and "withCount"
+ * parameters as {@link JsonHandler}. All numbers are little-endian, strings are int length
+ * followed by UTF-16 chars, with length of -1 for null.
+ * <p>
+ * Response starts with column list: byte 'H', int column count and for each column byte type
+ * ordinal of {@link ColumnType} followed by column name. Each batch is byte 'B', int row count
+ * and array of values for each column in turn:
+ * <pre>
+ * BOOLEAN, BYTE         1 byte per row
+ * SHORT                 2 bytes per row
+ * INT, FLOAT            4 bytes per row
+ * LONG, DATE, DOUBLE    8 bytes per row
+ * STRING                string per row
+ * BINARY                int length (-1 for null) and bytes per row
+ * SYMBOL                int count of new dictionary entries, new entries as strings,
+ *                       then int dictionary key (-1 for null) per row
+ * </pre>
+ * Symbol dictionary keys are assigned to column values in order of their appearance and each
+ * value is sent only once per response. Nulls of fixed size types are sent as their usual
+ * in-band values. Response ends with byte 'E', byte 1 when there are more rows past limit
+ * or 0 otherwise, and long total row count, which is -1 unless "withCount" was requested.
+ * Query errors are sent as byte 'X', int position in query text (-1 when unknown) and message.
+ */
+public class BinaryHandler implements ContextHandler {
+    private static final byte HEADER = 'H';
+    private static final byte BATCH = 'B';
+    private static final byte END = 'E';
+    private static final byte ERROR = 'X';
+    private static final String CONTENT_TYPE = "application/octet-stream";
+    // batch type and row count
+    private static final int BATCH_HEADER_SIZE = 5;
+    private static final ThreadLocal<QueryCompiler> queryCompilerLocal = new ThreadLocal<>(new ObjectFactory<QueryCompiler>() {
+        @Override
+        public QueryCompiler newInstance() {
+            return new QueryCompiler();
+        }
+    });
+
+    private final JournalFactoryPool factoryPool;
+    private final LocalValue<$Context> localContext = new LocalValue<>();
+
+    public BinaryHandler(JournalFactoryPool factoryPool) {
+        this.factoryPool = factoryPool;
+    }
+
+    @Override
+    public void handle(IOContext context) throws IOException {
+        $Context ctx = localContext.get(context);
+        if (ctx == null) {
+            ctx = new $Context();
+            localContext.set(context, ctx);
+        }
+        ctx.fd = context.channel.getFd();
+
+        ChunkedResponse r = context.chunkedResponse();
+        CharSequence query = context.request.getUrlParam("query");
+        if (query == null || query.length() == 0) {
+            ctx.info().$("Empty query request received. Sending empty reply.").$();
+            r.status(200, CONTENT_TYPE);
+            r.sendHeader();
+            r.put((char) HEADER);
+            putInt(ctx, r, 0);
+            r.put((char) END);
+            r.put((char) 0);
+            putLong(ctx, r, -1L);
+            r.sendChunk();
+            r.done();
+            return;
+        }
+
+        long skip = 0;
+        long stop = Long.MAX_VALUE;
+
+        CharSequence limit = context.request.getUrlParam("limit");
+        if (limit != null) {
+            int sepPos = Chars.indexOf(limit, ',');
+            try {
+                if (sepPos > 0) {
+                    skip = Numbers.parseLong(limit, 0, sepPos);
+                    if (sepPos + 1 < limit.length()) {
+                        stop = Numbers.parseLong(limit, sepPos + 1, limit.length());
+                    }
+                } else {
+                    stop = Numbers.parseLong(limit);
+                }
+            } catch (NumericException ex) {
+                // Skip or stop will have default value.
+            }
+        }
+        if (stop < 0) {
+            stop = 0;
+        }
+
+        if (skip < 0) {
+            skip = 0;
+        }
+
+        CharSequence withCount = context.request.getUrlParam("withCount");
+        ctx.includeCount = withCount != null && Chars.equalsIgnoreCase(withCount, "true");
+        ctx.query = query;
+        ctx.skip = skip;
+        ctx.count = 0L;
+        ctx.stop = stop;
+
+        ctx.info().$("Binary query: ").$(query).
+                $(", skip: ").$(skip).
+                $(", stop: ").$(stop).
+                $(", withCount: ").$(ctx.includeCount).$();
+        if (executeQuery(r, ctx) == null) {
+            return;
+        }
+
+        resume(context);
+    }
+
+    @Override
+    public void resume(IOContext context) throws IOException {
+        ChunkedResponse r = context.chunkedResponse();
+        $Context ctx = localContext.get(context);
+
+        Iterator<Record> records = ctx.records;
+        if (records == null) {
+            records = executeQuery(r, ctx);
+            if (records == null) {
+                return;
+            }
+        }
+
+        if (ctx.current == null && records.hasNext()) {
+            ctx.current = records.next();
+            ctx.count++;
+        }
+
+        while (ctx.current != null) {
+            if (ctx.count > ctx.skip) {
+                if (ctx.count > ctx.stop && !ctx.includeCount) {
+                    break;
+                }
+
+                if (ctx.count <= ctx.stop && !ctx.stage(ctx.current)) {
+                    if (ctx.rows == 0) {
+                        ctx.error().$("Record ").$(ctx.count - 1).$(" does not fit IO buffer. Aborting the query.").$();
+                        throw ResponseContentBufferTooSmallException.INSTANCE;
+                    }
+                    // current record stays in place until it is staged into next batch
+                    sendBatch(r, ctx);
+                    continue;
+                }
+            }
+
+            if (records.hasNext()) {
+                ctx.current = records.next();
+                ctx.count++;
+            } else {
+                ctx.current = null;
+            }
+        }
+
+        if (ctx.rows > 0) {
+            sendBatch(r, ctx);
+        }
+        sendDone(r, ctx);
+    }
+
+    private static void putInt($Context ctx, ChunkedResponse r, int value) {
+        Unsafe.getUnsafe().putInt(ctx.scratch, value);
+        r.write(ctx.scratch, 4);
+    }
+
+    private static void putLong($Context ctx, ChunkedResponse r, long value) {
+        Unsafe.getUnsafe().putLong(ctx.scratch, value);
+        r.write(ctx.scratch, 8);
+    }
+
+    private static void putStr($Context ctx, ChunkedResponse r, CharSequence value) {
+        putInt(ctx, r, value.length());
+        for (int i = 0, n = value.length(); i < n; i++) {
+            Unsafe.getUnsafe().putChar(ctx.scratch, value.charAt(i));
+            r.write(ctx.scratch, 2);
+        }
+    }
+
+    private static void sendException(ChunkedResponse r, int position, CharSequence message, int status, $Context ctx) throws DisconnectedChannelException, SlowWritableChannelException {
+        r.status(status, CONTENT_TYPE);
+        r.sendHeader();
+        r.put((char) ERROR);
+        putInt(ctx, r, position);
+        putStr(ctx, r, message);
+        r.sendChunk();
+        r.done();
+    }
+
+    private static void sendBatch(ChunkedResponse r, $Context ctx) throws DisconnectedChannelException, SlowWritableChannelException {
+        r.put((char) BATCH);
+        putInt(ctx, r, ctx.rows);
+        for (int i = 0, n = ctx.columns.size(); i < n; i++) {
+            ctx.columns.getQuick(i).sendTo(ctx, r);
+        }
+        // batch is cleared before it is sent, so that slow socket resumes with next batch
+        ctx.clearBatch();
+        r.sendChunk();
+    }
+
+    @Nullable
+    private Iterator<Record> executeQuery(ChunkedResponse r, $Context ctx) throws IOException {
+        CharSequence query = ctx.query;
+        try {
+            JournalCachingFactory factory = factoryPool.get();
+            ctx.factory = factory;
+
+            ctx.recordSource = queryCompilerLocal.get().compileSource(factory, query);
+            RecordCursor records = ctx.recordSource.prepareCursor(factory);
+            RecordMetadata metadata = records.getMetadata();
+            int columnCount = metadata.getColumnCount();
+
+            ctx.of(metadata, r.out().capacity());
+            ctx.records = records;
+
+            r.status(200, CONTENT_TYPE);
+            r.sendHeader();
+            r.put((char) HEADER);
+            putInt(ctx, r, columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                RecordColumnMetadata column = metadata.getColumn(i);
+                r.put((char) column.getType().ordinal());
+                putStr(ctx, r, column.getName());
+            }
+            r.sendChunk();
+            return records;
+        } catch (ParserException pex) {
+            ctx.info().$("Parser error executing query ").$(query).$(pex).$();
+            sendException(r, QueryError.getPosition(), QueryError.getMessage(), 400, ctx);
+        } catch (JournalException jex) {
+            ctx.info().$("Server error executing query ").$(query).$(jex).$();
+            sendException(r, -1, jex.getMessage(), 500, ctx);
+        } catch (InterruptedException ex) {
+            ctx.info().$("Error executing query. Server is shutting down. Query: ").$(query).$(ex).$();
+            sendException(r, -1, "Server is shutting down.", 500, ctx);
+        }
+        return null;
+    }
+
+    private void sendDone(ChunkedResponse r, $Context ctx) throws DisconnectedChannelException, SlowWritableChannelException {
+        if (ctx.count >= 0) {
+            r.put((char) END);
+            r.put((char) (ctx.count > ctx.stop && !ctx.includeCount ? 1 : 0));
+            putLong(ctx, r, ctx.includeCount ? ctx.count : -1L);
+            ctx.count = -1;
+            r.sendChunk();
+        }
+        r.done();
+    }
+
+    /**
+     * Growable off-heap byte array.
+     */
+    private static class ByteArray extends DirectMemoryStructure implements Mutable {
+        private static final int MIN_CAPACITY = 4096;
+        private long capacity;
+        private long size;
+
+        @Override
+        public void clear() {
+            size = 0;
+        }
+
+        private long reserve(long len) {
+            if (size + len > capacity) {
+                long cap = Math.max(Math.max(capacity << 1, size + len), MIN_CAPACITY);
+                address = Unsafe.getUnsafe().reallocateMemory(address, cap);
+                capacity = cap;
+            }
+            long p = address + size;
+            size += len;
+            return p;
+        }
+
+        private void sendTo(ChunkedResponse r) {
+            r.write(address, (int) size);
+        }
+
+        private void putStr(CharSequence value) {
+            if (value == null) {
+                Unsafe.getUnsafe().putInt(reserve(4), -1);
+            } else {
+                int len = value.length();
+                long p = reserve(4 + (len << 1));
+                Unsafe.getUnsafe().putInt(p, len);
+                p += 4;
+                for (int i = 0; i < len; i++) {
+                    Unsafe.getUnsafe().putChar(p + (i << 1), value.charAt(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Values of single column for current batch.
+     */
+    private static class ColumnBuffer implements Closeable {
+        private final int col;
+        private final ColumnType type;
+        private final ByteArray values = new ByteArray();
+        private final ByteArray newSymbols;
+        private final CharSequenceIntHashMap symbolKeys;
+        private int newSymbolCount;
+
+        private ColumnBuffer(int col, ColumnType type) {
+            this.col = col;
+            this.type = type;
+            if (type == ColumnType.SYMBOL) {
+                this.newSymbols = new ByteArray();
+                this.symbolKeys = new CharSequenceIntHashMap();
+            } else {
+                this.newSymbols = null;
+                this.symbolKeys = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            values.close();
+            if (newSymbols != null) {
+                newSymbols.close();
+            }
+        }
+
+        private void clear() {
+            values.clear();
+            if (newSymbols != null) {
+                newSymbols.clear();
+                newSymbolCount = 0;
+            }
+        }
+
+        /**
+         * Bytes this column is going to add to batch to accommodate value of given record.
+         */
+        private long sizeOf(Record rec) {
+            switch (type) {
+                case STRING:
+                    CharSequence cs = rec.getFlyweightStr(col);
+                    return cs == null ? 4 : 4 + (cs.length() << 1);
+                case BINARY:
+                    long len = rec.getBinLen(col);
+                    return len < 0 ? 4 : 4 + len;
+                case SYMBOL:
+                    String sym = rec.getSym(col);
+                    return sym == null || symbolKeys.get(sym) != -1 ? 4 : 8 + (sym.length() << 1);
+                default:
+                    return type.size();
+            }
+        }
+
+        private void put(Record rec) {
+            switch (type) {
+                case BOOLEAN:
+                    Unsafe.getUnsafe().putByte(values.reserve(1), (byte) (rec.getBool(col) ? 1 : 0));
+                    break;
+                case BYTE:
+                    Unsafe.getUnsafe().putByte(values.reserve(1), rec.get(col));
+                    break;
+                case SHORT:
+                    Unsafe.getUnsafe().putShort(values.reserve(2), rec.getShort(col));
+                    break;
+                case INT:
+                    Unsafe.getUnsafe().putInt(values.reserve(4), rec.getInt(col));
+                    break;
+                case FLOAT:
+                    Unsafe.getUnsafe().putFloat(values.reserve(4), rec.getFloat(col));
+                    break;
+                case LONG:
+                    Unsafe.getUnsafe().putLong(values.reserve(8), rec.getLong(col));
+                    break;
+                case DATE:
+                    Unsafe.getUnsafe().putLong(values.reserve(8), rec.getDate(col));
+                    break;
+                case DOUBLE:
+                    Unsafe.getUnsafe().putDouble(values.reserve(8), rec.getDouble(col));
+                    break;
+                case STRING:
+                    values.putStr(rec.getFlyweightStr(col));
+                    break;
+                case BINARY:
+                    putBin(rec);
+                    break;
+                case SYMBOL:
+                    putSym(rec.getSym(col));
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Column type %s not supported", type));
+            }
+        }
+
+        private void putBin(Record rec) {
+            long len = rec.getBinLen(col);
+            DirectInputStream s;
+            if (len < 0 || (s = rec.getBin(col)) == null) {
+                Unsafe.getUnsafe().putInt(values.reserve(4), -1);
+            } else {
+                long p = values.reserve(4 + len);
+                Unsafe.getUnsafe().putInt(p, (int) len);
+                s.copyTo(p + 4, 0, len);
+            }
+        }
+
+        private void putSym(String sym) {
+            int key;
+            if (sym == null) {
+                key = -1;
+            } else if ((key = symbolKeys.get(sym)) == -1) {
+                key = symbolKeys.size();
+                symbolKeys.put(sym, key);
+                newSymbols.putStr(sym);
+                newSymbolCount++;
+            }
+            Unsafe.getUnsafe().putInt(values.reserve(4), key);
+        }
+
+        private void sendTo($Context ctx, ChunkedResponse r) {
+            if (newSymbols != null) {
+                putInt(ctx, r, newSymbolCount);
+                newSymbols.sendTo(r);
+            }
+            values.sendTo(r);
+        }
+    }
+
+    private static class $Context implements Mutable, Closeable {
+        private static final Log LOG = LogFactory.getLog($Context.class);
+        private final ObjList<ColumnBuffer> columns = new ObjList<>();
+        private final long scratch = Unsafe.getUnsafe().allocateMemory(8);
+        private RecordSource recordSource;
+        private CharSequence query;
+        private Iterator<Record> records;
+        private long count;
+        private long skip;
+        private long stop;
+        private Record current;
+        private boolean includeCount;
+        private JournalCachingFactory factory;
+        private long fd;
+        private int rows;
+        private long batchSize;
+        private long batchLimit;
+
+        @Override
+        public void clear() {
+            debug().$("Cleaning context").$();
+            records = null;
+            current = null;
+            freeColumns();
+            if (factory != null) {
+                debug().$("Closing journal factory").$();
+                factory.close();
+                factory = null;
+            }
+            if (recordSource != null) {
+                queryCompilerLocal.get().reuse(query, recordSource);
+                recordSource = null;
+            }
+            query = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            debug().$("Closing context").$();
+            clear();
+            Unsafe.getUnsafe().freeMemory(scratch);
+        }
+
+        private void clearBatch() {
+            for (int i = 0, n = columns.size(); i < n; i++) {
+                columns.getQuick(i).clear();
+            }
+            rows = 0;
+            batchSize = 0;
+        }
+
+        private LogRecord debug() {
+            return LOG.debug().$('[').$(fd).$("] ");
+        }
+
+        private LogRecord error() {
+            return LOG.error().$('[').$(fd).$("] ");
+        }
+
+        private void freeColumns() {
+            for (int i = 0, n = columns.size(); i < n; i++) {
+                columns.getQuick(i).close();
+            }
+            columns.clear();
+            rows = 0;
+            batchSize = 0;
+        }
+
+        private LogRecord info() {
+            return LOG.info().$('[').$(fd).$("] ");
+        }
+
+        private void of(RecordMetadata metadata, int bufferCapacity) {
+            freeColumns();
+            long limit = bufferCapacity - BATCH_HEADER_SIZE;
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                ColumnType type = metadata.getColumn(i).getType();
+                columns.add(new ColumnBuffer(i, type));
+                if (type == ColumnType.SYMBOL) {
+                    // count of new dictionary entries
+                    limit -= 4;
+                }
+            }
+            this.batchLimit = limit;
+        }
+
+        /**
+         * Adds record to current batch unless batch would outgrow response buffer.
+         *
+         * @return false if record did not fit into batch
+         */
+        private boolean stage(Record rec) {
+            long size = 0;
+            for (int i = 0, n = columns.size(); i < n; i++) {
+                size += columns.getQuick(i).sizeOf(rec);
+            }
+
+            if (batchSize + size > batchLimit) {
+                return false;
+            }
+
+            for (int i = 0, n = columns.size(); i < n; i++) {
+                columns.getQuick(i).put(rec);
+            }
+            batchSize += size;
+            rows++;
+            return true;
+        }
+    }
+}
@@ -29,5 +29,15 @@ public interface AggregatorFunction {
 
     void calculate(Record rec, MapValues values);
 
+    /**
+     * Folds partial result held in "src" into "dst". Both value sets are laid out
+     * by {@link #prepare(ObjList, int)} of this function and "dst" is never new.
+     * Rows that contributed to "dst" always precede rows that contributed to "src".
+     *
+     * @param src partial aggregate to fold in
+     * @param dst existing aggregate to update
+     */
+    void merge(MapValues src, MapValues dst);
+
     void prepare(ObjList<RecordColumnMetadata> columns, int offset);
 }
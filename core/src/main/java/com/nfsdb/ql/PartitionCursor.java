@@ -21,9 +21,15 @@
 
 package com.nfsdb.ql;
 
+import com.nfsdb.Journal;
 import com.nfsdb.std.ImmutableIterator;
 
 public interface PartitionCursor extends ImmutableIterator<PartitionSlice> {
+    /**
+     * Journal opened by prepareCursor(), available before first call to next().
+     */
+    Journal getJournal();
+
     StorageFacade getStorageFacade();
 
     void reset();
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl;
+
+import com.nfsdb.Partition;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.ql.PartitionSlice;
+import com.nfsdb.ql.RowCursor;
+import com.nfsdb.ql.RowSource;
+import com.nfsdb.ql.StorageFacade;
+import com.nfsdb.ql.model.BitmapClause;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.store.BitmapIndex;
+import com.nfsdb.store.FixedColumn;
+import com.nfsdb.store.SymbolTable;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.util.Arrays;
+
+/**
+ * Returns rows satisfying all bitmap clauses. For every chunk of rows bitmaps of terms within
+ * clause are united and results of clauses are intersected before any row is read. Rows that are
+ * not covered by bitmap index yet are checked against symbol column directly.
+ * <p>
+ * When delegate is present rows of delegate cursor are checked for membership, otherwise all rows
+ * of partition slice are considered.
+ */
+public class BitmapIndexRowSource extends AbstractRowSource {
+
+    private final RowSource delegate;
+    private final ObjList<BitmapClause> clauses;
+    private final int[][] columnIndices;
+    private final int[][] keys;
+    private final BitmapIndex[][] indexes;
+    private final FixedColumn[][] columns;
+    private final long[] words = new long[BitmapIndex.BITMAP_WORDS];
+    private final long[] clauseWords = new long[BitmapIndex.BITMAP_WORDS];
+    private RowCursor underlying;
+    private long covered;
+    private long lastChunk;
+    private long row;
+    private long hi;
+
+    public BitmapIndexRowSource(RowSource delegate, ObjList<BitmapClause> clauses) {
+        this.delegate = delegate;
+        int n = clauses.size();
+        this.clauses = new ObjList<>(n);
+        this.columnIndices = new int[n][];
+        this.keys = new int[n][];
+        this.indexes = new BitmapIndex[n][];
+        this.columns = new FixedColumn[n][];
+        for (int i = 0; i < n; i++) {
+            BitmapClause c = clauses.getQuick(i);
+            this.clauses.add(c);
+            this.columnIndices[i] = new int[c.size()];
+            this.keys[i] = new int[c.size()];
+            this.indexes[i] = new BitmapIndex[c.size()];
+            this.columns[i] = new FixedColumn[c.size()];
+        }
+    }
+
+    @Override
+    public void configure(JournalMetadata metadata) {
+        if (delegate != null) {
+            delegate.configure(metadata);
+        }
+
+        for (int i = 0, n = clauses.size(); i < n; i++) {
+            BitmapClause c = clauses.getQuick(i);
+            for (int j = 0, k = c.size(); j < k; j++) {
+                columnIndices[i][j] = metadata.getColumnIndex(c.columns.getQuick(j));
+            }
+        }
+    }
+
+    @Override
+    public void prepare(StorageFacade facade) {
+        if (delegate != null) {
+            delegate.prepare(facade);
+        }
+
+        for (int i = 0, n = clauses.size(); i < n; i++) {
+            BitmapClause c = clauses.getQuick(i);
+            for (int j = 0, k = c.size(); j < k; j++) {
+                keys[i][j] = facade.getSymbolTable(columnIndices[i][j]).getQuick(c.values.getQuick(j));
+            }
+        }
+    }
+
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CHECKED"})
+    @Override
+    public RowCursor prepareCursor(PartitionSlice slice) {
+        Partition partition = slice.partition;
+        try {
+            this.row = slice.lo;
+            this.hi = slice.calcHi ? partition.open().size() - 1 : slice.hi;
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+
+        // rows beyond smallest coverage have to be checked against column
+        this.covered = Long.MAX_VALUE;
+        for (int i = 0, n = clauses.size(); i < n; i++) {
+            for (int j = 0, k = columnIndices[i].length; j < k; j++) {
+                int col = columnIndices[i][j];
+                BitmapIndex index = partition.getBitmapIndex(col);
+                indexes[i][j] = index;
+                columns[i][j] = partition.fixCol(col);
+                long c = index == null ? 0 : index.getCoveredRows();
+                if (c < covered) {
+                    covered = c;
+                }
+            }
+        }
+        this.lastChunk = -1;
+        this.underlying = delegate == null ? null : delegate.prepareCursor(slice);
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        if (delegate != null) {
+            delegate.reset();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (underlying != null) {
+            while (underlying.hasNext()) {
+                long r = underlying.next();
+                if (r < covered ? isSet(r) : rowMatches(r)) {
+                    row = r;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        while (row <= hi) {
+            if (row >= covered) {
+                if (rowMatches(row)) {
+                    return true;
+                }
+                row++;
+                continue;
+            }
+
+            long chunk = row >>> BitmapIndex.CHUNK_BITS;
+            if (chunk != lastChunk) {
+                loadChunk(chunk);
+            }
+
+            int bit = (int) (row - (chunk << BitmapIndex.CHUNK_BITS));
+            int w = bit >>> 6;
+            long word = words[w] & (-1L << bit);
+            while (word == 0 && ++w < BitmapIndex.BITMAP_WORDS) {
+                word = words[w];
+            }
+
+            if (word == 0) {
+                row = (chunk + 1) << BitmapIndex.CHUNK_BITS;
+            } else {
+                row = (chunk << BitmapIndex.CHUNK_BITS) + (w << 6) + Long.numberOfTrailingZeros(word);
+                return row <= hi;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long next() {
+        return underlying != null ? row : row++;
+    }
+
+    @Override
+    public String toString() {
+        return "BitmapIndexRowSource{" +
+                "clauses=" + clauses +
+                '}';
+    }
+
+    private boolean isSet(long r) {
+        long chunk = r >>> BitmapIndex.CHUNK_BITS;
+        if (chunk != lastChunk) {
+            loadChunk(chunk);
+        }
+        int bit = (int) (r - (chunk << BitmapIndex.CHUNK_BITS));
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void loadChunk(long chunk) {
+        lastChunk = chunk;
+        for (int i = 0, n = clauses.size(); i < n; i++) {
+            long[] target = i == 0 ? words : clauseWords;
+            Arrays.fill(target, 0);
+
+            boolean found = false;
+            for (int j = 0, k = keys[i].length; j < k; j++) {
+                int key = keys[i][j];
+                if (key != SymbolTable.VALUE_NOT_FOUND && indexes[i][j].or(chunk, key, target)) {
+                    found = true;
+                }
+            }
+
+            if (!found) {
+                if (i > 0) {
+                    Arrays.fill(words, 0);
+                }
+                return;
+            }
+
+            if (i > 0) {
+                for (int w = 0; w < BitmapIndex.BITMAP_WORDS; w++) {
+                    words[w] &= clauseWords[w];
+                }
+            }
+        }
+    }
+
+    private boolean rowMatches(long r) {
+        for (int i = 0, n = clauses.size(); i < n; i++) {
+            boolean match = false;
+            for (int j = 0, k = keys[i].length; j < k && !match; j++) {
+                int key = keys[i][j];
+                int v = columns[i][j].getInt(r);
+                match = key == SymbolTable.VALUE_IS_NULL ? v < 0 : key != SymbolTable.VALUE_NOT_FOUND && v == key;
+            }
+
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
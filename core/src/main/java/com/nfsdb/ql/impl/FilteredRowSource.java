@@ -26,6 +26,8 @@ import com.nfsdb.ql.PartitionSlice;
 import com.nfsdb.ql.RowCursor;
 import com.nfsdb.ql.RowSource;
 import com.nfsdb.ql.StorageFacade;
+import com.nfsdb.ql.ops.BatchFilter;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.ql.ops.VirtualColumn;
 
 public class FilteredRowSource extends AbstractRowSource {
@@ -34,6 +36,8 @@ public class FilteredRowSource extends AbstractRowSource {
     private final VirtualColumn filter;
     private RowCursor underlying;
     private JournalRecord rec;
+    private RowBatch batch;
+    private int batchPos;
 
     public FilteredRowSource(RowSource delegate, VirtualColumn filter) {
         this.delegate = delegate;
@@ -44,12 +48,19 @@ public class FilteredRowSource extends AbstractRowSource {
     public void configure(JournalMetadata metadata) {
         this.delegate.configure(metadata);
         this.rec = new JournalRecord(metadata);
+        if (filter instanceof BatchFilter) {
+            this.batch = new RowBatch(metadata);
+        }
     }
 
     @Override
     public RowCursor prepareCursor(PartitionSlice slice) {
         this.underlying = delegate.prepareCursor(slice);
         this.rec.partition = slice.partition;
+        if (batch != null) {
+            batch.partition = slice.partition;
+            batch.size = batchPos = 0;
+        }
         return this;
     }
 
@@ -60,6 +71,10 @@ public class FilteredRowSource extends AbstractRowSource {
 
     @Override
     public boolean hasNext() {
+        if (batch != null) {
+            return hasNextInBatch();
+        }
+
         while (underlying.hasNext()) {
             rec.rowid = underlying.next();
             if (filter.getBool(rec)) {
@@ -71,7 +86,7 @@ public class FilteredRowSource extends AbstractRowSource {
 
     @Override
     public long next() {
-        return rec.rowid;
+        return batch == null ? rec.rowid : batch.rows[batchPos++];
     }
 
     @Override
@@ -84,4 +99,15 @@ public class FilteredRowSource extends AbstractRowSource {
     public String toString() {
         return "FilteredRowSource{}";
     }
+
+    private boolean hasNextInBatch() {
+        while (batchPos == batch.size) {
+            if (!batch.fill(underlying)) {
+                return false;
+            }
+            batch.filter(filter);
+            batchPos = 0;
+        }
+        return true;
+    }
 }
@@ -49,6 +49,11 @@ public class JournalPartitionSource extends AbstractImmutableIterator<PartitionS
         this.open = open;
     }
 
+    @Override
+    public Journal getJournal() {
+        return journal;
+    }
+
     @Override
     public JournalMetadata getMetadata() {
         return metadata;
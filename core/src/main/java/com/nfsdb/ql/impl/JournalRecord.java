@@ -21,11 +21,16 @@
 
 package com.nfsdb.ql.impl;
 
+import com.nfsdb.Journal;
 import com.nfsdb.Partition;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalRuntimeException;
 import com.nfsdb.factory.configuration.RecordMetadata;
 import com.nfsdb.io.sink.CharSink;
+import com.nfsdb.misc.Rows;
 import com.nfsdb.ql.AbstractRecord;
 import com.nfsdb.std.DirectInputStream;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.OutputStream;
 
@@ -92,9 +97,30 @@ public class JournalRecord extends AbstractRecord {
         return partition.getLong(rowid, col);
     }
 
+    /**
+     * Row id is global within journal, it encodes partition index as well as row id local to partition.
+     */
     @Override
     public long getRowId() {
-        return rowid;
+        return Rows.toRowID(partition.getPartitionIndex(), rowid);
+    }
+
+    /**
+     * Positions record at row id returned by getRowId(). Partition is looked up in given journal unless
+     * record is already positioned at the same partition, so record does not need to be positioned beforehand.
+     */
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS"})
+    public JournalRecord of(Journal journal, long rowId) {
+        int index = Rows.toPartitionIndex(rowId);
+        if (partition == null || partition.getPartitionIndex() != index) {
+            try {
+                partition = journal.getPartition(index, true);
+            } catch (JournalException e) {
+                throw new JournalRuntimeException(e);
+            }
+        }
+        this.rowid = Rows.toLocalRowID(rowId);
+        return this;
     }
 
     @Override
@@ -33,6 +33,7 @@ public class JournalSource extends AbstractRecordSource {
     private final PartitionSource partitionSource;
     private final RowSource rowSource;
     private final JournalRecord rec;
+    private final JournalRecord rowIdRec;
     private final JournalMetadata metadata;
     private PartitionCursor partitionCursor;
     private RowCursor cursor;
@@ -41,6 +42,7 @@ public class JournalSource extends AbstractRecordSource {
     public JournalSource(PartitionSource partitionSource, RowSource rowSource) {
         this.metadata = partitionSource.getMetadata();
         this.rec = new JournalRecord(this.metadata);
+        this.rowIdRec = new JournalRecord(this.metadata);
         this.partitionSource = partitionSource;
         rowSource.configure(partitionSource.getMetadata());
         this.rowSource = rowSource;
@@ -48,8 +50,16 @@ public class JournalSource extends AbstractRecordSource {
 
     @Override
     public JournalRecord getByRowId(long rowId) {
-        rec.rowid = rowId;
-        return rec;
+        // separate record keeps scan position intact, cursor does not need to be iterated first
+        return rowIdRec.of(partitionCursor.getJournal(), rowId);
+    }
+
+    public PartitionSource getPartitionSource() {
+        return partitionSource;
+    }
+
+    public RowSource getRowSource() {
+        return rowSource;
     }
 
     @Override
@@ -66,6 +76,7 @@ public class JournalSource extends AbstractRecordSource {
     public RecordCursor prepareCursor(JournalReaderFactory factory) throws JournalException {
         this.partitionCursor = partitionSource.prepareCursor(factory);
         this.rowSource.prepare(partitionCursor.getStorageFacade());
+        this.rowIdRec.partition = null;
         return this;
     }
 
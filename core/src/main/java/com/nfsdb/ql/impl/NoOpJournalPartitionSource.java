@@ -21,6 +21,7 @@
 
 package com.nfsdb.ql.impl;
 
+import com.nfsdb.Journal;
 import com.nfsdb.ex.JournalException;
 import com.nfsdb.factory.JournalReaderFactory;
 import com.nfsdb.factory.configuration.JournalMetadata;
@@ -40,6 +41,11 @@ public class NoOpJournalPartitionSource extends AbstractImmutableIterator<Partit
         reset();
     }
 
+    @Override
+    public Journal getJournal() {
+        return null;
+    }
+
     @Override
     public JournalMetadata getMetadata() {
         return metadata;
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl;
+
+import com.nfsdb.Journal;
+import com.nfsdb.Partition;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.factory.JournalReaderFactory;
+import com.nfsdb.factory.configuration.JournalConfiguration;
+import com.nfsdb.factory.configuration.RecordMetadata;
+import com.nfsdb.misc.Misc;
+import com.nfsdb.misc.Rows;
+import com.nfsdb.ql.Record;
+import com.nfsdb.ql.RecordCursor;
+import com.nfsdb.ql.RecordSource;
+import com.nfsdb.ql.StorageFacade;
+import com.nfsdb.ql.impl.join.hash.MemoryRecordAccessor;
+import com.nfsdb.ql.ops.AbstractRecordSource;
+import com.nfsdb.std.LongList;
+import com.nfsdb.store.SequentialMemory;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Last N records of underlying source, in original order. Unfiltered journal scans are read back from the end
+ * of journal, so only N rows are visited. Other sources are scanned in full, row ids of last N records are kept
+ * in a ring buffer. Records of sources without row id access are copied off-heap into one of two memory areas,
+ * which take turns every N records, so that memory is bounded by 2N records.
+ */
+public class TailRecordSource extends AbstractRecordSource implements Closeable {
+    // limit comes from query text, ring grows with rows actually read
+    private static final int MAX_INITIAL_CAPACITY = 4096;
+    private final RecordSource recordSource;
+    private final int count;
+    private final LongList ring;
+    private final JournalRecord rec;
+    private final SequentialMemory[] mem;
+    private final MemoryRecordAccessor[] accessors;
+    private RecordCursor recordCursor;
+    // ring buffer cursor
+    private long written;
+    private long read;
+    // reverse scan cursor
+    private Journal journal;
+    private int partitionIndex;
+    private long row;
+    private long hi;
+
+    public TailRecordSource(RecordSource recordSource, int count) {
+        this(recordSource, count, JournalConfiguration.DEFAULT_RECORD_PAGE_SIZE);
+    }
+
+    public TailRecordSource(RecordSource recordSource, int count, int recordPageSize) {
+        this.recordSource = recordSource;
+        this.count = count;
+        this.ring = new LongList(Math.min(count, MAX_INITIAL_CAPACITY));
+        if (isReversible(recordSource)) {
+            this.rec = new JournalRecord(recordSource.getMetadata());
+        } else {
+            this.rec = null;
+        }
+        if (recordSource.supportsRowIdAccess()) {
+            this.mem = null;
+            this.accessors = null;
+        } else {
+            this.mem = new SequentialMemory[]{new SequentialMemory(recordPageSize), new SequentialMemory(recordPageSize)};
+            this.accessors = new MemoryRecordAccessor[]{
+                    new MemoryRecordAccessor(recordSource.getMetadata(), mem[0]),
+                    new MemoryRecordAccessor(recordSource.getMetadata(), mem[1])
+            };
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mem != null) {
+            mem[0].close();
+            mem[1].close();
+        }
+        Misc.free(recordSource);
+    }
+
+    @Override
+    public Record getByRowId(long rowId) {
+        // reverse scan row ids are global, journal source resolves them without disturbing the scan
+        if (accessors == null) {
+            return recordCursor.getByRowId(rowId);
+        }
+
+        // lowest bit of row id selects memory area
+        MemoryRecordAccessor accessor = accessors[(int) (rowId & 1)];
+        accessor.init(rowId >>> 1);
+        return accessor;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return recordCursor.getStorageFacade();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return recordSource.getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory) throws JournalException {
+        this.recordCursor = recordSource.prepareCursor(factory);
+        if (rec != null) {
+            seekTail();
+        } else {
+            fillRing();
+        }
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        recordSource.reset();
+        written = read = 0;
+        journal = null;
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return recordSource.supportsRowIdAccess();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (rec != null) {
+            return nextRow();
+        }
+        return read < written;
+    }
+
+    @Override
+    public Record next() {
+        if (rec != null) {
+            rec.rowid = row++;
+            return rec;
+        }
+        return getByRowId(ring.getQuick((int) (read++ % count)));
+    }
+
+    /**
+     * Journal can be read back from its end when every row of every partition is selected.
+     */
+    private static boolean isReversible(RecordSource rs) {
+        if (rs instanceof JournalSource) {
+            JournalSource js = (JournalSource) rs;
+            return js.getPartitionSource() instanceof JournalPartitionSource && js.getRowSource() instanceof AllRowSource;
+        }
+        return false;
+    }
+
+    private void fillRing() {
+        written = read = 0;
+        int area = 0;
+        if (accessors != null) {
+            mem[0].clear();
+            mem[1].clear();
+            accessors[0].setStorageFacade(recordCursor.getStorageFacade());
+            accessors[1].setStorageFacade(recordCursor.getStorageFacade());
+        }
+
+        while (recordCursor.hasNext()) {
+            Record r = recordCursor.next();
+            if (accessors == null) {
+                ring.extendAndSet((int) (written % count), r.getRowId());
+            } else {
+                if (written > 0 && written % count == 0) {
+                    // records in other area are at least N records old
+                    area ^= 1;
+                    mem[area].clear();
+                }
+                ring.extendAndSet((int) (written % count), (accessors[area].append(r) << 1) | area);
+            }
+            written++;
+        }
+
+        if (written > count) {
+            read = written - count;
+        }
+    }
+
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS"})
+    private boolean nextRow() {
+        if (row < hi) {
+            return true;
+        }
+
+        try {
+            while (++partitionIndex < journal.getPartitionCount()) {
+                Partition p = journal.getPartition(partitionIndex, true);
+                row = 0;
+                hi = p.size();
+                if (hi > 0) {
+                    rec.partition = p;
+                    return true;
+                }
+            }
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+        return false;
+    }
+
+    private void seekTail() throws JournalException {
+        journal = ((JournalPartitionSource) ((JournalSource) recordSource).getPartitionSource()).getJournal();
+        row = hi = 0;
+
+        // walk partitions backwards until they have enough rows
+        long remaining = count;
+        int index = journal.getPartitionCount();
+        while (index > 0 && remaining > 0) {
+            Partition p = journal.getPartition(--index, true);
+            long size = p.size();
+            hi = size;
+            if (size < remaining) {
+                row = 0;
+                remaining -= size;
+            } else {
+                row = size - remaining;
+                remaining = 0;
+            }
+            rec.partition = p;
+        }
+        partitionIndex = index;
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl;
+
+import com.nfsdb.Partition;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.ql.PartitionSlice;
+import com.nfsdb.ql.RowCursor;
+import com.nfsdb.ql.RowSource;
+import com.nfsdb.ql.StorageFacade;
+import com.nfsdb.ql.model.ZoneRange;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.store.ZoneMap;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Skips blocks of rows that cannot satisfy value ranges of numeric columns according to
+ * column zone maps. Rows are not filtered individually, so this source is always followed by
+ * FilteredRowSource. When delegate is null, all rows of partition slice are considered.
+ */
+public class ZoneMapRowSource extends AbstractRowSource {
+
+    private final RowSource delegate;
+    private final ObjList<ZoneRange> ranges;
+    private final int[] columnIndices;
+    private final ZoneMap[] zoneMaps;
+    private RowCursor underlying;
+    private long covered;
+    private long lastBlock;
+    private boolean lastBlockMatches;
+    private long row;
+    private long hi;
+
+    public ZoneMapRowSource(RowSource delegate, ObjList<ZoneRange> ranges) {
+        this.delegate = delegate;
+        this.ranges = new ObjList<>(ranges.size());
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            this.ranges.add(ranges.getQuick(i));
+        }
+        this.columnIndices = new int[ranges.size()];
+        this.zoneMaps = new ZoneMap[ranges.size()];
+    }
+
+    @Override
+    public void configure(JournalMetadata metadata) {
+        if (delegate != null) {
+            delegate.configure(metadata);
+        }
+
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            columnIndices[i] = metadata.getColumnIndex(ranges.getQuick(i).column);
+        }
+    }
+
+    @Override
+    public void prepare(StorageFacade facade) {
+        if (delegate != null) {
+            delegate.prepare(facade);
+        }
+    }
+
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CHECKED"})
+    @Override
+    public RowCursor prepareCursor(PartitionSlice slice) {
+        Partition partition = slice.partition;
+        try {
+            this.row = slice.lo;
+            this.hi = slice.calcHi ? partition.open().size() - 1 : slice.hi;
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+
+        // rows beyond smallest coverage are not summarised and have to be scanned
+        this.covered = Long.MAX_VALUE;
+        for (int i = 0, n = zoneMaps.length; i < n; i++) {
+            ZoneMap z = partition.getZoneMap(columnIndices[i]);
+            zoneMaps[i] = z;
+            if (z != null && z.getCoveredRows() < covered) {
+                covered = z.getCoveredRows();
+            }
+        }
+        this.lastBlock = -1;
+
+        if (delegate == null) {
+            underlying = null;
+        } else if (isSliceSkipped()) {
+            // whole slice is pruned, delegate cursor does not need to be touched
+            underlying = null;
+            row = hi + 1;
+        } else {
+            underlying = delegate.prepareCursor(slice);
+        }
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        if (delegate != null) {
+            delegate.reset();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (underlying != null) {
+            while (underlying.hasNext()) {
+                long r = underlying.next();
+                if (r >= covered || blockMatches(r >>> ZoneMap.BLOCK_BITS)) {
+                    row = r;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        while (row <= hi) {
+            if (row >= covered || blockMatches(row >>> ZoneMap.BLOCK_BITS)) {
+                return true;
+            }
+            row = Math.min(((row >>> ZoneMap.BLOCK_BITS) + 1) << ZoneMap.BLOCK_BITS, covered);
+        }
+        return false;
+    }
+
+    @Override
+    public long next() {
+        return underlying != null ? row : row++;
+    }
+
+    @Override
+    public String toString() {
+        return "ZoneMapRowSource{" +
+                "ranges=" + ranges +
+                '}';
+    }
+
+    private boolean blockMatches(long block) {
+        if (block != lastBlock) {
+            lastBlock = block;
+            lastBlockMatches = blockMatches0(block);
+        }
+        return lastBlockMatches;
+    }
+
+    private boolean blockMatches0(long block) {
+        for (int i = 0, n = zoneMaps.length; i < n; i++) {
+            ZoneMap z = zoneMaps[i];
+            if (z == null) {
+                continue;
+            }
+
+            ZoneRange r = ranges.getQuick(i);
+            if (r.floating ? !z.overlaps(block, r.dlo, r.dhi) : !z.overlaps(block, r.lo, r.hi)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSliceSkipped() {
+        if (hi >= covered) {
+            return false;
+        }
+
+        for (long b = row >>> ZoneMap.BLOCK_BITS, last = hi >>> ZoneMap.BLOCK_BITS; b <= last; b++) {
+            if (blockMatches0(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
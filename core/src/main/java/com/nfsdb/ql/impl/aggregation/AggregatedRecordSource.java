@@ -62,7 +62,10 @@ public class AggregatedRecordSource extends AbstractRecordSource implements Clos
     public AggregatedRecordSource(
             RecordSource recordSource,
             @Transient ObjHashSet<String> keyColumns,
-            ObjList<AggregatorFunction> aggregators
+            ObjList<AggregatorFunction> aggregators,
+            int keyCapacity,
+            int pageSize,
+            float loadFactor
     ) {
         int keyColumnsSize = keyColumns.size();
         this.keyIndices = new int[keyColumnsSize];
@@ -90,7 +93,7 @@ public class AggregatedRecordSource extends AbstractRecordSource implements Clos
                 interceptors.add((MapRecordValueInterceptor) func);
             }
         }
-        this.map = new MultiMap(rm, keyColumns, columns, interceptors);
+        this.map = new MultiMap(keyCapacity, pageSize, loadFactor, rm, keyColumns, columns, interceptors);
         this.recordSource = recordSource;
     }
 
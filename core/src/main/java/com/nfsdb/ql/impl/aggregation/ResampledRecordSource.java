@@ -60,7 +60,10 @@ public class ResampledRecordSource extends AbstractRecordSource {
             RecordSource recordSource,
             @Transient ObjHashSet<String> keyColumns,
             ObjList<AggregatorFunction> aggregators,
-            TimestampSampler sampler
+            TimestampSampler sampler,
+            int keyCapacity,
+            int pageSize,
+            float loadFactor
     ) {
         int keyColumnsSize = keyColumns.size();
         this.keyIndices = new IntList(keyColumnsSize);
@@ -98,7 +101,7 @@ public class ResampledRecordSource extends AbstractRecordSource {
             }
         }
 
-        this.map = new MultiMap(rm, keyCols, columns, interceptors);
+        this.map = new MultiMap(keyCapacity, pageSize, loadFactor, rm, keyCols, columns, interceptors);
         this.recordSource = recordSource;
     }
 
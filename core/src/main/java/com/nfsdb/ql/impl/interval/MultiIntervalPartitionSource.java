@@ -21,6 +21,7 @@
 
 package com.nfsdb.ql.impl.interval;
 
+import com.nfsdb.Journal;
 import com.nfsdb.ex.JournalException;
 import com.nfsdb.factory.JournalReaderFactory;
 import com.nfsdb.factory.configuration.JournalMetadata;
@@ -51,6 +52,11 @@ public class MultiIntervalPartitionSource extends AbstractImmutableIterator<Part
         this.intervalSource = intervalSource;
     }
 
+    @Override
+    public Journal getJournal() {
+        return partitionCursor.getJournal();
+    }
+
     @Override
     public JournalMetadata getMetadata() {
         return partitionSource.getMetadata();
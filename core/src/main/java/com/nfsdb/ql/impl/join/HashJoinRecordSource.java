@@ -23,6 +23,7 @@ package com.nfsdb.ql.impl.join;
 
 import com.nfsdb.ex.JournalException;
 import com.nfsdb.factory.JournalReaderFactory;
+import com.nfsdb.factory.configuration.JournalConfiguration;
 import com.nfsdb.factory.configuration.RecordColumnMetadata;
 import com.nfsdb.factory.configuration.RecordMetadata;
 import com.nfsdb.misc.Misc;
@@ -65,13 +66,36 @@ public class HashJoinRecordSource extends AbstractRecordSource implements Closea
     private RecordCursor masterCursor;
     private RecordCursor hashTableCursor;
 
-    @SuppressFBWarnings({"PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS"})
     public HashJoinRecordSource(
             RecordSource master,
             IntList masterColIndices,
             RecordSource slave,
             IntList slaveColIndices,
             boolean outer) {
+        this(
+                master,
+                masterColIndices,
+                slave,
+                slaveColIndices,
+                outer,
+                JournalConfiguration.DEFAULT_MAP_KEY_CAPACITY,
+                JournalConfiguration.DEFAULT_MAP_PAGE_SIZE,
+                JournalConfiguration.DEFAULT_MAP_LOAD_FACTOR,
+                JournalConfiguration.DEFAULT_RECORD_PAGE_SIZE
+        );
+    }
+
+    @SuppressFBWarnings({"PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS"})
+    public HashJoinRecordSource(
+            RecordSource master,
+            IntList masterColIndices,
+            RecordSource slave,
+            IntList slaveColIndices,
+            boolean outer,
+            int keyCapacity,
+            int mapPageSize,
+            float loadFactor,
+            int recordPageSize) {
         this.master = master;
         this.slave = slave;
         this.metadata = new SplitRecordMetadata(master.getMetadata(), slave.getMetadata());
@@ -79,7 +103,7 @@ public class HashJoinRecordSource extends AbstractRecordSource implements Closea
         this.byRowId = slave.supportsRowIdAccess();
         this.masterColIndex = masterColIndices;
         this.slaveColIndex = slaveColIndices;
-        this.recordMap = createRecordMap(master, slave);
+        this.recordMap = createRecordMap(master, slave, keyCapacity, mapPageSize, loadFactor, recordPageSize);
         this.outer = outer;
         this.nullRecord = new NullRecord(slave.getMetadata());
         this.storageFacade = new SplitRecordStorageFacade(metadata, master.getMetadata().getColumnCount());
@@ -160,7 +184,11 @@ public class HashJoinRecordSource extends AbstractRecordSource implements Closea
     }
 
     private MultiRecordMap createRecordMap(RecordSource masterSource,
-                                           RecordSource slaveSource) {
+                                           RecordSource slaveSource,
+                                           int keyCapacity,
+                                           int mapPageSize,
+                                           float loadFactor,
+                                           int recordPageSize) {
         RecordMetadata mm = masterSource.getMetadata();
         for (int i = 0, k = masterColIndex.size(); i < k; i++) {
             this.masterColumns.add(mm.getColumnQuick(masterColIndex.getQuick(i)));
@@ -173,7 +201,15 @@ public class HashJoinRecordSource extends AbstractRecordSource implements Closea
             this.slaveColumns.add(sm.getColumnQuick(index));
             keyCols.add(sm.getColumnName(index));
         }
-        return byRowId ? new MultiRecordMap(sm, keyCols, rowIdRecord.getMetadata()) : new MultiRecordMap(sm, keyCols, slaveSource.getMetadata());
+        return new MultiRecordMap(
+                keyCapacity,
+                mapPageSize,
+                loadFactor,
+                recordPageSize,
+                sm,
+                keyCols,
+                byRowId ? rowIdRecord.getMetadata() : slaveSource.getMetadata()
+        );
     }
 
     private boolean hasNext0() {
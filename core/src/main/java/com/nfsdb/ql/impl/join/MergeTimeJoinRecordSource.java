@@ -0,0 +1,220 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl.join;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.factory.JournalReaderFactory;
+import com.nfsdb.factory.configuration.RecordMetadata;
+import com.nfsdb.misc.Misc;
+import com.nfsdb.ql.Record;
+import com.nfsdb.ql.RecordCursor;
+import com.nfsdb.ql.RecordSource;
+import com.nfsdb.ql.StorageFacade;
+import com.nfsdb.ql.impl.join.hash.NullRecord;
+import com.nfsdb.ql.ops.AbstractRecordSource;
+import com.nfsdb.std.LongList;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Joins records of master and slave, both ordered by timestamp, when their timestamps are no more than
+ * tolerance apart. Both sides are read once, in parallel. Only row ids of slave records that fall into
+ * window of current master record are kept, which makes memory use independent of size of either side.
+ * <p>
+ * Slave must support row id access. Outer join returns master records without matches joined to null record.
+ */
+public class MergeTimeJoinRecordSource extends AbstractRecordSource implements Closeable {
+    private static final int COMPACT_THRESHOLD = 4096;
+    private final RecordSource master;
+    private final RecordSource slave;
+    private final int masterTimestampIndex;
+    private final int slaveTimestampIndex;
+    private final long tolerance;
+    private final boolean outer;
+    private final SplitRecordMetadata metadata;
+    private final SplitRecord record;
+    private final SplitRecordStorageFacade storageFacade;
+    private final NullRecord nullRecord;
+    private final LongList rowIds = new LongList();
+    private final LongList timestamps = new LongList();
+    private RecordCursor masterCursor;
+    private RecordCursor slaveCursor;
+    private Record masterRecord;
+    private boolean matched;
+    private boolean slaveDone;
+    private long lastSlaveTimestamp;
+    private long hiTimestamp;
+    private int head;
+    private int pos;
+
+    public MergeTimeJoinRecordSource(
+            RecordSource master,
+            int masterTimestampIndex,
+            RecordSource slave,
+            int slaveTimestampIndex,
+            long tolerance,
+            boolean outer
+    ) {
+        this.master = master;
+        this.masterTimestampIndex = masterTimestampIndex;
+        this.slave = slave;
+        this.slaveTimestampIndex = slaveTimestampIndex;
+        this.tolerance = tolerance;
+        this.outer = outer;
+        this.metadata = new SplitRecordMetadata(master.getMetadata(), slave.getMetadata());
+        this.record = new SplitRecord(metadata, master.getMetadata().getColumnCount());
+        this.storageFacade = new SplitRecordStorageFacade(metadata, master.getMetadata().getColumnCount());
+        this.nullRecord = new NullRecord(slave.getMetadata());
+    }
+
+    @Override
+    public void close() throws IOException {
+        Misc.free(master);
+        Misc.free(slave);
+    }
+
+    @Override
+    public Record getByRowId(long rowId) {
+        return null;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return storageFacade;
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory) throws JournalException {
+        this.masterCursor = master.prepareCursor(factory);
+        this.slaveCursor = slave.prepareCursor(factory);
+        this.storageFacade.prepare(factory, masterCursor.getStorageFacade(), slaveCursor.getStorageFacade());
+        clearWindow();
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        master.reset();
+        slave.reset();
+        clearWindow();
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            if (masterRecord != null) {
+                if (pos < timestamps.size() && timestamps.getQuick(pos) <= hiTimestamp) {
+                    record.setB(slaveCursor.getByRowId(rowIds.getQuick(pos++)));
+                    matched = true;
+                    return true;
+                }
+
+                masterRecord = null;
+                if (outer && !matched) {
+                    record.setB(nullRecord);
+                    return true;
+                }
+            }
+
+            if (!masterCursor.hasNext()) {
+                return false;
+            }
+
+            masterRecord = masterCursor.next();
+            record.setA(masterRecord);
+
+            long ts = masterRecord.getDate(masterTimestampIndex);
+            this.hiTimestamp = ts + tolerance;
+            evict(ts - tolerance);
+            fill(ts - tolerance);
+            this.pos = head;
+            this.matched = false;
+        }
+    }
+
+    @SuppressFBWarnings({"IT_NO_SUCH_ELEMENT"})
+    @Override
+    public Record next() {
+        return record;
+    }
+
+    private void clearWindow() {
+        rowIds.clear();
+        timestamps.clear();
+        head = 0;
+        pos = 0;
+        masterRecord = null;
+        slaveDone = false;
+        lastSlaveTimestamp = Long.MIN_VALUE;
+    }
+
+    private void evict(long lo) {
+        int n = timestamps.size();
+        while (head < n && timestamps.getQuick(head) < lo) {
+            head++;
+        }
+
+        if (head == n) {
+            rowIds.clear();
+            timestamps.clear();
+            head = 0;
+        } else if (head > COMPACT_THRESHOLD && head > n / 2) {
+            for (int i = head; i < n; i++) {
+                rowIds.setQuick(i - head, rowIds.getQuick(i));
+                timestamps.setQuick(i - head, timestamps.getQuick(i));
+            }
+            rowIds.setPos(n - head);
+            timestamps.setPos(n - head);
+            head = 0;
+        }
+    }
+
+    private void fill(long lo) {
+        // read slave until first record past the window, which stays in window for subsequent master records
+        while (!slaveDone && lastSlaveTimestamp <= hiTimestamp) {
+            if (!slaveCursor.hasNext()) {
+                slaveDone = true;
+                break;
+            }
+
+            Record r = slaveCursor.next();
+            long ts = r.getDate(slaveTimestampIndex);
+            if (ts >= lo) {
+                rowIds.add(r.getRowId());
+                timestamps.add(ts);
+            }
+            lastSlaveTimestamp = ts;
+        }
+    }
+}
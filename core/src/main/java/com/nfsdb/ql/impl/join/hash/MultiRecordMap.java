@@ -22,6 +22,7 @@
 package com.nfsdb.ql.impl.join.hash;
 
 import com.nfsdb.factory.configuration.ColumnMetadata;
+import com.nfsdb.factory.configuration.JournalConfiguration;
 import com.nfsdb.factory.configuration.RecordColumnMetadata;
 import com.nfsdb.factory.configuration.RecordMetadata;
 import com.nfsdb.ql.Record;
@@ -47,9 +48,27 @@ public class MultiRecordMap implements Closeable, Mutable {
             @Transient RecordMetadata keyMetadata,
             @Transient ObjHashSet<String> keyNames,
             RecordMetadata valueMetadata) {
-        map = new MultiMap(keyMetadata, keyNames, valueCols, null);
-        //todo: extract config
-        records = new RecordDequeue(valueMetadata, 4 * 1024 * 1024);
+        this(
+                JournalConfiguration.DEFAULT_MAP_KEY_CAPACITY,
+                JournalConfiguration.DEFAULT_MAP_PAGE_SIZE,
+                JournalConfiguration.DEFAULT_MAP_LOAD_FACTOR,
+                JournalConfiguration.DEFAULT_RECORD_PAGE_SIZE,
+                keyMetadata,
+                keyNames,
+                valueMetadata
+        );
+    }
+
+    public MultiRecordMap(
+            int keyCapacity,
+            int mapPageSize,
+            float loadFactor,
+            int recordPageSize,
+            @Transient RecordMetadata keyMetadata,
+            @Transient ObjHashSet<String> keyNames,
+            RecordMetadata valueMetadata) {
+        map = new MultiMap(keyCapacity, mapPageSize, loadFactor, keyMetadata, keyNames, valueCols, null);
+        records = new RecordDequeue(valueMetadata, recordPageSize);
     }
 
     public void add(MultiMap.KeyWriter key, Record record) {
@@ -22,11 +22,13 @@
 package com.nfsdb.ql.impl.map;
 
 import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.factory.configuration.JournalConfiguration;
 import com.nfsdb.factory.configuration.RecordColumnMetadata;
 import com.nfsdb.factory.configuration.RecordMetadata;
 import com.nfsdb.misc.Hash;
 import com.nfsdb.misc.Numbers;
 import com.nfsdb.misc.Unsafe;
+import com.nfsdb.ql.AggregatorFunction;
 import com.nfsdb.ql.RecordCursor;
 import com.nfsdb.std.*;
 
@@ -34,6 +36,7 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
 
     private static final int MIN_INITIAL_CAPACITY = 128;
     private final float loadFactor;
+    private final int pageSize;
     private final KeyWriter keyWriter = new KeyWriter();
     private final MapRecordSource recordSource;
     private final MapValues values;
@@ -54,24 +57,26 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
             @Transient ObjHashSet<String> keyNames,
             @Transient ObjList<RecordColumnMetadata> valueColumns,
             ObjList<MapRecordValueInterceptor> interceptors) {
-        //todo: extract config
-        this(1024 * 1024, 4 * 1024 * 1024, 0.5f, keySourceMetadata, keyNames, valueColumns, interceptors);
+        this(JournalConfiguration.DEFAULT_MAP_KEY_CAPACITY, JournalConfiguration.DEFAULT_MAP_PAGE_SIZE, JournalConfiguration.DEFAULT_MAP_LOAD_FACTOR, keySourceMetadata, keyNames, valueColumns, interceptors);
     }
 
-    private MultiMap(int capacity,
-                     long dataSize,
-                     float loadFactor,
-                     @Transient RecordMetadata keySourceMetadata,
-                     @Transient ObjHashSet<String> keyNames,
-                     @Transient ObjList<RecordColumnMetadata> valueColumns,
-                     ObjList<MapRecordValueInterceptor> interceptors) {
-        if (dataSize <= 0) {
-            throw new IllegalArgumentException("dataSize must be > 0");
+    /**
+     * @param capacity   expected number of keys, map grows beyond that when needed
+     * @param pageSize   key and value area is allocated and grown in multiples of this size
+     * @param loadFactor load factor of hash table
+     */
+    public MultiMap(int capacity,
+                    int pageSize,
+                    float loadFactor,
+                    @Transient RecordMetadata keySourceMetadata,
+                    @Transient ObjHashSet<String> keyNames,
+                    @Transient ObjList<RecordColumnMetadata> valueColumns,
+                    ObjList<MapRecordValueInterceptor> interceptors) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be > 0");
         }
         this.loadFactor = loadFactor;
-        this.address = Unsafe.getUnsafe().allocateMemory(dataSize + Unsafe.CACHE_LINE_SIZE);
-        this.kStart = kPos = this.address + (this.address & (Unsafe.CACHE_LINE_SIZE - 1));
-        this.kLimit = kStart + dataSize;
+        this.pageSize = pageSize;
 
         this.keyCapacity = (int) (capacity / loadFactor);
         this.keyCapacity = this.keyCapacity < MIN_INITIAL_CAPACITY ? MIN_INITIAL_CAPACITY : Numbers.ceilPow2(this.keyCapacity);
@@ -109,6 +114,13 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
         this.metadata = new MapMetadata(keySourceMetadata, keyNames, valueColumns);
         this.keyBlockOffset = offset;
         this.keyDataOffset = this.keyBlockOffset + 4 * keyNames.size();
+
+        // reserve enough pages to hold expected keys without resizing
+        // assuming four bytes of data per key column
+        long dataSize = pageAlign((long) capacity * (keyDataOffset + 4 * keyNames.size()));
+        this.address = Unsafe.getUnsafe().allocateMemory(dataSize + Unsafe.CACHE_LINE_SIZE);
+        this.kStart = kPos = this.address + (this.address & (Unsafe.CACHE_LINE_SIZE - 1));
+        this.kLimit = kStart + dataSize;
         MapRecord record = new MapRecord(metadata, valueOffsets, keyDataOffset, keyBlockOffset);
         this.recordSource = new MapRecordSource(record, this.values, interceptors);
     }
@@ -171,6 +183,29 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
         return keyWriter.init();
     }
 
+    /**
+     * Folds all entries of "that" map into this map. Entries with new keys are copied
+     * verbatim, values of existing keys are combined by aggregator functions. Both maps
+     * must have identical key and value structure.
+     *
+     * @param that        map to fold in, it is not modified
+     * @param aggregators functions that laid out values of both maps
+     */
+    public void merge(MultiMap that, ObjList<AggregatorFunction> aggregators) {
+        long p = that.kStart;
+        for (int i = 0, n = that.size; i < n; i++) {
+            int len = Unsafe.getUnsafe().getInt(p);
+            MapValues dst = getOrCreateValues(keyWriter.init().putEntry(p, len));
+            if (!dst.isNew()) {
+                MapValues src = that.values.of(p, false);
+                for (int k = 0, sz = aggregators.size(); k < sz; k++) {
+                    aggregators.getQuick(k).merge(src, dst);
+                }
+            }
+            p += len;
+        }
+    }
+
     public int size() {
         return size;
     }
@@ -238,8 +273,8 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
         int capacity = keyCapacity << 1;
         mask = capacity - 1;
         LongList pointers = new LongList(capacity);
-        pointers.zero((byte) -1);
         pointers.setPos(capacity);
+        pointers.zero((byte) -1);
 
         for (int i = 0, k = this.offsets.size(); i < k; i++) {
             long offset = this.offsets.get(i);
@@ -257,12 +292,18 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
         this.keyCapacity = capacity;
     }
 
-    private void resize() {
-        long kCapacity = (kLimit - kStart) << 1;
+    private long pageAlign(long size) {
+        long pages = (size + pageSize - 1) / pageSize;
+        return (pages == 0 ? 1 : pages) * pageSize;
+    }
+
+    private void resize(long required) {
+        // double the area to keep copying amortised, but never allocate less than required
+        long kCapacity = pageAlign(Math.max((kLimit - kStart) << 1, required));
         long kAddress = Unsafe.getUnsafe().allocateMemory(kCapacity + Unsafe.CACHE_LINE_SIZE);
         long kStart = kAddress + (kAddress & (Unsafe.CACHE_LINE_SIZE - 1));
 
-        Unsafe.getUnsafe().copyMemory(this.kStart, kStart, kCapacity >> 1);
+        Unsafe.getUnsafe().copyMemory(this.kStart, kStart, keyWriter.appendAddr - this.kStart);
         Unsafe.getUnsafe().freeMemory(this.address);
 
         long d = kStart - this.kStart;
@@ -335,6 +376,17 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
             return this;
         }
 
+        /**
+         * Copies complete entry, including values, key offsets and key data.
+         * Key offsets are relative to the start of entry and remain valid.
+         */
+        private KeyWriter putEntry(long address, int len) {
+            checkSize(len - keyDataOffset);
+            Unsafe.getUnsafe().copyMemory(address, startAddr, len);
+            appendAddr = startAddr + len;
+            return this;
+        }
+
         public KeyWriter putFloat(float value) {
             checkSize(4);
             Unsafe.getUnsafe().putFloat(appendAddr, value);
@@ -380,7 +432,7 @@ public class MultiMap extends DirectMemoryStructure implements Mutable {
 
         private void checkSize(int size) {
             if (appendAddr + size > kLimit) {
-                resize();
+                resize(appendAddr + size - kStart);
             }
         }
 
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.nfsdb.ql.impl.parallel;
+
+import com.nfsdb.Partition;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.factory.configuration.RecordColumnMetadata;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.ql.AggregatorFunction;
+import com.nfsdb.ql.RowCursor;
+import com.nfsdb.ql.RowSource;
+import com.nfsdb.ql.impl.JournalRecord;
+import com.nfsdb.ql.impl.join.hash.KeyWriterHelper;
+import com.nfsdb.ql.impl.map.MapValues;
+import com.nfsdb.ql.impl.map.MultiMap;
+import com.nfsdb.std.ObjHashSet;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.std.Transient;
+import com.nfsdb.store.ColumnType;
+
+/**
+ * Computes partial aggregates of single partition slice. Aggregator functions
+ * are private copies, so are key-value map and journal record.
+ */
+class AggregationTask extends ScanTask {
+    final MultiMap map;
+    private final ObjList<AggregatorFunction> aggregators;
+    private final JournalRecord rec;
+    private final int[] keyIndices;
+    private final ColumnType[] keyTypes;
+
+    AggregationTask(
+            RowSource rowSource,
+            JournalMetadata metadata,
+            int[] keyIndices,
+            @Transient ObjHashSet<String> keyColumns,
+            ObjList<AggregatorFunction> aggregators,
+            int keyCapacity,
+            int pageSize,
+            float loadFactor
+    ) {
+        super(rowSource, metadata);
+        this.rec = new JournalRecord(metadata);
+        this.keyIndices = keyIndices;
+        this.keyTypes = new ColumnType[keyIndices.length];
+        for (int i = 0; i < keyIndices.length; i++) {
+            keyTypes[i] = metadata.getColumnQuick(keyIndices[i]).getType();
+        }
+        this.aggregators = aggregators;
+
+        ObjList<RecordColumnMetadata> columns = new ObjList<>();
+        int index = 0;
+        for (int i = 0, sz = aggregators.size(); i < sz; i++) {
+            int n = columns.size();
+            aggregators.getQuick(i).prepare(columns, index);
+            index += columns.size() - n;
+        }
+        this.map = new MultiMap(keyCapacity, pageSize, loadFactor, metadata, keyColumns, columns, null);
+    }
+
+    @Override
+    void of(int partitionIndex, long lo, long hi) {
+        super.of(partitionIndex, lo, hi);
+        map.clear();
+    }
+
+    @Override
+    void scan(Partition partition, RowCursor cursor) {
+        rec.partition = partition;
+        while (cursor.hasNext()) {
+            rec.rowid = cursor.next();
+
+            MultiMap.KeyWriter keyWriter = map.keyWriter();
+            for (int i = 0; i < keyIndices.length; i++) {
+                KeyWriterHelper.setKey(keyWriter, rec, Unsafe.arrayGet(keyIndices, i), keyTypes[i]);
+            }
+
+            MapValues values = map.getOrCreateValues(keyWriter);
+            for (int i = 0, sz = aggregators.size(); i < sz; i++) {
+                aggregators.getQuick(i).calculate(rec, values);
+            }
+        }
+    }
+
+    void free() {
+        close();
+        map.free();
+    }
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.nfsdb.ql.impl.parallel;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.factory.JournalReaderFactory;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.factory.configuration.RecordColumnMetadata;
+import com.nfsdb.factory.configuration.RecordMetadata;
+import com.nfsdb.misc.Misc;
+import com.nfsdb.ql.*;
+import com.nfsdb.ql.impl.map.MapRecordValueInterceptor;
+import com.nfsdb.ql.impl.map.MultiMap;
+import com.nfsdb.ql.ops.AbstractRecordSource;
+import com.nfsdb.std.ObjHashSet;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.std.Transient;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.Closeable;
+
+/**
+ * Parallel alternative to AggregatedRecordSource over journal scan. Each partition
+ * slice is aggregated by worker into its own map. Partial maps are folded into
+ * result map on query thread in slice order, which keeps first() and last()
+ * consistent with single-threaded execution.
+ * <p/>
+ * Every row source must be accompanied by its own copy of aggregator functions.
+ * First copy is used to merge partial results.
+ */
+public class ParallelAggregatedRecordSource extends AbstractRecordSource implements Closeable {
+    private final PartitionSource partitionSource;
+    private final ScanPipeline<AggregationTask> pipeline;
+    private final ObjList<AggregationTask> tasks;
+    private final ObjList<AggregatorFunction> aggregators;
+    private final MultiMap map;
+    private PartitionCursor partitionCursor;
+    private RecordCursor mapCursor;
+
+    @SuppressFBWarnings({"LII_LIST_INDEXED_ITERATING"})
+    public ParallelAggregatedRecordSource(
+            PartitionSource partitionSource,
+            ObjList<RowSource> rowSources,
+            @Transient ObjHashSet<String> keyColumns,
+            ObjList<ObjList<AggregatorFunction>> aggregators,
+            ScanWorkerPool pool,
+            int keyCapacity,
+            int pageSize,
+            float loadFactor
+    ) {
+        int n = rowSources.size();
+        if (aggregators.size() != n) {
+            throw new IllegalArgumentException("Each row source requires its own set of aggregators");
+        }
+
+        this.partitionSource = partitionSource;
+        JournalMetadata metadata = partitionSource.getMetadata();
+
+        int keyColumnsSize = keyColumns.size();
+        int[] keyIndices = new int[keyColumnsSize];
+        for (int i = 0; i < keyColumnsSize; i++) {
+            keyIndices[i] = metadata.getColumnIndex(keyColumns.get(i));
+        }
+
+        this.tasks = new ObjList<>(n);
+        for (int i = 0; i < n; i++) {
+            tasks.add(new AggregationTask(rowSources.getQuick(i), metadata, keyIndices, keyColumns, aggregators.getQuick(i), keyCapacity, pageSize, loadFactor));
+        }
+        this.pipeline = new ScanPipeline<>(tasks, metadata, pool);
+
+        // partial maps are laid out by their own copies of functions,
+        // value positions are the same for all copies
+        this.aggregators = aggregators.getQuick(0);
+        ObjList<MapRecordValueInterceptor> interceptors = new ObjList<>();
+        ObjList<RecordColumnMetadata> columns = new ObjList<>();
+        int index = 0;
+        for (int i = 0, sz = this.aggregators.size(); i < sz; i++) {
+            AggregatorFunction func = this.aggregators.getQuick(i);
+            int k = columns.size();
+            func.prepare(columns, index);
+            index += columns.size() - k;
+
+            if (func instanceof MapRecordValueInterceptor) {
+                interceptors.add((MapRecordValueInterceptor) func);
+            }
+        }
+        this.map = new MultiMap(keyCapacity, pageSize, loadFactor, metadata, keyColumns, columns, interceptors);
+    }
+
+    @Override
+    public void close() {
+        pipeline.close();
+        for (int i = 0, n = tasks.size(); i < n; i++) {
+            tasks.getQuick(i).free();
+        }
+        Misc.free(map);
+    }
+
+    @Override
+    public Record getByRowId(long rowId) {
+        return null;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return partitionCursor.getStorageFacade();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return map.getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory) throws JournalException {
+        this.partitionCursor = partitionSource.prepareCursor(factory);
+        pipeline.prepare(partitionCursor, factory);
+        buildMap();
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        pipeline.reset();
+        map.clear();
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return mapCursor.hasNext();
+    }
+
+    @Override
+    public Record next() {
+        return mapCursor.next();
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelAggregatedRecordSource{" +
+                "partitionSource=" + partitionSource +
+                ", parallelism=" + pipeline.getParallelism() +
+                '}';
+    }
+
+    private void buildMap() {
+        map.clear();
+        AggregationTask t;
+        while ((t = pipeline.next()) != null) {
+            map.merge(t.map, aggregators);
+        }
+        mapCursor = map.getCursor();
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.nfsdb.ql.impl.parallel;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.factory.JournalReaderFactory;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.factory.configuration.RecordMetadata;
+import com.nfsdb.ql.*;
+import com.nfsdb.ql.impl.JournalRecord;
+import com.nfsdb.ql.ops.AbstractRecordSource;
+import com.nfsdb.std.ObjList;
+
+import java.io.Closeable;
+
+/**
+ * Parallel alternative to JournalSource. Partition slices are scanned concurrently
+ * by worker pool, each scan producing list of matching local row ids. Results are
+ * consumed strictly in the order slices were issued by partition source, which
+ * for journal scans is timestamp order. Number of row sources determines
+ * how many slices can be in flight at the same time. Row sources must
+ * not be shared between instances of this class or with any other record source.
+ * <p/>
+ * Query thread executes scans that are not yet picked up by workers, so this
+ * source makes progress even when worker pool is saturated.
+ */
+public class ParallelJournalSource extends AbstractRecordSource implements Closeable {
+    private final PartitionSource partitionSource;
+    private final ObjList<RowSource> rowSources;
+    private final ScanPipeline<ScanTask> pipeline;
+    private final JournalRecord rec;
+    private final JournalRecord rowIdRec;
+    private final JournalMetadata metadata;
+    private PartitionCursor partitionCursor;
+    private ScanTask current;
+    private int row;
+
+    public ParallelJournalSource(PartitionSource partitionSource, ObjList<RowSource> rowSources, ScanWorkerPool pool) {
+        this.partitionSource = partitionSource;
+        this.rowSources = rowSources;
+        this.metadata = partitionSource.getMetadata();
+        this.rec = new JournalRecord(this.metadata);
+        this.rowIdRec = new JournalRecord(this.metadata);
+
+        ObjList<ScanTask> tasks = new ObjList<>(rowSources.size());
+        for (int i = 0, n = rowSources.size(); i < n; i++) {
+            tasks.add(new ScanTask(rowSources.getQuick(i), metadata));
+        }
+        this.pipeline = new ScanPipeline<>(tasks, metadata, pool);
+    }
+
+    @Override
+    public void close() {
+        current = null;
+        pipeline.close();
+    }
+
+    @Override
+    public JournalRecord getByRowId(long rowId) {
+        // separate record keeps scan position intact, cursor does not need to be iterated first
+        return rowIdRec.of(partitionCursor.getJournal(), rowId);
+    }
+
+    public PartitionSource getPartitionSource() {
+        return partitionSource;
+    }
+
+    public ObjList<RowSource> getRowSources() {
+        return rowSources;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return partitionCursor.getStorageFacade();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory) throws JournalException {
+        current = null;
+        rowIdRec.partition = null;
+        this.partitionCursor = partitionSource.prepareCursor(factory);
+        pipeline.prepare(partitionCursor, factory);
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        current = null;
+        pipeline.reset();
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return (current != null && row < current.rows.size()) || nextTask();
+    }
+
+    @Override
+    public JournalRecord next() {
+        rec.rowid = current.rows.getQuick(row++);
+        return rec;
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelJournalSource{" +
+                "partitionSource=" + partitionSource +
+                ", parallelism=" + pipeline.getParallelism() +
+                '}';
+    }
+
+    private boolean nextTask() {
+        ScanTask t;
+        current = null;
+        while ((t = pipeline.next()) != null) {
+            if (t.rows.size() > 0) {
+                current = t;
+                row = 0;
+                rec.partition = pipeline.getPartition();
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.nfsdb.ql.impl.parallel;
+
+import com.nfsdb.Partition;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.factory.JournalReaderFactory;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.ql.PartitionCursor;
+import com.nfsdb.ql.PartitionSlice;
+import com.nfsdb.std.ObjList;
+
+/**
+ * Ring of scan tasks fed by partition cursor. Up to task count slices are
+ * in flight at any time and completed tasks are handed out strictly in the order
+ * slices were issued. Task that is not picked up by worker is executed on
+ * calling thread.
+ */
+class ScanPipeline<T extends ScanTask> {
+    private final ObjList<T> tasks;
+    private final Partition[] partitions;
+    private final JournalMetadata metadata;
+    private final ScanWorkerPool pool;
+    private final int mask;
+    private PartitionCursor partitionCursor;
+    private JournalReaderFactory factory;
+    private long head;
+    private long tail;
+    private T current;
+
+    ScanPipeline(ObjList<T> tasks, JournalMetadata metadata, ScanWorkerPool pool) {
+        int n = tasks.size();
+        if (n == 0 || (n & (n - 1)) != 0) {
+            throw new IllegalArgumentException("Row source count must be power of 2");
+        }
+        this.tasks = tasks;
+        this.partitions = new Partition[n];
+        this.metadata = metadata;
+        this.pool = pool;
+        this.mask = n - 1;
+    }
+
+    void close() {
+        drain();
+        closeTasks();
+    }
+
+    /**
+     * Waits for in-flight scans and discards their results. Tasks
+     * must not be re-used while workers may still be running them.
+     */
+    void drain() {
+        if (current != null) {
+            current.release();
+            current = null;
+            head++;
+        }
+
+        while (head < tail) {
+            T t = tasks.getQuick((int) (head++ & mask));
+            try {
+                t.await();
+            } catch (JournalRuntimeException ignore) {
+                // result is discarded anyway
+            }
+            t.release();
+        }
+        head = tail = 0;
+    }
+
+    /**
+     * Partition of master journal, which corresponds to task last returned by {@link #next()}.
+     *
+     * @return partition instance
+     */
+    Partition getPartition() {
+        return partitions[(int) (head & mask)];
+    }
+
+    int getParallelism() {
+        return tasks.size();
+    }
+
+    /**
+     * Releases previously returned task and waits for the next one in slice order.
+     *
+     * @return completed task or null when partition cursor is exhausted
+     */
+    T next() {
+        if (current != null) {
+            current.release();
+            current = null;
+            head++;
+        }
+
+        submit();
+
+        if (head == tail) {
+            // release worker readers as soon as cursor is exhausted
+            closeTasks();
+            return null;
+        }
+
+        T t = tasks.getQuick((int) (head & mask));
+        try {
+            t.await();
+        } catch (JournalRuntimeException e) {
+            t.release();
+            head++;
+            throw e;
+        }
+        return current = t;
+    }
+
+    void prepare(PartitionCursor partitionCursor, JournalReaderFactory factory) throws JournalException {
+        drain();
+        this.partitionCursor = partitionCursor;
+        this.factory = factory;
+        prepareTasks();
+    }
+
+    void reset() {
+        drain();
+        if (partitionCursor != null) {
+            partitionCursor.reset();
+            try {
+                prepareTasks();
+            } catch (JournalException e) {
+                throw new JournalRuntimeException(e);
+            }
+        }
+    }
+
+    private void closeTasks() {
+        for (int i = 0, n = tasks.size(); i < n; i++) {
+            tasks.getQuick(i).close();
+        }
+    }
+
+    private void prepareTasks() throws JournalException {
+        for (int i = 0, n = tasks.size(); i < n; i++) {
+            tasks.getQuick(i).prepare(factory, metadata);
+        }
+    }
+
+    private void submit() {
+        while (tail - head < tasks.size() && partitionCursor.hasNext()) {
+            PartitionSlice slice = partitionCursor.next();
+            int index = (int) (tail++ & mask);
+            T t = tasks.getQuick(index);
+            partitions[index] = slice.partition;
+            // upper bound is taken from query thread's view of partition
+            // so that all scans are consistent with the same transaction
+            t.of(slice.partition.getPartitionIndex(), slice.lo, slice.calcHi ? slice.partition.size() - 1 : slice.hi);
+            if (pool == null || !pool.submit(t)) {
+                t.run();
+            }
+        }
+    }
+}
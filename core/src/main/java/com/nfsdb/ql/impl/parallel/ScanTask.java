@@ -0,0 +1,154 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.nfsdb.ql.impl.parallel;
+
+import com.nfsdb.Journal;
+import com.nfsdb.Partition;
+import com.nfsdb.ex.FatalError;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.factory.JournalReaderFactory;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.misc.Misc;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.ql.PartitionSlice;
+import com.nfsdb.ql.RowCursor;
+import com.nfsdb.ql.RowSource;
+import com.nfsdb.ql.impl.MasterStorageFacade;
+import com.nfsdb.std.LongList;
+
+/**
+ * Scan of single partition slice. Each task owns private journal reader
+ * and row source, which makes it safe to execute on any thread. Task is claimed
+ * by compare-and-swap, so that query thread can execute it when no worker
+ * got to it first.
+ */
+class ScanTask {
+    private static final long STATE_OFFSET;
+    private static final int IDLE = 0;
+    private static final int PENDING = 1;
+    private static final int RUNNING = 2;
+    private static final int DONE = 3;
+
+    final LongList rows = new LongList();
+    private final RowSource rowSource;
+    private final PartitionSlice slice = new PartitionSlice();
+    private final MasterStorageFacade storageFacade = new MasterStorageFacade();
+    private Journal journal;
+    private int partitionIndex;
+    private Throwable error;
+    @SuppressWarnings("FieldCanBeLocal")
+    private volatile int state = IDLE;
+
+    ScanTask(RowSource rowSource, JournalMetadata metadata) {
+        this.rowSource = rowSource;
+        rowSource.configure(metadata);
+    }
+
+    /**
+     * Blocks until task is complete. Unclaimed task is executed on calling thread.
+     */
+    void await() {
+        if (!run()) {
+            while (state != DONE) {
+                Thread.yield();
+            }
+        }
+
+        if (error != null) {
+            Throwable e = error;
+            error = null;
+            throw new JournalRuntimeException("Partition scan failed", e);
+        }
+    }
+
+    void close() {
+        journal = Misc.free(journal);
+    }
+
+    void of(int partitionIndex, long lo, long hi) {
+        this.partitionIndex = partitionIndex;
+        this.slice.lo = lo;
+        this.slice.hi = hi;
+        this.slice.calcHi = false;
+        this.rows.clear();
+        this.state = PENDING;
+    }
+
+    @SuppressWarnings("unchecked")
+    void prepare(JournalReaderFactory factory, JournalMetadata metadata) throws JournalException {
+        if (journal == null) {
+            // journal instances are not thread safe, hence private reader for each task
+            journal = new Journal(factory.getOrCreateMetadata(metadata.getKey()), metadata.getKey());
+            storageFacade.setJournal(journal);
+            storageFacade.setFactory(factory);
+        } else {
+            journal.refresh();
+        }
+        rowSource.reset();
+        rowSource.prepare(storageFacade);
+    }
+
+    void release() {
+        state = IDLE;
+    }
+
+    boolean run() {
+        if (!Unsafe.getUnsafe().compareAndSwapInt(this, STATE_OFFSET, PENDING, RUNNING)) {
+            return false;
+        }
+
+        try {
+            slice.partition = journal.getPartition(partitionIndex, true);
+            RowCursor cursor = rowSource.prepareCursor(slice);
+            if (cursor != null) {
+                scan(slice.partition, cursor);
+            }
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            state = DONE;
+        }
+        return true;
+    }
+
+    /**
+     * Consumes rows of partition slice. Default implementation collects row ids.
+     *
+     * @param partition partition of private journal reader
+     * @param cursor    matching rows of slice
+     */
+    void scan(Partition partition, RowCursor cursor) {
+        while (cursor.hasNext()) {
+            rows.add(cursor.next());
+        }
+    }
+
+    static {
+        try {
+            STATE_OFFSET = Unsafe.getUnsafe().objectFieldOffset(ScanTask.class.getDeclaredField("state"));
+        } catch (NoSuchFieldException e) {
+            throw new FatalError(e);
+        }
+    }
+}
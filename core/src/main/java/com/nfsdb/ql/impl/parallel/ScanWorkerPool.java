@@ -0,0 +1,141 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.nfsdb.ql.impl.parallel;
+
+import com.nfsdb.mp.*;
+import com.nfsdb.std.ObjHashSet;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.std.ObjectFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Fixed set of worker threads that execute partition scans on behalf of
+ * parallel record sources. Tasks are published into ring queue by query threads
+ * and picked up by whichever worker is free. Queue overflow is not an error,
+ * publisher is expected to execute task on its own thread instead.
+ */
+public class ScanWorkerPool implements Closeable {
+    private final RingQueue<ScanEvent> queue;
+    private final Sequence pubSeq;
+    private final Sequence subSeq;
+    private final ObjList<Worker> workers;
+    private final CountDownLatch haltLatch;
+    private final int workerCount;
+    private volatile boolean running = true;
+
+    public ScanWorkerPool(int workerCount, int queueSize) {
+        this.workerCount = workerCount;
+        this.queue = new RingQueue<>(ScanEvent.FACTORY, queueSize);
+        this.pubSeq = new MPSequence(queueSize);
+        this.subSeq = new MCSequence(queueSize, null);
+        this.pubSeq.followedBy(subSeq);
+        this.subSeq.followedBy(pubSeq);
+        this.haltLatch = new CountDownLatch(workerCount);
+        this.workers = new ObjList<>(workerCount);
+
+        ObjHashSet<Job> jobs = new ObjHashSet<>();
+        jobs.add(new ScanJob());
+
+        for (int i = 0; i < workerCount; i++) {
+            Worker w = new Worker(jobs, haltLatch);
+            w.setDaemon(true);
+            w.setName("nfsdb-scan-" + i);
+            workers.add(w);
+            w.start();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (running) {
+            running = false;
+            for (int i = 0, n = workers.size(); i < n; i++) {
+                workers.getQuick(i).halt();
+            }
+            try {
+                haltLatch.await();
+            } catch (InterruptedException ignore) {
+            }
+        }
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Publishes task to worker queue.
+     *
+     * @param task task to be executed
+     * @return false when queue is full or pool is closed
+     */
+    boolean submit(ScanTask task) {
+        if (!running) {
+            return false;
+        }
+
+        long cursor;
+        do {
+            cursor = pubSeq.next();
+            if (cursor == -1) {
+                return false;
+            }
+        } while (cursor < 0);
+
+        queue.get(cursor).task = task;
+        pubSeq.done(cursor);
+        return true;
+    }
+
+    private static class ScanEvent {
+        private static final ObjectFactory<ScanEvent> FACTORY = new ObjectFactory<ScanEvent>() {
+            @Override
+            public ScanEvent newInstance() {
+                return new ScanEvent();
+            }
+        };
+
+        private ScanTask task;
+    }
+
+    private class ScanJob implements Job {
+        @Override
+        public boolean run() {
+            long cursor = subSeq.next();
+            if (cursor < 0) {
+                return false;
+            }
+
+            ScanEvent evt = queue.get(cursor);
+            ScanTask task = evt.task;
+            evt.task = null;
+            subSeq.done(cursor);
+
+            // task may have been claimed by query thread already
+            task.run();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl.sort;
+
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.std.DirectMemoryStructure;
+import com.nfsdb.std.Mutable;
+
+/**
+ * Off-heap array of fixed size entries. Array starts small and doubles in size until it reaches
+ * memory budget, after which it is considered full. Entries are sorted in place.
+ * <p>
+ * Array can also be used as bounded max-heap, which keeps N least entries offered to it.
+ */
+public class SortBuffer extends DirectMemoryStructure implements Mutable {
+    private static final int MIN_CAPACITY = 1024;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private static final int RESERVED = 3;
+    private final int entrySize;
+    private final int entryShift;
+    private final long maxCapacity;
+    private long capacity;
+    private long size;
+
+    /**
+     * @param entrySize    size of entry in bytes, must be power of two
+     * @param memoryBudget maximum number of bytes buffer is allowed to allocate
+     */
+    public SortBuffer(int entrySize, long memoryBudget) {
+        if (entrySize <= 0 || (entrySize & (entrySize - 1)) != 0) {
+            throw new IllegalArgumentException("entrySize must be power of 2");
+        }
+        this.entrySize = entrySize;
+        this.entryShift = Integer.numberOfTrailingZeros(entrySize);
+        this.maxCapacity = Math.max(memoryBudget >> entryShift, INSERTION_SORT_THRESHOLD);
+    }
+
+    public long addressOf(long index) {
+        // first three entries are reserved for pivot, swap space and heap candidate
+        return address + ((index + RESERVED) << entryShift);
+    }
+
+    /**
+     * Reserves entry at end of buffer.
+     *
+     * @return address of new entry or 0 when buffer is at its memory budget
+     */
+    public long append() {
+        if ((size == capacity || address == 0) && !grow()) {
+            return 0;
+        }
+        return addressOf(size++);
+    }
+
+    /**
+     * Address of entry to be offered to heap. Entry is not part of the buffer until it is offered.
+     */
+    public long candidate() {
+        if (address == 0) {
+            grow();
+        }
+        return address + (2 << entryShift);
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Maximum number of entries buffer can hold within its memory budget.
+     */
+    public long getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * Adds candidate entry to max-heap of at most limit entries. When heap is full candidate
+     * replaces greatest entry, provided candidate is less than that entry. Heap order
+     * is lost once buffer is sorted.
+     *
+     * @param limit maximum number of entries to keep, must not exceed maximum capacity
+     */
+    public void offer(EntryComparator comparator, long limit) {
+        if (size < limit) {
+            long index = size;
+            // reserved entries are preserved when buffer grows
+            append();
+            copy(candidate(), addressOf(index));
+            siftUp(comparator, index);
+        } else if (limit > 0 && comparator.compare(candidate(), addressOf(0)) < 0) {
+            copy(candidate(), addressOf(0));
+            siftDown(comparator, 0);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public void sort(EntryComparator comparator) {
+        if (size > 1) {
+            quickSort(comparator, 0, size - 1);
+        }
+    }
+
+    private void copy(long from, long to) {
+        Unsafe.getUnsafe().copyMemory(from, to, entrySize);
+    }
+
+    private boolean grow() {
+        if (address == 0) {
+            // buffer has been freed
+            capacity = 0;
+        }
+
+        long c = capacity == 0 ? Math.min(MIN_CAPACITY, maxCapacity) : Math.min(capacity << 1, maxCapacity);
+        if (c <= capacity) {
+            return false;
+        }
+        long bytes = (c + RESERVED) << entryShift;
+        address = address == 0 ? Unsafe.getUnsafe().allocateMemory(bytes) : Unsafe.getUnsafe().reallocateMemory(address, bytes);
+        capacity = c;
+        return true;
+    }
+
+    private void insertionSort(EntryComparator comparator, long lo, long hi) {
+        long scratch = address;
+        for (long i = lo + 1; i <= hi; i++) {
+            copy(addressOf(i), scratch);
+            long j = i - 1;
+            while (j >= lo && comparator.compare(addressOf(j), scratch) > 0) {
+                copy(addressOf(j), addressOf(j + 1));
+                j--;
+            }
+            copy(scratch, addressOf(j + 1));
+        }
+    }
+
+    private void quickSort(EntryComparator comparator, long lo, long hi) {
+        while (hi - lo >= INSERTION_SORT_THRESHOLD) {
+            long mid = (lo + hi) >>> 1;
+
+            // median of three, which also guards inner loops against running past bounds
+            if (comparator.compare(addressOf(lo), addressOf(mid)) > 0) {
+                swap(lo, mid);
+            }
+
+            if (comparator.compare(addressOf(mid), addressOf(hi)) > 0) {
+                swap(mid, hi);
+                if (comparator.compare(addressOf(lo), addressOf(mid)) > 0) {
+                    swap(lo, mid);
+                }
+            }
+
+            long pivot = address;
+            copy(addressOf(mid), pivot);
+
+            long i = lo;
+            long j = hi;
+            while (i <= j) {
+                while (comparator.compare(addressOf(i), pivot) < 0) {
+                    i++;
+                }
+
+                while (comparator.compare(addressOf(j), pivot) > 0) {
+                    j--;
+                }
+
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            // recurse into smaller partition to keep stack depth logarithmic
+            if (j - lo < hi - i) {
+                quickSort(comparator, lo, j);
+                lo = i;
+            } else {
+                quickSort(comparator, i, hi);
+                hi = j;
+            }
+        }
+        insertionSort(comparator, lo, hi);
+    }
+
+    private void siftDown(EntryComparator comparator, long index) {
+        long i = index;
+        while (true) {
+            long child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+
+            if (child + 1 < size && comparator.compare(addressOf(child + 1), addressOf(child)) > 0) {
+                child++;
+            }
+
+            if (comparator.compare(addressOf(child), addressOf(i)) <= 0) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void siftUp(EntryComparator comparator, long index) {
+        long i = index;
+        while (i > 0) {
+            long parent = (i - 1) >>> 1;
+            if (comparator.compare(addressOf(parent), addressOf(i)) >= 0) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void swap(long i, long j) {
+        long t = address + entrySize;
+        long a = addressOf(i);
+        long b = addressOf(j);
+        copy(a, t);
+        copy(b, a);
+        copy(t, b);
+    }
+}
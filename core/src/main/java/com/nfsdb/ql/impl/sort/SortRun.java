@@ -0,0 +1,79 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl.sort;
+
+import com.nfsdb.JournalMode;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.store.MemoryFile;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Sorted run of entries spilled to disk. Run is written once and then read sequentially,
+ * file is deleted when run is closed.
+ */
+public class SortRun implements Closeable {
+    private final MemoryFile file;
+    private final int entrySize;
+    private long size;
+    private long offset;
+
+    /**
+     * @param entrySize size of entry in bytes, must be power of two not greater than 2^bitHint,
+     *                  so that entries never span mapped pages
+     */
+    public SortRun(File file, int entrySize, int bitHint) throws JournalException {
+        this.file = new MemoryFile(file, bitHint, JournalMode.BULK_APPEND);
+        this.entrySize = entrySize;
+    }
+
+    /**
+     * @return address of current entry
+     */
+    public long address() {
+        return file.addressOf(offset, entrySize);
+    }
+
+    public void advance() {
+        offset += entrySize;
+    }
+
+    @Override
+    public void close() {
+        file.delete();
+    }
+
+    public boolean hasNext() {
+        return offset < size;
+    }
+
+    public void write(SortBuffer buffer) {
+        for (long i = 0, n = buffer.size(); i < n; i++) {
+            Unsafe.getUnsafe().copyMemory(buffer.addressOf(i), file.addressOf(size, entrySize), entrySize);
+            size += entrySize;
+        }
+        file.setAppendOffset(size);
+        offset = 0;
+    }
+}
@@ -0,0 +1,384 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl.sort;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.factory.JournalReaderFactory;
+import com.nfsdb.factory.configuration.JournalConfiguration;
+import com.nfsdb.factory.configuration.RecordMetadata;
+import com.nfsdb.io.sink.StringSink;
+import com.nfsdb.misc.Chars;
+import com.nfsdb.misc.Files;
+import com.nfsdb.misc.Misc;
+import com.nfsdb.misc.Numbers;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.ql.Record;
+import com.nfsdb.ql.RecordCursor;
+import com.nfsdb.ql.RecordSource;
+import com.nfsdb.ql.StorageFacade;
+import com.nfsdb.ql.impl.join.hash.MemoryRecordAccessor;
+import com.nfsdb.ql.ops.AbstractRecordSource;
+import com.nfsdb.ql.ops.VirtualColumn;
+import com.nfsdb.std.IntList;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.store.ColumnType;
+import com.nfsdb.store.SequentialMemory;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Sorts records of underlying source by list of columns. Sort entries are made of one long key per column
+ * followed by row id. Keys of numeric columns preserve order of values, keys of strings and symbols are
+ * made of first four characters and ties are resolved by comparing full values. Entries are sorted off-heap
+ * until they exceed memory budget, at which point sorted entries are written to temporary file as a run.
+ * When there is more than one run, runs are merged via priority queue as records are read.
+ * <p>
+ * When only first N records are required and N entries fit memory budget, entries are kept in bounded heap
+ * instead, so that neither memory nor sort time depend on number of records in underlying source.
+ * <p>
+ * Records of sources without row id access are copied off-heap and entries refer to these copies.
+ */
+public class SortedRecordSource extends AbstractRecordSource implements Closeable, EntryComparator {
+    private static final int RUN_BIT_HINT = 20;
+    private final RecordSource recordSource;
+    private final int[] columns;
+    private final ColumnType[] types;
+    private final boolean[] descending;
+    private final int keyCount;
+    private final boolean byRowId;
+    private final SortBuffer buffer;
+    private final int entrySize;
+    private final SequentialMemory mem;
+    private final MemoryRecordAccessor accessor;
+    private final StringSink sink = new StringSink();
+    private final ObjList<SortRun> runs = new ObjList<>();
+    private final IntList queue = new IntList();
+    private final VirtualColumn limit;
+    private RecordCursor recordCursor;
+    private File spillDir;
+    private long readIndex;
+    private boolean advance;
+
+    public SortedRecordSource(RecordSource recordSource, IntList columns, IntList descending) {
+        this(recordSource, columns, descending, null, JournalConfiguration.DEFAULT_SORT_MEMORY_BUDGET, JournalConfiguration.DEFAULT_RECORD_PAGE_SIZE);
+    }
+
+    public SortedRecordSource(RecordSource recordSource, IntList columns, IntList descending, long memoryBudget, int recordPageSize) {
+        this(recordSource, columns, descending, null, memoryBudget, recordPageSize);
+    }
+
+    /**
+     * @param columns        indexes of sort columns in order of significance
+     * @param descending     1 for columns sorted in descending order, 0 otherwise
+     * @param limit          number of leading records required, or null when all records are required
+     * @param memoryBudget   number of bytes sort entries can occupy before they are spilled to disk
+     * @param recordPageSize page size of off-heap copy of records of sources without row id access
+     */
+    public SortedRecordSource(RecordSource recordSource, IntList columns, IntList descending, VirtualColumn limit, long memoryBudget, int recordPageSize) {
+        this.recordSource = recordSource;
+        this.limit = limit;
+        this.keyCount = columns.size();
+        this.columns = new int[keyCount];
+        this.types = new ColumnType[keyCount];
+        this.descending = new boolean[keyCount];
+
+        RecordMetadata metadata = recordSource.getMetadata();
+        for (int i = 0; i < keyCount; i++) {
+            int col = columns.getQuick(i);
+            this.columns[i] = col;
+            this.types[i] = metadata.getColumnQuick(col).getType();
+            this.descending[i] = descending.getQuick(i) != 0;
+        }
+
+        // key per column plus row id, padded to power of 2 to keep entries within mapped pages of runs
+        this.entrySize = Numbers.ceilPow2((keyCount + 1) * 8);
+        this.buffer = new SortBuffer(entrySize, memoryBudget);
+        this.byRowId = recordSource.supportsRowIdAccess();
+        if (byRowId) {
+            this.mem = null;
+            this.accessor = null;
+        } else {
+            this.mem = new SequentialMemory(recordPageSize);
+            this.accessor = new MemoryRecordAccessor(metadata, mem);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        clear();
+        buffer.close();
+        Misc.free(mem);
+        Misc.free(recordSource);
+    }
+
+    @Override
+    public int compare(long a, long b) {
+        for (int i = 0; i < keyCount; i++) {
+            long ka = Unsafe.getUnsafe().getLong(a + (i << 3));
+            long kb = Unsafe.getUnsafe().getLong(b + (i << 3));
+            int d;
+            if (ka != kb) {
+                d = ka < kb ? -1 : 1;
+            } else if (types[i] == ColumnType.STRING || types[i] == ColumnType.SYMBOL) {
+                d = compareStr(i, rowIdOf(a), rowIdOf(b));
+                if (d == 0) {
+                    continue;
+                }
+            } else {
+                continue;
+            }
+            return descending[i] ? -d : d;
+        }
+
+        // keep order of rows with equal keys
+        long ra = rowIdOf(a);
+        long rb = rowIdOf(b);
+        return ra < rb ? -1 : (ra > rb ? 1 : 0);
+    }
+
+    @Override
+    public Record getByRowId(long rowId) {
+        if (byRowId) {
+            return recordCursor.getByRowId(rowId);
+        }
+        accessor.init(rowId);
+        return accessor;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return recordCursor.getStorageFacade();
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return recordSource.getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory) throws JournalException {
+        this.recordCursor = recordSource.prepareCursor(factory);
+        sort();
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        recordSource.reset();
+        clear();
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return byRowId;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (runs.size() == 0) {
+            if (advance) {
+                readIndex++;
+                advance = false;
+            }
+            return readIndex < buffer.size();
+        }
+
+        if (advance) {
+            int r = queue.getQuick(0);
+            queue.removeIndex(0);
+            SortRun run = runs.getQuick(r);
+            run.advance();
+            if (run.hasNext()) {
+                enqueue(r);
+            }
+            advance = false;
+        }
+        return queue.size() > 0;
+    }
+
+    @Override
+    public Record next() {
+        // entry cannot be advanced here because comparing strings of entries would
+        // reposition record that is about to be returned
+        advance = true;
+        return getByRowId(rowIdOf(runs.size() == 0 ? buffer.addressOf(readIndex) : runs.getQuick(queue.getQuick(0)).address()));
+    }
+
+    @SuppressFBWarnings({"CLI_CONSTANT_LIST_INDEX"})
+    private static long prefix(CharSequence cs) {
+        if (cs == null) {
+            return Long.MIN_VALUE;
+        }
+
+        long p = 0;
+        for (int i = 0, n = cs.length(); i < 4; i++) {
+            p = (p << 16) | (i < n ? cs.charAt(i) : 0);
+        }
+        // unsigned to signed order
+        return p ^ Long.MIN_VALUE;
+    }
+
+    private void clear() {
+        buffer.clear();
+        readIndex = 0;
+        advance = false;
+        queue.clear();
+        for (int i = 0, n = runs.size(); i < n; i++) {
+            runs.getQuick(i).close();
+        }
+        runs.clear();
+        if (spillDir != null) {
+            Files.delete(spillDir);
+            spillDir = null;
+        }
+    }
+
+    private int compareStr(int index, long rowIdA, long rowIdB) {
+        int col = columns[index];
+        if (types[index] == ColumnType.SYMBOL) {
+            return Chars.compare(getByRowId(rowIdA).getSym(col), getByRowId(rowIdB).getSym(col));
+        }
+
+        // record is a flyweight, copy value before positioning record at another row
+        CharSequence cs = getByRowId(rowIdA).getFlyweightStr(col);
+        CharSequence l = null;
+        if (cs != null) {
+            sink.clear();
+            sink.put(cs);
+            l = sink;
+        }
+        return Chars.compare(l, getByRowId(rowIdB).getFlyweightStr(col));
+    }
+
+    private void enqueue(int run) {
+        long address = runs.getQuick(run).address();
+        int lo = 0;
+        int hi = queue.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(runs.getQuick(queue.getQuick(mid)).address(), address) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        queue.add(lo, run);
+    }
+
+    private long key(Record record, int index) {
+        int col = columns[index];
+        switch (types[index]) {
+            case BOOLEAN:
+                return record.getBool(col) ? 1 : 0;
+            case BYTE:
+                return record.get(col);
+            case SHORT:
+                return record.getShort(col);
+            case INT:
+                return record.getInt(col);
+            case LONG:
+                return record.getLong(col);
+            case DATE:
+                return record.getDate(col);
+            case DOUBLE:
+                long d = Double.doubleToLongBits(record.getDouble(col));
+                // flip value bits of negative numbers, so that bits compare as signed long
+                return d ^ ((d >> 63) & Long.MAX_VALUE);
+            case FLOAT:
+                int f = Float.floatToIntBits(record.getFloat(col));
+                return f ^ ((f >> 31) & Integer.MAX_VALUE);
+            case STRING:
+                return prefix(record.getFlyweightStr(col));
+            case SYMBOL:
+                return prefix(record.getSym(col));
+            default:
+                throw new IllegalArgumentException("Unsupported sort column type: " + types[index]);
+        }
+    }
+
+    private void putEntry(long entry, Record record) {
+        for (int i = 0; i < keyCount; i++) {
+            Unsafe.getUnsafe().putLong(entry + (i << 3), key(record, i));
+        }
+        Unsafe.getUnsafe().putLong(entry + (keyCount << 3), byRowId ? record.getRowId() : accessor.append(record));
+    }
+
+    private long rowIdOf(long entry) {
+        return Unsafe.getUnsafe().getLong(entry + (keyCount << 3));
+    }
+
+    private void sort() throws JournalException {
+        clear();
+        if (!byRowId) {
+            mem.clear();
+            accessor.setStorageFacade(recordCursor.getStorageFacade());
+        }
+
+        long top = limit == null ? -1 : limit.getLong(null);
+        if (top > -1 && top <= buffer.getMaxCapacity()) {
+            while (recordCursor.hasNext()) {
+                putEntry(buffer.candidate(), recordCursor.next());
+                buffer.offer(this, top);
+            }
+            buffer.sort(this);
+            return;
+        }
+
+        while (recordCursor.hasNext()) {
+            long entry = buffer.append();
+            if (entry == 0) {
+                // spill before taking next record, comparator repositions cursor record
+                spill();
+                entry = buffer.append();
+            }
+            putEntry(entry, recordCursor.next());
+        }
+
+        if (runs.size() == 0) {
+            buffer.sort(this);
+        } else {
+            if (buffer.size() > 0) {
+                spill();
+            }
+
+            for (int i = 0, n = runs.size(); i < n; i++) {
+                if (runs.getQuick(i).hasNext()) {
+                    enqueue(i);
+                }
+            }
+        }
+    }
+
+    private void spill() throws JournalException {
+        buffer.sort(this);
+        if (spillDir == null) {
+            spillDir = Files.makeTempDir();
+        }
+        SortRun run = new SortRun(new File(spillDir, Integer.toString(runs.size())), entrySize, RUN_BIT_HINT);
+        run.write(buffer);
+        runs.add(run);
+        buffer.clear();
+    }
+}
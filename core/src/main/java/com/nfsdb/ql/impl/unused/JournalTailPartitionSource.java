@@ -54,6 +54,11 @@ public class JournalTailPartitionSource extends AbstractImmutableIterator<Partit
         this.dynamicJournal = true;
     }
 
+    @Override
+    public Journal getJournal() {
+        return journal;
+    }
+
     @Override
     public JournalMetadata getMetadata() {
         return metadata;
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.model;
+
+import com.nfsdb.std.ObjList;
+
+/**
+ * Disjunction of symbol equality terms, "column = value" each, which row must satisfy. Clauses
+ * are resolved using column bitmap indexes and are not part of filter.
+ */
+public final class BitmapClause {
+    public final ObjList<String> columns = new ObjList<>();
+    public final ObjList<String> values = new ObjList<>();
+
+    public void add(String column, String value) {
+        columns.add(column);
+        values.add(value);
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("BitmapClause{");
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            if (i > 0) {
+                b.append(" or ");
+            }
+            b.append(columns.getQuick(i)).append('=');
+            String v = values.getQuick(i);
+            if (v == null) {
+                b.append("null");
+            } else {
+                b.append('\'').append(v).append('\'');
+            }
+        }
+        return b.append('}').toString();
+    }
+}
@@ -26,12 +26,15 @@ import com.nfsdb.ql.impl.interval.IntervalSource;
 import com.nfsdb.std.CharSequenceHashSet;
 import com.nfsdb.std.IntList;
 import com.nfsdb.std.Mutable;
+import com.nfsdb.std.ObjList;
 import com.nfsdb.std.ObjectFactory;
 
 public class IntrinsicModel implements Mutable {
     public static final IntrinsicModelFactory FACTORY = new IntrinsicModelFactory();
     public final CharSequenceHashSet keyValues = new CharSequenceHashSet();
     public final IntList keyValuePositions = new IntList();
+    public final ObjList<ZoneRange> zoneRanges = new ObjList<>();
+    public final ObjList<BitmapClause> bitmapClauses = new ObjList<>();
     public String keyColumn;
     public long intervalLo = Long.MIN_VALUE;
     public long intervalHi = Long.MAX_VALUE;
@@ -55,6 +58,8 @@ public class IntrinsicModel implements Mutable {
         intervalSource = null;
         intrinsicValue = IntrinsicValue.UNDEFINED;
         keyValuesIsLambda = false;
+        zoneRanges.clear();
+        bitmapClauses.clear();
     }
 
     public void clearInterval() {
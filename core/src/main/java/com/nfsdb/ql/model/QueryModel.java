@@ -32,10 +32,13 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 public class QueryModel implements Mutable {
     public static final QueryModelFactory FACTORY = new QueryModelFactory();
+    public static final int ORDER_DIRECTION_ASCENDING = 0;
+    public static final int ORDER_DIRECTION_DESCENDING = 1;
 
     private final ObjList<QueryColumn> columns = new ObjList<>();
     private final ObjList<QueryModel> joinModels = new ObjList<>();
     private final ObjList<ExprNode> orderBy = new ObjList<>();
+    private final IntList orderByDirection = new IntList();
     private final IntHashSet dependencies = new IntHashSet();
     private final IntList orderedJoinModels1 = new IntList();
     private final IntList orderedJoinModels2 = new IntList();
@@ -62,6 +65,7 @@ public class QueryModel implements Mutable {
     private RecordMetadata metadata;
     private JoinContext context;
     private ExprNode joinCriteria;
+    private ExprNode joinTolerance;
     private JoinType joinType;
     private IntList orderedJoinModels = orderedJoinModels2;
     private ExprNode limitLo;
@@ -90,7 +94,12 @@ public class QueryModel implements Mutable {
     }
 
     public void addOrderBy(ExprNode node) {
+        addOrderBy(node, ORDER_DIRECTION_ASCENDING);
+    }
+
+    public void addOrderBy(ExprNode node, int direction) {
         orderBy.add(node);
+        orderByDirection.add(direction);
     }
 
     public void addParsedWhereConst(int index) {
@@ -107,6 +116,7 @@ public class QueryModel implements Mutable {
         joinModels.add(this);
         sampleBy = null;
         orderBy.clear();
+        orderByDirection.clear();
         dependencies.clear();
         parsedWhere.clear();
         whereClause = null;
@@ -117,6 +127,7 @@ public class QueryModel implements Mutable {
         recordSource = null;
         metadata = null;
         joinCriteria = null;
+        joinTolerance = null;
         joinType = JoinType.INNER;
         orderedJoinModels1.clear();
         orderedJoinModels2.clear();
@@ -173,6 +184,14 @@ public class QueryModel implements Mutable {
         this.joinCriteria = joinCriteria;
     }
 
+    public ExprNode getJoinTolerance() {
+        return joinTolerance;
+    }
+
+    public void setJoinTolerance(ExprNode joinTolerance) {
+        this.joinTolerance = joinTolerance;
+    }
+
     public ObjList<QueryModel> getJoinModels() {
         return joinModels;
     }
@@ -237,6 +256,10 @@ public class QueryModel implements Mutable {
         return orderBy;
     }
 
+    public IntList getOrderByDirection() {
+        return orderByDirection;
+    }
+
     public IntList getOrderedJoinModels() {
         return orderedJoinModels;
     }
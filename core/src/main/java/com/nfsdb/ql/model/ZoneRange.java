@@ -0,0 +1,61 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.model;
+
+/**
+ * Inclusive range of values numeric column must fall into for row to pass filter. Ranges are
+ * extracted from filter, which is still evaluated in full, they only allow to skip blocks of rows
+ * using column zone maps.
+ */
+public final class ZoneRange {
+    public final String column;
+    public final boolean floating;
+    public final long lo;
+    public final long hi;
+    public final double dlo;
+    public final double dhi;
+
+    private ZoneRange(String column, boolean floating, long lo, long hi, double dlo, double dhi) {
+        this.column = column;
+        this.floating = floating;
+        this.lo = lo;
+        this.hi = hi;
+        this.dlo = dlo;
+        this.dhi = dhi;
+    }
+
+    public static ZoneRange ofDouble(String column, double lo, double hi) {
+        return new ZoneRange(column, true, 0, 0, lo, hi);
+    }
+
+    public static ZoneRange ofLong(String column, long lo, long hi) {
+        return new ZoneRange(column, false, lo, hi, 0, 0);
+    }
+
+    @Override
+    public String toString() {
+        if (floating) {
+            return "ZoneRange{column='" + column + "', lo=" + dlo + ", hi=" + dhi + '}';
+        }
+        return "ZoneRange{column='" + column + "', lo=" + lo + ", hi=" + hi + '}';
+    }
+}
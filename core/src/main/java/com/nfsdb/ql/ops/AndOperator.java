@@ -26,7 +26,7 @@ import com.nfsdb.ql.ops.constant.BooleanConstant;
 import com.nfsdb.std.ObjectFactory;
 import com.nfsdb.store.ColumnType;
 
-public class AndOperator extends AbstractBinaryOperator {
+public class AndOperator extends AbstractBinaryOperator implements BatchFilter {
 
     public static final ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -39,6 +39,14 @@ public class AndOperator extends AbstractBinaryOperator {
         super(ColumnType.BOOLEAN);
     }
 
+    @Override
+    public void filter(RowBatch batch) {
+        batch.filter(lhs);
+        if (batch.size > 0) {
+            batch.filter(rhs);
+        }
+    }
+
     @Override
     public boolean getBool(Record rec) {
         return lhs.getBool(rec) && rhs.getBool(rec);
@@ -66,6 +66,12 @@ public final class AvgAggregator extends AbstractUnaryOperator implements Aggreg
         }
     }
 
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putLong(countIdx, dst.getLong(countIdx) + src.getLong(countIdx));
+        dst.putDouble(sumIdx, dst.getDouble(sumIdx) + src.getDouble(sumIdx));
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(INTERNAL_COL_COUNT);
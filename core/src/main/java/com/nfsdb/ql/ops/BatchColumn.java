@@ -0,0 +1,36 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.ops;
+
+/**
+ * Column that can evaluate a whole {@link RowBatch} in one call. Implementations must
+ * produce exactly the same values as their per-record getters; types the column
+ * does not support should be delegated to RowBatch's per-row methods.
+ */
+public interface BatchColumn {
+
+    void getDoubles(RowBatch batch, double[] out);
+
+    void getInts(RowBatch batch, int[] out);
+
+    void getLongs(RowBatch batch, long[] out);
+}
@@ -19,17 +19,18 @@
  * limitations under the License.
  ******************************************************************************/
 
-package com.nfsdb.net.ha;
+package com.nfsdb.ql.ops;
 
-import java.net.SocketAddress;
-import java.nio.channels.ByteChannel;
+/**
+ * Boolean function that can filter a whole {@link RowBatch} in one call.
+ */
+public interface BatchFilter {
 
-class SocketChannelHolder {
-    public final ByteChannel byteChannel;
-    public final SocketAddress socketAddress;
-
-    public SocketChannelHolder(ByteChannel byteChannel, SocketAddress socketAddress) {
-        this.byteChannel = byteChannel;
-        this.socketAddress = socketAddress;
-    }
+    /**
+     * Compacts batch rows so that only rows matching this filter remain. Relative
+     * order of rows is preserved.
+     *
+     * @param batch rows to filter
+     */
+    void filter(RowBatch batch);
 }
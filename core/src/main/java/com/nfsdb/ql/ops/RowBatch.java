@@ -0,0 +1,122 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.ops;
+
+import com.nfsdb.Partition;
+import com.nfsdb.factory.configuration.RecordMetadata;
+import com.nfsdb.ql.RowCursor;
+import com.nfsdb.ql.impl.JournalRecord;
+
+/**
+ * Block of local row ids of single partition. Batch aware columns and filters evaluate
+ * all rows of the block at once, reading mapped column memory directly, instead of
+ * going through virtual calls for each record. Filters compact "rows" in place, so
+ * after filtering the first "size" elements work as selection vector.
+ * <p>
+ * Columns and filters that are not batch aware are evaluated row by row on
+ * internal journal record, so mixing both kinds in the same expression is safe.
+ */
+public class RowBatch {
+    public static final int CAPACITY = 1024;
+    public final long[] rows = new long[CAPACITY];
+    private final JournalRecord rec;
+    public Partition partition;
+    public int size;
+
+    public RowBatch(RecordMetadata metadata) {
+        this.rec = new JournalRecord(metadata);
+    }
+
+    public boolean fill(RowCursor cursor) {
+        int n = 0;
+        while (n < CAPACITY && cursor.hasNext()) {
+            rows[n++] = cursor.next();
+        }
+        return (size = n) > 0;
+    }
+
+    public void filter(VirtualColumn filter) {
+        if (filter instanceof BatchFilter) {
+            ((BatchFilter) filter).filter(this);
+            return;
+        }
+
+        rec.partition = partition;
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            long row = rows[i];
+            rec.rowid = row;
+            if (filter.getBool(rec)) {
+                rows[n++] = row;
+            }
+        }
+        size = n;
+    }
+
+    public void getDoubles(VirtualColumn column, double[] out) {
+        if (column instanceof BatchColumn) {
+            ((BatchColumn) column).getDoubles(this, out);
+        } else {
+            rowDoubles(column, out);
+        }
+    }
+
+    public void getInts(VirtualColumn column, int[] out) {
+        if (column instanceof BatchColumn) {
+            ((BatchColumn) column).getInts(this, out);
+        } else {
+            rowInts(column, out);
+        }
+    }
+
+    public void getLongs(VirtualColumn column, long[] out) {
+        if (column instanceof BatchColumn) {
+            ((BatchColumn) column).getLongs(this, out);
+        } else {
+            rowLongs(column, out);
+        }
+    }
+
+    public void rowDoubles(VirtualColumn column, double[] out) {
+        rec.partition = partition;
+        for (int i = 0; i < size; i++) {
+            rec.rowid = rows[i];
+            out[i] = column.getDouble(rec);
+        }
+    }
+
+    public void rowInts(VirtualColumn column, int[] out) {
+        rec.partition = partition;
+        for (int i = 0; i < size; i++) {
+            rec.rowid = rows[i];
+            out[i] = column.getInt(rec);
+        }
+    }
+
+    public void rowLongs(VirtualColumn column, long[] out) {
+        rec.partition = partition;
+        for (int i = 0; i < size; i++) {
+            rec.rowid = rows[i];
+            out[i] = column.getLong(rec);
+        }
+    }
+}
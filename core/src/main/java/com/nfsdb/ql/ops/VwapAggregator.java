@@ -68,6 +68,12 @@ public final class VwapAggregator extends AbstractBinaryOperator implements Aggr
         }
     }
 
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putDouble(sumAmtIdx, dst.getDouble(sumAmtIdx) + src.getDouble(sumAmtIdx));
+        dst.putDouble(sumQtyIdx, dst.getDouble(sumQtyIdx) + src.getDouble(sumQtyIdx));
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(INTERNAL_COL_AMOUNT);
@@ -24,9 +24,11 @@ package com.nfsdb.ql.ops.col;
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.StorageFacade;
 import com.nfsdb.ql.ops.AbstractVirtualColumn;
+import com.nfsdb.ql.ops.BatchColumn;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.store.ColumnType;
 
-public class DateRecordSourceColumn extends AbstractVirtualColumn {
+public class DateRecordSourceColumn extends AbstractVirtualColumn implements BatchColumn {
     private final int index;
 
     public DateRecordSourceColumn(int index) {
@@ -44,6 +46,21 @@ public class DateRecordSourceColumn extends AbstractVirtualColumn {
         return rec.getLong(index);
     }
 
+    @Override
+    public void getDoubles(RowBatch batch, double[] out) {
+        batch.rowDoubles(this, out);
+    }
+
+    @Override
+    public void getInts(RowBatch batch, int[] out) {
+        batch.rowInts(this, out);
+    }
+
+    @Override
+    public void getLongs(RowBatch batch, long[] out) {
+        batch.partition.fixCol(index).getLongs(batch.rows, batch.size, out);
+    }
+
     @Override
     public boolean isConstant() {
         return false;
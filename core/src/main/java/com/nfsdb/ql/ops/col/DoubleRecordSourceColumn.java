@@ -24,9 +24,11 @@ package com.nfsdb.ql.ops.col;
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.StorageFacade;
 import com.nfsdb.ql.ops.AbstractVirtualColumn;
+import com.nfsdb.ql.ops.BatchColumn;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.store.ColumnType;
 
-public class DoubleRecordSourceColumn extends AbstractVirtualColumn {
+public class DoubleRecordSourceColumn extends AbstractVirtualColumn implements BatchColumn {
     private final int index;
 
     public DoubleRecordSourceColumn(int index) {
@@ -39,6 +41,21 @@ public class DoubleRecordSourceColumn extends AbstractVirtualColumn {
         return rec.getDouble(index);
     }
 
+    @Override
+    public void getDoubles(RowBatch batch, double[] out) {
+        batch.partition.fixCol(index).getDoubles(batch.rows, batch.size, out);
+    }
+
+    @Override
+    public void getInts(RowBatch batch, int[] out) {
+        batch.rowInts(this, out);
+    }
+
+    @Override
+    public void getLongs(RowBatch batch, long[] out) {
+        batch.rowLongs(this, out);
+    }
+
     @Override
     public boolean isConstant() {
         return false;
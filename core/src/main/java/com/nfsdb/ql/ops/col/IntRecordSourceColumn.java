@@ -24,10 +24,13 @@ package com.nfsdb.ql.ops.col;
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.StorageFacade;
 import com.nfsdb.ql.ops.AbstractVirtualColumn;
+import com.nfsdb.ql.ops.BatchColumn;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.store.ColumnType;
 
-public class IntRecordSourceColumn extends AbstractVirtualColumn {
+public class IntRecordSourceColumn extends AbstractVirtualColumn implements BatchColumn {
     private final int index;
+    private int[] buf;
 
     public IntRecordSourceColumn(int index) {
         super(ColumnType.INT);
@@ -57,6 +60,29 @@ public class IntRecordSourceColumn extends AbstractVirtualColumn {
         return v != Integer.MIN_VALUE ? v : Long.MIN_VALUE;
     }
 
+    @Override
+    public void getDoubles(RowBatch batch, double[] out) {
+        int[] v = read(batch);
+        for (int i = 0, n = batch.size; i < n; i++) {
+            int x = v[i];
+            out[i] = x != Integer.MIN_VALUE ? x : Double.NaN;
+        }
+    }
+
+    @Override
+    public void getInts(RowBatch batch, int[] out) {
+        batch.partition.fixCol(index).getInts(batch.rows, batch.size, out);
+    }
+
+    @Override
+    public void getLongs(RowBatch batch, long[] out) {
+        int[] v = read(batch);
+        for (int i = 0, n = batch.size; i < n; i++) {
+            int x = v[i];
+            out[i] = x != Integer.MIN_VALUE ? x : Long.MIN_VALUE;
+        }
+    }
+
     @Override
     public boolean isConstant() {
         return false;
@@ -65,4 +91,12 @@ public class IntRecordSourceColumn extends AbstractVirtualColumn {
     @Override
     public void prepare(StorageFacade facade) {
     }
+
+    private int[] read(RowBatch batch) {
+        if (buf == null) {
+            buf = new int[RowBatch.CAPACITY];
+        }
+        getInts(batch, buf);
+        return buf;
+    }
 }
@@ -24,10 +24,13 @@ package com.nfsdb.ql.ops.col;
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.StorageFacade;
 import com.nfsdb.ql.ops.AbstractVirtualColumn;
+import com.nfsdb.ql.ops.BatchColumn;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.store.ColumnType;
 
-public class LongRecordSourceColumn extends AbstractVirtualColumn {
+public class LongRecordSourceColumn extends AbstractVirtualColumn implements BatchColumn {
     private final int index;
+    private long[] buf;
 
     public LongRecordSourceColumn(int index) {
         super(ColumnType.LONG);
@@ -45,6 +48,28 @@ public class LongRecordSourceColumn extends AbstractVirtualColumn {
         return rec.getLong(index);
     }
 
+    @Override
+    public void getDoubles(RowBatch batch, double[] out) {
+        if (buf == null) {
+            buf = new long[RowBatch.CAPACITY];
+        }
+        getLongs(batch, buf);
+        for (int i = 0, n = batch.size; i < n; i++) {
+            long v = buf[i];
+            out[i] = v != Long.MIN_VALUE ? v : Double.NaN;
+        }
+    }
+
+    @Override
+    public void getInts(RowBatch batch, int[] out) {
+        batch.rowInts(this, out);
+    }
+
+    @Override
+    public void getLongs(RowBatch batch, long[] out) {
+        batch.partition.fixCol(index).getLongs(batch.rows, batch.size, out);
+    }
+
     @Override
     public boolean isConstant() {
         return false;
@@ -24,9 +24,13 @@ package com.nfsdb.ql.ops.constant;
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.StorageFacade;
 import com.nfsdb.ql.ops.AbstractVirtualColumn;
+import com.nfsdb.ql.ops.BatchColumn;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.store.ColumnType;
 
-public class IntConstant extends AbstractVirtualColumn {
+import java.util.Arrays;
+
+public class IntConstant extends AbstractVirtualColumn implements BatchColumn {
     private final int value;
 
     public IntConstant(int value) {
@@ -54,6 +58,21 @@ public class IntConstant extends AbstractVirtualColumn {
         return value;
     }
 
+    @Override
+    public void getDoubles(RowBatch batch, double[] out) {
+        Arrays.fill(out, 0, batch.size, value);
+    }
+
+    @Override
+    public void getInts(RowBatch batch, int[] out) {
+        Arrays.fill(out, 0, batch.size, value);
+    }
+
+    @Override
+    public void getLongs(RowBatch batch, long[] out) {
+        Arrays.fill(out, 0, batch.size, value);
+    }
+
     @Override
     public boolean isConstant() {
         return true;
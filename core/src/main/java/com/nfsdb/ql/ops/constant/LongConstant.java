@@ -24,9 +24,13 @@ package com.nfsdb.ql.ops.constant;
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.StorageFacade;
 import com.nfsdb.ql.ops.AbstractVirtualColumn;
+import com.nfsdb.ql.ops.BatchColumn;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.store.ColumnType;
 
-public class LongConstant extends AbstractVirtualColumn {
+import java.util.Arrays;
+
+public class LongConstant extends AbstractVirtualColumn implements BatchColumn {
     private final long value;
 
     public LongConstant(long value) {
@@ -44,6 +48,21 @@ public class LongConstant extends AbstractVirtualColumn {
         return value;
     }
 
+    @Override
+    public void getDoubles(RowBatch batch, double[] out) {
+        Arrays.fill(out, 0, batch.size, value);
+    }
+
+    @Override
+    public void getInts(RowBatch batch, int[] out) {
+        batch.rowInts(this, out);
+    }
+
+    @Override
+    public void getLongs(RowBatch batch, long[] out) {
+        Arrays.fill(out, 0, batch.size, value);
+    }
+
     @Override
     public boolean isConstant() {
         return true;
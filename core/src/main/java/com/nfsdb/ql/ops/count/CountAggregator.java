@@ -57,6 +57,11 @@ public final class CountAggregator extends AbstractVirtualColumn implements Aggr
         }
     }
 
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putLong(index, dst.getLong(index) + src.getLong(index));
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(this);
@@ -50,4 +50,9 @@ public final class CountFloatAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, values.getLong(valueIndex) + 1);
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putLong(valueIndex, dst.getLong(valueIndex) + src.getLong(valueIndex));
+    }
 }
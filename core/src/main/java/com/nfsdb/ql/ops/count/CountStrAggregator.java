@@ -51,4 +51,9 @@ public final class CountStrAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, values.getLong(valueIndex) + 1);
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putLong(valueIndex, dst.getLong(valueIndex) + src.getLong(valueIndex));
+    }
 }
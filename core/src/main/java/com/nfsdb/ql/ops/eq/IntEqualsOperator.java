@@ -23,11 +23,13 @@ package com.nfsdb.ql.ops.eq;
 
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.ops.AbstractBinaryOperator;
+import com.nfsdb.ql.ops.BatchFilter;
 import com.nfsdb.ql.ops.Function;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.std.ObjectFactory;
 import com.nfsdb.store.ColumnType;
 
-public class IntEqualsOperator extends AbstractBinaryOperator {
+public class IntEqualsOperator extends AbstractBinaryOperator implements BatchFilter {
 
     public final static ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -36,6 +38,9 @@ public class IntEqualsOperator extends AbstractBinaryOperator {
         }
     };
 
+    private int[] lbuf;
+    private int[] rbuf;
+
     private IntEqualsOperator() {
         super(ColumnType.BOOLEAN);
     }
@@ -45,4 +50,23 @@ public class IntEqualsOperator extends AbstractBinaryOperator {
         int l = lhs.getInt(rec);
         return l == rhs.getInt(rec) && l > Integer.MIN_VALUE;
     }
+
+    @Override
+    public void filter(RowBatch batch) {
+        if (lbuf == null) {
+            lbuf = new int[RowBatch.CAPACITY];
+            rbuf = new int[RowBatch.CAPACITY];
+        }
+        batch.getInts(lhs, lbuf);
+        batch.getInts(rhs, rbuf);
+        long[] rows = batch.rows;
+        int n = 0;
+        for (int i = 0, k = batch.size; i < k; i++) {
+            int x = lbuf[i];
+            if (x == rbuf[i] && x > Integer.MIN_VALUE) {
+                rows[n++] = rows[i];
+            }
+        }
+        batch.size = n;
+    }
 }
@@ -47,4 +47,8 @@ public final class FirstDoubleAggregator extends AbstractUnaryAggregator {
             values.putDouble(valueIndex, value.getDouble(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+    }
 }
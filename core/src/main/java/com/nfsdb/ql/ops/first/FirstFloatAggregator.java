@@ -47,4 +47,8 @@ public final class FirstFloatAggregator extends AbstractUnaryAggregator {
             values.putFloat(valueIndex, value.getFloat(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+    }
 }
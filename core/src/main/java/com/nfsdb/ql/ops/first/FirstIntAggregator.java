@@ -47,4 +47,8 @@ public final class FirstIntAggregator extends AbstractUnaryAggregator {
             values.putInt(valueIndex, value.getInt(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+    }
 }
@@ -47,4 +47,8 @@ public final class FirstLongAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, value.getLong(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+    }
 }
@@ -23,11 +23,13 @@ package com.nfsdb.ql.ops.gt;
 
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.ops.AbstractBinaryOperator;
+import com.nfsdb.ql.ops.BatchFilter;
 import com.nfsdb.ql.ops.Function;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.std.ObjectFactory;
 import com.nfsdb.store.ColumnType;
 
-public class DoubleGreaterThanOperator extends AbstractBinaryOperator {
+public class DoubleGreaterThanOperator extends AbstractBinaryOperator implements BatchFilter {
 
     public final static ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -36,6 +38,9 @@ public class DoubleGreaterThanOperator extends AbstractBinaryOperator {
         }
     };
 
+    private double[] lbuf;
+    private double[] rbuf;
+
     private DoubleGreaterThanOperator() {
         super(ColumnType.BOOLEAN);
     }
@@ -44,4 +49,22 @@ public class DoubleGreaterThanOperator extends AbstractBinaryOperator {
     public boolean getBool(Record rec) {
         return lhs.getDouble(rec) > rhs.getDouble(rec);
     }
+
+    @Override
+    public void filter(RowBatch batch) {
+        if (lbuf == null) {
+            lbuf = new double[RowBatch.CAPACITY];
+            rbuf = new double[RowBatch.CAPACITY];
+        }
+        batch.getDoubles(lhs, lbuf);
+        batch.getDoubles(rhs, rbuf);
+        long[] rows = batch.rows;
+        int n = 0;
+        for (int i = 0, k = batch.size; i < k; i++) {
+            if (lbuf[i] > rbuf[i]) {
+                rows[n++] = rows[i];
+            }
+        }
+        batch.size = n;
+    }
 }
@@ -23,11 +23,13 @@ package com.nfsdb.ql.ops.gt;
 
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.ops.AbstractBinaryOperator;
+import com.nfsdb.ql.ops.BatchFilter;
 import com.nfsdb.ql.ops.Function;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.std.ObjectFactory;
 import com.nfsdb.store.ColumnType;
 
-public class IntGreaterThanOperator extends AbstractBinaryOperator {
+public class IntGreaterThanOperator extends AbstractBinaryOperator implements BatchFilter {
 
     public final static ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -36,6 +38,9 @@ public class IntGreaterThanOperator extends AbstractBinaryOperator {
         }
     };
 
+    private int[] lbuf;
+    private int[] rbuf;
+
     private IntGreaterThanOperator() {
         super(ColumnType.BOOLEAN);
     }
@@ -45,4 +50,23 @@ public class IntGreaterThanOperator extends AbstractBinaryOperator {
         int r = rhs.getInt(rec);
         return lhs.getInt(rec) > r && r > Integer.MIN_VALUE;
     }
+
+    @Override
+    public void filter(RowBatch batch) {
+        if (lbuf == null) {
+            lbuf = new int[RowBatch.CAPACITY];
+            rbuf = new int[RowBatch.CAPACITY];
+        }
+        batch.getInts(lhs, lbuf);
+        batch.getInts(rhs, rbuf);
+        long[] rows = batch.rows;
+        int n = 0;
+        for (int i = 0, k = batch.size; i < k; i++) {
+            int y = rbuf[i];
+            if (lbuf[i] > y && y > Integer.MIN_VALUE) {
+                rows[n++] = rows[i];
+            }
+        }
+        batch.size = n;
+    }
 }
@@ -23,11 +23,13 @@ package com.nfsdb.ql.ops.gt;
 
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.ops.AbstractBinaryOperator;
+import com.nfsdb.ql.ops.BatchFilter;
 import com.nfsdb.ql.ops.Function;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.std.ObjectFactory;
 import com.nfsdb.store.ColumnType;
 
-public class LongGreaterThanOperator extends AbstractBinaryOperator {
+public class LongGreaterThanOperator extends AbstractBinaryOperator implements BatchFilter {
 
     public final static ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -36,6 +38,9 @@ public class LongGreaterThanOperator extends AbstractBinaryOperator {
         }
     };
 
+    private long[] lbuf;
+    private long[] rbuf;
+
     private LongGreaterThanOperator() {
         super(ColumnType.BOOLEAN);
     }
@@ -45,4 +50,23 @@ public class LongGreaterThanOperator extends AbstractBinaryOperator {
         long r = rhs.getLong(rec);
         return lhs.getLong(rec) > r && r > Long.MIN_VALUE;
     }
+
+    @Override
+    public void filter(RowBatch batch) {
+        if (lbuf == null) {
+            lbuf = new long[RowBatch.CAPACITY];
+            rbuf = new long[RowBatch.CAPACITY];
+        }
+        batch.getLongs(lhs, lbuf);
+        batch.getLongs(rhs, rbuf);
+        long[] rows = batch.rows;
+        int n = 0;
+        for (int i = 0, k = batch.size; i < k; i++) {
+            long y = rbuf[i];
+            if (lbuf[i] > y && y > Long.MIN_VALUE) {
+                rows[n++] = rows[i];
+            }
+        }
+        batch.size = n;
+    }
 }
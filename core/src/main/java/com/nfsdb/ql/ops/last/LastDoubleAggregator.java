@@ -45,4 +45,9 @@ public final class LastDoubleAggregator extends AbstractUnaryAggregator {
     public void calculate(Record rec, MapValues values) {
         values.putDouble(valueIndex, value.getDouble(rec));
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putDouble(valueIndex, src.getDouble(valueIndex));
+    }
 }
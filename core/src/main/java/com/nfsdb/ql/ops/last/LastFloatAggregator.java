@@ -45,4 +45,9 @@ public final class LastFloatAggregator extends AbstractUnaryAggregator {
     public void calculate(Record rec, MapValues values) {
         values.putFloat(valueIndex, value.getFloat(rec));
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putFloat(valueIndex, src.getFloat(valueIndex));
+    }
 }
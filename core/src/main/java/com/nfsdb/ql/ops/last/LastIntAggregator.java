@@ -45,4 +45,9 @@ public final class LastIntAggregator extends AbstractUnaryAggregator {
     public void calculate(Record rec, MapValues values) {
         values.putInt(valueIndex, value.getInt(rec));
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putInt(valueIndex, src.getInt(valueIndex));
+    }
 }
@@ -45,4 +45,9 @@ public final class LastLongAggregator extends AbstractUnaryAggregator {
     public void calculate(Record rec, MapValues values) {
         values.putLong(valueIndex, value.getLong(rec));
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putLong(valueIndex, src.getLong(valueIndex));
+    }
 }
@@ -23,11 +23,13 @@ package com.nfsdb.ql.ops.lt;
 
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.ops.AbstractBinaryOperator;
+import com.nfsdb.ql.ops.BatchFilter;
 import com.nfsdb.ql.ops.Function;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.std.ObjectFactory;
 import com.nfsdb.store.ColumnType;
 
-public class LongLessThanOperator extends AbstractBinaryOperator {
+public class LongLessThanOperator extends AbstractBinaryOperator implements BatchFilter {
 
     public final static ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -36,6 +38,9 @@ public class LongLessThanOperator extends AbstractBinaryOperator {
         }
     };
 
+    private long[] lbuf;
+    private long[] rbuf;
+
     private LongLessThanOperator() {
         super(ColumnType.BOOLEAN);
     }
@@ -45,4 +50,23 @@ public class LongLessThanOperator extends AbstractBinaryOperator {
         long l = lhs.getLong(rec);
         return l < rhs.getLong(rec) && l > Long.MIN_VALUE;
     }
+
+    @Override
+    public void filter(RowBatch batch) {
+        if (lbuf == null) {
+            lbuf = new long[RowBatch.CAPACITY];
+            rbuf = new long[RowBatch.CAPACITY];
+        }
+        batch.getLongs(lhs, lbuf);
+        batch.getLongs(rhs, rbuf);
+        long[] rows = batch.rows;
+        int n = 0;
+        for (int i = 0, k = batch.size; i < k; i++) {
+            long x = lbuf[i];
+            if (x < rbuf[i] && x > Long.MIN_VALUE) {
+                rows[n++] = rows[i];
+            }
+        }
+        batch.size = n;
+    }
 }
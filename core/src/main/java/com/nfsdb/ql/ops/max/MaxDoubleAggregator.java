@@ -48,4 +48,12 @@ public final class MaxDoubleAggregator extends AbstractUnaryAggregator {
             values.putDouble(valueIndex, v);
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        double v = src.getDouble(valueIndex);
+        if (v > dst.getDouble(valueIndex)) {
+            dst.putDouble(valueIndex, v);
+        }
+    }
 }
@@ -47,4 +47,12 @@ public final class MaxLongAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, v);
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        long v = src.getLong(valueIndex);
+        if (v > dst.getLong(valueIndex)) {
+            dst.putLong(valueIndex, v);
+        }
+    }
 }
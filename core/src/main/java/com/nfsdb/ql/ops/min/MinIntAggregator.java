@@ -47,4 +47,12 @@ public final class MinIntAggregator extends AbstractUnaryAggregator {
             values.putInt(valueIndex, v);
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        int v = src.getInt(valueIndex);
+        if (v < dst.getInt(valueIndex)) {
+            dst.putInt(valueIndex, v);
+        }
+    }
 }
@@ -23,11 +23,13 @@ package com.nfsdb.ql.ops.mult;
 
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.ops.AbstractBinaryOperator;
+import com.nfsdb.ql.ops.BatchColumn;
 import com.nfsdb.ql.ops.Function;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.std.ObjectFactory;
 import com.nfsdb.store.ColumnType;
 
-public class MultDoubleOperator extends AbstractBinaryOperator {
+public class MultDoubleOperator extends AbstractBinaryOperator implements BatchColumn {
 
     public final static ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -36,6 +38,9 @@ public class MultDoubleOperator extends AbstractBinaryOperator {
         }
     };
 
+    private double[] lbuf;
+    private double[] rbuf;
+
     private MultDoubleOperator() {
         super(ColumnType.DOUBLE);
     }
@@ -44,4 +49,33 @@ public class MultDoubleOperator extends AbstractBinaryOperator {
     public double getDouble(Record rec) {
         return lhs.getDouble(rec) * rhs.getDouble(rec);
     }
+
+    @Override
+    public void getDoubles(RowBatch batch, double[] out) {
+        read(batch);
+        for (int i = 0, n = batch.size; i < n; i++) {
+            double x = lbuf[i];
+            double y = rbuf[i];
+            out[i] = x * y;
+        }
+    }
+
+    @Override
+    public void getInts(RowBatch batch, int[] out) {
+        batch.rowInts(this, out);
+    }
+
+    @Override
+    public void getLongs(RowBatch batch, long[] out) {
+        batch.rowLongs(this, out);
+    }
+
+    private void read(RowBatch batch) {
+        if (lbuf == null) {
+            lbuf = new double[RowBatch.CAPACITY];
+            rbuf = new double[RowBatch.CAPACITY];
+        }
+        batch.getDoubles(lhs, lbuf);
+        batch.getDoubles(rhs, rbuf);
+    }
 }
@@ -23,11 +23,13 @@ package com.nfsdb.ql.ops.plus;
 
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.ops.AbstractBinaryOperator;
+import com.nfsdb.ql.ops.BatchColumn;
 import com.nfsdb.ql.ops.Function;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.std.ObjectFactory;
 import com.nfsdb.store.ColumnType;
 
-public class AddIntOperator extends AbstractBinaryOperator {
+public class AddIntOperator extends AbstractBinaryOperator implements BatchColumn {
 
     public static final ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -36,6 +38,9 @@ public class AddIntOperator extends AbstractBinaryOperator {
         }
     };
 
+    private int[] lbuf;
+    private int[] rbuf;
+
     private AddIntOperator() {
         super(ColumnType.INT);
     }
@@ -67,4 +72,43 @@ public class AddIntOperator extends AbstractBinaryOperator {
         int r = rhs.getInt(rec);
         return l != Integer.MIN_VALUE && r != Integer.MIN_VALUE ? l + r : Long.MIN_VALUE;
     }
+
+    @Override
+    public void getDoubles(RowBatch batch, double[] out) {
+        read(batch);
+        for (int i = 0, n = batch.size; i < n; i++) {
+            int x = lbuf[i];
+            int y = rbuf[i];
+            out[i] = x != Integer.MIN_VALUE && y != Integer.MIN_VALUE ? x + y : Double.NaN;
+        }
+    }
+
+    @Override
+    public void getInts(RowBatch batch, int[] out) {
+        read(batch);
+        for (int i = 0, n = batch.size; i < n; i++) {
+            int x = lbuf[i];
+            int y = rbuf[i];
+            out[i] = x != Integer.MIN_VALUE && y != Integer.MIN_VALUE ? x + y : Integer.MIN_VALUE;
+        }
+    }
+
+    @Override
+    public void getLongs(RowBatch batch, long[] out) {
+        read(batch);
+        for (int i = 0, n = batch.size; i < n; i++) {
+            int x = lbuf[i];
+            int y = rbuf[i];
+            out[i] = x != Integer.MIN_VALUE && y != Integer.MIN_VALUE ? x + y : Long.MIN_VALUE;
+        }
+    }
+
+    private void read(RowBatch batch) {
+        if (lbuf == null) {
+            lbuf = new int[RowBatch.CAPACITY];
+            rbuf = new int[RowBatch.CAPACITY];
+        }
+        batch.getInts(lhs, lbuf);
+        batch.getInts(rhs, rbuf);
+    }
 }
@@ -23,11 +23,13 @@ package com.nfsdb.ql.ops.plus;
 
 import com.nfsdb.ql.Record;
 import com.nfsdb.ql.ops.AbstractBinaryOperator;
+import com.nfsdb.ql.ops.BatchColumn;
 import com.nfsdb.ql.ops.Function;
+import com.nfsdb.ql.ops.RowBatch;
 import com.nfsdb.std.ObjectFactory;
 import com.nfsdb.store.ColumnType;
 
-public class AddLongOperator extends AbstractBinaryOperator {
+public class AddLongOperator extends AbstractBinaryOperator implements BatchColumn {
 
     public static final ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -36,6 +38,9 @@ public class AddLongOperator extends AbstractBinaryOperator {
         }
     };
 
+    private long[] lbuf;
+    private long[] rbuf;
+
     private AddLongOperator() {
         super(ColumnType.LONG);
     }
@@ -53,4 +58,38 @@ public class AddLongOperator extends AbstractBinaryOperator {
         long r = rhs.getLong(rec);
         return l == Long.MIN_VALUE || r == Long.MIN_VALUE ? Long.MIN_VALUE : l + r;
     }
+
+    @Override
+    public void getDoubles(RowBatch batch, double[] out) {
+        read(batch);
+        for (int i = 0, n = batch.size; i < n; i++) {
+            long x = lbuf[i];
+            long y = rbuf[i];
+            out[i] = x == Long.MIN_VALUE || y == Long.MIN_VALUE ? Double.NaN : x + y;
+        }
+    }
+
+    @Override
+    public void getInts(RowBatch batch, int[] out) {
+        batch.rowInts(this, out);
+    }
+
+    @Override
+    public void getLongs(RowBatch batch, long[] out) {
+        read(batch);
+        for (int i = 0, n = batch.size; i < n; i++) {
+            long x = lbuf[i];
+            long y = rbuf[i];
+            out[i] = x == Long.MIN_VALUE || y == Long.MIN_VALUE ? Long.MIN_VALUE : x + y;
+        }
+    }
+
+    private void read(RowBatch batch) {
+        if (lbuf == null) {
+            lbuf = new long[RowBatch.CAPACITY];
+            rbuf = new long[RowBatch.CAPACITY];
+        }
+        batch.getLongs(lhs, lbuf);
+        batch.getLongs(rhs, rbuf);
+    }
 }
@@ -49,4 +49,9 @@ public final class SumDoubleAggregator extends AbstractUnaryAggregator {
             values.putDouble(valueIndex, values.getDouble(valueIndex) + value.getDouble(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putDouble(valueIndex, dst.getDouble(valueIndex) + src.getDouble(valueIndex));
+    }
 }
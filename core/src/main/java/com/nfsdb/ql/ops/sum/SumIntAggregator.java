@@ -48,4 +48,9 @@ public final class SumIntAggregator extends AbstractUnaryAggregator {
             values.putInt(valueIndex, values.getInt(valueIndex) + value.getInt(rec));
         }
     }
+
+    @Override
+    public void merge(MapValues src, MapValues dst) {
+        dst.putInt(valueIndex, dst.getInt(valueIndex) + src.getInt(valueIndex));
+    }
 }
@@ -32,6 +32,7 @@ import com.nfsdb.factory.configuration.RecordColumnMetadata;
 import com.nfsdb.factory.configuration.RecordMetadata;
 import com.nfsdb.io.sink.StringSink;
 import com.nfsdb.misc.Chars;
+import com.nfsdb.misc.Dates;
 import com.nfsdb.misc.Interval;
 import com.nfsdb.misc.Numbers;
 import com.nfsdb.misc.Unsafe;
@@ -48,9 +49,14 @@ import com.nfsdb.ql.impl.join.AsOfJoinRecordSource;
 import com.nfsdb.ql.impl.join.AsOfPartitionedJoinRecordSource;
 import com.nfsdb.ql.impl.join.CrossJoinRecordSource;
 import com.nfsdb.ql.impl.join.HashJoinRecordSource;
+import com.nfsdb.ql.impl.join.MergeTimeJoinRecordSource;
 import com.nfsdb.ql.impl.lambda.*;
 import com.nfsdb.ql.impl.latest.*;
+import com.nfsdb.ql.impl.parallel.ParallelAggregatedRecordSource;
+import com.nfsdb.ql.impl.parallel.ParallelJournalSource;
+import com.nfsdb.ql.impl.parallel.ScanWorkerPool;
 import com.nfsdb.ql.impl.select.SelectedColumnsRecordSource;
+import com.nfsdb.ql.impl.sort.SortedRecordSource;
 import com.nfsdb.ql.impl.virtual.VirtualColumnRecordSource;
 import com.nfsdb.ql.model.*;
 import com.nfsdb.ql.ops.FunctionFactories;
@@ -60,6 +66,7 @@ import com.nfsdb.ql.ops.VirtualColumn;
 import com.nfsdb.ql.ops.constant.LongConstant;
 import com.nfsdb.std.*;
 import com.nfsdb.store.ColumnType;
+import com.nfsdb.store.SymbolTable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.util.ArrayDeque;
@@ -116,13 +123,25 @@ public class QueryCompiler {
     private final ObjList<QueryColumn> aggregators = new ObjList<>();
     private final ObjList<QueryColumn> outerVirtualColumns = new ObjList<>();
     private final ObjHashSet<String> groupKeyColumns = new ObjHashSet<>();
+    private final ScanWorkerPool scanWorkerPool;
     private ObjList<JoinContext> emittedJoinClauses;
     private int aggregateColumnSequence;
 
     public QueryCompiler() {
+        this(null);
+    }
+
+    /**
+     * Creates compiler that scans partitions of filtered journals in parallel
+     * using given worker pool.
+     *
+     * @param scanWorkerPool worker pool or null for single-threaded execution
+     */
+    public QueryCompiler(ScanWorkerPool scanWorkerPool) {
         // seed column name assembly with default column prefix, which we will reuse
         columnNameAssembly.put("col");
         columnNamePrefixLen = 3;
+        this.scanWorkerPool = scanWorkerPool;
     }
 
     public void clearCache() {
@@ -165,10 +184,131 @@ public class QueryCompiler {
         }
     }
 
+    /**
+     * Number of distinct keys is bounded by cardinality of symbol tables when all keys are symbols.
+     * Map is never pre-sized above configured capacity, it grows as needed. Small symbol tables
+     * make for smaller map.
+     */
+    private static int estimateKeyCapacity(RecordMetadata metadata, ObjHashSet<String> keyColumns, JournalConfiguration configuration) {
+        long capacity = 1;
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            capacity *= symbolCardinality(metadata.getColumn(keyColumns.get(i)));
+            if (capacity <= 0 || capacity > configuration.getMapKeyCapacity()) {
+                return configuration.getMapKeyCapacity();
+            }
+        }
+        return (int) capacity;
+    }
+
+    private static int estimateKeyCapacity(RecordMetadata metadata, IntList keyColumns, JournalConfiguration configuration) {
+        long capacity = 1;
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            capacity *= symbolCardinality(metadata.getColumnQuick(keyColumns.getQuick(i)));
+            if (capacity <= 0 || capacity > configuration.getMapKeyCapacity()) {
+                return configuration.getMapKeyCapacity();
+            }
+        }
+        return (int) capacity;
+    }
+
     private static Signature lbs(ColumnType master, boolean indexed, ColumnType lambda) {
         return new Signature().setName("").setParamCount(2).paramType(0, master, indexed).paramType(1, lambda, false);
     }
 
+    private static long symbolCardinality(RecordColumnMetadata m) {
+        if (m.getType() != ColumnType.SYMBOL) {
+            return -1;
+        }
+        SymbolTable tab = m.getSymbolTable();
+        // one more key for null value
+        return (tab == null ? m.getBucketCount() : tab.size()) + 1;
+    }
+
+    /**
+     * Single negative literal limit, such as "limit -10", selects last rows. Parameters are
+     * not known at compile time and are always treated as top limits.
+     *
+     * @return number of last rows to select or -1 when limit does not select last rows
+     */
+    private static long tailCount(QueryModel model) {
+        VirtualColumn hi = model.getLimitHiVc();
+        if (model.getLimitHi() != null || !(hi instanceof LongConstant)) {
+            return -1;
+        }
+        long n = hi.getLong(null);
+        return n < 0 && n > Integer.MIN_VALUE ? -n : -1;
+    }
+
+    /**
+     * Journal scans return rows in timestamp order unless rows are selected by "latest by".
+     */
+    private static boolean isOrderedScan(QueryModel model, RecordSource rs) {
+        return rs instanceof JournalSource && model.getLatestBy() == null && rs.supportsRowIdAccess();
+    }
+
+    /**
+     * Checks if join criteria is exactly equality of timestamps of master and slave.
+     */
+    private static boolean isTimeJoin(QueryModel model, RecordSource master, RecordSource slave) {
+        JoinContext jc = model.getContext();
+        if (jc == null || jc.aNames.size() != 1) {
+            return false;
+        }
+
+        RecordMetadata sm = slave.getMetadata();
+        RecordMetadata mm = master.getMetadata();
+        int si = sm.getColumnIndexQuiet(jc.aNames.getQuick(0));
+        int mi = mm.getColumnIndexQuiet(jc.bNames.getQuick(0));
+        return si != -1 && si == sm.getTimestampIndex() && mi != -1 && mi == mm.getTimestampIndex();
+    }
+
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_RETURN_FALSE"})
+    private static long toleranceMillis(ExprNode node) throws ParserException {
+        CharSequence tok = node.token;
+        int len = tok.length();
+        try {
+            long unit;
+            switch (tok.charAt(len - 1)) {
+                case 's':
+                    unit = Dates.SECOND_MILLIS;
+                    break;
+                case 'm':
+                    unit = Dates.MINUTE_MILLIS;
+                    break;
+                case 'h':
+                    unit = Dates.HOUR_MILLIS;
+                    break;
+                case 'd':
+                    unit = Dates.DAY_MILLIS;
+                    break;
+                default:
+                    unit = 1;
+                    break;
+            }
+            long n = Numbers.parseLong(tok, 0, unit == 1 ? len : len - 1);
+            if (n > -1) {
+                return n * unit;
+            }
+        } catch (NumericException ignore) {
+            // fall through to error
+        }
+        throw QueryError.$(node.position, "Tolerance expected, for example 500 or 5s");
+    }
+
+    private static RowSource bitmapFiltered(IntrinsicModel im, RowSource rs) {
+        if (im.bitmapClauses.size() > 0) {
+            return new BitmapIndexRowSource(rs, im.bitmapClauses);
+        }
+        return rs;
+    }
+
+    private static RowSource zoneFiltered(IntrinsicModel im, RowSource rs) {
+        if (im.zoneRanges.size() > 0) {
+            return new ZoneMapRowSource(rs, im.zoneRanges);
+        }
+        return rs == null ? new AllRowSource() : rs;
+    }
+
     private void addAlias(int position, String alias) throws ParserException {
         if (selectedColumnAliases.add(alias)) {
             return;
@@ -487,6 +627,22 @@ public class QueryCompiler {
         }
     }
 
+    private RowSource buildRowSourceForKey(IntrinsicModel im, JournalMetadata metadata) throws ParserException {
+        if (im.keyColumn != null) {
+            switch (metadata.getColumn(im.keyColumn).getType()) {
+                case SYMBOL:
+                    return buildRowSourceForSym(im);
+                case STRING:
+                    return buildRowSourceForStr(im);
+                case INT:
+                    return buildRowSourceForInt(im);
+                default:
+                    break;
+            }
+        }
+        return null;
+    }
+
     private RowSource buildRowSourceForStr(IntrinsicModel im) {
         int nSrc = im.keyValues.size();
         switch (nSrc) {
@@ -569,12 +725,19 @@ public class QueryCompiler {
 
     private RecordSource compile(QueryModel model, JournalReaderFactory factory) throws JournalException, ParserException {
         return limit(
-                selectColumns(
-                        model.getJoinModels().size() > 1 ?
-                                optimise(model, factory).compileJoins(model, factory) :
-                                optimise(model, factory).compileSingleOrSubQuery(model, factory),
-                        model
-                ), model
+                order(
+                        selectColumns(
+                                model.getJoinModels().size() > 1 ?
+                                        optimise(model, factory).compileJoins(model, factory) :
+                                        optimise(model, factory).compileSingleOrSubQuery(model, factory),
+                                model,
+                                factory.getConfiguration()
+                        ),
+                        model,
+                        factory.getConfiguration()
+                ),
+                model,
+                factory.getConfiguration()
         );
     }
 
@@ -583,6 +746,8 @@ public class QueryCompiler {
         ObjList<QueryModel> joinModels = model.getJoinModels();
         IntList ordered = model.getOrderedJoinModels();
         RecordSource master = null;
+        // master records are in timestamp order, which allows merge time joins
+        boolean masterOrdered = false;
 
         boolean collectColumnNameFrequency = model.getColumns().size() > 0;
 
@@ -607,6 +772,7 @@ public class QueryCompiler {
             // check if this is the root of joins
             if (master == null) {
                 master = slave;
+                masterOrdered = isOrderedScan(m, slave);
             } else {
                 // not the root, join to "master"
                 switch (m.getJoinType()) {
@@ -616,9 +782,17 @@ public class QueryCompiler {
                         break;
                     case ASOF:
                         master = createAsOfJoin(model.getTimestamp(), m, master, slave);
+                        masterOrdered = false;
                         break;
                     default:
-                        master = createHashJoin(m, master, slave);
+                        if (masterOrdered && isOrderedScan(m, slave) && isTimeJoin(m, master, slave)) {
+                            master = createMergeTimeJoin(m, master, slave);
+                        } else if (m.getJoinTolerance() != null) {
+                            throw QueryError.$(m.getJoinTolerance().position, "Tolerance is only supported by joins on timestamps of journals");
+                        } else {
+                            master = createHashJoin(m, master, slave, factory.getConfiguration());
+                            masterOrdered = false;
+                        }
                         break;
                 }
             }
@@ -691,7 +865,7 @@ public class QueryCompiler {
 
         ExprNode where = model.getWhereClause();
         if (where != null) {
-            IntrinsicModel im = queryFilterAnalyser.extract(where, journalMetadata, latestByCol);
+            IntrinsicModel im = queryFilterAnalyser.extract(where, journalMetadata, latestByCol, latestByCol == null);
 
             VirtualColumn filter = im.filter != null ? virtualColumnBuilder.createVirtualColumn(model, im.filter, journalMetadata) : null;
 
@@ -729,24 +903,13 @@ public class QueryCompiler {
                 }
 
                 if (latestByCol == null) {
-                    if (im.keyColumn != null) {
-                        switch (journalMetadata.getColumn(im.keyColumn).getType()) {
-                            case SYMBOL:
-                                rs = buildRowSourceForSym(im);
-                                break;
-                            case STRING:
-                                rs = buildRowSourceForStr(im);
-                                break;
-                            case INT:
-                                rs = buildRowSourceForInt(im);
-                                break;
-                            default:
-                                break;
-                        }
-                    }
+                    rs = bitmapFiltered(im, buildRowSourceForKey(im, journalMetadata));
 
                     if (filter != null) {
-                        rs = new FilteredRowSource(rs == null ? new AllRowSource() : rs, filter);
+                        if (scanWorkerPool != null) {
+                            return compileParallelScan(model, im, ps, journalMetadata, rs, filter);
+                        }
+                        rs = new FilteredRowSource(zoneFiltered(im, rs), filter);
                     }
                 } else {
                     if (im.keyColumn != null && im.keyValuesIsLambda) {
@@ -818,6 +981,78 @@ public class QueryCompiler {
         return new JournalSource(ps, rs == null ? new AllRowSource() : rs);
     }
 
+    /**
+     * Builds parallel group-by over journal scan. Every worker slot gets its own row source
+     * and its own copy of aggregator functions. Sources that cannot be split into independent
+     * scans, such as index lookups without filter, are left to single-threaded aggregation.
+     *
+     * @return parallel record source or null when record source is not a plain journal scan
+     */
+    private RecordSource compileParallelAggregation(
+            QueryModel model,
+            RecordSource rs,
+            ObjHashSet<String> groupKeyColumns,
+            ObjList<QueryColumn> aggregators,
+            ObjList<AggregatorFunction> af,
+            JournalConfiguration configuration
+    ) throws ParserException {
+        PartitionSource ps;
+        ObjList<RowSource> rowSources;
+        if (rs instanceof ParallelJournalSource) {
+            ps = ((ParallelJournalSource) rs).getPartitionSource();
+            rowSources = ((ParallelJournalSource) rs).getRowSources();
+        } else if (rs instanceof JournalSource && ((JournalSource) rs).getRowSource() instanceof AllRowSource) {
+            ps = ((JournalSource) rs).getPartitionSource();
+            int n = Numbers.ceilPow2(Math.max(1, scanWorkerPool.getWorkerCount())) * 2;
+            rowSources = new ObjList<>(n);
+            for (int i = 0; i < n; i++) {
+                rowSources.add(new AllRowSource());
+            }
+        } else {
+            return null;
+        }
+
+        int n = rowSources.size();
+        ObjList<ObjList<AggregatorFunction>> functions = new ObjList<>(n);
+        functions.add(af);
+        for (int i = 1; i < n; i++) {
+            functions.add(createAggregators(model, aggregators, rs.getMetadata()));
+        }
+        return new ParallelAggregatedRecordSource(
+                ps,
+                rowSources,
+                groupKeyColumns,
+                functions,
+                scanWorkerPool,
+                estimateKeyCapacity(rs.getMetadata(), groupKeyColumns, configuration),
+                configuration.getMapPageSize(),
+                configuration.getMapLoadFactor()
+        );
+    }
+
+    /**
+     * Filter evaluation is the expensive part of journal scan, which is why only filtered
+     * scans are executed in parallel. Each in-flight partition scan requires its own
+     * copy of row source and filter because neither is thread safe.
+     */
+    private RecordSource compileParallelScan(
+            QueryModel model,
+            IntrinsicModel im,
+            PartitionSource ps,
+            JournalMetadata metadata,
+            RowSource rs,
+            VirtualColumn filter
+    ) throws ParserException {
+        int n = Numbers.ceilPow2(Math.max(1, scanWorkerPool.getWorkerCount())) * 2;
+        ObjList<RowSource> rowSources = new ObjList<>(n);
+        rowSources.add(new FilteredRowSource(zoneFiltered(im, rs), filter));
+        for (int i = 1; i < n; i++) {
+            RowSource r = bitmapFiltered(im, buildRowSourceForKey(im, metadata));
+            rowSources.add(new FilteredRowSource(zoneFiltered(im, r), virtualColumnBuilder.createVirtualColumn(model, im.filter, metadata)));
+        }
+        return new ParallelJournalSource(ps, rowSources, scanWorkerPool);
+    }
+
     private RecordSource compileSingleOrSubQuery(QueryModel model, JournalReaderFactory factory) throws JournalException, ParserException {
         // analyse limit first as it is easy win
         if (model.getLimitLo() != null || model.getLimitHi() != null) {
@@ -888,6 +1123,23 @@ public class QueryCompiler {
         }
     }
 
+    private ObjList<AggregatorFunction> createAggregators(QueryModel model, ObjList<QueryColumn> aggregators, RecordMetadata metadata) throws ParserException {
+        int asz = aggregators.size();
+        ObjList<AggregatorFunction> af = new ObjList<>(asz);
+        // create virtual columns
+        for (int i = 0; i < asz; i++) {
+            QueryColumn qc = aggregators.get(i);
+            VirtualColumn vc = virtualColumnBuilder.createVirtualColumn(model, qc.getAst(), metadata);
+            if (vc instanceof AggregatorFunction) {
+                vc.setName(qc.getAlias());
+                af.add((AggregatorFunction) vc);
+            } else {
+                throw QueryError.$(qc.getAst().position, "Internal configuration error. Not an aggregate");
+            }
+        }
+        return af;
+    }
+
     private String createAlias(int index) {
         columnNameAssembly.clear(columnNamePrefixLen);
         Numbers.append(columnNameAssembly, index);
@@ -948,7 +1200,18 @@ public class QueryCompiler {
         }
     }
 
-    private RecordSource createHashJoin(QueryModel model, RecordSource master, RecordSource slave) throws ParserException {
+    private RecordSource createMergeTimeJoin(QueryModel model, RecordSource master, RecordSource slave) throws ParserException {
+        return new MergeTimeJoinRecordSource(
+                master,
+                master.getMetadata().getTimestampIndex(),
+                slave,
+                slave.getMetadata().getTimestampIndex(),
+                model.getJoinTolerance() == null ? 0 : toleranceMillis(model.getJoinTolerance()),
+                model.getJoinType() == QueryModel.JoinType.OUTER
+        );
+    }
+
+    private RecordSource createHashJoin(QueryModel model, RecordSource master, RecordSource slave, JournalConfiguration configuration) throws ParserException {
         JoinContext jc = model.getContext();
         RecordMetadata bm = master.getMetadata();
         RecordMetadata am = slave.getMetadata();
@@ -977,7 +1240,17 @@ public class QueryCompiler {
             masterColIndices.add(ib);
             slaveColIndices.add(ia);
         }
-        return new HashJoinRecordSource(master, masterColIndices, slave, slaveColIndices, model.getJoinType() == QueryModel.JoinType.OUTER);
+        return new HashJoinRecordSource(
+                master,
+                masterColIndices,
+                slave,
+                slaveColIndices,
+                model.getJoinType() == QueryModel.JoinType.OUTER,
+                estimateKeyCapacity(am, slaveColIndices, configuration),
+                configuration.getMapPageSize(),
+                configuration.getMapLoadFactor(),
+                configuration.getRecordPageSize()
+        );
     }
 
     /**
@@ -1046,12 +1319,46 @@ public class QueryCompiler {
         }
     }
 
-    private RecordSource limit(RecordSource rs, QueryModel model) {
+    private RecordSource limit(RecordSource rs, QueryModel model, JournalConfiguration configuration) {
         if (model.getLimitLoVc() == null || model.getLimitHiVc() == null) {
             return rs;
-        } else {
-            return new TopRecordSource(rs, model.getLimitLoVc(), model.getLimitHiVc());
         }
+
+        long tail = tailCount(model);
+        if (tail > -1) {
+            return new TailRecordSource(rs, (int) tail, configuration.getRecordPageSize());
+        }
+        return new TopRecordSource(rs, model.getLimitLoVc(), model.getLimitHiVc());
+    }
+
+    private RecordSource order(RecordSource rs, QueryModel model, JournalConfiguration configuration) throws ParserException {
+        ObjList<ExprNode> orderBy = model.getOrderBy();
+        int n = orderBy.size();
+        if (n == 0) {
+            return rs;
+        }
+
+        RecordMetadata m = rs.getMetadata();
+        IntList columns = new IntList(n);
+        for (int i = 0; i < n; i++) {
+            ExprNode node = orderBy.getQuick(i);
+            if (node.type != ExprNode.NodeType.LITERAL) {
+                throw QueryError.$(node.position, "Column name expected");
+            }
+
+            int index = m.getColumnIndexQuiet(node.token);
+            if (index == -1) {
+                throw QueryError.invalidColumn(node.position, node.token);
+            }
+
+            if (m.getColumnQuick(index).getType() == ColumnType.BINARY) {
+                throw QueryError.$(node.position, "Cannot order by binary column");
+            }
+            columns.add(index);
+        }
+        // only rows up to upper limit are needed, unless limit selects last rows
+        VirtualColumn limit = tailCount(model) == -1 ? model.getLimitHiVc() : null;
+        return new SortedRecordSource(rs, columns, model.getOrderByDirection(), limit, configuration.getSortMemoryBudget(), configuration.getRecordPageSize());
     }
 
     private VirtualColumn limitToVirtualColumn(QueryModel model, ExprNode node) throws ParserException {
@@ -1067,6 +1374,17 @@ public class QueryCompiler {
                 } catch (NumericException e) {
                     throw QueryError.$(node.position, "Long number expected");
                 }
+            case OPERATION:
+                // negative limit selects last rows
+                ExprNode operand = node.rhs != null ? node.rhs : node.lhs;
+                if (node.paramCount == 1 && Chars.equals(node.token, '-') && operand != null && operand.type == ExprNode.NodeType.CONSTANT) {
+                    try {
+                        return new LongConstant(-Numbers.parseLong(operand.token));
+                    } catch (NumericException e) {
+                        throw QueryError.$(operand.position, "Long number expected");
+                    }
+                }
+                break;
             default:
                 break;
         }
@@ -1568,12 +1886,12 @@ public class QueryCompiler {
         }
     }
 
-    private RecordSource selectColumns(RecordSource rs, QueryModel model) throws ParserException {
-        return model.getColumns().size() == 0 ? rs : selectColumns0(rs, model);
+    private RecordSource selectColumns(RecordSource rs, QueryModel model, JournalConfiguration configuration) throws ParserException {
+        return model.getColumns().size() == 0 ? rs : selectColumns0(rs, model, configuration);
     }
 
     @SuppressFBWarnings("PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS")
-    private RecordSource selectColumns0(final RecordSource recordSource, QueryModel model) throws ParserException {
+    private RecordSource selectColumns0(final RecordSource recordSource, QueryModel model, JournalConfiguration configuration) throws ParserException {
         final ObjList<QueryColumn> columns = model.getColumns();
         final CharSequenceIntHashMap columnNameHistogram = model.getColumnNameHistogram();
         final RecordMetadata meta = recordSource.getMetadata();
@@ -1659,27 +1977,33 @@ public class QueryCompiler {
         ExprNode sampleBy = model.getSampleBy();
         int asz = aggregators.size();
         if (asz > 0) {
-            ObjList<AggregatorFunction> af = new ObjList<>(asz);
-            // create virtual columns
-            for (int i = 0; i < asz; i++) {
-                QueryColumn qc = aggregators.get(i);
-                VirtualColumn vc = virtualColumnBuilder.createVirtualColumn(model, qc.getAst(), rs.getMetadata());
-                if (vc instanceof AggregatorFunction) {
-                    vc.setName(qc.getAlias());
-                    af.add((AggregatorFunction) vc);
-                } else {
-                    throw QueryError.$(qc.getAst().position, "Internal configuration error. Not an aggregate");
-                }
-            }
+            ObjList<AggregatorFunction> af = createAggregators(model, aggregators, rs.getMetadata());
+            int keyCapacity = estimateKeyCapacity(rs.getMetadata(), groupKeyColumns, configuration);
 
             if (sampleBy == null) {
-                rs = new AggregatedRecordSource(rs, groupKeyColumns, af);
+                RecordSource parallel = scanWorkerPool == null || virtualColumns != null ? null : compileParallelAggregation(model, rs, groupKeyColumns, aggregators, af, configuration);
+                rs = parallel != null ? parallel : new AggregatedRecordSource(
+                        rs,
+                        groupKeyColumns,
+                        af,
+                        keyCapacity,
+                        configuration.getMapPageSize(),
+                        configuration.getMapLoadFactor()
+                );
             } else {
                 TimestampSampler sampler = SamplerFactory.from(sampleBy.token);
                 if (sampler == null) {
                     throw QueryError.$(sampleBy.position, "Invalid sample");
                 }
-                rs = new ResampledRecordSource(rs, groupKeyColumns, af, sampler);
+                rs = new ResampledRecordSource(
+                        rs,
+                        groupKeyColumns,
+                        af,
+                        sampler,
+                        keyCapacity,
+                        configuration.getMapPageSize(),
+                        configuration.getMapLoadFactor()
+                );
             }
         } else {
             if (sampleBy != null) {
@@ -23,6 +23,7 @@ package com.nfsdb.ql.parser;
 
 import com.nfsdb.ex.NumericException;
 import com.nfsdb.ex.ParserException;
+import com.nfsdb.factory.configuration.ColumnMetadata;
 import com.nfsdb.factory.configuration.RecordColumnMetadata;
 import com.nfsdb.factory.configuration.RecordMetadata;
 import com.nfsdb.misc.Chars;
@@ -32,10 +33,13 @@ import com.nfsdb.misc.Numbers;
 import com.nfsdb.ql.impl.interval.MillisIntervalSource;
 import com.nfsdb.ql.impl.interval.MonthsIntervalSource;
 import com.nfsdb.ql.impl.interval.YearIntervalSource;
+import com.nfsdb.ql.model.BitmapClause;
 import com.nfsdb.ql.model.ExprNode;
 import com.nfsdb.ql.model.IntrinsicModel;
 import com.nfsdb.ql.model.IntrinsicValue;
+import com.nfsdb.ql.model.ZoneRange;
 import com.nfsdb.std.*;
+import com.nfsdb.store.ColumnType;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.util.ArrayDeque;
@@ -54,6 +58,36 @@ final class QueryFilterAnalyser {
     private final IntList tempP = new IntList();
     private String timestamp;
     private String preferredKeyColumn;
+    private boolean useBitmapIndexes;
+
+    private boolean analyzeAndIntrinsics(IntrinsicModel model, ExprNode node, RecordMetadata m) throws ParserException {
+        if (removeAndIntrinsics(model, node, m)) {
+            return true;
+        }
+        if (analyzeBitmapClause(model, node, m)) {
+            return true;
+        }
+        analyzeZoneRange(model, node, m);
+        return false;
+    }
+
+    /**
+     * Converts equality, "in" and disjunction of those on bitmap indexed symbol columns into single clause,
+     * which row source evaluates using bitmap indexes. Such node is removed from filter.
+     */
+    private boolean analyzeBitmapClause(IntrinsicModel model, ExprNode node, RecordMetadata m) {
+        if (!useBitmapIndexes) {
+            return false;
+        }
+
+        BitmapClause clause = new BitmapClause();
+        if (collectBitmapTerms(clause, node, m)) {
+            model.bitmapClauses.add(clause);
+            node.intrinsicValue = IntrinsicValue.TRUE;
+            return true;
+        }
+        return false;
+    }
 
     private boolean analyzeEquals(IntrinsicModel model, ExprNode node, RecordMetadata m) throws ParserException {
         return node.paramCount == 2 && (analyzeEquals0(model, node, node.lhs, node.rhs, m) || analyzeEquals0(model, node, node.rhs, node.lhs, m));
@@ -313,6 +347,127 @@ final class QueryFilterAnalyser {
         return false;
     }
 
+    /**
+     * Collects value range of numeric column compared to constant. Node remains part of filter,
+     * range only allows row sources to skip blocks of rows using column zone maps.
+     */
+    private void analyzeZoneRange(IntrinsicModel model, ExprNode node, RecordMetadata m) {
+        if (node.paramCount != 2 || node.lhs == null || node.rhs == null) {
+            return;
+        }
+
+        switch (node.token) {
+            case ">":
+            case ">=":
+            case "<":
+            case "<=":
+            case "=":
+                break;
+            default:
+                return;
+        }
+
+        if (node.lhs.type == ExprNode.NodeType.LITERAL && node.rhs.type == ExprNode.NodeType.CONSTANT) {
+            analyzeZoneRange0(model, node.token, node.lhs, node.rhs, m);
+        } else if (node.rhs.type == ExprNode.NodeType.LITERAL && node.lhs.type == ExprNode.NodeType.CONSTANT) {
+            analyzeZoneRange0(model, flip(node.token), node.rhs, node.lhs, m);
+        }
+    }
+
+    @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_RETURN_FALSE"})
+    private void analyzeZoneRange0(IntrinsicModel model, String op, ExprNode col, ExprNode val, RecordMetadata m) {
+        int index = m.getColumnIndexQuiet(col.token);
+        if (index == -1 || isTimestamp(col)) {
+            return;
+        }
+
+        switch (m.getColumnQuick(index).getType()) {
+            case INT:
+            case LONG:
+            case SHORT:
+            case DATE:
+                long v;
+                try {
+                    v = Numbers.parseLong(val.token);
+                } catch (NumericException ignore) {
+                    return;
+                }
+
+                long lo = Long.MIN_VALUE;
+                long hi = Long.MAX_VALUE;
+                switch (op) {
+                    case ">":
+                        if (v == Long.MAX_VALUE) {
+                            return;
+                        }
+                        lo = v + 1;
+                        break;
+                    case ">=":
+                        lo = v;
+                        break;
+                    case "<":
+                        if (v == Long.MIN_VALUE) {
+                            return;
+                        }
+                        hi = v - 1;
+                        break;
+                    case "<=":
+                        hi = v;
+                        break;
+                    default:
+                        lo = hi = v;
+                        break;
+                }
+                model.zoneRanges.add(ZoneRange.ofLong(col.token, lo, hi));
+                break;
+            case FLOAT:
+            case DOUBLE:
+                double d;
+                try {
+                    d = Numbers.parseDouble(val.token);
+                } catch (NumericException ignore) {
+                    return;
+                }
+
+                if (d != d) {
+                    return;
+                }
+
+                // strict comparisons are widened to inclusive, which is safe for skipping
+                switch (op) {
+                    case ">":
+                    case ">=":
+                        model.zoneRanges.add(ZoneRange.ofDouble(col.token, d, Double.POSITIVE_INFINITY));
+                        break;
+                    case "<":
+                    case "<=":
+                        model.zoneRanges.add(ZoneRange.ofDouble(col.token, Double.NEGATIVE_INFINITY, d));
+                        break;
+                    default:
+                        model.zoneRanges.add(ZoneRange.ofDouble(col.token, d, d));
+                        break;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String flip(String op) {
+        switch (op) {
+            case ">":
+                return "<";
+            case ">=":
+                return "<=";
+            case "<":
+                return ">";
+            case "<=":
+                return ">=";
+            default:
+                return op;
+        }
+    }
+
     private boolean analyzeListOfValues(IntrinsicModel model, String col, RecordMetadata meta, ExprNode node) {
         RecordColumnMetadata colMeta = meta.getColumn(col);
         if (colMeta.isIndexed()) {
@@ -384,6 +539,46 @@ final class QueryFilterAnalyser {
         return false;
     }
 
+    private boolean collectBitmapTerm(BitmapClause clause, ExprNode col, ExprNode val, RecordMetadata m) {
+        if (col.type != ExprNode.NodeType.LITERAL || val.type != ExprNode.NodeType.CONSTANT || !isBitmapIndexed(col.token, m)) {
+            return false;
+        }
+        clause.add(col.token, Chars.equals("null", val.token) ? null : Chars.stripQuotes(val.token));
+        return true;
+    }
+
+    private boolean collectBitmapTerms(BitmapClause clause, ExprNode node, RecordMetadata m) {
+        if (node == null) {
+            return false;
+        }
+
+        switch (node.token) {
+            case "or":
+                return node.paramCount == 2 && collectBitmapTerms(clause, node.lhs, m) && collectBitmapTerms(clause, node.rhs, m);
+            case "=":
+                return node.paramCount == 2 && node.lhs != null && node.rhs != null
+                        && (collectBitmapTerm(clause, node.lhs, node.rhs, m) || collectBitmapTerm(clause, node.rhs, node.lhs, m));
+            case "in":
+                if (node.paramCount < 2) {
+                    return false;
+                }
+
+                if (node.paramCount == 2) {
+                    return collectBitmapTerm(clause, node.lhs, node.rhs, m);
+                }
+
+                ExprNode col = node.args.getLast();
+                for (int i = node.paramCount - 2; i > -1; i--) {
+                    if (!collectBitmapTerm(clause, col, node.args.getQuick(i), m)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private ExprNode collapseIntrinsicNodes(ExprNode node) {
         if (node == null || node.intrinsicValue == IntrinsicValue.TRUE) {
             return null;
@@ -409,19 +604,28 @@ final class QueryFilterAnalyser {
     }
 
     IntrinsicModel extract(ExprNode node, RecordMetadata m, String preferredKeyColumn) throws ParserException {
+        return extract(node, m, preferredKeyColumn, false);
+    }
+
+    /**
+     * @param useBitmapIndexes when true symbol predicates on bitmap indexed columns are moved from filter
+     *                         to IntrinsicModel.bitmapClauses, caller must then evaluate those clauses.
+     */
+    IntrinsicModel extract(ExprNode node, RecordMetadata m, String preferredKeyColumn, boolean useBitmapIndexes) throws ParserException {
         this.stack.clear();
         this.keyNodes.clear();
         this.timestampNodes.clear();
         int timestampIndex = m.getTimestampIndex();
         this.timestamp = timestampIndex == -1 ? null : m.getColumnName(timestampIndex);
         this.preferredKeyColumn = preferredKeyColumn;
+        this.useBitmapIndexes = useBitmapIndexes;
 
         IntrinsicModel model = models.next();
 
         // pre-order iterative tree traversal
         // see: http://en.wikipedia.org/wiki/Tree_traversal
 
-        if (removeAndIntrinsics(model, node, m)) {
+        if (analyzeAndIntrinsics(model, node, m)) {
             return model;
         }
         ExprNode root = node;
@@ -430,10 +634,10 @@ final class QueryFilterAnalyser {
             if (node != null) {
                 switch (node.token) {
                     case "and":
-                        if (!removeAndIntrinsics(model, node.rhs, m)) {
+                        if (!analyzeAndIntrinsics(model, node.rhs, m)) {
                             stack.push(node.rhs);
                         }
-                        node = removeAndIntrinsics(model, node.lhs, m) ? null : node.lhs;
+                        node = analyzeAndIntrinsics(model, node.lhs, m) ? null : node.lhs;
                         break;
                     default:
                         node = stack.poll();
@@ -447,6 +651,14 @@ final class QueryFilterAnalyser {
         return model;
     }
 
+    private boolean isBitmapIndexed(String col, RecordMetadata m) {
+        if (m.getColumnIndexQuiet(col) == -1) {
+            return false;
+        }
+        RecordColumnMetadata meta = m.getColumn(col);
+        return meta.getType() == ColumnType.SYMBOL && meta instanceof ColumnMetadata && ((ColumnMetadata) meta).bitmapIndexed;
+    }
+
     private boolean isTimestamp(ExprNode n) {
         return timestamp != null && timestamp.equals(n.token);
     }
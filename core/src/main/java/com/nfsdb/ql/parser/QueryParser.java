@@ -209,6 +209,14 @@ final class QueryParser {
                     throw QueryError.$(lexer.position(), "Expression expected");
                 }
                 joinModel.setJoinCriteria(expr);
+
+                // time joins can match timestamps within tolerance
+                tok = optionTok();
+                if (tok != null && Chars.equals(tok, "within")) {
+                    joinModel.setJoinTolerance(expectExpr());
+                } else {
+                    lexer.unparse();
+                }
                 break;
             default:
                 lexer.unparse();
@@ -387,8 +395,17 @@ final class QueryParser {
                 }
 
                 lexer.unparse();
-                model.addOrderBy(expr());
+                ExprNode n = expectExpr();
                 tok = optionTok();
+                if (tok != null && Chars.equals(tok, "desc")) {
+                    model.addOrderBy(n, QueryModel.ORDER_DIRECTION_DESCENDING);
+                    tok = optionTok();
+                } else {
+                    if (tok != null && Chars.equals(tok, "asc")) {
+                        tok = optionTok();
+                    }
+                    model.addOrderBy(n, QueryModel.ORDER_DIRECTION_ASCENDING);
+                }
             } while (tok != null && Chars.equals(tok, ","));
         }
 
@@ -27,10 +27,10 @@ import java.io.Closeable;
 import java.nio.ByteBuffer;
 
 public abstract class AbstractColumn implements Closeable {
-    final MemoryFile mappedFile;
+    final MappedFile mappedFile;
     long txAppendOffset = -1;
 
-    AbstractColumn(MemoryFile storage) {
+    AbstractColumn(MappedFile storage) {
         this.mappedFile = storage;
     }
 
@@ -68,6 +68,10 @@ public abstract class AbstractColumn implements Closeable {
 
     public abstract long size();
 
+    public long transferTo(long fd, long offset, long len) {
+        return mappedFile.transferTo(fd, offset, len);
+    }
+
     @Override
     public String toString() {
         return this.getClass().getName() + "[file=" + mappedFile + ", size=" + size() + ']';
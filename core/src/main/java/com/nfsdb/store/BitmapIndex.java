@@ -0,0 +1,243 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.store;
+
+import com.nfsdb.JournalMode;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.misc.Unsafe;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Compressed bitmap index of symbol column. Rows are grouped into chunks of CHUNK_SIZE rows
+ * and every chunk keeps a container of row offsets for each symbol key present in it. Sparse
+ * containers are sorted arrays of 16-bit row offsets, dense containers are plain bitmaps,
+ * whichever is smaller.
+ * <p>
+ * Only complete chunks are indexed, which keeps the index append-only. It is brought up to date
+ * by partition on commit, rows beyond "covered" row count have to be checked against column.
+ * <p>
+ * Symbol keys are shifted by one, so that null value (negative key) occupies slot 0.
+ */
+public class BitmapIndex implements Closeable {
+
+    /*
+        chunk offsets file:
+            long chunkOffset[]
+
+        chunk data file:
+            struct chunk {
+                int slotCount
+                int reserved
+                struct slot {
+                    long containerOffset
+                    int cardinality
+                    int reserved
+                }
+                containers
+            }
+    */
+
+    public static final int CHUNK_BITS = 16;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    public static final int BITMAP_WORDS = CHUNK_SIZE / 64;
+    private static final int ARRAY_MAX_CARDINALITY = 4096;
+    private static final int BITMAP_SIZE = BITMAP_WORDS * 8;
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int SLOT_SIZE = 16;
+    private static final int OFFSETS_BIT_HINT = 12;
+    private static final int DATA_BIT_HINT = 22;
+    private final MemoryFile offsets;
+    private final MemoryFile data;
+    private int[] slots;
+    private int[] counts;
+    private long[] containers;
+
+    public BitmapIndex(File baseName, JournalMode mode) throws JournalException {
+        this.offsets = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".bk"), OFFSETS_BIT_HINT, mode, true, false);
+        try {
+            this.data = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".bd"), DATA_BIT_HINT, mode, true, false);
+        } catch (JournalException e) {
+            offsets.close();
+            throw e;
+        }
+    }
+
+    public static int slotOf(int key) {
+        return key < 0 ? 0 : key + 1;
+    }
+
+    @Override
+    public void close() {
+        offsets.close();
+        data.close();
+    }
+
+    public void compact() throws JournalException {
+        offsets.compact();
+        data.compact();
+    }
+
+    public void force() {
+        offsets.force();
+        data.force();
+    }
+
+    public long getChunkCount() {
+        return offsets.getAppendOffset() / 8;
+    }
+
+    public long getCoveredRows() {
+        return getChunkCount() << CHUNK_BITS;
+    }
+
+    /**
+     * Adds rows of symbol key in given chunk to bitmap.
+     *
+     * @param chunk chunk number, must be below chunk count
+     * @param key   symbol key, negative key stands for null
+     * @param words bitmap of BITMAP_WORDS longs
+     * @return true if chunk contains key
+     */
+    public boolean or(long chunk, int key, long[] words) {
+        long o = Unsafe.getUnsafe().getLong(offsets.addressOf(chunk * 8, 8));
+        int slot = slotOf(key);
+        if (slot >= Unsafe.getUnsafe().getInt(data.addressOf(o, 4))) {
+            return false;
+        }
+
+        long address = data.addressOf(o + CHUNK_HEADER_SIZE + slot * SLOT_SIZE, SLOT_SIZE);
+        long co = Unsafe.getUnsafe().getLong(address);
+        int cardinality = Unsafe.getUnsafe().getInt(address + 8);
+
+        if (cardinality == 0) {
+            return false;
+        }
+
+        if (cardinality > ARRAY_MAX_CARDINALITY) {
+            address = data.addressOf(co, BITMAP_SIZE);
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] |= Unsafe.getUnsafe().getLong(address + i * 8);
+            }
+        } else {
+            address = data.addressOf(co, cardinality * 2);
+            for (int i = 0; i < cardinality; i++) {
+                int r = Unsafe.getUnsafe().getShort(address + i * 2) & 0xffff;
+                words[r >>> 6] |= 1L << r;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Discards chunks affected by truncation. Partially truncated chunk is re-indexed once it is complete again.
+     *
+     * @param size new row count of column
+     */
+    public void truncate(long size) {
+        long chunk = size >>> CHUNK_BITS;
+        if (chunk < getChunkCount()) {
+            data.setAppendOffset(Unsafe.getUnsafe().getLong(offsets.addressOf(chunk * 8, 8)));
+            offsets.setAppendOffset(chunk * 8);
+        }
+    }
+
+    /**
+     * Indexes chunks completed since last update.
+     *
+     * @param column symbol column this index belongs to
+     * @param size   current row count of column
+     */
+    public void update(FixedColumn column, long size) {
+        for (long chunk = getChunkCount(), n = size >>> CHUNK_BITS; chunk < n; chunk++) {
+            writeChunk(column, chunk);
+        }
+    }
+
+    private void writeChunk(FixedColumn column, long chunk) {
+        if (slots == null) {
+            slots = new int[CHUNK_SIZE];
+        }
+
+        long rowLo = chunk << CHUNK_BITS;
+        int slotCount = 1;
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            int s = slotOf(column.getInt(rowLo + i));
+            slots[i] = s;
+            if (s >= slotCount) {
+                slotCount = s + 1;
+            }
+        }
+
+        if (counts == null || counts.length < slotCount) {
+            counts = new int[slotCount];
+            containers = new long[slotCount];
+        } else {
+            for (int i = 0; i < slotCount; i++) {
+                counts[i] = 0;
+            }
+        }
+
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            counts[slots[i]]++;
+        }
+
+        long o = data.getAppendOffset();
+        Unsafe.getUnsafe().putInt(data.addressOf(o, 4), slotCount);
+
+        long co = o + CHUNK_HEADER_SIZE + slotCount * SLOT_SIZE;
+        for (int s = 0; s < slotCount; s++) {
+            int cardinality = counts[s];
+            long address = data.addressOf(o + CHUNK_HEADER_SIZE + s * SLOT_SIZE, SLOT_SIZE);
+            Unsafe.getUnsafe().putLong(address, co);
+            Unsafe.getUnsafe().putInt(address + 8, cardinality);
+            containers[s] = co;
+
+            if (cardinality > ARRAY_MAX_CARDINALITY) {
+                address = data.addressOf(co, BITMAP_SIZE);
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    Unsafe.getUnsafe().putLong(address + i * 8, 0);
+                }
+                co += BITMAP_SIZE;
+            } else {
+                // keep containers 8-byte aligned
+                co += (cardinality * 2 + 7) & ~7;
+            }
+        }
+
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            int s = slots[i];
+            if (counts[s] > ARRAY_MAX_CARDINALITY) {
+                long address = data.addressOf(containers[s] + (i >>> 6) * 8, 8);
+                Unsafe.getUnsafe().putLong(address, Unsafe.getUnsafe().getLong(address) | (1L << i));
+            } else {
+                Unsafe.getUnsafe().putShort(data.addressOf(containers[s], 2), (short) i);
+                containers[s] += 2;
+            }
+        }
+
+        data.setAppendOffset(co);
+        Unsafe.getUnsafe().putLong(offsets.addressOf(chunk * 8, 8), o);
+        offsets.setAppendOffset((chunk + 1) * 8);
+    }
+}
@@ -0,0 +1,378 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.store;
+
+import com.nfsdb.JournalMode;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.log.Log;
+import com.nfsdb.log.LogFactory;
+import com.nfsdb.misc.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only, block compressed copy of column file. Content of original file is split into
+ * blocks of 2^blockBits bytes, each of which is deflated independently. Blocks are inflated
+ * on demand into small LRU cache, so that scans only keep handful of blocks in memory at any time.
+ * <p>
+ * Values that straddle block boundary are copied into stitch buffer. Addresses returned
+ * by addressOf() are valid until block is evicted from cache, which is at least until
+ * next call to addressOf().
+ */
+public class CompressedFile implements MappedFile {
+
+    /*
+        struct zl {
+            long appendOffset
+            int blockBits
+            int blockCount
+            long blockOffsets[blockCount + 1]
+            byte deflatedBlocks[]
+        }
+    */
+
+    public static final String FILE_SUFFIX = ".zl";
+    private static final Log LOG = LogFactory.getLog(CompressedFile.class);
+    private static final int HEADER_SIZE = 16;
+    private static final int CACHE_SIZE = 4;
+    private static final int Z_STREAM_END = 1;
+    private final File file;
+    private final long appendOffset;
+    private final int blockBits;
+    private final int blockSize;
+    private final long blockOffsets[];
+    private final ByteBuffer cache[] = new ByteBuffer[CACHE_SIZE];
+    private final long cacheAddresses[] = new long[CACHE_SIZE];
+    private final int cacheBlocks[] = new int[CACHE_SIZE];
+    private final long cacheStamps[] = new long[CACHE_SIZE];
+    private final ByteBuffer stitches[] = new ByteBuffer[2];
+    private FileChannel channel;
+    private ByteBuffer in;
+    private long inAddress;
+    private long z_streamp;
+    private long stamp = 0;
+    private int stitchIndex = 0;
+    private ByteBuffer cachedBuffer;
+    private long cachedAddress;
+    private long cachedBufferLo = -1;
+    private long cachedBufferHi = -1;
+
+    public CompressedFile(File file) throws JournalException {
+        this.file = file;
+        try {
+            this.channel = new RandomAccessFile(file, "r").getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(header, 0);
+            this.appendOffset = header.getLong(0);
+            this.blockBits = header.getInt(8);
+            this.blockSize = 1 << blockBits;
+            int blockCount = header.getInt(12);
+
+            ByteBuffer offsets = ByteBuffer.allocate((blockCount + 1) * 8).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(offsets, HEADER_SIZE);
+            this.blockOffsets = new long[blockCount + 1];
+            int maxLen = 0;
+            for (int i = 0; i <= blockCount; i++) {
+                blockOffsets[i] = offsets.getLong(i * 8);
+                if (i > 0) {
+                    maxLen = Math.max(maxLen, (int) (blockOffsets[i] - blockOffsets[i - 1]));
+                }
+            }
+            this.in = ByteBuffer.allocateDirect(Math.max(maxLen, 1));
+            this.inAddress = ByteBuffers.getAddress(in);
+        } catch (IOException e) {
+            close();
+            throw new JournalException("Cannot open %s", e, file.getAbsolutePath());
+        }
+
+        this.z_streamp = Zip.inflateInit(true);
+        if (z_streamp < 0) {
+            close();
+            throw new JournalException("Cannot initialize inflater for %s", file.getAbsolutePath());
+        }
+
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            cacheBlocks[i] = -1;
+        }
+    }
+
+    /**
+     * Compresses content of column file into target file. Target is written to temporary
+     * file first and renamed when complete, so it either exists in full or does not exist at all.
+     *
+     * @param source    column file
+     * @param target    compressed file
+     * @param blockBits size of compressed block as power of 2
+     * @throws JournalException when source cannot be read or target cannot be written
+     */
+    public static void compress(File source, File target, int blockBits) throws JournalException {
+        final int blockSize = 1 << blockBits;
+        final File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+        final int outSize = blockSize + (blockSize >>> 3) + 64;
+
+        MemoryFile src = new MemoryFile(source, blockBits, JournalMode.BULK_READ);
+        ByteBuffer out = ByteBuffer.allocateDirect(outSize);
+        long outAddress = ByteBuffers.getAddress(out);
+        long z = Zip.deflateInit();
+        if (z < 0) {
+            src.close();
+            ByteBuffers.release(out);
+            throw new JournalException("Cannot initialize deflater for %s", source.getAbsolutePath());
+        }
+
+        try (FileChannel ch = new RandomAccessFile(tmp, "rw").getChannel()) {
+            ch.truncate(0);
+            final long size = src.getAppendOffset();
+            final int blockCount = (int) ((size + blockSize - 1) >>> blockBits);
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + (blockCount + 1) * 8).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(size).putInt(blockBits).putInt(blockCount);
+
+            long pos = header.capacity();
+            for (int i = 0; i < blockCount; i++) {
+                header.putLong(pos);
+                long lo = ((long) i) << blockBits;
+                int len = (int) Math.min(blockSize, size - lo);
+
+                Zip.deflateReset(z);
+                Zip.setInput(z, src.addressOf(lo, len), len);
+                int ret;
+                do {
+                    ret = Zip.deflate(z, outAddress, outSize, true);
+                    if (ret < 0) {
+                        throw new JournalException("Deflater error %d in %s", ret, source.getAbsolutePath());
+                    }
+                    out.limit(outSize - Zip.availOut(z)).position(0);
+                    while (out.hasRemaining()) {
+                        pos += ch.write(out, pos);
+                    }
+                } while (ret != Z_STREAM_END);
+            }
+            header.putLong(pos);
+            header.flip();
+            while (header.hasRemaining()) {
+                ch.write(header, header.position());
+            }
+            ch.force(true);
+        } catch (IOException e) {
+            throw new JournalException("Cannot compress %s", e, source.getAbsolutePath());
+        } finally {
+            Zip.deflateEnd(z);
+            ByteBuffers.release(out);
+            src.close();
+        }
+
+        if (!tmp.renameTo(target)) {
+            Files.delete(tmp);
+            throw new JournalException("Cannot rename %s to %s", tmp.getAbsolutePath(), target.getAbsolutePath());
+        }
+        LOG.info().$("Compressed ").$(source).$(" to ").$(target.length()).$(" bytes").$();
+    }
+
+    @Override
+    public long addressOf(long offset, int size) {
+        if (offset >= cachedBufferLo && offset + size <= cachedBufferHi) {
+            return cachedAddress + offset - cachedBufferLo;
+        }
+
+        int block = (int) (offset >>> blockBits);
+        long blockLo = ((long) block) << blockBits;
+        long blockHi = Math.min(blockLo + blockSize, appendOffset);
+
+        if (offset + size <= blockHi) {
+            int slot = getBlock(block);
+            cachedBuffer = Unsafe.arrayGet(cache, slot);
+            cachedAddress = Unsafe.arrayGet(cacheAddresses, slot);
+            cachedBufferLo = blockLo;
+            cachedBufferHi = blockHi;
+            return cachedAddress + offset - blockLo;
+        }
+        return stitch(offset, size);
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            Unsafe.arrayPut(cache, i, ByteBuffers.release(Unsafe.arrayGet(cache, i)));
+            Unsafe.arrayPut(cacheBlocks, i, -1);
+        }
+
+        for (int i = 0; i < stitches.length; i++) {
+            Unsafe.arrayPut(stitches, i, ByteBuffers.release(Unsafe.arrayGet(stitches, i)));
+        }
+
+        cachedBuffer = null;
+        cachedBufferLo = cachedBufferHi = -1;
+        in = ByteBuffers.release(in);
+
+        if (z_streamp > 0) {
+            Zip.inflateEnd(z_streamp);
+            z_streamp = 0;
+        }
+        channel = Misc.free(channel);
+    }
+
+    @Override
+    public void compact() {
+    }
+
+    @Override
+    public void force() {
+    }
+
+    @Override
+    public long getAppendOffset() {
+        return appendOffset;
+    }
+
+    @Override
+    public void setAppendOffset(long offset) {
+        if (offset != appendOffset) {
+            throw new JournalRuntimeException("Compressed file is read only: %s", file.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public ByteBuffer getBuffer(long offset, int size) {
+        addressOf(offset, size);
+        cachedBuffer.limit((int) (cachedBufferHi - cachedBufferLo));
+        cachedBuffer.position((int) (offset - cachedBufferLo));
+        return cachedBuffer;
+    }
+
+    @Override
+    public int pageRemaining(long offset) {
+        if (offset >= cachedBufferLo && offset < cachedBufferHi) {
+            return (int) (cachedBufferHi - offset);
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + "[file=" + file + ", appendOffset=" + appendOffset + ']';
+    }
+
+    @Override
+    public long transferTo(long fd, long offset, long len) {
+        // file content is compressed, send inflated block instead
+        long address = addressOf(offset, 1);
+        return Net.send(fd, address, (int) Math.min(len, pageRemaining(offset)));
+    }
+
+    private int getBlock(int block) {
+        int victim = 0;
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            if (Unsafe.arrayGet(cacheBlocks, i) == block) {
+                Unsafe.arrayPut(cacheStamps, i, ++stamp);
+                return i;
+            }
+
+            if (Unsafe.arrayGet(cacheStamps, i) < Unsafe.arrayGet(cacheStamps, victim)) {
+                victim = i;
+            }
+        }
+
+        ByteBuffer buf = Unsafe.arrayGet(cache, victim);
+        if (buf == null) {
+            buf = ByteBuffer.allocateDirect(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+            Unsafe.arrayPut(cache, victim, buf);
+            Unsafe.arrayPut(cacheAddresses, victim, ByteBuffers.getAddress(buf));
+        }
+
+        inflate(block, Unsafe.arrayGet(cacheAddresses, victim));
+        Unsafe.arrayPut(cacheBlocks, victim, block);
+        Unsafe.arrayPut(cacheStamps, victim, ++stamp);
+        return victim;
+    }
+
+    private void inflate(int block, long address) {
+        long lo = Unsafe.arrayGet(blockOffsets, block);
+        int len = (int) (Unsafe.arrayGet(blockOffsets, block + 1) - lo);
+        int expected = (int) Math.min(blockSize, appendOffset - (((long) block) << blockBits));
+
+        in.clear().limit(len);
+        try {
+            readFully(in, lo);
+        } catch (IOException e) {
+            throw new JournalRuntimeException("Cannot read block %d of %s", e, block, file.getAbsolutePath());
+        }
+
+        Zip.inflateReset(z_streamp);
+        Zip.setInput(z_streamp, inAddress, len);
+        int n = Zip.inflate(z_streamp, address, blockSize, true);
+        if (n != expected) {
+            throw new JournalRuntimeException("Corrupt block %d of %s [%d]", block, file.getAbsolutePath(), n);
+        }
+    }
+
+    private void readFully(ByteBuffer buf, long pos) throws IOException {
+        long p = pos;
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, p);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            p += n;
+        }
+    }
+
+    private long stitch(long offset, int size) {
+        if (offset + size > appendOffset) {
+            throw new JournalRuntimeException("Offset %d is beyond end of %s [%d]", offset + size, file.getAbsolutePath(), appendOffset);
+        }
+
+        stitchIndex = (stitchIndex + 1) & 1;
+        ByteBuffer buf = Unsafe.arrayGet(stitches, stitchIndex);
+        if (buf == null || buf.capacity() < size) {
+            ByteBuffers.release(buf);
+            buf = ByteBuffer.allocateDirect(Numbers.ceilPow2(size)).order(ByteOrder.LITTLE_ENDIAN);
+            Unsafe.arrayPut(stitches, stitchIndex, buf);
+        }
+
+        long address = ByteBuffers.getAddress(buf);
+        long p = offset;
+        long hi = offset + size;
+        while (p < hi) {
+            int block = (int) (p >>> blockBits);
+            long blockLo = ((long) block) << blockBits;
+            int n = (int) (Math.min(hi, blockLo + blockSize) - p);
+            Unsafe.getUnsafe().copyMemory(Unsafe.arrayGet(cacheAddresses, getBlock(block)) + p - blockLo, address + p - offset, n);
+            p += n;
+        }
+
+        cachedBuffer = buf;
+        cachedAddress = address;
+        cachedBufferLo = offset;
+        cachedBufferHi = hi;
+        return address;
+    }
+
+    static {
+        Os.init();
+    }
+}
@@ -26,7 +26,7 @@ import com.nfsdb.misc.Unsafe;
 public class FixedColumn extends AbstractColumn {
     private final int width;
 
-    public FixedColumn(MemoryFile mappedFile, int width) {
+    public FixedColumn(MappedFile mappedFile, int width) {
         super(mappedFile);
         this.width = width;
     }
@@ -75,6 +75,30 @@ public class FixedColumn extends AbstractColumn {
         return Unsafe.getUnsafe().getDouble(mappedFile.addressOf(getOffset(localRowID), 8));
     }
 
+    /**
+     * Reads doubles for a block of row ids into out[0..count). Rows that fall on the
+     * same mapped page are read directly from page address without going through
+     * addressOf() for each row, which makes this the preferred way to scan a column.
+     *
+     * @param rows  local row ids, ideally in ascending order
+     * @param count number of row ids to read
+     * @param out   destination array, must hold at least count elements
+     */
+    public void getDoubles(long[] rows, int count, double[] out) {
+        long lo = 0;
+        long hi = -1;
+        long address = 0;
+        for (int i = 0; i < count; i++) {
+            long o = Unsafe.arrayGet(rows, i) * width;
+            if (o < lo || o > hi) {
+                address = mappedFile.addressOf(o, 8);
+                lo = o;
+                hi = o + mappedFile.pageRemaining(o) - 8;
+            }
+            out[i] = Unsafe.getUnsafe().getDouble(address + o - lo);
+        }
+    }
+
     public float getFloat(long localRowID) {
         return Unsafe.getUnsafe().getFloat(mappedFile.addressOf(getOffset(localRowID), 4));
     }
@@ -83,10 +107,40 @@ public class FixedColumn extends AbstractColumn {
         return Unsafe.getUnsafe().getInt(mappedFile.addressOf(getOffset(localRowID), 4));
     }
 
+    public void getInts(long[] rows, int count, int[] out) {
+        long lo = 0;
+        long hi = -1;
+        long address = 0;
+        for (int i = 0; i < count; i++) {
+            long o = Unsafe.arrayGet(rows, i) * width;
+            if (o < lo || o > hi) {
+                address = mappedFile.addressOf(o, 4);
+                lo = o;
+                hi = o + mappedFile.pageRemaining(o) - 4;
+            }
+            out[i] = Unsafe.getUnsafe().getInt(address + o - lo);
+        }
+    }
+
     public long getLong(long localRowID) {
         return Unsafe.getUnsafe().getLong(mappedFile.addressOf(getOffset(localRowID), 8));
     }
 
+    public void getLongs(long[] rows, int count, long[] out) {
+        long lo = 0;
+        long hi = -1;
+        long address = 0;
+        for (int i = 0; i < count; i++) {
+            long o = Unsafe.arrayGet(rows, i) * width;
+            if (o < lo || o > hi) {
+                address = mappedFile.addressOf(o, 8);
+                lo = o;
+                hi = o + mappedFile.pageRemaining(o) - 8;
+            }
+            out[i] = Unsafe.getUnsafe().getLong(address + o - lo);
+        }
+    }
+
     @Override
     public long getOffset(long localRowID) {
         return localRowID * width;
@@ -106,6 +160,35 @@ public class FixedColumn extends AbstractColumn {
         return Unsafe.getUnsafe().getShort(mappedFile.addressOf(getOffset(localRowID), 2));
     }
 
+    /**
+     * Appends block of values in one go. Values are copied window by window, so block does not
+     * have to fit single mapped window.
+     *
+     * @param src       array to copy from, or null when srcOffset is memory address
+     * @param srcOffset offset of first value in array or memory address
+     * @param count     number of values
+     * @return local row id of first value
+     */
+    public long putBlock(Object src, long srcOffset, long count) {
+        long lo = mappedFile.getAppendOffset();
+        long hi = lo + count * width;
+        long o = lo;
+        long s = srcOffset;
+        while (o < hi) {
+            long address = mappedFile.addressOf(o, width);
+            long n = Math.min(hi - o, mappedFile.pageRemaining(o)) / width * width;
+            if (n == 0) {
+                // value straddles windows
+                n = width;
+            }
+            Unsafe.getUnsafe().copyMemory(src, s, null, address, n);
+            o += n;
+            s += n;
+        }
+        preCommit(hi);
+        return lo / width;
+    }
+
     public void putBool(boolean value) {
         Unsafe.getUnsafe().putByte(getAddress(), (byte) (value ? 1 : 0));
     }
@@ -68,7 +68,7 @@ public class KVIndex implements Closeable {
 
     public KVIndex(File baseName, long keyCountHint, long recordCountHint, int txCountHint, JournalMode mode, long txAddress) throws JournalException {
         int keyCount = (int) Math.min(Integer.MAX_VALUE, Math.max(keyCountHint, 1));
-        this.kData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".k"), ByteBuffers.getBitHint(8, keyCount * txCountHint), mode);
+        this.kData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".k"), ByteBuffers.getBitHint(8, keyCount * txCountHint), mode, true, false);
         this.keyBlockAddressOffset = 8;
 
         if (kData.getAppendOffset() > 0) {
@@ -97,7 +97,7 @@ public class KVIndex implements Closeable {
         this.bits = Numbers.msb(rowBlockLen);
         this.firstEntryOffset = keyBlockSizeOffset + 16;
         this.rowBlockSize = rowBlockLen * 8 + 16;
-        this.rData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".r"), ByteBuffers.getBitHint(rowBlockSize, keyCount), mode);
+        this.rData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + ".r"), ByteBuffers.getBitHint(rowBlockSize, keyCount), mode, true, false);
     }
 
     public static void delete(File base) {
@@ -105,6 +105,48 @@ public class KVIndex implements Closeable {
         Files.delete(new File(base.getParentFile(), base.getName() + ".r"));
     }
 
+    /**
+     * Completes replacement of index files by {@link #replace(File)} that has been interrupted
+     * after row file had been renamed.
+     *
+     * @param base base name of index files
+     * @throws JournalException if key file cannot be renamed
+     */
+    public static void recover(File base) throws JournalException {
+        File t = tempBase(base);
+        if (file(t, ".k").exists() && !file(t, ".r").exists()) {
+            rename(t, base, ".k");
+        }
+    }
+
+    /**
+     * Replaces index files with files of index that has been built under {@link #tempBase(File)}. Instances
+     * of replaced index, which are open, continue to read files they have open. Row file is renamed first,
+     * so that key file is never newer than row file.
+     *
+     * @param base base name of index files
+     * @return false if files cannot be replaced, for example when file system does not allow renaming open files
+     * @throws JournalException if row file has been replaced and key file cannot be
+     */
+    public static boolean replace(File base) throws JournalException {
+        File t = tempBase(base);
+        if (!file(t, ".r").renameTo(file(base, ".r"))) {
+            return false;
+        }
+        rename(t, base, ".k");
+        return true;
+    }
+
+    /**
+     * Base name of files index is built into before it replaces index with given base name.
+     *
+     * @param base base name of index files
+     * @return base name of temporary index files
+     */
+    public static File tempBase(File base) {
+        return new File(base.getParentFile(), base.getName() + ".tmp");
+    }
+
     /**
      * Adds value to index. Values will be stored in same order as they were added.
      *
@@ -123,18 +165,17 @@ public class KVIndex implements Closeable {
             long oldSize = keyBlockSize;
             keyBlockSize = keyOffset + ENTRY_SIZE - firstEntryOffset;
             // if keys are added in random order there will be gaps in key block with possibly random values
-            // to mitigate that as soon as we see an attempt to extend key block past ENTRY_SIZE we need to
-            // fill created gap with zeroes.
-            if (keyBlockSize - oldSize > ENTRY_SIZE) {
-                Unsafe.getUnsafe().setMemory(
-                        kData.addressOf(
-                                firstEntryOffset + oldSize
-                                , (int) (keyBlockSize - oldSize - ENTRY_SIZE)
-                        )
-                        , keyBlockSize - oldSize - ENTRY_SIZE
-                        , (byte) 0
-                );
-            }
+            // to mitigate that as soon as we see an attempt to extend key block we need to
+            // fill created gap with zeroes. New entry is zeroed too, space past append offset
+            // can be left over from transaction that had not been committed.
+            Unsafe.getUnsafe().setMemory(
+                    kData.addressOf(
+                            firstEntryOffset + oldSize
+                            , (int) (keyBlockSize - oldSize)
+                    )
+                    , keyBlockSize - oldSize
+                    , (byte) 0
+            );
         }
 
         long address = kData.addressOf(keyOffset, ENTRY_SIZE);
@@ -153,6 +194,18 @@ public class KVIndex implements Closeable {
         }
     }
 
+    /**
+     * Starts transaction with empty key block. Values added afterwards replace all values in index
+     * when transaction is committed. Until then readers continue to see previously committed values.
+     */
+    public void clear() {
+        this.keyBlockSizeOffset = kData.getAppendOffset();
+        this.firstEntryOffset = keyBlockSizeOffset + 16;
+        this.keyBlockSize = 0;
+        this.maxValue = 0;
+        this.startTx = false;
+    }
+
     /**
      * Closes underlying files.
      */
@@ -425,6 +478,16 @@ public class KVIndex implements Closeable {
         commit();
     }
 
+    private static File file(File base, String suffix) {
+        return new File(base.getParentFile(), base.getName() + suffix);
+    }
+
+    private static void rename(File from, File to, String suffix) throws JournalException {
+        if (!file(from, suffix).renameTo(file(to, suffix))) {
+            throw new JournalException("Cannot rename %s to %s", file(from, suffix), file(to, suffix));
+        }
+    }
+
     private long allocateRowBlock(long address, long rowBlockOffset) {
         long offset = rData.getAppendOffset() + rowBlockSize;
         rData.setAppendOffset(offset);
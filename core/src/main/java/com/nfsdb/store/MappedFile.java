@@ -0,0 +1,70 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.store;
+
+import com.nfsdb.ex.JournalException;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+/**
+ * File that columns read and write through memory addresses.
+ */
+public interface MappedFile extends Closeable {
+
+    /**
+     * Address of memory, which holds at least size bytes of file content starting at offset.
+     * Address remains valid until next call to this method.
+     */
+    long addressOf(long offset, int size);
+
+    @Override
+    void close();
+
+    void compact() throws JournalException;
+
+    void force();
+
+    long getAppendOffset();
+
+    void setAppendOffset(long offset);
+
+    ByteBuffer getBuffer(long offset, int size);
+
+    /**
+     * Number of bytes from offset to end of memory block returned by last call to addressOf().
+     *
+     * @return number of bytes or 0 when offset is outside of last block
+     */
+    int pageRemaining(long offset);
+
+    /**
+     * Sends up to len bytes of file content starting at offset to socket without copying them
+     * through heap buffers. Callers are expected to loop until all bytes are sent.
+     *
+     * @param fd     non-blocking socket
+     * @param offset file offset
+     * @param len    maximum number of bytes to send
+     * @return number of bytes sent, 0 when socket cannot take more data or negative value when socket is disconnected
+     */
+    long transferTo(long fd, long offset, long len);
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.store;
+
+import com.nfsdb.misc.ByteBuffers;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide registry of read-only file windows. Readers of the same file share mapping of
+ * each window instead of mapping it again, every reader receives its own duplicate of shared
+ * buffer, so that position and limit are not shared. Mapping is released when last reader
+ * releases it.
+ * <p>
+ * Files are identified by file system key rather than by name. File, which is deleted and created
+ * again under same name, is never confused with its predecessor that is still mapped.
+ * <p>
+ * When file grows and reader needs larger window than is already mapped, new mapping replaces
+ * old one for subsequent readers. Old mapping stays valid until all its readers release it.
+ */
+public final class MappedWindows {
+    private static final Map<WindowKey, Window> windows = new HashMap<>();
+
+    private MappedWindows() {
+    }
+
+    public static synchronized MappedByteBuffer acquire(Object fileKey, FileChannel channel, long offset, long size) throws IOException {
+        WindowKey key = new WindowKey(fileKey, offset);
+        Window w = windows.get(key);
+        if (w == null || w.buffer.capacity() < size) {
+            w = new Window(channel.map(FileChannel.MapMode.READ_ONLY, offset, size), w);
+            windows.put(key, w);
+        }
+        w.refCount++;
+        return (MappedByteBuffer) w.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Number of distinct mappings, which are currently in use.
+     */
+    public static synchronized int count() {
+        int count = 0;
+        for (Window w : windows.values()) {
+            while (w != null) {
+                count++;
+                w = w.next;
+            }
+        }
+        return count;
+    }
+
+    public static synchronized void release(Object fileKey, long offset, MappedByteBuffer buffer) {
+        WindowKey key = new WindowKey(fileKey, offset);
+        long address = ByteBuffers.getAddress(buffer);
+        Window prev = null;
+        Window w = windows.get(key);
+        while (w != null) {
+            if (ByteBuffers.getAddress(w.buffer) == address) {
+                if (--w.refCount == 0) {
+                    ByteBuffers.release(w.buffer);
+                    if (prev != null) {
+                        prev.next = w.next;
+                    } else if (w.next != null) {
+                        windows.put(key, w.next);
+                    } else {
+                        windows.remove(key);
+                    }
+                }
+                return;
+            }
+            prev = w;
+            w = w.next;
+        }
+    }
+
+    private static class Window {
+        private final MappedByteBuffer buffer;
+        private Window next;
+        private int refCount;
+
+        private Window(MappedByteBuffer buffer, Window next) {
+            this.buffer = buffer;
+            this.next = next;
+        }
+    }
+
+    private static class WindowKey {
+        private final Object fileKey;
+        private final long offset;
+
+        private WindowKey(Object fileKey, long offset) {
+            this.fileKey = fileKey;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            WindowKey that = (WindowKey) o;
+            return offset == that.offset && fileKey.equals(that.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * fileKey.hashCode() + (int) (offset ^ (offset >>> 32));
+        }
+    }
+}
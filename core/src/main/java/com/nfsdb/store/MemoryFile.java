@@ -30,25 +30,34 @@ import com.nfsdb.log.LogFactory;
 import com.nfsdb.misc.ByteBuffers;
 import com.nfsdb.misc.Files;
 import com.nfsdb.misc.Misc;
+import com.nfsdb.misc.Net;
 import com.nfsdb.misc.Unsafe;
 import com.nfsdb.std.ObjList;
+import com.nfsdb.std.Path;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
-import java.io.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
 @SuppressFBWarnings({"LII_LIST_INDEXED_ITERATING", "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS", "EXS_EXCEPTION_SOFTENING_HAS_CHECKED"})
-public class MemoryFile implements Closeable {
+public class MemoryFile implements MappedFile {
 
     private static final Log LOG = LogFactory.getLog(MemoryFile.class);
     // reserve first 8 bytes in the file for storing pointer to logical end of file
     // so the actual data begins from "DATA_OFFSET"
-    private final static int DATA_OFFSET = 8;
+    public final static int DATA_OFFSET = 8;
+    // windows smaller than huge page cannot be backed by one
+    private final static int HUGE_PAGE_SIZE = 2 * 1024 * 1024;
     private final File file;
     private final JournalMode mode;
     private final int bitHint;
+    private final int advice;
+    private final boolean hugePages;
     private FileChannel channel;
     private MappedByteBuffer offsetBuffer;
     private ObjList<MappedByteBuffer> buffers;
@@ -59,10 +68,26 @@ public class MemoryFile implements Closeable {
     private long cachedAppendOffset = -1;
     private long cachedAddress;
     private long offsetDirectAddr;
+    // identity of file, whose windows are shared with other readers, null when windows are private
+    private Object sharedKey;
+    private Path path;
+    // read-only descriptor for sendfile() and for read-ahead and eviction advice, opened on first use
+    private long fileFd = -1;
 
     public MemoryFile(File file, int bitHint, JournalMode mode) throws JournalException {
+        this(file, bitHint, mode, false, false);
+    }
+
+    /**
+     * @param randomAccess tells OS not to read ahead, which suits index and symbol files. Bulk readers
+     *                     always scan sequentially and ignore this flag.
+     * @param hugePages    asks OS to back windows of 2MB and larger by huge pages
+     */
+    public MemoryFile(File file, int bitHint, JournalMode mode, boolean randomAccess, boolean hugePages) throws JournalException {
         this.file = file;
         this.mode = mode;
+        this.advice = mode == JournalMode.BULK_READ ? Files.MADV_SEQUENTIAL : randomAccess ? Files.MADV_RANDOM : Files.MADV_NORMAL;
+        this.hugePages = hugePages;
         if (bitHint < 2) {
             LOG.info().$("BitHint is too small for ").$(file).$();
         }
@@ -72,6 +97,7 @@ public class MemoryFile implements Closeable {
         this.stitches = new ObjList<>(buffers.size());
     }
 
+    @Override
     public long addressOf(long offset, int size) {
         if (offset > cachedBufferLo && offset + size < cachedBufferHi) {
             return cachedAddress + offset - cachedBufferLo - 1;
@@ -84,8 +110,14 @@ public class MemoryFile implements Closeable {
     public void close() {
         unmap();
         this.channel = Misc.free(channel);
+        this.path = Misc.free(path);
+        if (fileFd != -1) {
+            Files.close(fileFd);
+            fileFd = -1;
+        }
     }
 
+    @Override
     public void compact() throws JournalException {
         close();
         try {
@@ -110,7 +142,12 @@ public class MemoryFile implements Closeable {
         Files.delete(file);
     }
 
+    @Override
     public void force() {
+        // shared windows are read-only and their duplicates cannot be forced
+        if (sharedKey != null) {
+            return;
+        }
         int stitchesSize = stitches.size();
         offsetBuffer.force();
         for (int i = 0, k = buffers.size(); i < k; i++) {
@@ -128,6 +165,7 @@ public class MemoryFile implements Closeable {
         }
     }
 
+    @Override
     public long getAppendOffset() {
         if (cachedAppendOffset != -1 && (mode == JournalMode.APPEND || mode == JournalMode.BULK_APPEND)) {
             return cachedAppendOffset;
@@ -139,10 +177,12 @@ public class MemoryFile implements Closeable {
         }
     }
 
+    @Override
     public void setAppendOffset(long offset) {
         Unsafe.getUnsafe().putLong(offsetDirectAddr, cachedAppendOffset = offset);
     }
 
+    @Override
     public MappedByteBuffer getBuffer(long offset, int size) {
         if (offset > cachedBufferLo && offset + size < cachedBufferHi) {
             cachedBuffer.position((int) (offset - cachedBufferLo - 1));
@@ -155,6 +195,7 @@ public class MemoryFile implements Closeable {
         return cachedBuffer;
     }
 
+    @Override
     public int pageRemaining(long offset) {
         if (offset > cachedBufferLo && offset < cachedBufferHi) {
             return (int) (cachedBufferHi - offset - 1);
@@ -168,6 +209,15 @@ public class MemoryFile implements Closeable {
         return this.getClass().getName() + "[file=" + file + ", appendOffset=" + getAppendOffset() + ']';
     }
 
+    @Override
+    public long transferTo(long fd, long offset, long len) {
+        if (Net.isSendFileSupported() && readFd() != -1) {
+            return Net.sendFile(fd, fileFd, offset + DATA_OFFSET, (int) Math.min(len, Integer.MAX_VALUE));
+        }
+        long address = addressOf(offset, 1);
+        return Net.send(fd, address, (int) Math.min(len, pageRemaining(offset)));
+    }
+
     private long allocateAddress(long offset, int size) {
         cachedBuffer = getBufferInternal(offset, size);
         cachedBufferLo = offset - cachedBuffer.position() - 1;
@@ -187,11 +237,11 @@ public class MemoryFile implements Closeable {
 
         // this may occur when journal is refreshed.
         if (buffer != null && buffer.limit() < bufferPos) {
-            buffer = ByteBuffers.release(buffer);
+            buffer = releaseWindow(index, buffer);
         }
 
         if (buffer == null) {
-            buffer = mapBufferInternal(bufferOffset, bufferSize);
+            buffer = mapWindow(bufferOffset, bufferSize);
             assert bufferSize > 0;
             buffers.extendAndSet(index, buffer);
             switch (mode) {
@@ -205,7 +255,7 @@ public class MemoryFile implements Closeable {
                     for (int i = index - 1; i > -1; i--) {
                         MappedByteBuffer b = buffers.getAndSetQuick(i, null);
                         if (b != null) {
-                            ByteBuffers.release(b);
+                            releaseWindow(i, b);
                         }
 
                         if (i < ssz) {
@@ -257,6 +307,10 @@ public class MemoryFile implements Closeable {
     }
 
     private MappedByteBuffer mapBufferInternal(long offset, int size) {
+        return mapBufferInternal(offset, size, false);
+    }
+
+    private MappedByteBuffer mapBufferInternal(long offset, int size, boolean shared) {
         long actualOffset = offset + DATA_OFFSET;
 
         try {
@@ -273,6 +327,9 @@ public class MemoryFile implements Closeable {
                         sz = size;
                     }
                     assert sz > 0;
+                    if (shared) {
+                        return MappedWindows.acquire(sharedKey, channel, actualOffset, sz);
+                    }
                     buf = channel.map(FileChannel.MapMode.READ_ONLY, actualOffset, sz);
                     break;
                 default:
@@ -286,6 +343,22 @@ public class MemoryFile implements Closeable {
         }
     }
 
+    private MappedByteBuffer mapWindow(long offset, int size) {
+        MappedByteBuffer buf = mapBufferInternal(offset, size, sharedKey != null);
+        long address = ByteBuffers.getAddress(buf);
+        if (advice != Files.MADV_NORMAL) {
+            Files.madvise(address, buf.limit(), advice);
+        }
+        if (hugePages && buf.limit() >= HUGE_PAGE_SIZE) {
+            Files.madvise(address, buf.limit(), Files.MADV_HUGEPAGE);
+        }
+        if (mode == JournalMode.BULK_READ) {
+            // have OS read next window while scan is busy with this one
+            Files.fadvise(readFd(), offset + size + DATA_OFFSET, size, Files.MADV_WILLNEED);
+        }
+        return buf;
+    }
+
     private void open() throws JournalException {
         String m;
         switch (mode) {
@@ -315,6 +388,9 @@ public class MemoryFile implements Closeable {
             this.channel = new RandomAccessFile(file, mode).getChannel();
             if ("r".equals(mode)) {
                 this.offsetBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 8));
+                // only readers, which keep their windows, share them. Bulk readers unmap
+                // windows as they go and would gain nothing.
+                this.sharedKey = this.mode == JournalMode.READ ? Files.getFileKey(file) : null;
             } else {
                 this.offsetBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
             }
@@ -327,6 +403,35 @@ public class MemoryFile implements Closeable {
         }
     }
 
+    private Path path() {
+        if (path == null) {
+            path = new Path(file.getAbsolutePath());
+        }
+        return path;
+    }
+
+    private long readFd() {
+        if (fileFd == -1 && (Files.isAdviceSupported() || Net.isSendFileSupported())) {
+            fileFd = Files.openRO(path());
+        }
+        return fileFd;
+    }
+
+    private MappedByteBuffer releaseWindow(int index, MappedByteBuffer buffer) {
+        long offset = (((long) index) << bitHint) + DATA_OFFSET;
+        if (sharedKey != null) {
+            MappedWindows.release(sharedKey, offset, buffer);
+            return null;
+        }
+        int len = buffer.limit();
+        ByteBuffers.release(buffer);
+        if (mode == JournalMode.BULK_READ) {
+            // scanned data is unlikely to be read again, do not let it push other files out of page cache
+            Files.fadvise(readFd(), offset, len, Files.MADV_DONTNEED);
+        }
+        return null;
+    }
+
     private long size() throws JournalException {
         try {
             return channel.size();
@@ -339,7 +444,7 @@ public class MemoryFile implements Closeable {
         for (int i = 0, k = buffers.size(); i < k; i++) {
             MappedByteBuffer b = buffers.getQuick(i);
             if (b != null) {
-                ByteBuffers.release(b);
+                releaseWindow(i, b);
             }
         }
         for (int i = 0, k = stitches.size(); i < k; i++) {
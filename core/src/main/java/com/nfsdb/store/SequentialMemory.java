@@ -85,7 +85,8 @@ public class SequentialMemory implements Closeable, Mutable {
             throw new OutOfMemoryError();
         }
 
-        if (index <= pages.size()) {
+        // pages allocated before clear() are re-used
+        if (index == pages.size()) {
             pages.extendAndSet((int) index, Unsafe.getUnsafe().allocateMemory(pageSize));
         }
 
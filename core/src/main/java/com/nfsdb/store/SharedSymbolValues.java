@@ -0,0 +1,102 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Symbol values, which are shared by all readers of the same symbol table in this process.
+ * Committed symbol keys never change their values, so readers at any txn can share single
+ * key to value dictionary and hold the same String instances.
+ * <p>
+ * Dictionary is cleared when symbol table is truncated.
+ */
+public final class SharedSymbolValues {
+    private static final Map<Object, SharedSymbolValues> registry = new HashMap<>();
+    private final Object fileKey;
+    private volatile String values[];
+    private int refCount;
+
+    private SharedSymbolValues(Object fileKey, int capacity) {
+        this.fileKey = fileKey;
+        this.values = new String[Math.max(capacity, 16)];
+    }
+
+    public static synchronized SharedSymbolValues acquire(Object fileKey, int capacity) {
+        SharedSymbolValues v = registry.get(fileKey);
+        if (v == null) {
+            registry.put(fileKey, v = new SharedSymbolValues(fileKey, capacity));
+        }
+        v.refCount++;
+        return v;
+    }
+
+    public static synchronized int count() {
+        return registry.size();
+    }
+
+    public static synchronized void invalidate(Object fileKey) {
+        SharedSymbolValues v = registry.get(fileKey);
+        if (v != null) {
+            v.clear();
+        }
+    }
+
+    public synchronized void clear() {
+        values = new String[values.length];
+    }
+
+    public String get(int key) {
+        String v[] = values;
+        return key < v.length ? v[key] : null;
+    }
+
+    /**
+     * Stores value for key unless another reader has already stored one.
+     *
+     * @param key   symbol key
+     * @param value symbol value
+     * @return shared instance of value
+     */
+    public synchronized String intern(int key, String value) {
+        String v[] = values;
+        if (key >= v.length) {
+            v = Arrays.copyOf(v, Math.max(v.length << 1, key + 1));
+        } else if (v[key] != null) {
+            return v[key];
+        }
+        v[key] = value;
+        // volatile write publishes value to readers
+        values = v;
+        return value;
+    }
+
+    public void release() {
+        synchronized (SharedSymbolValues.class) {
+            if (--refCount == 0) {
+                registry.remove(fileKey);
+            }
+        }
+    }
+}
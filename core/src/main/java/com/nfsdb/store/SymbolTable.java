@@ -26,6 +26,7 @@ import com.nfsdb.ex.JournalException;
 import com.nfsdb.ex.JournalInvalidSymbolValueException;
 import com.nfsdb.ex.JournalRuntimeException;
 import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.misc.Files;
 import com.nfsdb.misc.Hash;
 import com.nfsdb.misc.Misc;
 import com.nfsdb.misc.Numbers;
@@ -50,11 +51,17 @@ public class SymbolTable implements Closeable {
     private final ObjList<String> keyCache;
     private final boolean noCache;
     private final Iter iter = new Iter();
+    private final File dataFileName;
+    private SharedSymbolValues shared;
     private VariableColumn data;
     private KVIndex index;
     private int size;
 
     public SymbolTable(int keyCount, int avgStringSize, int txCountHint, File directory, String column, JournalMode mode, int size, long indexTxAddress, boolean noCache) throws JournalException {
+        this(keyCount, avgStringSize, txCountHint, directory, column, mode, size, indexTxAddress, noCache, false);
+    }
+
+    public SymbolTable(int keyCount, int avgStringSize, int txCountHint, File directory, String column, JournalMode mode, int size, long indexTxAddress, boolean noCache, boolean compact) throws JournalException {
         // number of hash keys stored in index
         // assume it is 20% of stated capacity
         this.hashKeyCount = Numbers.ceilPow2(Math.max(2, (int) (keyCount * CACHE_LOAD_FACTOR))) - 1;
@@ -74,15 +81,24 @@ public class SymbolTable implements Closeable {
                 break;
         }
 
-        MemoryFile dataFile = new MemoryFile(new File(directory, column + DATA_FILE_SUFFIX), ByteBuffers.getBitHint(avgStringSize * 2 + 4, keyCount), m);
-        MemoryFile indexFile = new MemoryFile(new File(directory, column + INDEX_FILE_SUFFIX), ByteBuffers.getBitHint(8, keyCount), m);
+        this.dataFileName = new File(directory, column + DATA_FILE_SUFFIX);
+        MemoryFile dataFile = new MemoryFile(dataFileName, ByteBuffers.getBitHint((compact ? avgStringSize : avgStringSize * 2) + 4, keyCount), m, true, false);
+        MemoryFile indexFile = new MemoryFile(new File(directory, column + INDEX_FILE_SUFFIX), ByteBuffers.getBitHint(8, keyCount), m, true, false);
 
-        this.data = new VariableColumn(dataFile, indexFile);
+        this.data = new VariableColumn(dataFile, indexFile, compact);
         this.size = size;
 
         this.index = new KVIndex(new File(directory, column + HASH_INDEX_FILE_SUFFIX), this.hashKeyCount, keyCount, txCountHint, mode, indexTxAddress);
         this.valueCache = new CharSequenceIntHashMap(noCache ? 0 : keyCount, 0.5, VALUE_NOT_FOUND);
         this.keyCache = new ObjList<>(noCache ? 0 : keyCount);
+
+        // readers share symbol values with other readers of the same table
+        if (m == JournalMode.READ && !noCache) {
+            Object fileKey = Files.getFileKey(dataFileName);
+            if (fileKey != null) {
+                this.shared = SharedSymbolValues.acquire(fileKey, keyCount);
+            }
+        }
     }
 
     public void alignSize() {
@@ -90,11 +106,22 @@ public class SymbolTable implements Closeable {
     }
 
     public void applyTx(int size, long indexTxAddress) {
+        if (size < this.size) {
+            // table has been truncated, values of keys beyond new size are no longer valid
+            clearCache();
+            if (shared != null) {
+                shared.clear();
+            }
+        }
         this.size = size;
         this.index.setTxAddress(indexTxAddress);
     }
 
     public void close() {
+        if (shared != null) {
+            shared.release();
+            shared = null;
+        }
         data = Misc.free(data);
         index = Misc.free(index);
     }
@@ -143,7 +170,7 @@ public class SymbolTable implements Closeable {
 
     public SymbolTable preLoad() {
         for (int key = 0, size = (int) data.size(); key < size; key++) {
-            String value = data.getStr(key);
+            String value = shared == null ? data.getStr(key) : shared.intern(key, data.getStr(key));
             valueCache.putIfAbsent(value, key);
             keyCache.add(value);
 
@@ -177,6 +204,10 @@ public class SymbolTable implements Closeable {
             index.truncate(size);
             data.commit();
             clearCache();
+            Object fileKey = Files.getFileKey(dataFileName);
+            if (fileKey != null) {
+                SharedSymbolValues.invalidate(fileKey);
+            }
             this.size = size;
         }
     }
@@ -197,7 +228,10 @@ public class SymbolTable implements Closeable {
         if (key < size) {
             String value = key < keyCache.size() ? keyCache.getQuick(key) : null;
             if (value == null) {
-                cache(key, value = data.getStr(key));
+                if (shared == null || (value = shared.get(key)) == null) {
+                    value = data.getStr(key);
+                }
+                value = cache(key, value);
             }
             return value;
         }
@@ -215,13 +249,15 @@ public class SymbolTable implements Closeable {
         return iter;
     }
 
-    private void cache(int key, String value) {
+    private String cache(int key, String value) {
         if (noCache) {
-            return;
+            return value;
         }
 
-        valueCache.put(value, key);
-        keyCache.extendAndSet(key, value);
+        String v = shared == null ? value : shared.intern(key, value);
+        valueCache.put(v, key);
+        keyCache.extendAndSet(key, v);
+        return v;
     }
 
     private void clearCache() {
@@ -27,6 +27,8 @@ public class Tx {
 
     public static final byte TX_NORMAL = 0;
     public static final byte TX_FORCE = 1;
+    // flag set on command of transaction, which has replaced partitions with rewritten copies
+    public static final byte TX_REWRITE = 2;
     public long address;
     public long prevTxAddress;
     public byte command;
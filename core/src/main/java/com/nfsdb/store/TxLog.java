@@ -103,6 +103,35 @@ public class TxLog implements Closeable {
         return hb.getLong();
     }
 
+    /**
+     * Checks if partitions have been rewritten by any of transactions committed after given one.
+     * Only headers of these transactions are read, going back from head transaction.
+     *
+     * @param txn   transaction to check from
+     * @param txPin pin of that transaction
+     * @return true if partitions have been rewritten or transaction log has been rolled back past txn
+     */
+    @SuppressFBWarnings({"PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS"})
+    public boolean hasRewritesAfter(long txn, long txPin) {
+        long address = headAddress;
+        while (address > 0) {
+            hb.setPos(address);
+            long prev = hb.getLong();
+            long curr = hb.getLong();
+            long pin = hb.getLong();
+            if (curr <= txn) {
+                // transaction is not found when log has been rolled back past it
+                return curr < txn || pin != txPin;
+            }
+            hb.getLong(); // timestamp
+            if ((hb.get() & Tx.TX_REWRITE) != 0) {
+                return true;
+            }
+            address = prev;
+        }
+        return false;
+    }
+
     public boolean hasNext() {
         return readCurrentTxAddress() > headAddress;
     }
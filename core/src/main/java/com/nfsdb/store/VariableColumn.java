@@ -26,6 +26,7 @@ import com.nfsdb.ex.JournalRuntimeException;
 import com.nfsdb.io.sink.CharSink;
 import com.nfsdb.misc.Chars;
 import com.nfsdb.misc.Unsafe;
+import com.nfsdb.std.DirectByteCharSequence;
 import com.nfsdb.std.DirectCharSequence;
 import com.nfsdb.std.DirectInputStream;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -39,16 +40,32 @@ import java.nio.ByteBuffer;
 @SuppressFBWarnings({"EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS"})
 public class VariableColumn extends AbstractColumn {
     public static final int NULL_LEN = -1;
+    /**
+     * Length header flag of strings stored one byte per char. Readers recognise both
+     * forms regardless of column settings, so columns can be switched between them.
+     */
+    private static final int COMPACT_FLAG = 0x40000000;
+    private static final int LEN_MASK = ~COMPACT_FLAG;
     private final FixedColumn indexColumn;
     private final BinaryOutputStream binOut = new BinaryOutputStream();
     private final BinaryInputStream binIn = new BinaryInputStream();
     private final DirectCharSequence charSequence = new DirectCharSequence();
+    private final DirectByteCharSequence byteCharSequence = new DirectByteCharSequence();
+    private final boolean compact;
     private char buffer[] = new char[32];
     private byte[] streamBuf;
 
-    public VariableColumn(MemoryFile dataFile, MemoryFile indexFile) {
+    public VariableColumn(MappedFile dataFile, MappedFile indexFile) {
+        this(dataFile, indexFile, false);
+    }
+
+    /**
+     * @param compact when true ASCII strings are stored one byte per char, other strings are stored as UTF-16
+     */
+    public VariableColumn(MappedFile dataFile, MappedFile indexFile, boolean compact) {
         super(dataFile);
         this.indexColumn = new FixedColumn(indexFile, 8);
+        this.compact = compact;
     }
 
     @Override
@@ -110,6 +127,21 @@ public class VariableColumn extends AbstractColumn {
         long offset = indexColumn.getLong(localRowID);
         int len = Unsafe.getUnsafe().getInt(mappedFile.addressOf(offset, 4));
 
+        if ((len & COMPACT_FLAG) != 0) {
+            len &= LEN_MASK;
+            if (len != value.length()) {
+                return false;
+            }
+
+            long address = mappedFile.addressOf(offset + 4, len);
+            for (int i = 0; i < len; i++) {
+                if (Unsafe.getUnsafe().getByte(address + i) != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         if (len != value.length()) {
             return false;
         }
@@ -160,6 +192,13 @@ public class VariableColumn extends AbstractColumn {
         if (len == NULL_LEN) {
             return null;
         }
+
+        if ((len & COMPACT_FLAG) != 0) {
+            len &= LEN_MASK;
+            long lo = mappedFile.addressOf(offset + 4, len);
+            return byteCharSequence.of(lo, lo + len);
+        }
+
         long lo = mappedFile.addressOf(offset + 4, len * 2);
         return charSequence.of(lo, lo + len * 2);
     }
@@ -175,6 +214,11 @@ public class VariableColumn extends AbstractColumn {
         if (len == NULL_LEN) {
             return null;
         }
+
+        if ((len & COMPACT_FLAG) != 0) {
+            len &= LEN_MASK;
+            return getCompactStr0(mappedFile.addressOf(offset + 4, len), len);
+        }
         return getStr0(mappedFile.addressOf(offset + 4, len * 2), len);
     }
 
@@ -187,6 +231,15 @@ public class VariableColumn extends AbstractColumn {
             return;
         }
 
+        if ((len & COMPACT_FLAG) != 0) {
+            len &= LEN_MASK;
+            long address = mappedFile.addressOf(offset + 4, len);
+            for (int i = 0; i < len; i++) {
+                sink.put((char) Unsafe.getUnsafe().getByte(address + i));
+            }
+            return;
+        }
+
         long address = mappedFile.addressOf(offset + 4, len * 2);
         for (int i = 0; i < len; i++) {
             sink.put(Unsafe.getUnsafe().getChar(address));
@@ -195,7 +248,8 @@ public class VariableColumn extends AbstractColumn {
     }
 
     public int getStrLen(long localRowID) {
-        return Unsafe.getUnsafe().getInt(mappedFile.addressOf(indexColumn.getLong(localRowID), 4));
+        int len = Unsafe.getUnsafe().getInt(mappedFile.addressOf(indexColumn.getLong(localRowID), 4));
+        return len == NULL_LEN ? len : len & LEN_MASK;
     }
 
     public void putBin(ByteBuffer value) {
@@ -285,6 +339,16 @@ public class VariableColumn extends AbstractColumn {
     public long putStr(CharSequence value) {
         if (value == null) {
             return putNull();
+        } else if (compact && isAscii(value)) {
+            int len = value.length();
+            long offset = getOffset();
+            long address = mappedFile.addressOf(offset, len + 4);
+            Unsafe.getUnsafe().putInt(address, len | COMPACT_FLAG);
+            address += 4;
+            for (int i = 0; i < len; i++) {
+                Unsafe.getUnsafe().putByte(address + i, (byte) value.charAt(i));
+            }
+            return commitAppend(offset, len + 4);
         } else {
             int len = value.length() * 2 + 4;
             long offset = getOffset();
@@ -293,6 +357,15 @@ public class VariableColumn extends AbstractColumn {
         }
     }
 
+    private static boolean isAscii(CharSequence value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            if (value.charAt(i) > 127) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private long commitAppend(long offset, int size) {
         preCommit(offset + size);
         return indexColumn.putLong(offset);
@@ -326,6 +399,16 @@ public class VariableColumn extends AbstractColumn {
         }
     }
 
+    private String getCompactStr0(long address, int len) {
+        if (buffer.length < len) {
+            buffer = new char[len];
+        }
+        for (int i = 0; i < len; i++) {
+            buffer[i] = (char) Unsafe.getUnsafe().getByte(address + i);
+        }
+        return new String(buffer, 0, len);
+    }
+
     private String getStr0(long address, int len) {
         if (buffer.length < len) {
             buffer = new char[len];
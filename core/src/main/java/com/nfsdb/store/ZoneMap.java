@@ -0,0 +1,255 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.store;
+
+import com.nfsdb.JournalMode;
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.misc.Unsafe;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Min/max summary of numeric fixed column, kept for every block of BLOCK_SIZE rows. Query
+ * row sources use it to skip blocks, which cannot contain rows matching range predicates.
+ * <p>
+ * Null values (MIN_VALUE for INT, LONG and DATE and NaN for FLOAT and DOUBLE) do not satisfy
+ * any range predicate and therefore are not accounted for. Block that only contains nulls has
+ * min greater than max and matches nothing.
+ * <p>
+ * Summary is maintained incrementally by partition on commit. Rows beyond "covered" row count
+ * are not summarised yet and must always be scanned.
+ */
+public class ZoneMap implements Closeable {
+
+    /*
+        struct zdata {
+            long coveredRows
+            struct block {
+                long|double min
+                long|double max
+            }
+        }
+    */
+
+    public static final int BLOCK_BITS = 12;
+    public static final long BLOCK_SIZE = 1L << BLOCK_BITS;
+    private static final long BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int BIT_HINT = 16;
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 16;
+    private final MemoryFile mf;
+    private final ColumnType type;
+
+    public ZoneMap(File file, ColumnType type, JournalMode mode) throws JournalException {
+        this.mf = new MemoryFile(file, BIT_HINT, mode);
+        this.type = type;
+    }
+
+    public static boolean isSupported(ColumnType type) {
+        switch (type) {
+            case INT:
+            case LONG:
+            case DATE:
+            case SHORT:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        mf.close();
+    }
+
+    public void compact() throws JournalException {
+        mf.compact();
+    }
+
+    public void force() {
+        mf.force();
+    }
+
+    public long getCoveredRows() {
+        return mf.getAppendOffset() < HEADER_SIZE ? 0 : Unsafe.getUnsafe().getLong(mf.addressOf(0, 8));
+    }
+
+    public double getDoubleMax(long block) {
+        return Unsafe.getUnsafe().getDouble(mf.addressOf(entryOffset(block) + 8, 8));
+    }
+
+    public double getDoubleMin(long block) {
+        return Unsafe.getUnsafe().getDouble(mf.addressOf(entryOffset(block), 8));
+    }
+
+    public long getLongMax(long block) {
+        return Unsafe.getUnsafe().getLong(mf.addressOf(entryOffset(block) + 8, 8));
+    }
+
+    public long getLongMin(long block) {
+        return Unsafe.getUnsafe().getLong(mf.addressOf(entryOffset(block), 8));
+    }
+
+    public boolean isFloating() {
+        return type == ColumnType.DOUBLE || type == ColumnType.FLOAT;
+    }
+
+    /**
+     * Checks if block can contain values between lo and hi inclusive. Block must be covered.
+     */
+    public boolean overlaps(long block, long lo, long hi) {
+        long o = entryOffset(block);
+        long address = mf.addressOf(o, ENTRY_SIZE);
+        return Unsafe.getUnsafe().getLong(address) <= hi && Unsafe.getUnsafe().getLong(address + 8) >= lo;
+    }
+
+    public boolean overlaps(long block, double lo, double hi) {
+        long o = entryOffset(block);
+        long address = mf.addressOf(o, ENTRY_SIZE);
+        return Unsafe.getUnsafe().getDouble(address) <= hi && Unsafe.getUnsafe().getDouble(address + 8) >= lo;
+    }
+
+    /**
+     * Discards summaries of blocks, which are affected by truncation. Partially truncated block
+     * is recalculated on next update.
+     *
+     * @param size new row count of column
+     */
+    public void truncate(long size) {
+        if (size < getCoveredRows()) {
+            setCoveredRows(size & ~BLOCK_MASK);
+        }
+    }
+
+    /**
+     * Summarises rows from last covered row up to size.
+     *
+     * @param column column this zone map belongs to
+     * @param size   current row count of column
+     */
+    public void update(FixedColumn column, long size) {
+        long covered = getCoveredRows();
+        if (covered >= size) {
+            return;
+        }
+
+        if (isFloating()) {
+            updateDouble(column, covered, size);
+        } else {
+            updateLong(column, covered, size);
+        }
+        setCoveredRows(size);
+    }
+
+    private static long entryOffset(long block) {
+        return HEADER_SIZE + block * ENTRY_SIZE;
+    }
+
+    private void setCoveredRows(long rows) {
+        Unsafe.getUnsafe().putLong(mf.addressOf(0, 8), rows);
+        mf.setAppendOffset(entryOffset((rows + BLOCK_MASK) >>> BLOCK_BITS));
+    }
+
+    private void updateDouble(FixedColumn column, long lo, long hi) {
+        long block = lo >>> BLOCK_BITS;
+        double min;
+        double max;
+
+        if ((lo & BLOCK_MASK) == 0) {
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        } else {
+            min = getDoubleMin(block);
+            max = getDoubleMax(block);
+        }
+
+        for (long row = lo; row < hi; row++) {
+            double v = type == ColumnType.FLOAT ? column.getFloat(row) : column.getDouble(row);
+            if (v < min) {
+                min = v;
+            }
+
+            if (v > max) {
+                max = v;
+            }
+
+            if (((row + 1) & BLOCK_MASK) == 0 || row + 1 == hi) {
+                long address = mf.addressOf(entryOffset(block++), ENTRY_SIZE);
+                Unsafe.getUnsafe().putDouble(address, min);
+                Unsafe.getUnsafe().putDouble(address + 8, max);
+                min = Double.POSITIVE_INFINITY;
+                max = Double.NEGATIVE_INFINITY;
+            }
+        }
+    }
+
+    private void updateLong(FixedColumn column, long lo, long hi) {
+        long block = lo >>> BLOCK_BITS;
+        long min;
+        long max;
+
+        if ((lo & BLOCK_MASK) == 0) {
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+        } else {
+            min = getLongMin(block);
+            max = getLongMax(block);
+        }
+
+        for (long row = lo; row < hi; row++) {
+            long v;
+            switch (type) {
+                case INT:
+                    int i = column.getInt(row);
+                    v = i == Integer.MIN_VALUE ? Long.MIN_VALUE : i;
+                    break;
+                case SHORT:
+                    v = column.getShort(row);
+                    break;
+                default:
+                    v = column.getLong(row);
+                    break;
+            }
+
+            if (v != Long.MIN_VALUE) {
+                if (v < min) {
+                    min = v;
+                }
+
+                if (v > max) {
+                    max = v;
+                }
+            }
+
+            if (((row + 1) & BLOCK_MASK) == 0 || row + 1 == hi) {
+                long address = mf.addressOf(entryOffset(block++), ENTRY_SIZE);
+                Unsafe.getUnsafe().putLong(address, min);
+                Unsafe.getUnsafe().putLong(address + 8, max);
+                min = Long.MAX_VALUE;
+                max = Long.MIN_VALUE;
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.JournalRuntimeException;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.misc.Rnd;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.model.Band;
+import com.nfsdb.model.Quote;
+import com.nfsdb.store.SymbolTable;
+import com.nfsdb.test.tools.AbstractTest;
+import com.nfsdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColumnBatchTest extends AbstractTest {
+
+    private static final String[] SYMBOLS = {"AGK.L", "BP.L", "TLW.L", "ABF.L", "LLOY.L", "BT-A.L", "WTB.L", "RRS.L"};
+    private static final String[] MODES = {"Fast trading", "Slow trading", null};
+    private static final String[] EXCHANGES = {"LXE", "SK"};
+
+    @Test
+    public void testAppendColumns() throws Exception {
+        int n = 30000;
+        long[] timestamps = new long[n];
+        String[] syms = new String[n];
+        String[] modes = new String[n];
+        String[] exs = new String[n];
+        double[] bids = new double[n];
+        double[] asks = new double[n];
+        int[] bidSizes = new int[n];
+        int[] askSizes = new int[n];
+
+        Rnd rnd = new Rnd();
+        long t = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+        for (int i = 0; i < n; i++) {
+            timestamps[i] = t += 1000 * 60 * 5;
+            syms[i] = SYMBOLS[rnd.nextPositiveInt() % SYMBOLS.length];
+            modes[i] = MODES[rnd.nextPositiveInt() % MODES.length];
+            exs[i] = EXCHANGES[rnd.nextPositiveInt() % EXCHANGES.length];
+            bids[i] = rnd.nextDouble();
+            asks[i] = rnd.nextDouble();
+            bidSizes[i] = rnd.nextInt();
+            askSizes[i] = rnd.nextInt();
+        }
+
+        JournalWriter<Quote> expected = factory.writer(Quote.class, "expected");
+        for (int i = 0; i < n; i++) {
+            expected.append(new Quote()
+                    .setTimestamp(timestamps[i])
+                    .setSym(syms[i])
+                    .setMode(modes[i])
+                    .setEx(exs[i])
+                    .setBid(bids[i])
+                    .setAsk(asks[i])
+                    .setBidSize(bidSizes[i])
+                    .setAskSize(askSizes[i]));
+        }
+        expected.commit();
+
+        JournalWriter<Quote> w = factory.writer(Quote.class, "actual");
+
+        // exchange is given as symbol keys
+        SymbolTable tab = w.getSymbolTable("ex");
+        int[] exKeys = new int[n];
+        for (int i = 0; i < n; i++) {
+            exKeys[i] = tab.put(exs[i]);
+        }
+
+        // ask size is given as memory address
+        long address = Unsafe.getUnsafe().allocateMemory(n * 4);
+        try {
+            for (int i = 0; i < n; i++) {
+                Unsafe.getUnsafe().putInt(address + i * 4, askSizes[i]);
+            }
+
+            // append in two batches to check that second batch continues partition of first one
+            ColumnBatch batch = new ColumnBatch(w.getMetadata());
+            int half = n / 2;
+            for (int lo = 0; lo < n; lo += half) {
+                batch.of(half)
+                        .putLongs("timestamp", slice(timestamps, lo, half))
+                        .putStrs("sym", slice(syms, lo, half))
+                        .putStrs("mode", slice(modes, lo, half))
+                        .putInts("ex", slice(exKeys, lo, half))
+                        .putDoubles("bid", slice(bids, lo, half))
+                        .putDoubles("ask", slice(asks, lo, half))
+                        .putInts("bidSize", slice(bidSizes, lo, half))
+                        .putAddress("askSize", address + lo * 4);
+                w.appendColumns(batch);
+            }
+            w.commit();
+        } finally {
+            Unsafe.getUnsafe().freeMemory(address);
+        }
+
+        TestUtils.assertEquals(expected, w);
+        TestUtils.assertDataEquals(expected, w);
+    }
+
+    @Test
+    public void testBinaryColumn() throws Exception {
+        JournalWriter<Band> w = factory.writer(Band.class);
+        ColumnBatch batch = new ColumnBatch(w.getMetadata()).of(1)
+                .putLongs("timestamp", new long[]{Dates.parseDateTime("2013-10-05T10:00:00.000Z")})
+                .putStrs("name", new String[]{"a"})
+                .putStrs("url", new String[]{"b"})
+                .putStrs("type", new String[]{"c"});
+        try {
+            w.appendColumns(batch);
+            Assert.fail();
+        } catch (JournalRuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("Binary column is not supported: image"));
+        }
+        Assert.assertEquals(0, w.size());
+    }
+
+    @Test
+    public void testInvalidBatch() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        long t = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+        ColumnBatch batch = new ColumnBatch(w.getMetadata()).of(2)
+                .putLongs("timestamp", new long[]{t, t + 1000})
+                .putStrs("sym", new String[]{"A", "B"});
+
+        try {
+            w.appendColumns(batch);
+            Assert.fail();
+        } catch (JournalRuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("No values for column"));
+        }
+
+        try {
+            batch.putDoubles("bidSize", new double[2]);
+            Assert.fail();
+        } catch (JournalRuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("Expected type"));
+        }
+
+        batch.putStrs("mode", new String[2])
+                .putInts("ex", new int[]{SymbolTable.VALUE_IS_NULL, SymbolTable.VALUE_IS_NULL})
+                .putDoubles("bid", new double[2])
+                .putDoubles("ask", new double[2])
+                .putInts("bidSize", new int[2])
+                .putInts("askSize", new int[2])
+                .putLongs("timestamp", new long[]{t + 1000, t});
+
+        try {
+            w.appendColumns(batch);
+            Assert.fail();
+        } catch (JournalException e) {
+            Assert.assertTrue(e.getMessage().contains("out of order"));
+        }
+
+        batch.putLongs("timestamp", new long[]{t, t + 1000}).putInts("ex", new int[]{0, 5});
+        try {
+            w.appendColumns(batch);
+            Assert.fail();
+        } catch (JournalException e) {
+            Assert.assertTrue(e.getMessage().contains("Invalid key"));
+        }
+        Assert.assertEquals(0, w.size());
+
+        batch.putInts("ex", new int[]{SymbolTable.VALUE_IS_NULL, SymbolTable.VALUE_IS_NULL});
+        w.appendColumns(batch);
+        w.commit();
+        Assert.assertEquals(2, w.size());
+        Assert.assertEquals("B", w.read(1).getSym());
+    }
+
+    private static long[] slice(long[] a, int lo, int n) {
+        long[] r = new long[n];
+        System.arraycopy(a, lo, r, 0, n);
+        return r;
+    }
+
+    private static double[] slice(double[] a, int lo, int n) {
+        double[] r = new double[n];
+        System.arraycopy(a, lo, r, 0, n);
+        return r;
+    }
+
+    private static int[] slice(int[] a, int lo, int n) {
+        int[] r = new int[n];
+        System.arraycopy(a, lo, r, 0, n);
+        return r;
+    }
+
+    private static String[] slice(String[] a, int lo, int n) {
+        String[] r = new String[n];
+        System.arraycopy(a, lo, r, 0, n);
+        return r;
+    }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.factory.configuration.JournalMetadataBuilder;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.model.Quote;
+import com.nfsdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+public class DropPartitionsTest extends AbstractTest {
+
+    private static final long STEP = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void testDrop() throws Exception {
+        long t0 = Dates.parseDateTime("2013-01-01T00:00:00.000Z");
+        JournalWriter<Quote> w = writer(0);
+        append(w, t0, 24 * 120);
+        w.commit();
+        Assert.assertEquals(4, w.getPartitionCount());
+
+        @SuppressWarnings("unchecked")
+        Journal<Quote> r = factory.reader(new JournalMetadataBuilder<>(w.getMetadata()).build());
+        Assert.assertEquals(24 * 120, r.size());
+
+        Assert.assertEquals(2, w.dropPartitions(Dates.parseDateTime("2013-03-01T00:00:00.000Z")));
+        Assert.assertEquals(2, w.getPartitionCount());
+        // directories are kept until commit
+        Assert.assertTrue(new File(w.getLocation(), "2013-01").exists());
+        Assert.assertFalse(r.refresh());
+        Assert.assertEquals(24 * 120, r.size());
+
+        w.commit();
+        Assert.assertFalse(new File(w.getLocation(), "2013-01").exists());
+        Assert.assertFalse(new File(w.getLocation(), "2013-02").exists());
+
+        long t1 = Dates.parseDateTime("2013-03-01T00:00:00.000Z");
+        int n = (int) ((t0 + 24 * 120 * STEP - t1) / STEP);
+        Assert.assertTrue(r.refresh());
+        Assert.assertEquals(2, r.getPartitionCount());
+        assertRows(r, t1, n);
+        assertRows(factory.reader(new JournalMetadataBuilder<>(w.getMetadata()).build()), t1, n);
+
+        // reader sees partition count unchanged when another partition is dropped and new one is added
+        w.dropPartitions(Dates.parseDateTime("2013-04-01T00:00:00.000Z"));
+        append(w, t0 + 24 * 120 * STEP, 24 * 30);
+        w.commit();
+        Assert.assertEquals(2, w.getPartitionCount());
+
+        long t2 = Dates.parseDateTime("2013-04-01T00:00:00.000Z");
+        Assert.assertTrue(r.refresh());
+        Assert.assertEquals(2, r.getPartitionCount());
+        assertRows(r, t2, (int) ((t0 + 24 * 150 * STEP - t2) / STEP));
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        long t0 = Dates.parseDateTime("2013-01-01T00:00:00.000Z");
+        JournalWriter<Quote> w = writer(0);
+        append(w, t0, 24 * 120);
+        w.commit();
+
+        Assert.assertEquals(3, w.dropPartitions(Dates.parseDateTime("2013-04-01T00:00:00.000Z")));
+        Assert.assertEquals(1, w.getPartitionCount());
+        w.rollback();
+
+        Assert.assertEquals(4, w.getPartitionCount());
+        assertRows(w, t0, 24 * 120);
+
+        append(w, t0 + 24 * 120 * STEP, 24);
+        w.commit();
+        assertRows(w, t0, 24 * 121);
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        long t0 = Dates.parseDateTime("2013-01-01T00:00:00.000Z");
+        JournalWriter<Quote> w = writer(60);
+        append(w, t0, 24 * 60);
+        w.commit();
+        Assert.assertEquals(3, w.getPartitionCount());
+
+        // 2013-04-10 is last timestamp, partitions ending before 2013-02-09 are expired
+        append(w, t0 + 24 * 60 * STEP, 24 * 40);
+        w.commit();
+        Assert.assertEquals(3, w.getPartitionCount());
+        Assert.assertEquals("2013-02", w.getPartition(0, false).getPartitionDir().getName());
+
+        long t1 = Dates.parseDateTime("2013-02-01T00:00:00.000Z");
+        assertRows(w, t1, (int) ((t0 + 24 * 100 * STEP - t1) / STEP));
+    }
+
+    @Test
+    public void testOutOfOrderRows() throws Exception {
+        long t0 = Dates.parseDateTime("2013-01-01T00:00:00.000Z");
+        JournalWriter<Quote> w = factory.writer(new JournalMetadataBuilder<>(Quote.class)
+                .location("quote-drop-ooo")
+                .partitionBy(PartitionType.MONTH)
+                .$ts()
+                .outOfOrder());
+        append(w, t0, 24 * 60);
+        w.commit();
+
+        append(w, t0, 1);
+        try {
+            w.dropPartitions(Dates.parseDateTime("2013-02-01T00:00:00.000Z"));
+            Assert.fail();
+        } catch (JournalException e) {
+            Assert.assertTrue(e.getMessage().contains("out of order"));
+        }
+        w.commit();
+        Assert.assertEquals(1, w.dropPartitions(Dates.parseDateTime("2013-02-01T00:00:00.000Z")));
+        w.commit();
+        Assert.assertEquals(24 * 29, w.size());
+    }
+
+    private static void append(JournalWriter<Quote> w, long t0, int n) throws JournalException {
+        for (int i = 0; i < n; i++) {
+            w.append(new Quote().setTimestamp(t0 + i * STEP).setSym("S" + (i % 3)));
+        }
+    }
+
+    private static void assertRows(Journal<Quote> journal, long t0, int n) throws JournalException {
+        int i = 0;
+        for (Quote q : journal) {
+            Assert.assertEquals(t0 + i * STEP, q.getTimestamp());
+            i++;
+        }
+        Assert.assertEquals(n, i);
+        Assert.assertEquals(n, journal.size());
+    }
+
+    private JournalWriter<Quote> writer(int ttlDays) throws JournalException {
+        JournalMetadataBuilder<Quote> b = new JournalMetadataBuilder<>(Quote.class)
+                .location("quote-drop")
+                .partitionBy(PartitionType.MONTH)
+                .$sym("sym").index().valueCountHint(4)
+                .$ts();
+        if (ttlDays > 0) {
+            b.ttl(ttlDays, TimeUnit.DAYS);
+        }
+        return factory.writer(b);
+    }
+}
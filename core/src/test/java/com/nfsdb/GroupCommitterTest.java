@@ -0,0 +1,183 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.model.Quote;
+import com.nfsdb.store.TxListener;
+import com.nfsdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class GroupCommitterTest extends AbstractTest {
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final int producers = 4;
+        final int txCount = 50;
+        final int txSize = 10;
+
+        JournalWriter<Quote> w = factory.writer(new JournalKey<>(Quote.class, "quote", PartitionType.NONE, false));
+        final AtomicInteger groups = new AtomicInteger();
+        w.setTxListener(new CountingListener(groups, null));
+
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(producers * txCount);
+        final CyclicBarrier start = new CyclicBarrier(producers);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[producers];
+
+        try (final GroupCommitter<Quote> committer = new GroupCommitter<>(w, 16)) {
+            committer.start();
+
+            for (int p = 0; p < producers; p++) {
+                final String sym = "S" + p;
+                threads[p] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < txCount; i++) {
+                                List<Quote> tx = new ArrayList<>();
+                                for (int k = 0; k < txSize; k++) {
+                                    tx.add(new Quote().setSym(sym).setBid(i * txSize + k));
+                                }
+                                committer.submit(tx, new CountingListener(commits, done) {
+                                    @Override
+                                    public void onError() {
+                                        errors.incrementAndGet();
+                                        super.onError();
+                                    }
+                                });
+                            }
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                };
+                threads[p].start();
+            }
+
+            for (int p = 0; p < producers; p++) {
+                threads[p].join();
+            }
+            Assert.assertNull(failure.get());
+            Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        }
+
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(producers * txCount, commits.get());
+        Assert.assertTrue(groups.get() <= producers * txCount);
+
+        Journal<Quote> r = factory.reader(w.getMetadata());
+        Assert.assertEquals(producers * txCount * txSize, r.size());
+    }
+
+    @Test
+    public void testFailedTransaction() throws Exception {
+        JournalWriter<Quote> w = factory.writer(new JournalKey<>(Quote.class, "quote", PartitionType.NONE, false));
+
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(2);
+
+        try (GroupCommitter<Quote> committer = new GroupCommitter<>(w, 4)) {
+            committer.start();
+            committer.submit(Arrays.asList(new Quote().setSym("A"), null), new CountingListener(commits, done) {
+                @Override
+                public void onError() {
+                    errors.incrementAndGet();
+                    super.onError();
+                }
+            });
+            committer.submit(Arrays.asList(new Quote().setSym("B"), new Quote().setSym("C")), new CountingListener(commits, done));
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        Assert.assertEquals(1, errors.get());
+        Assert.assertEquals(1, commits.get());
+        Journal<Quote> r = factory.reader(w.getMetadata());
+        Assert.assertEquals(2, r.size());
+        Assert.assertEquals("B", r.read(0).getSym());
+    }
+
+    @Test
+    public void testFailingListener() throws Exception {
+        JournalWriter<Quote> w = factory.writer(new JournalKey<>(Quote.class, "quote", PartitionType.NONE, false));
+
+        final AtomicInteger commits = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        try (GroupCommitter<Quote> committer = new GroupCommitter<>(w, 4)) {
+            committer.start();
+            committer.submit(Arrays.asList(new Quote().setSym("A")), new TxListener() {
+                @Override
+                public void onCommit() {
+                    throw new IllegalStateException("listener failure");
+                }
+
+                @Override
+                public void onError() {
+                }
+            });
+            committer.submit(Arrays.asList(new Quote().setSym("B")), new CountingListener(commits, done));
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        Assert.assertEquals(1, commits.get());
+        Assert.assertEquals(2, factory.reader(w.getMetadata()).size());
+    }
+
+    private static class CountingListener implements TxListener {
+        private final AtomicInteger counter;
+        private final CountDownLatch latch;
+
+        CountingListener(AtomicInteger counter, CountDownLatch latch) {
+            this.counter = counter;
+            this.latch = latch;
+        }
+
+        @Override
+        public void onCommit() {
+            counter.incrementAndGet();
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void onError() {
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+    }
+}
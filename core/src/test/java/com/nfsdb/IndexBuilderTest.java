@@ -0,0 +1,164 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.misc.Files;
+import com.nfsdb.model.Quote;
+import com.nfsdb.store.KVIndex;
+import com.nfsdb.test.tools.AbstractTest;
+import com.nfsdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class IndexBuilderTest extends AbstractTest {
+
+    @Test
+    public void testBuild() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        TestUtils.generateQuoteData(w, 30000, Dates.parseDateTime("2013-01-01T00:00:00.000Z"), 5 * 60 * 1000L);
+        w.commit();
+        Assert.assertEquals(4, w.getPartitionCount());
+
+        Journal<Quote> r = factory.reader(Quote.class);
+        String expected = toString(r.query().all().withKeys("BP.L").asResultSet());
+        String before[] = indexVersions(w);
+
+        try (IndexBuilder<Quote> builder = new IndexBuilder<>(w, 2)) {
+            builder.start();
+            Assert.assertTrue(IndexBuilder.isPending(w.getLocation()));
+            builder.finish();
+            Assert.assertEquals(0, builder.getPendingCount());
+        }
+        Assert.assertFalse(IndexBuilder.isPending(w.getLocation()));
+
+        String after[] = indexVersions(w);
+        for (int i = 0; i < before.length; i++) {
+            Assert.assertNotEquals(before[i], after[i]);
+        }
+
+        r.refresh();
+        Assert.assertEquals(expected, toString(r.query().all().withKeys("BP.L").asResultSet()));
+        Assert.assertEquals(expected, toString(factory.reader(Quote.class).query().all().withKeys("BP.L").asResultSet()));
+
+        // writer keeps indexing active partition after rebuild
+        TestUtils.generateQuoteData(w, 1000, w.getMaxTimestamp(), 60 * 1000L);
+        w.commit();
+        r.refresh();
+        Assert.assertEquals(count(r, "BP.L"), r.query().all().withKeys("BP.L").asResultSet().size());
+    }
+
+    @Test
+    public void testRepeatedRebuild() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        TestUtils.generateQuoteData(w, 30000, Dates.parseDateTime("2013-01-01T00:00:00.000Z"), 5 * 60 * 1000L);
+        w.commit();
+
+        Journal<Quote> r = factory.reader(Quote.class);
+        String expected = toString(r.query().all().withKeys("BP.L").asResultSet());
+
+        w.rebuildIndexes();
+        w.commit();
+        File k = new File(w.getPartition(0, false).getPartitionDir(), "sym.k");
+        File rows = new File(w.getPartition(0, false).getPartitionDir(), "sym.r");
+        long kLen = k.length();
+        long rLen = rows.length();
+
+        for (int i = 0; i < 3; i++) {
+            w.rebuildIndexes();
+            w.commit();
+        }
+        // replaced index files do not accumulate previous versions
+        Assert.assertEquals(kLen, k.length());
+        Assert.assertEquals(rLen, rows.length());
+        Assert.assertFalse(new File(w.getPartition(0, false).getPartitionDir(), "sym.tmp.k").exists());
+
+        Assert.assertEquals(expected, toString(r.query().all().withKeys("BP.L").asResultSet()));
+        r.refresh();
+        Assert.assertEquals(expected, toString(r.query().all().withKeys("BP.L").asResultSet()));
+        Assert.assertEquals(expected, toString(w.query().all().withKeys("BP.L").asResultSet()));
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        TestUtils.generateQuoteData(w, 30000, Dates.parseDateTime("2013-01-01T00:00:00.000Z"), 5 * 60 * 1000L);
+        w.commit();
+
+        String expected = toString(factory.reader(Quote.class).query().all().withKeys("BP.L").asResultSet());
+        String before[] = indexVersions(w);
+
+        // build that has been interrupted after first partition
+        Files.writeStringToFile(new File(w.getLocation(), IndexBuilder.FILE_NAME), w.getPartition(0, false).getPartitionDir().getName() + '\n');
+        Assert.assertTrue(IndexBuilder.isPending(w.getLocation()));
+
+        try (IndexBuilder<Quote> builder = new IndexBuilder<>(w, 2)) {
+            builder.start();
+            builder.finish();
+        }
+        Assert.assertFalse(IndexBuilder.isPending(w.getLocation()));
+
+        String after[] = indexVersions(w);
+        Assert.assertEquals(before[0], after[0]);
+        for (int i = 1; i < before.length; i++) {
+            Assert.assertNotEquals(before[i], after[i]);
+        }
+        Assert.assertEquals(expected, toString(factory.reader(Quote.class).query().all().withKeys("BP.L").asResultSet()));
+    }
+
+    private static int count(Journal<Quote> journal, String sym) {
+        int count = 0;
+        for (Quote q : journal) {
+            if (sym.equals(q.getSym())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static <T> String toString(Iterable<T> iterable) {
+        StringBuilder b = new StringBuilder();
+        for (T t : iterable) {
+            b.append(t).append('\n');
+        }
+        return b.toString();
+    }
+
+    /**
+     * Index of partition is either replaced by new files or written to at new address.
+     */
+    private static String[] indexVersions(Journal<Quote> journal) throws Exception {
+        JournalMetadata<Quote> m = journal.getMetadata();
+        int sym = m.getColumnIndex("sym");
+        String result[] = new String[journal.getPartitionCount()];
+        for (int i = 0; i < result.length; i++) {
+            File base = new File(journal.getPartition(i, false).getPartitionDir(), "sym");
+            try (KVIndex index = new KVIndex(base, m.getColumnQuick(sym).distinctCountHint, m.getRecordHint(), m.getTxCountHint(), JournalMode.READ, 0)) {
+                result[i] = Files.getFileKey(new File(base.getParentFile(), "sym.k")) + ":" + index.getTxAddress();
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.misc.Dates;
+import com.nfsdb.model.Quote;
+import com.nfsdb.model.Trade;
+import com.nfsdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class JournalConcurrentWriterTest extends AbstractTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int ROWS = 2000;
+
+    @Test
+    public void testLag() throws Exception {
+        final JournalWriter<Quote> w = factory.writer(Quote.class);
+        final AtomicLong clock = new AtomicLong(Dates.parseDateTime("2013-10-05T10:00:00.000Z"));
+
+        try (final JournalConcurrentWriter<Quote> cw = new JournalConcurrentWriter<>(w, 64)) {
+            cw.start();
+            produce(new RowPopulator() {
+                @Override
+                public void populate(long cursor, int producer) {
+                    cw.get(cursor).setSym("S" + producer).setBid(producer).setTimestamp(clock.incrementAndGet());
+                    cw.publish(cursor);
+                }
+            }, cw);
+
+            Assert.assertEquals(PRODUCERS * ROWS, cw.getRowCount());
+            Assert.assertEquals(0, cw.getRejectedCount());
+            Assert.assertTrue(cw.getBatchCount() > 0);
+            Assert.assertTrue(cw.getMaxBatchSize() <= 64);
+        }
+
+        Assert.assertEquals(PRODUCERS * ROWS, w.size());
+        assertOrdered(w);
+    }
+
+    @Test
+    public void testLagRejectsRowsOlderThanHardTimestamp() throws Exception {
+        final JournalWriter<Quote> w = factory.writer(Quote.class);
+        w.append(new Quote().setSym("A").setTimestamp(Dates.parseDateTime("2013-09-05T10:00:00.000Z")));
+        w.append(new Quote().setSym("A").setTimestamp(Dates.parseDateTime("2013-10-05T10:00:00.000Z")));
+        w.commit();
+
+        try (JournalConcurrentWriter<Quote> cw = new JournalConcurrentWriter<>(w, 64)) {
+            long cursor = cw.next();
+            cw.get(cursor).setSym("B").setTimestamp(Dates.parseDateTime("2013-01-05T10:00:00.000Z"));
+            cw.publish(cursor);
+            cursor = cw.next();
+            cw.get(cursor).setSym("C").setTimestamp(Dates.parseDateTime("2013-10-05T11:00:00.000Z"));
+            cw.publish(cursor);
+
+            cw.start();
+            cw.halt();
+
+            Assert.assertEquals(1, cw.getRowCount());
+            Assert.assertEquals(1, cw.getRejectedCount());
+        }
+
+        Assert.assertEquals(3, w.size());
+        assertOrdered(w);
+    }
+
+    @Test
+    public void testNoLag() throws Exception {
+        final JournalWriter<Trade> w = factory.writer(Trade.class);
+        final AtomicLong clock = new AtomicLong(Dates.parseDateTime("2013-10-05T10:00:00.000Z"));
+
+        try (final JournalConcurrentWriter<Trade> cw = new JournalConcurrentWriter<>(w, 64)) {
+            cw.start();
+            produce(new RowPopulator() {
+                @Override
+                public void populate(long cursor, int producer) {
+                    Trade t = cw.get(cursor);
+                    t.setSym("S" + producer);
+                    t.setTimestamp(clock.incrementAndGet());
+                    cw.publish(cursor);
+                }
+            }, cw);
+
+            // rows, which are published after newer rows have been appended, are rejected
+            Assert.assertEquals(PRODUCERS * ROWS, cw.getRowCount() + cw.getRejectedCount());
+            Assert.assertEquals(cw.getRowCount(), w.size());
+        }
+        assertOrdered(w);
+    }
+
+    private static <T> void assertOrdered(JournalWriter<T> w) throws Exception {
+        long prev = Long.MIN_VALUE;
+        for (T obj : w) {
+            long ts = w.getTimestamp(obj);
+            Assert.assertTrue(ts >= prev);
+            prev = ts;
+        }
+    }
+
+    private static void produce(final RowPopulator populator, final JournalConcurrentWriter<?> cw) throws Exception {
+        final CyclicBarrier start = new CyclicBarrier(PRODUCERS);
+        final CountDownLatch done = new CountDownLatch(PRODUCERS);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < ROWS; i++) {
+                            populator.populate(cw.next(), producer);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        cw.halt();
+        Assert.assertNull(failure.get());
+    }
+
+    private interface RowPopulator {
+        void populate(long cursor, int producer);
+    }
+}
@@ -23,11 +23,13 @@ package com.nfsdb;
 
 
 import com.nfsdb.ex.JournalException;
+import com.nfsdb.factory.JournalCachingFactory;
 import com.nfsdb.factory.JournalFactoryPool;
 import com.nfsdb.factory.JournalReaderFactory;
 import com.nfsdb.factory.configuration.JournalConfiguration;
 import com.nfsdb.misc.Files;
 import com.nfsdb.model.Quote;
+import com.nfsdb.store.MappedWindows;
 import com.nfsdb.test.tools.AbstractTest;
 import com.nfsdb.test.tools.TestUtils;
 import org.junit.Assert;
@@ -63,6 +65,34 @@ public class JournalFactoryPoolTest extends AbstractTest {
         }
     }
 
+    @Test
+    public void testReadersShareMappings() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        TestUtils.generateQuoteData(w, 1000);
+        w.commit();
+
+        final int windows = MappedWindows.count();
+        try (JournalFactoryPool pool = new JournalFactoryPool(factory.getConfiguration(), 2)) {
+            JournalCachingFactory factory1 = pool.get();
+            JournalCachingFactory factory2 = pool.get();
+
+            Journal<Quote> r1 = factory1.reader(Quote.class);
+            String expected = toString(r1);
+            int mapped = MappedWindows.count() - windows;
+            Assert.assertTrue(mapped > 0);
+
+            Journal<Quote> r2 = factory2.reader(Quote.class);
+            Assert.assertEquals(expected, toString(r2));
+            // second reader maps nothing of its own
+            Assert.assertEquals(mapped, MappedWindows.count() - windows);
+            Assert.assertSame(r1.getSymbolTable("sym").value(0), r2.getSymbolTable("sym").value(0));
+
+            factory1.close();
+            factory2.close();
+        }
+        Assert.assertEquals(windows, MappedWindows.count());
+    }
+
     @Test
     public void testFactoriesReused() throws Exception {
         JournalConfiguration configuration = factory.getConfiguration();
@@ -199,4 +229,12 @@ public class JournalFactoryPoolTest extends AbstractTest {
             Files.delete(configuration.getJournalBase());
         }
     }
+
+    private static String toString(Journal<Quote> journal) {
+        StringBuilder b = new StringBuilder();
+        for (Quote q : journal) {
+            b.append(q).append('\n');
+        }
+        return b.toString();
+    }
 }
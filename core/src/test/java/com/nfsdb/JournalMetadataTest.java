@@ -23,6 +23,7 @@ package com.nfsdb;
 
 import com.nfsdb.factory.configuration.JournalMetadata;
 import com.nfsdb.factory.configuration.JournalMetadataBuilder;
+import com.nfsdb.factory.configuration.JournalStructure;
 import com.nfsdb.model.Quote;
 import com.nfsdb.store.UnstructuredFile;
 import org.junit.Assert;
@@ -35,6 +36,47 @@ public class JournalMetadataTest {
     @Rule
     public final TemporaryFolder temp = new TemporaryFolder();
 
+    @Test
+    public void testCompactFlagWrite() throws Exception {
+        JournalMetadata<Object> m = new JournalStructure("x").$str("s").compact().$sym("y").compact().$int("z").$().build();
+
+        UnstructuredFile hb = new UnstructuredFile(temp.newFile(), 10, JournalMode.APPEND);
+        m.write(hb);
+        JournalMetadata metadata = new JournalMetadata(hb);
+        hb.close();
+        Assert.assertTrue(m.isCompatible(metadata, false));
+        Assert.assertTrue(metadata.getColumnQuick(0).compact);
+        Assert.assertTrue(metadata.getColumnQuick(1).compact);
+        Assert.assertFalse(metadata.getColumnQuick(2).compact);
+    }
+
+    @Test
+    public void testAccessHintsWrite() throws Exception {
+        JournalMetadata<Object> m = new JournalStructure("x").$str("s").$int("z").$().randomAccess("s").hugePages("z").build();
+
+        UnstructuredFile hb = new UnstructuredFile(temp.newFile(), 10, JournalMode.APPEND);
+        m.write(hb);
+        JournalMetadata metadata = new JournalMetadata(hb);
+        hb.close();
+        Assert.assertTrue(m.isCompatible(metadata, false));
+        Assert.assertTrue(metadata.getColumnQuick(0).randomAccess);
+        Assert.assertFalse(metadata.getColumnQuick(0).hugePages);
+        Assert.assertFalse(metadata.getColumnQuick(1).randomAccess);
+        Assert.assertTrue(metadata.getColumnQuick(1).hugePages);
+    }
+
+    @Test
+    public void testOutOfOrderWrite() throws Exception {
+        JournalMetadata<Object> m = new JournalStructure("x").$int("z").$ts("ts").outOfOrder().build();
+
+        UnstructuredFile hb = new UnstructuredFile(temp.newFile(), 10, JournalMode.APPEND);
+        m.write(hb);
+        JournalMetadata metadata = new JournalMetadata(hb);
+        hb.close();
+        Assert.assertTrue(m.isCompatible(metadata, false));
+        Assert.assertTrue(metadata.isOutOfOrder());
+    }
+
     @Test
     public void testMetadataWrite() throws Exception {
         JournalMetadataBuilder<Quote> b = new JournalMetadataBuilder<>(Quote.class);
@@ -150,4 +150,58 @@ public class MultiMapTest extends AbstractTest {
         Assert.assertEquals(expected, sink.toString());
 
     }
+
+    @Test
+    public void testGrowFromSinglePage() throws Exception {
+        final String largeKey = new String(new char[2048]).replace('\0', 'z');
+        CollectionRecordMetadata keyMeta = new CollectionRecordMetadata()
+                .add(new ColumnMetadata() {{
+                    name = "key";
+                    type = ColumnType.STRING;
+                }});
+
+        // single key capacity and page smaller than some keys force map to grow
+        MultiMap map = new MultiMap(
+                1,
+                1024,
+                0.5f,
+                keyMeta,
+                keyMeta.getColumnNames(),
+                new ObjList<RecordColumnMetadata>() {{
+                    add(new ColumnMetadata() {{
+                        name = "value";
+                        type = ColumnType.LONG;
+                    }});
+                }},
+                null);
+
+        StringSink key = new StringSink();
+        try {
+            for (int pass = 0; pass < 2; pass++) {
+                int n = 100000 >> pass;
+                for (int i = 0; i < n; i++) {
+                    key.clear();
+                    key.put("key-").put(i);
+                    MapValues val = map.getOrCreateValues(map.keyWriter().putStr(key));
+                    Assert.assertTrue(val.isNew());
+                    val.putLong(0, i);
+                }
+                map.getOrCreateValues(map.keyWriter().putStr(largeKey)).putLong(0, -1);
+                Assert.assertEquals(n + 1, map.size());
+
+                for (int i = 0; i < n; i++) {
+                    key.clear();
+                    key.put("key-").put(i);
+                    MapValues val = map.getValues(map.keyWriter().putStr(key));
+                    Assert.assertNotNull(val);
+                    Assert.assertEquals(i, val.getLong(0));
+                }
+                Assert.assertEquals(-1, map.getValues(map.keyWriter().putStr(largeKey)).getLong(0));
+                Assert.assertNull(map.getValues(map.keyWriter().putStr("missing")));
+                map.clear();
+            }
+        } finally {
+            map.free();
+        }
+    }
 }
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.factory.configuration.JournalMetadataBuilder;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.misc.Rnd;
+import com.nfsdb.model.Quote;
+import com.nfsdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OutOfOrderTest extends AbstractTest {
+
+    private static final long STEP = 1000 * 60 * 10;
+
+    @Test
+    public void testAppend() throws Exception {
+        int n = 20000;
+        long t0 = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+
+        JournalWriter<Quote> w = writer();
+        for (int i = 0; i < n; i += 2) {
+            w.append(quote(t0 + i * STEP, i));
+        }
+        w.commit();
+
+        // reader gets its own copy of metadata, symbol tables are attached to column metadata
+        @SuppressWarnings("unchecked")
+        Journal<Quote> r = factory.reader(new JournalMetadataBuilder<>(w.getMetadata()).build());
+        Assert.assertEquals(n / 2, r.size());
+
+        // odd rows arrive late, in random order
+        List<Integer> late = new ArrayList<>();
+        for (int i = 1; i < n; i += 2) {
+            late.add(i);
+        }
+        Rnd rnd = new Rnd();
+        for (int i = late.size() - 1; i > 0; i--) {
+            int k = rnd.nextPositiveInt() % (i + 1);
+            late.set(k, late.set(i, late.get(k)));
+        }
+        for (int i = 0, k = late.size(); i < k; i++) {
+            int v = late.get(i);
+            w.append(quote(t0 + v * STEP, v));
+        }
+        // last row is not late
+        Assert.assertEquals(n / 2 + 1, w.size());
+        w.commit();
+
+        Assert.assertEquals(n, w.size());
+        assertRows(w, t0, n);
+
+        Assert.assertTrue(r.refresh());
+        Assert.assertEquals(n, r.size());
+        assertRows(r, t0, n);
+        Assert.assertEquals(n / 2, r.query().all().withKeys("S0").asResultSet().size());
+    }
+
+    @Test
+    public void testEqualTimestamps() throws Exception {
+        long t = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+        JournalWriter<Quote> w = writer();
+        w.append(quote(t, 0));
+        w.append(quote(t + STEP, 1));
+        w.commit();
+
+        w.append(quote(t, 2));
+        w.commit();
+
+        Assert.assertEquals(3, w.size());
+        Assert.assertEquals(0, w.read(0).getAskSize());
+        Assert.assertEquals(2, w.read(1).getAskSize());
+        Assert.assertEquals(1, w.read(2).getAskSize());
+    }
+
+    @Test
+    public void testNoPartition() throws Exception {
+        JournalWriter<Quote> w = writer();
+        w.append(quote(Dates.parseDateTime("2013-10-05T10:00:00.000Z"), 0));
+        w.append(quote(Dates.parseDateTime("2013-12-05T10:00:00.000Z"), 1));
+        w.commit();
+
+        assertRejected(w, Dates.parseDateTime("2013-11-05T10:00:00.000Z"));
+        assertRejected(w, Dates.parseDateTime("2013-09-05T10:00:00.000Z"));
+
+        w.append(quote(Dates.parseDateTime("2013-10-01T10:00:00.000Z"), 2));
+        w.commit();
+        Assert.assertEquals(3, w.size());
+        Assert.assertEquals(2, w.read(0).getAskSize());
+    }
+
+    @Test
+    public void testReaderRescansRewritesOnly() throws Exception {
+        long t = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+        JournalWriter<Quote> w = writer();
+        w.append(quote(t, 0));
+        w.append(quote(t + 2 * STEP, 2));
+        w.commit();
+
+        @SuppressWarnings("unchecked")
+        Journal<Quote> r = factory.reader(new JournalMetadataBuilder<>(w.getMetadata()).build());
+        long txn = r.tx.txn;
+        long txPin = r.tx.txPin;
+
+        w.append(quote(t + 3 * STEP, 3));
+        w.commit();
+        Assert.assertTrue(r.refresh());
+        Assert.assertFalse(r.txLog.hasRewritesAfter(txn, txPin));
+
+        txn = r.tx.txn;
+        txPin = r.tx.txPin;
+        w.append(quote(t + STEP, 1));
+        w.commit();
+        w.append(quote(t + 4 * STEP, 4));
+        w.commit();
+        Assert.assertTrue(r.refresh());
+        Assert.assertTrue(r.txLog.hasRewritesAfter(txn, txPin));
+        assertRows(r, t, 5);
+        Assert.assertEquals(2, r.query().all().withKeys("S1").asResultSet().size());
+    }
+
+    @Test
+    public void testRewriteIsPublishedByCommit() throws Exception {
+        long t = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+        JournalWriter<Quote> w = writer();
+        w.append(quote(t, 0));
+        w.append(quote(t + 2 * STEP, 2));
+        w.commit();
+
+        @SuppressWarnings("unchecked")
+        Journal<Quote> r = factory.reader(new JournalMetadataBuilder<>(w.getMetadata()).build());
+        File dir = w.getPartition(0, false).getPartitionDir();
+
+        w.append(quote(t + STEP, 1));
+        w.commit();
+
+        // committed partition is not modified, its rewritten copy replaces it
+        Assert.assertFalse(dir.exists());
+        Assert.assertEquals(w.getTxn(), w.getPartition(0, false).getVersion());
+        Assert.assertTrue(r.refresh());
+        assertRows(r, t, 3);
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        long t = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+        JournalWriter<Quote> w = writer();
+        w.append(quote(t, 0));
+        w.append(quote(t + 2 * STEP, 2));
+        w.commit();
+
+        w.append(quote(t + 3 * STEP, 3));
+        w.append(quote(t + STEP, 1));
+        w.rollback();
+        w.commit();
+        Assert.assertEquals(2, w.size());
+
+        w.append(quote(t + STEP, 1));
+        w.commit();
+        Assert.assertEquals(3, w.size());
+        assertRows(w, t, 3);
+    }
+
+    @Test
+    public void testUncommittedRewriteIsDiscarded() throws Exception {
+        long t = Dates.parseDateTime("2013-10-05T10:00:00.000Z");
+        JournalWriter<Quote> w = writer();
+        w.append(quote(t, 0));
+        w.append(quote(t + 2 * STEP, 1));
+        w.commit();
+
+        Partition<Quote> p = w.rewritePartition(0);
+        p.append(quote(t + STEP, 2));
+        File dir = p.getPartitionDir();
+
+        @SuppressWarnings("unchecked")
+        Journal<Quote> r = factory.reader(new JournalMetadataBuilder<>(w.getMetadata()).build());
+        Assert.assertEquals(2, r.size());
+        Assert.assertEquals(1, r.read(1).getAskSize());
+
+        // writer goes away before commit
+        w.setCommitOnClose(false);
+        w.close();
+        Assert.assertTrue(dir.exists());
+
+        w = writer();
+        Assert.assertFalse(dir.exists());
+        Assert.assertEquals(2, w.size());
+        Assert.assertEquals(1, w.read(1).getAskSize());
+    }
+
+    private static void assertRejected(JournalWriter<Quote> w, long timestamp) {
+        try {
+            w.append(quote(timestamp, -1));
+            Assert.fail();
+        } catch (JournalException e) {
+            Assert.assertTrue(e.getMessage().contains("no partition"));
+        }
+    }
+
+    private static void assertRows(Journal<Quote> journal, long t0, int n) {
+        int i = 0;
+        for (Quote q : journal) {
+            Assert.assertEquals(t0 + i * STEP, q.getTimestamp());
+            Assert.assertEquals(i, q.getAskSize());
+            Assert.assertEquals("S" + (i % 2), q.getSym());
+            i++;
+        }
+        Assert.assertEquals(n, i);
+    }
+
+    private static Quote quote(long timestamp, int i) {
+        return new Quote().setTimestamp(timestamp).setSym("S" + (i % 2)).setAskSize(i).setMode(i % 3 == 0 ? null : "M" + i);
+    }
+
+    private JournalWriter<Quote> writer() throws JournalException {
+        return factory.writer(new JournalMetadataBuilder<>(Quote.class)
+                .location("quote-ooo")
+                .partitionBy(PartitionType.MONTH)
+                .$sym("sym").index().valueCountHint(4)
+                .$ts()
+                .keyColumn("sym")
+                .outOfOrder());
+    }
+}
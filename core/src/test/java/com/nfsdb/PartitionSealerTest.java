@@ -0,0 +1,81 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb;
+
+import com.nfsdb.ex.JournalException;
+import com.nfsdb.ex.NumericException;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.model.Quote;
+import com.nfsdb.store.CompressedFile;
+import com.nfsdb.test.tools.AbstractTest;
+import com.nfsdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class PartitionSealerTest extends AbstractTest {
+
+    @Test
+    public void testSeal() throws JournalException, NumericException {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        TestUtils.generateQuoteData(w, 30000, Dates.parseDateTime("2013-01-01T00:00:00.000Z"), 5 * 60 * 1000L);
+        w.commit();
+        Assert.assertEquals(4, w.getPartitionCount());
+
+        String expected = toString(factory.reader(Quote.class));
+        String expectedKeyed = toString(factory.reader(Quote.class).query().all().withKeys("BP.L").asResultSet());
+
+        Journal<Quote> r = factory.reader(Quote.class);
+        PartitionSealer sealer = new PartitionSealer(r);
+        Assert.assertEquals(3, sealer.sealAll());
+        Assert.assertFalse(sealer.run());
+
+        for (int i = 0; i < 3; i++) {
+            Partition<Quote> p = r.getPartition(i, false);
+            Assert.assertTrue(PartitionSealer.isSealed(p));
+            Assert.assertFalse(new File(p.getPartitionDir(), "mode.d").exists());
+            Assert.assertTrue(new File(p.getPartitionDir(), "mode.d" + CompressedFile.FILE_SUFFIX).exists());
+            // symbol indexes are not compressed
+            Assert.assertTrue(new File(p.getPartitionDir(), "sym.k").exists());
+        }
+        Assert.assertFalse(PartitionSealer.isSealed(r.getPartition(3, false)));
+
+        Assert.assertEquals(expected, toString(r));
+        Assert.assertEquals(expected, toString(factory.reader(Quote.class)));
+        Assert.assertEquals(expectedKeyed, toString(factory.reader(Quote.class).query().all().withKeys("BP.L").asResultSet()));
+
+        // active partition keeps taking data and is sealed once it is no longer the last one
+        TestUtils.generateQuoteData(w, 1000, Dates.parseDateTime("2013-06-01T00:00:00.000Z"), 60 * 1000L);
+        w.commit();
+        Assert.assertEquals(1, sealer.sealAll());
+        Assert.assertEquals(31000, factory.reader(Quote.class).size());
+    }
+
+    private static <T> String toString(Iterable<T> iterable) {
+        StringBuilder b = new StringBuilder();
+        for (T t : iterable) {
+            b.append(t).append('\n');
+        }
+        return b.toString();
+    }
+}
@@ -54,6 +54,21 @@ public class SymbolTableTest extends AbstractTest {
         }
     }
 
+    @Test
+    public void testCompactKeyValueMatch() throws Exception {
+        String data[] = createData();
+        tab = new SymbolTable(DATA_SIZE, 256, 1, factory.getConfiguration().getJournalBase(), "test", JournalMode.APPEND, 0, 0, false, true);
+        createTestTable(data);
+
+        // reader does not need to know values are compact
+        try (SymbolTable tab = getReader()) {
+            for (int i = 0; i < tab.size(); i++) {
+                Assert.assertEquals(data[i], tab.value(i));
+                Assert.assertEquals(i, tab.get(data[i]));
+            }
+        }
+    }
+
     @Test
     public void testKeyValueMatch() throws Exception {
 
@@ -62,6 +62,11 @@ public abstract class AbstractJournalTest extends AbstractTest {
         channel = new MockByteChannel();
     }
 
+    void setProtocolVersion(int version) {
+        journalDeltaProducer.setVersion(version);
+        journalDeltaConsumer.setVersion(version);
+    }
+
     void executeSequence(boolean expectContent) throws JournalNetworkException, JournalException {
         slave.refresh();
         journalClientStateProducer.write(channel, new IndexedJournal(0, slave));
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha;
+
+import com.nfsdb.misc.Rnd;
+import com.nfsdb.misc.Unsafe;
+import com.nfsdb.net.ha.protocol.ColumnCodec;
+import com.nfsdb.store.ColumnType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColumnCodecTest {
+
+    private static final int COUNT = 1000;
+
+    @Test
+    public void testDate() throws Exception {
+        long src = Unsafe.getUnsafe().allocateMemory(COUNT * 8);
+        try {
+            Rnd rnd = new Rnd();
+            long t = 1460000000000L;
+            for (int i = 0; i < COUNT; i++) {
+                Unsafe.getUnsafe().putLong(src + i * 8, t += rnd.nextPositiveInt() % 1000);
+            }
+            Unsafe.getUnsafe().putLong(src, Long.MIN_VALUE);
+            Unsafe.getUnsafe().putLong(src + 8, Long.MAX_VALUE);
+            // steady pace packs into single byte per value
+            Assert.assertTrue(assertCodec(ColumnType.DATE, src) < COUNT * 3);
+        } finally {
+            Unsafe.getUnsafe().freeMemory(src);
+        }
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        long src = Unsafe.getUnsafe().allocateMemory(COUNT * 8);
+        try {
+            Rnd rnd = new Rnd();
+            double price = 1.2345;
+            for (int i = 0; i < COUNT; i++) {
+                Unsafe.getUnsafe().putDouble(src + i * 8, price += (rnd.nextPositiveInt() % 3 - 1) * 0.25);
+            }
+            Unsafe.getUnsafe().putDouble(src + 16, Double.NaN);
+            Unsafe.getUnsafe().putDouble(src + 24, -0.0);
+            Assert.assertTrue(assertCodec(ColumnType.DOUBLE, src) < COUNT * 8);
+        } finally {
+            Unsafe.getUnsafe().freeMemory(src);
+        }
+    }
+
+    @Test
+    public void testInt() throws Exception {
+        long src = Unsafe.getUnsafe().allocateMemory(COUNT * 4);
+        try {
+            Rnd rnd = new Rnd();
+            for (int i = 0; i < COUNT; i++) {
+                Unsafe.getUnsafe().putInt(src + i * 4, rnd.nextPositiveInt() % 20);
+            }
+            Unsafe.getUnsafe().putInt(src, Integer.MIN_VALUE);
+            Unsafe.getUnsafe().putInt(src + 4, Integer.MAX_VALUE);
+            Assert.assertTrue(assertCodec(ColumnType.SYMBOL, src) < COUNT * 2);
+            Assert.assertTrue(assertCodec(ColumnType.INT, src) < COUNT * 2);
+        } finally {
+            Unsafe.getUnsafe().freeMemory(src);
+        }
+    }
+
+    @Test
+    public void testUnpackedTypes() throws Exception {
+        Assert.assertNull(ColumnCodec.forType(ColumnType.STRING));
+        Assert.assertNull(ColumnCodec.forType(ColumnType.BYTE));
+    }
+
+    private static int assertCodec(ColumnType type, long src) {
+        ColumnCodec encoder = ColumnCodec.forType(type);
+        ColumnCodec decoder = ColumnCodec.forType(type);
+        Assert.assertNotNull(encoder);
+        Assert.assertNotNull(decoder);
+
+        int width = encoder.width();
+        long buf = Unsafe.getUnsafe().allocateMemory(COUNT * encoder.maxEncodedSize());
+        long dst = Unsafe.getUnsafe().allocateMemory(COUNT * width);
+        try {
+            // encode in two steps to check that state carries over
+            long p = encoder.encode(src, COUNT / 2, buf);
+            p = encoder.encode(src + COUNT / 2 * width, COUNT - COUNT / 2, p);
+
+            long q = decoder.decode(buf, COUNT / 3, dst);
+            q = decoder.decode(q, COUNT - COUNT / 3, dst + COUNT / 3 * width);
+            Assert.assertEquals(p, q);
+
+            for (int i = 0, n = COUNT * width; i < n; i++) {
+                Assert.assertEquals(Unsafe.getUnsafe().getByte(src + i), Unsafe.getUnsafe().getByte(dst + i));
+            }
+            return (int) (p - buf);
+        } finally {
+            Unsafe.getUnsafe().freeMemory(buf);
+            Unsafe.getUnsafe().freeMemory(dst);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nfsdb.net.ha;
+
+import com.nfsdb.JournalWriter;
+import com.nfsdb.ex.JournalNetworkException;
+import com.nfsdb.model.Quote;
+import com.nfsdb.net.ha.bridge.JournalEventBridge;
+import com.nfsdb.net.ha.comsumer.JournalDeltaConsumer;
+import com.nfsdb.net.ha.config.ClientConfig;
+import com.nfsdb.net.ha.config.ServerConfig;
+import com.nfsdb.net.ha.config.ServerNode;
+import com.nfsdb.net.ha.mcast.JournalDeltaMulticaster;
+import com.nfsdb.net.ha.mcast.JournalDeltaReceiver;
+import com.nfsdb.store.TxListener;
+import com.nfsdb.test.tools.AbstractTest;
+import com.nfsdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DeltaMulticastTest extends AbstractTest {
+
+    private static final String GROUP = "230.100.12.5";
+    private static final int LOST_DELTA_PORT = 4449;
+
+    @Test
+    public void testDeltasAreMulticast() throws Exception {
+        JournalWriter<Quote> origin = factory.writer(Quote.class, "origin");
+        TestUtils.generateQuoteData(origin, 3000);
+
+        JournalWriter<Quote> remote = factory.writer(Quote.class, "remote");
+        JournalEventBridge bridge = new JournalEventBridge(100, TimeUnit.MILLISECONDS);
+        remote.setTxListener(new JournalEventPublisher(0, bridge));
+
+        JournalDeltaMulticaster multicaster = new JournalDeltaMulticaster(new ServerConfig() {{
+            setIfName("lo");
+            setMultiCastAddress(InetAddress.getByName(GROUP));
+        }}, bridge, 0);
+        multicaster.add(0, factory.reader(Quote.class, "remote"));
+
+        final JournalWriter<Quote> local = factory.writer(Quote.class, "local");
+        final JournalDeltaConsumer consumer = new JournalDeltaConsumer(local);
+        consumer.setPacked(true);
+        final AtomicInteger deltas = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+
+        JournalDeltaReceiver receiver = new JournalDeltaReceiver(new ClientConfig() {{
+            setIfName("lo");
+            setMultiCastAddress(InetAddress.getByName(GROUP));
+        }}, new JournalDeltaReceiver.Listener() {
+            @Override
+            public void onDelta(int index, long prevTxn, long txn, ReadableByteChannel channel) throws JournalNetworkException {
+                if (index != 0 || prevTxn != local.getTxn()) {
+                    errors.incrementAndGet();
+                }
+                consumer.read(channel);
+                if (txn != local.getTxn()) {
+                    errors.incrementAndGet();
+                }
+                deltas.incrementAndGet();
+            }
+
+            @Override
+            public void onLoss(int index) {
+                errors.incrementAndGet();
+            }
+        });
+        receiver.subscribe(0, "remote");
+
+        receiver.start();
+        multicaster.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                remote.append(origin.query().all().asResultSet().subset(i * 1000, (i + 1) * 1000));
+                remote.commit();
+                TestUtils.assertCounter(deltas, i + 1, 5, TimeUnit.SECONDS);
+            }
+        } finally {
+            multicaster.halt();
+            receiver.halt();
+        }
+
+        Assert.assertEquals(0, errors.get());
+        TestUtils.assertDataEquals(remote, local);
+    }
+
+    @Test
+    public void testHaltReleasesEventBridge() throws Exception {
+        final JournalEventBridge bridge = new JournalEventBridge(100, TimeUnit.MILLISECONDS);
+        JournalDeltaMulticaster multicaster = new JournalDeltaMulticaster(new ServerConfig() {{
+            setIfName("lo");
+            setMultiCastAddress(InetAddress.getByName(GROUP));
+        }}, bridge, 0);
+        multicaster.add(0, factory.reader(Quote.class, "remote"));
+        multicaster.start();
+        multicaster.halt();
+
+        // events are no longer consumed, publisher must not wait for multicaster when queue wraps
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 4096; i++) {
+                    bridge.publish(0, i);
+                }
+                done.countDown();
+            }
+        }.start();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReplicaCatchesUpOnLostDeltas() throws Exception {
+        JournalWriter<Quote> origin = factory.writer(Quote.class, "origin");
+        TestUtils.generateQuoteData(origin, 3000);
+
+        JournalWriter<Quote> remote = factory.writer(Quote.class, "remote");
+        JournalServer server = new JournalServer(new ServerConfig() {{
+            addNode(new ServerNode(0, "localhost"));
+            setHeartbeatFrequency(100);
+            setEnableMultiCast(false);
+            setEnableDeltaMultiCast(true);
+            setIfName("lo");
+            setMultiCastAddress(InetAddress.getByName(GROUP));
+        }}, factory);
+        server.publish(remote);
+        server.start();
+
+        final AtomicInteger counter = new AtomicInteger();
+        // listens on another port, so every multicast delta is lost
+        JournalClient client = new JournalClient(new ClientConfig("localhost") {{
+            setEnableMultiCast(false);
+            setEnableDeltaMultiCast(true);
+            setDeltaMultiCastPort(LOST_DELTA_PORT);
+            setIfName("lo");
+            setMultiCastAddress(InetAddress.getByName(GROUP));
+        }}, factory);
+        client.subscribe(Quote.class, "remote", "local", new TxListener() {
+            @Override
+            public void onCommit() {
+                counter.incrementAndGet();
+            }
+
+            @Override
+            public void onError() {
+
+            }
+        });
+        client.start();
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                remote.append(origin.query().all().asResultSet().subset(i * 1000, (i + 1) * 1000));
+                remote.commit();
+                TestUtils.assertCounter(counter, i + 1, 5, TimeUnit.SECONDS);
+            }
+        } finally {
+            client.halt();
+            server.halt();
+        }
+
+        TestUtils.assertDataEquals(remote, factory.reader(Quote.class, "local"));
+    }
+
+    @Test
+    public void testReplicasFollowMulticast() throws Exception {
+        int size = 10000;
+        int clientCount = 3;
+        JournalWriter<Quote> origin = factory.writer(Quote.class, "origin");
+        TestUtils.generateQuoteData(origin, size);
+
+        JournalWriter<Quote> remote = factory.writer(Quote.class, "remote");
+        JournalServer server = new JournalServer(new ServerConfig() {{
+            addNode(new ServerNode(0, "localhost"));
+            setHeartbeatFrequency(100);
+            setEnableMultiCast(false);
+            setEnableDeltaMultiCast(true);
+            setIfName("lo");
+            setMultiCastAddress(InetAddress.getByName(GROUP));
+        }}, factory);
+        server.publish(remote);
+        server.start();
+
+        final AtomicInteger counter = new AtomicInteger();
+        JournalClient[] clients = new JournalClient[clientCount];
+        for (int i = 0; i < clientCount; i++) {
+            clients[i] = new JournalClient(new ClientConfig("localhost") {{
+                setEnableMultiCast(false);
+                setEnableDeltaMultiCast(true);
+                setIfName("lo");
+                setMultiCastAddress(InetAddress.getByName(GROUP));
+            }}, factory);
+            clients[i].subscribe(Quote.class, "remote", "local" + i, new TxListener() {
+                @Override
+                public void onCommit() {
+                    counter.incrementAndGet();
+                }
+
+                @Override
+                public void onError() {
+
+                }
+            });
+            clients[i].start();
+        }
+
+        try {
+            int batch = size / 5;
+            for (int i = 0; i < 5; i++) {
+                remote.append(origin.query().all().asResultSet().subset(i * batch, (i + 1) * batch));
+                remote.commit();
+                TestUtils.assertCounter(counter, (i + 1) * clientCount, 5, TimeUnit.SECONDS);
+            }
+        } finally {
+            for (int i = 0; i < clientCount; i++) {
+                clients[i].halt();
+            }
+            server.halt();
+        }
+
+        for (int i = 0; i < clientCount; i++) {
+            TestUtils.assertDataEquals(remote, factory.reader(Quote.class, "local" + i));
+        }
+    }
+}
@@ -23,6 +23,11 @@ package com.nfsdb.net.ha;
 
 import com.nfsdb.JournalMode;
 import com.nfsdb.ex.JournalException;
+import com.nfsdb.misc.ByteBuffers;
+import com.nfsdb.misc.Files;
+import com.nfsdb.misc.Net;
+import com.nfsdb.misc.Os;
+import com.nfsdb.net.NetworkChannelImpl;
 import com.nfsdb.net.ha.comsumer.FixedColumnDeltaConsumer;
 import com.nfsdb.net.ha.producer.FixedColumnDeltaProducer;
 import com.nfsdb.store.FixedColumn;
@@ -31,6 +36,13 @@ import org.junit.*;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class FixedColumnTest {
 
@@ -242,4 +254,165 @@ public class FixedColumnTest {
         Assert.assertFalse(producer.hasContent());
         Assert.assertEquals(col1.size(), col2.size());
     }
+
+    @Test
+    public void testSlowClient() throws Exception {
+        long listener = Net.socketTcp(true);
+        Assert.assertTrue(Net.bind(listener, "127.0.0.1", 7096));
+        Net.listen(listener, 1);
+
+        // client does not read, so socket stops accepting output once its buffers fill up
+        final SocketChannel client = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7096));
+        final long fd = Net.accept(listener);
+        Net.configureNonBlocking(fd);
+
+        NetworkChannelImpl channel = new NetworkChannelImpl(fd);
+        SpooledByteChannel buffer = new SpooledByteChannel(channel, false, 100);
+        ByteBuffer b = ByteBuffer.allocateDirect(1024 * 1024);
+        try {
+            for (int i = 0; i < 64; i++) {
+                b.clear();
+                buffer.write(b);
+            }
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("spooled output"));
+        } finally {
+            ByteBuffers.release(b);
+            buffer.close();
+            client.close();
+            channel.close();
+            Files.close(listener);
+        }
+    }
+
+    @Test
+    public void testSendFile() throws Exception {
+        if (Os.type != Os.LINUX) {
+            // binaries for other platforms do not have sendfile yet
+            return;
+        }
+        Assert.assertTrue(Net.isSendFileSupported());
+
+        // small pages, send() without sendfile would not get past first of them
+        final int count = 10000;
+        final int len = count * 8;
+        FixedColumn col = new FixedColumn(new MemoryFile(new File(temporaryFolder.getRoot(), "col3.d"), 12, JournalMode.APPEND), 8);
+        for (int i = 0; i < count; i++) {
+            col.putLong(i);
+            col.commit();
+        }
+
+        long listener = Net.socketTcp(true);
+        Assert.assertTrue(Net.bind(listener, "127.0.0.1", 7097));
+        Net.listen(listener, 1);
+
+        final SocketChannel client = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7097));
+        final long fd = Net.accept(listener);
+        final ByteBuffer received = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (received.hasRemaining() && client.read(received) > -1) {
+                        Thread.yield();
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        }.start();
+
+        try {
+            long sent = col.transferTo(fd, 0, len);
+            Assert.assertTrue(sent > 4096);
+            while (sent < len) {
+                sent += col.transferTo(fd, sent, len - sent);
+            }
+            done.await();
+        } finally {
+            client.close();
+            Files.close(fd);
+            Files.close(listener);
+            col.close();
+        }
+
+        Assert.assertNull(error.get());
+        Assert.assertFalse(received.hasRemaining());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(i, received.getLong(i * 8));
+        }
+    }
+
+    @Test
+    public void testZeroCopy() throws Exception {
+        final FixedColumn col1 = new FixedColumn(file, 4);
+        final FixedColumn col2 = new FixedColumn(file2, 4);
+
+        FixedColumnDeltaProducer producer = new FixedColumnDeltaProducer(col1);
+
+        int max = 1500000;
+
+        for (int i = 0; i < max; i++) {
+            col1.putInt(max - i);
+            col1.commit();
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            col2.putInt(max - i);
+            col2.commit();
+        }
+
+        long listener = Net.socketTcp(true);
+        Assert.assertTrue(Net.bind(listener, "127.0.0.1", 7095));
+        Net.listen(listener, 1);
+
+        final SocketChannel client = SocketChannel.open(new InetSocketAddress("127.0.0.1", 7095));
+        final long fd = Net.accept(listener);
+        Net.configureNonBlocking(fd);
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    new FixedColumnDeltaConsumer(col2).read(client);
+                    col2.commit();
+                } catch (Throwable e) {
+                    error.set(e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        }.start();
+
+        NetworkChannelImpl channel = new NetworkChannelImpl(fd);
+        SpooledByteChannel buffer = new SpooledByteChannel(channel, true, 10000);
+        try {
+            producer.configure(col2.size(), col1.size());
+            producer.write(buffer);
+            while (!buffer.flush(channel)) {
+                Thread.yield();
+            }
+            Assert.assertFalse(buffer.hasOutput());
+            done.await();
+        } finally {
+            buffer.close();
+            // client closes first to keep server port out of TIME_WAIT
+            client.close();
+            channel.close();
+            Files.close(listener);
+        }
+
+        Assert.assertNull(error.get());
+        Assert.assertEquals(col1.size(), col2.size());
+        for (int i = 0; i < max; i++) {
+            Assert.assertEquals(max - i, col2.getInt(i));
+        }
+    }
 }
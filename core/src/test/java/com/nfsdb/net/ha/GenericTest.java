@@ -21,6 +21,7 @@
 
 package com.nfsdb.net.ha;
 
+import com.nfsdb.Journal;
 import com.nfsdb.JournalEntryWriter;
 import com.nfsdb.JournalKey;
 import com.nfsdb.JournalWriter;
@@ -36,6 +37,7 @@ import com.nfsdb.model.Quote;
 import com.nfsdb.net.ha.config.ClientConfig;
 import com.nfsdb.net.ha.config.ServerConfig;
 import com.nfsdb.net.ha.config.ServerNode;
+import com.nfsdb.net.ha.model.SubscriptionFilter;
 import com.nfsdb.store.TxListener;
 import com.nfsdb.test.tools.AbstractTest;
 import com.nfsdb.test.tools.JournalTestFactory;
@@ -45,6 +47,7 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 public class GenericTest extends AbstractTest {
@@ -198,6 +201,78 @@ public class GenericTest extends AbstractTest {
         server.halt();
     }
 
+    @Test
+    public void testFilteredSubscription() throws Exception {
+
+        JournalWriter w = factory.writer(new JournalStructure("xyz") {{
+            $sym("x").index();
+            $str("s");
+            $int("y");
+            $double("z");
+            $ts();
+            partitionBy(PartitionType.DAY);
+        }});
+
+        JournalServer server = new JournalServer(new ServerConfig() {{
+            addNode(new ServerNode(1, "localhost"));
+            setHeartbeatFrequency(100);
+            setEnableMultiCast(false);
+        }}, factory);
+        server.publish(w);
+        server.start();
+
+        final Semaphore commits = new Semaphore(0);
+
+        JournalClient client = new JournalClient(new ClientConfig("localhost") {{
+            setEnableMultiCast(false);
+        }}, factory);
+        client.subscribe(new JournalKey("xyz"), new JournalKey("abc"), new TxListener() {
+            @Override
+            public void onCommit() {
+                commits.release();
+            }
+
+            @Override
+            public void onError() {
+
+            }
+        }, new SubscriptionFilter().columns("s", "y").symbols("x", "A", "C", "D"));
+        client.start();
+
+        try {
+            Rnd rnd = new Rnd();
+            String symbols[] = {"A", "B", "C"};
+            long ts = Dates.parseDateTime("2015-01-10T12:00:00.000Z");
+            for (int k = 0; k < 2; k++) {
+                for (int i = 0; i < 50; i++) {
+                    JournalEntryWriter ew = w.entryWriter(ts += Dates.HOUR_MILLIS);
+                    ew.putSym(0, symbols[rnd.nextPositiveInt() % symbols.length]);
+                    ew.putStr(1, i % 7 == 0 ? null : rnd.nextString(rnd.nextPositiveInt() % 10));
+                    ew.putInt(2, rnd.nextInt());
+                    ew.putDouble(3, rnd.nextDouble());
+                    ew.append();
+                }
+                w.commit();
+                Assert.assertTrue(commits.tryAcquire(5, TimeUnit.SECONDS));
+            }
+
+            try (Journal r = factory.reader("abc")) {
+                Assert.assertEquals(3, r.getMetadata().getColumnCount());
+            }
+
+            StringSink expected = new StringSink();
+            new RecordSourcePrinter(expected).printCursor(compiler.compile(factory, "select s, y, timestamp from xyz where x = 'A' or x = 'C'"));
+
+            StringSink actual = new StringSink();
+            new RecordSourcePrinter(actual).printCursor(compiler.compile(factory, "abc"));
+
+            TestUtils.assertEquals(expected, actual);
+        } finally {
+            client.halt();
+            server.halt();
+        }
+    }
+
     @Test
     public void testGenericPublish() throws Exception {
 
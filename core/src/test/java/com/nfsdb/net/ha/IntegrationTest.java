@@ -28,6 +28,7 @@ import com.nfsdb.model.Quote;
 import com.nfsdb.model.TestEntity;
 import com.nfsdb.net.ha.config.ClientConfig;
 import com.nfsdb.net.ha.config.ServerConfig;
+import com.nfsdb.net.ha.protocol.Version;
 import com.nfsdb.store.TxListener;
 import com.nfsdb.test.tools.AbstractTest;
 import com.nfsdb.test.tools.TestUtils;
@@ -83,6 +84,52 @@ public class IntegrationTest extends AbstractTest {
         server.halt();
     }
 
+    @Test
+    public void testManyClientsSync() throws Exception {
+        int size = 10000;
+        int clientCount = 32;
+        JournalWriter<Quote> origin = factory.writer(Quote.class, "origin");
+        TestUtils.generateQuoteData(origin, size);
+
+        JournalWriter<Quote> remote = factory.writer(Quote.class, "remote");
+        server.publish(remote);
+        server.start();
+
+        final AtomicInteger counter = new AtomicInteger();
+        JournalClient[] clients = new JournalClient[clientCount];
+        for (int i = 0; i < clientCount; i++) {
+            clients[i] = new JournalClient(new ClientConfig("localhost"), factory);
+            clients[i].subscribe(Quote.class, "remote", "local" + i, new TxListener() {
+                @Override
+                public void onCommit() {
+                    counter.incrementAndGet();
+                }
+
+                @Override
+                public void onError() {
+
+                }
+            });
+            clients[i].start();
+        }
+
+        Assert.assertEquals(clientCount, server.getConnectedClients());
+
+        remote.append(origin.query().all().asResultSet().subset(0, 5000));
+        remote.commit();
+        TestUtils.assertCounter(counter, clientCount, 5, TimeUnit.SECONDS);
+
+        remote.append(origin.query().all().asResultSet().subset(5000, size));
+        remote.commit();
+        TestUtils.assertCounter(counter, 2 * clientCount, 5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < clientCount; i++) {
+            clients[i].halt();
+            TestUtils.assertDataEquals(remote, factory.reader(Quote.class, "local" + i));
+        }
+        server.halt();
+    }
+
     /**
      * Create two journal that are in sync.
      * Disconnect synchronisation and advance client by two transaction and server by one
@@ -320,6 +367,49 @@ public class IntegrationTest extends AbstractTest {
         TestUtils.assertDataEquals(remote, local);
     }
 
+    @Test
+    public void testOldClientSync() throws Exception {
+        int size = 10000;
+        JournalWriter<Quote> remote = factory.writer(Quote.class, "remote", 2 * size);
+        server.publish(remote);
+        server.start();
+
+        // oldest client server talks to receives state and column deltas in their original format
+        JournalClient oldClient = new JournalClient(new ClientConfig("localhost") {{
+            setProtocolVersion(Version.MIN_PROTOCOL_VERSION);
+        }}, factory);
+        final CountDownLatch first = new CountDownLatch(1);
+        final CountDownLatch second = new CountDownLatch(1);
+        oldClient.subscribe(Quote.class, "remote", "local", 2 * size, new TxListener() {
+            @Override
+            public void onCommit() {
+                if (first.getCount() > 0) {
+                    first.countDown();
+                } else {
+                    second.countDown();
+                }
+            }
+
+            @Override
+            public void onError() {
+
+            }
+        });
+        oldClient.start();
+
+        TestUtils.generateQuoteData(remote, size);
+        Assert.assertTrue(first.await(10, TimeUnit.SECONDS));
+
+        TestUtils.generateQuoteData(remote, size, remote.getMaxTimestamp() + 1, 1000);
+        remote.commit();
+        Assert.assertTrue(second.await(10, TimeUnit.SECONDS));
+
+        oldClient.halt();
+        server.halt();
+        Journal<Quote> local = factory.reader(Quote.class, "local");
+        TestUtils.assertDataEquals(remote, local);
+    }
+
     @Test
     public void testTwoClientSync() throws Exception {
         int size = 10000;
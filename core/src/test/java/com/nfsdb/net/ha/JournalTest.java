@@ -21,8 +21,15 @@
 
 package com.nfsdb.net.ha;
 
+import com.nfsdb.JournalWriter;
+import com.nfsdb.PartitionType;
+import com.nfsdb.ex.IncompatibleJournalException;
+import com.nfsdb.factory.configuration.JournalMetadataBuilder;
 import com.nfsdb.misc.Dates;
 import com.nfsdb.model.Quote;
+import com.nfsdb.net.ha.comsumer.JournalDeltaConsumer;
+import com.nfsdb.net.ha.producer.JournalDeltaProducer;
+import com.nfsdb.net.ha.protocol.Version;
 import com.nfsdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Before;
@@ -100,6 +107,148 @@ public class JournalTest extends AbstractJournalTest {
         executeSequence(true);
     }
 
+    @Test
+    public void testDropPartitions() throws Exception {
+        origin.truncate();
+
+        TestUtils.generateQuoteData(origin, 500, Dates.parseDateTime("2013-10-01T00:00:00.000Z"));
+        TestUtils.generateQuoteData(origin, 500, Dates.parseDateTime("2013-11-01T00:00:00.000Z"));
+        TestUtils.generateQuoteData(origin, 500, Dates.parseDateTime("2013-12-01T00:00:00.000Z"));
+
+        master.append(origin.query().all().asResultSet().subset(0, 1000));
+        master.commit();
+        executeSequence(true);
+        Assert.assertEquals(2, slave.getPartitionCount());
+
+        Assert.assertEquals(1, master.dropPartitions(Dates.parseDateTime("2013-11-01T00:00:00.000Z")));
+        master.append(origin.query().all().asResultSet().subset(1000, 1500));
+        master.commit();
+        executeSequence(true);
+        Assert.assertEquals(2, slave.getPartitionCount());
+        Assert.assertEquals(1000, slave.size());
+    }
+
+    @Test
+    public void testDropPartitionsConsumerBehind() throws Exception {
+        origin.truncate();
+
+        TestUtils.generateQuoteData(origin, 500, Dates.parseDateTime("2013-10-01T00:00:00.000Z"));
+        TestUtils.generateQuoteData(origin, 500, Dates.parseDateTime("2013-11-01T00:00:00.000Z"));
+        TestUtils.generateQuoteData(origin, 500, Dates.parseDateTime("2013-12-01T00:00:00.000Z"));
+
+        master.append(origin.query().all().asResultSet().subset(0, 1000));
+        master.commit(false, 101L, 10);
+        slave.append(origin.query().all().asResultSet().subset(0, 1000));
+        slave.commit(false, 101L, 10);
+
+        Assert.assertEquals(2, master.dropPartitions(Dates.parseDateTime("2013-12-01T00:00:00.000Z")));
+        master.append(origin.query().all().asResultSet().subset(1000, 1500));
+        master.commit(false, 102L, 20);
+        executeSequence(true);
+        Assert.assertEquals(1, slave.getPartitionCount());
+        Assert.assertEquals(500, slave.size());
+    }
+
+    @Test
+    public void testRewrittenPartitions() throws Exception {
+        JournalWriter<Quote> m = factory.writer(outOfOrder("master-ooo"));
+        JournalWriter<Quote> s = factory.writer(outOfOrder("slave-ooo"));
+        @SuppressWarnings("unchecked")
+        JournalDeltaProducer producer = new JournalDeltaProducer(factory.reader(new JournalMetadataBuilder<>(m.getMetadata()).build()));
+        JournalDeltaConsumer consumer = new JournalDeltaConsumer(s);
+        MockByteChannel channel = new MockByteChannel();
+
+        long t = Dates.parseDateTime("2013-10-01T00:00:00.000Z");
+        long step = 1000 * 60 * 60;
+        for (int i = 0; i < 3000; i += 2) {
+            m.append(new Quote().setTimestamp(t + i * step).setSym("S" + i % 3).setAskSize(i));
+        }
+        m.commit();
+        producer.configure(s.getTxn(), s.getTxPin());
+        producer.write(channel);
+        consumer.read(channel);
+        TestUtils.assertEquals(m, s);
+
+        // late rows go to first and last partition client has, and to partition client has not seen
+        m.append(new Quote().setTimestamp(t + 3000 * step).setSym("S0").setAskSize(3000));
+        m.commit();
+        for (int i = 1; i < 3000; i += 500) {
+            m.append(new Quote().setTimestamp(t + i * step).setSym("S" + i % 3).setAskSize(i));
+        }
+        m.commit();
+        Assert.assertTrue(m.getPartition(0, false).getVersion() > 0);
+
+        producer.configure(s.getTxn(), s.getTxPin());
+        Assert.assertTrue(producer.hasContent());
+        producer.write(channel);
+        consumer.read(channel);
+        Assert.assertEquals(m.getTxn(), s.getTxn());
+        Assert.assertTrue(s.getPartition(0, false).getVersion() > 0);
+        TestUtils.assertEquals(m, s);
+    }
+
+    @Test
+    public void testRewrittenPartitionsOldClient() throws Exception {
+        JournalWriter<Quote> m = factory.writer(outOfOrder("master-ooo-v5"));
+        JournalWriter<Quote> s = factory.writer(outOfOrder("slave-ooo-v5"));
+        @SuppressWarnings("unchecked")
+        JournalDeltaProducer producer = new JournalDeltaProducer(factory.reader(new JournalMetadataBuilder<>(m.getMetadata()).build()));
+        JournalDeltaConsumer consumer = new JournalDeltaConsumer(s);
+        producer.setVersion(Version.REWRITE_PROTOCOL_VERSION - 1);
+        consumer.setVersion(Version.REWRITE_PROTOCOL_VERSION - 1);
+        MockByteChannel channel = new MockByteChannel();
+
+        long t = Dates.parseDateTime("2013-10-01T00:00:00.000Z");
+        long step = 1000 * 60 * 60;
+        for (int i = 0; i < 3000; i += 2) {
+            m.append(new Quote().setTimestamp(t + i * step).setSym("S" + i % 3).setAskSize(i));
+        }
+        m.commit();
+        producer.configure(s.getTxn(), s.getTxPin());
+        producer.write(channel);
+        consumer.read(channel);
+        TestUtils.assertEquals(m, s);
+
+        // client that cannot replace partitions is refused rather than sent rows it already has
+        m.append(new Quote().setTimestamp(t + 1).setSym("S0").setAskSize(1));
+        m.commit();
+        producer.configure(s.getTxn(), s.getTxPin());
+        producer.write(channel);
+        try {
+            consumer.read(channel);
+            Assert.fail();
+        } catch (IncompatibleJournalException ignore) {
+        }
+        Assert.assertEquals(1500, s.size());
+    }
+
+    @Test
+    public void testDropPartitionsOldClient() throws Exception {
+        origin.truncate();
+
+        TestUtils.generateQuoteData(origin, 500, Dates.parseDateTime("2013-10-01T00:00:00.000Z"));
+        TestUtils.generateQuoteData(origin, 500, Dates.parseDateTime("2013-11-01T00:00:00.000Z"));
+        TestUtils.generateQuoteData(origin, 500, Dates.parseDateTime("2013-12-01T00:00:00.000Z"));
+
+        setProtocolVersion(Version.RETENTION_PROTOCOL_VERSION - 1);
+
+        master.append(origin.query().all().asResultSet().subset(0, 1000));
+        master.commit();
+        executeSequence(true);
+        Assert.assertEquals(2, slave.getPartitionCount());
+
+        // client that cannot drop partitions is refused rather than left with rows server no longer has
+        Assert.assertEquals(2, master.dropPartitions(Dates.parseDateTime("2013-12-01T00:00:00.000Z")));
+        master.append(origin.query().all().asResultSet().subset(1000, 1500));
+        master.commit();
+        try {
+            executeSequence(true);
+            Assert.fail();
+        } catch (IncompatibleJournalException ignore) {
+        }
+        Assert.assertEquals(1000, slave.size());
+    }
+
     @Test
     public void testEmptyConsumerAndPopulatedProducer() throws Exception {
         master.append(origin);
@@ -145,4 +294,13 @@ public class JournalTest extends AbstractJournalTest {
         master.commit(false, 102L, 20);
         executeSequence(true);
     }
+
+    private static JournalMetadataBuilder<Quote> outOfOrder(String location) {
+        return new JournalMetadataBuilder<>(Quote.class)
+                .location(location)
+                .partitionBy(PartitionType.MONTH)
+                .$sym("sym").index().valueCountHint(4)
+                .$ts()
+                .outOfOrder();
+    }
 }
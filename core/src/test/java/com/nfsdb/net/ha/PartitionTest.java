@@ -140,6 +140,29 @@ public class PartitionTest extends AbstractTest {
         comparePartitions();
     }
 
+    @Test
+    public void testPackedConsumerSmallerThanProducer() throws Exception {
+        master.append(origin);
+        slave.append(origin.query().all().asResultSet().subset(0, 300));
+
+        syncSymbolTables();
+
+        MockByteChannel raw = new MockByteChannel();
+        producer.configure(slave.size());
+        producer.write(raw);
+
+        producer = new PartitionDeltaProducer(masterPartition, true);
+        consumer = new PartitionDeltaConsumer(slavePartition, true);
+        producer.configure(slave.size());
+        Assert.assertTrue(producer.hasContent());
+        int offset = channel.size();
+        producer.write(channel);
+        Assert.assertTrue(channel.size() - offset < raw.size());
+
+        consumer.read(channel);
+        comparePartitions();
+    }
+
     @Test
     public void testEmptyConsumerAndProducer() throws Exception {
         producer.configure(slave.size());
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.net.ha;
+
+import com.nfsdb.ex.JournalConfigurationException;
+import com.nfsdb.factory.configuration.JournalMetadata;
+import com.nfsdb.factory.configuration.JournalStructure;
+import com.nfsdb.net.ha.model.SubscriptionFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class SubscriptionFilterTest {
+
+    private static final JournalMetadata METADATA = new JournalStructure("xyz") {{
+        $sym("a");
+        $sym("b").sameAs("a");
+        $str("c");
+        $int("d");
+        $ts();
+    }}.build();
+
+    @Test
+    public void testInvalidColumn() throws Exception {
+        try {
+            new SubscriptionFilter().columns("c", "x").project(METADATA);
+            Assert.fail();
+        } catch (JournalConfigurationException ignore) {
+        }
+    }
+
+    @Test
+    public void testNotSymbolColumn() throws Exception {
+        try {
+            new SubscriptionFilter().symbols("c", "A").getSymbolColumnIndex(METADATA);
+            Assert.fail();
+        } catch (JournalConfigurationException ignore) {
+        }
+    }
+
+    @Test
+    public void testProject() throws Exception {
+        Assert.assertEquals("[0,1,2,3,4]", new SubscriptionFilter().project(METADATA).toString());
+        // timestamp and symbol table owner are projected implicitly
+        Assert.assertEquals("[0,1,3,4]", new SubscriptionFilter().columns("d", "b").project(METADATA).toString());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        SubscriptionFilter filter = new SubscriptionFilter().columns("b", "d").symbols("a", "X", "YZ");
+        ByteBuffer buffer = ByteBuffer.allocate(filter.getBufferSize());
+        filter.write(buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        SubscriptionFilter copy = SubscriptionFilter.fromBuffer(buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+        Assert.assertEquals("a", copy.getSymbolColumn());
+        Assert.assertEquals(0, copy.getSymbolColumnIndex(METADATA));
+        Assert.assertEquals("[X,YZ]", copy.getSymbols().toString());
+        Assert.assertEquals("[0,1,3,4]", copy.project(METADATA).toString());
+    }
+}
@@ -23,6 +23,7 @@ package com.nfsdb.net.ha;
 
 import com.nfsdb.JournalMode;
 import com.nfsdb.ex.JournalException;
+import com.nfsdb.io.sink.StringSink;
 import com.nfsdb.misc.Rnd;
 import com.nfsdb.misc.Unsafe;
 import com.nfsdb.net.ha.comsumer.VariableColumnDeltaConsumer;
@@ -30,6 +31,7 @@ import com.nfsdb.net.ha.producer.VariableColumnDeltaProducer;
 import com.nfsdb.std.DirectInputStream;
 import com.nfsdb.store.MemoryFile;
 import com.nfsdb.store.VariableColumn;
+import com.nfsdb.test.tools.TestUtils;
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
 
@@ -65,6 +67,54 @@ public class VariableColumnTest {
         channel = new MockByteChannel();
     }
 
+    @Test
+    public void testCompactStrings() throws Exception {
+        VariableColumn col1 = new VariableColumn(file, indexFile, true);
+        VariableColumn col2 = new VariableColumn(file2, indexFile2);
+        ChannelConsumer consumer = new VariableColumnDeltaConsumer(col2);
+        VariableColumnDeltaProducer producer = new VariableColumnDeltaProducer(col1);
+
+        int max = 150000;
+        for (int i = 0; i < max; i++) {
+            col1.putStr(compactValue(i));
+            col1.commit();
+        }
+
+        // ascii values take one byte per char
+        Assert.assertEquals(4 + "test1230".length(), col1.getOffset(1) - col1.getOffset(0));
+
+        StringSink sink = new StringSink();
+        for (int i = 0; i < max; i++) {
+            String expected = compactValue(i);
+            Assert.assertEquals(expected, col1.getStr(i));
+            if (expected == null) {
+                Assert.assertNull(col1.getFlyweightStr(i));
+                Assert.assertEquals(VariableColumn.NULL_LEN, col1.getStrLen(i));
+                Assert.assertTrue(col1.cmpStr(i, null));
+            } else {
+                TestUtils.assertEquals(expected, col1.getFlyweightStr(i));
+                Assert.assertEquals(expected.length(), col1.getStrLen(i));
+                Assert.assertTrue(col1.cmpStr(i, expected));
+                Assert.assertFalse(col1.cmpStr(i, expected + "x"));
+                sink.clear();
+                col1.getStr(i, sink);
+                TestUtils.assertEquals(expected, sink);
+            }
+        }
+
+        // replica does not need to know column is compact
+        producer.configure(col2.size(), col1.size());
+        Assert.assertTrue(producer.hasContent());
+        producer.write(channel);
+        consumer.read(channel);
+        col2.commit();
+
+        Assert.assertEquals(col1.size(), col2.size());
+        for (int i = 0; i < max; i++) {
+            Assert.assertEquals(compactValue(i), col2.getStr(i));
+        }
+    }
+
     @Test
     public void testConsumerEqualToProducer() throws Exception {
         VariableColumn col1 = new VariableColumn(file, indexFile);
@@ -313,4 +363,15 @@ public class VariableColumnTest {
             }
         }
     }
+
+    private static String compactValue(int i) {
+        switch (i % 10) {
+            case 3:
+                return null;
+            case 7:
+                return "\u0442\u0435\u0441\u0442" + i;
+            default:
+                return "test123" + i;
+        }
+    }
 }
\ No newline at end of file
@@ -39,11 +39,13 @@ import com.nfsdb.io.sink.StringSink;
 import com.nfsdb.iter.clock.Clock;
 import com.nfsdb.misc.*;
 import com.nfsdb.net.ha.AbstractJournalTest;
+import com.nfsdb.net.http.handlers.BinaryHandler;
 import com.nfsdb.net.http.handlers.ImportHandler;
 import com.nfsdb.net.http.handlers.JsonHandler;
 import com.nfsdb.net.http.handlers.StaticContentHandler;
 import com.nfsdb.net.http.handlers.UploadHandler;
 import com.nfsdb.ql.parser.QueryCompiler;
+import com.nfsdb.store.ColumnType;
 import com.nfsdb.test.tools.TestUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
@@ -75,9 +77,12 @@ import javax.net.ssl.SSLSession;
 import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.SocketChannel;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -105,6 +110,77 @@ public class HttpServerTest extends AbstractJournalTest {
         }
     }
 
+    @Test
+    public void testBinaryBatches() throws Exception {
+        int count = (int) 1E4;
+        generateJournal(count);
+        HttpServerConfiguration configuration = new HttpServerConfiguration();
+        configuration.setHttpBufRespContent(16 * 1024);
+        HttpServer server = new HttpServer(configuration, new SimpleUrlMatcher() {{
+            put("/bin", createBinaryHandler());
+        }});
+        server.start();
+        try {
+            BinaryResponse response = downloadBinary("tab", -1, -1, false);
+            Assert.assertEquals(200, response.status);
+            Assert.assertEquals(6, response.columnCount);
+            Assert.assertEquals(ColumnType.SYMBOL, response.types[0]);
+            Assert.assertEquals(count, response.ids.size());
+            Assert.assertTrue(response.batches > 1);
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals("id" + i, response.ids.get(i));
+            }
+            Assert.assertFalse(response.moreExist);
+            Assert.assertEquals(-1, response.totalCount);
+        } finally {
+            factoryPool.close();
+            server.halt();
+        }
+    }
+
+    @Test
+    public void testBinaryError() throws Exception {
+        generateJournal();
+        HttpServer server = new HttpServer(new HttpServerConfiguration(), new SimpleUrlMatcher() {{
+            put("/bin", createBinaryHandler());
+        }});
+        server.start();
+        try {
+            BinaryResponse response = downloadBinary("select zz from tab", -1, -1, false);
+            Assert.assertEquals(400, response.status);
+            Assert.assertEquals(7, response.errorPosition);
+            Assert.assertNotNull(response.error);
+        } finally {
+            factoryPool.close();
+            server.halt();
+        }
+    }
+
+    @Test
+    public void testBinaryLimits() throws Exception {
+        generateJournal();
+        HttpServer server = new HttpServer(new HttpServerConfiguration(), new SimpleUrlMatcher() {{
+            put("/bin", createBinaryHandler());
+        }});
+        server.start();
+        try {
+            BinaryResponse response = downloadBinary("tab", 2, 4, false);
+            Assert.assertEquals(2, response.ids.size());
+            Assert.assertEquals("id2", response.ids.get(0));
+            Assert.assertEquals("id3", response.ids.get(1));
+            Assert.assertTrue(response.moreExist);
+            Assert.assertEquals(-1, response.totalCount);
+
+            response = downloadBinary("tab", 2, 4, true);
+            Assert.assertEquals(2, response.ids.size());
+            Assert.assertFalse(response.moreExist);
+            Assert.assertEquals(1000, response.totalCount);
+        } finally {
+            factoryPool.close();
+            server.halt();
+        }
+    }
+
     @Test
     public void testCompressedDownload() throws Exception {
         final HttpServerConfiguration configuration = new HttpServerConfiguration(new File(resourceFile("/site"), "conf/nfsdb.conf"));
@@ -888,6 +964,12 @@ public class HttpServerTest extends AbstractJournalTest {
         }
     }
 
+    @NotNull
+    private BinaryHandler createBinaryHandler() {
+        factoryPool = new JournalFactoryPool(factory.getConfiguration(), 1);
+        return new BinaryHandler(factoryPool);
+    }
+
     @NotNull
     private JsonHandler createHandler() {
         factoryPool = new JournalFactoryPool(factory.getConfiguration(), 1);
@@ -915,6 +997,27 @@ public class HttpServerTest extends AbstractJournalTest {
         return gson.fromJson(body, QueryResponse.class);
     }
 
+    private BinaryResponse downloadBinary(String query, int limitFrom, int limitTo, boolean withCount) throws Exception {
+        String url = "http://localhost:9000/bin?query=" + URLEncoder.encode(query, "UTF-8");
+        if (limitFrom >= 0) {
+            url += "&limit=" + limitFrom + "," + limitTo;
+        }
+        if (withCount) {
+            url += "&withCount=true";
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        int status;
+        try (
+                CloseableHttpClient client = clientBuilder(false).build();
+                CloseableHttpResponse r = client.execute(new HttpGet(url))
+        ) {
+            status = r.getStatusLine().getStatusCode();
+            copy(r.getEntity().getContent(), bos);
+        }
+        return new BinaryResponse(status, ByteBuffer.wrap(bos.toByteArray()).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
     private void download(HttpClientBuilder b, String url, File out) throws IOException {
         try (
                 CloseableHttpClient client = b.build();
@@ -1073,4 +1176,88 @@ public class HttpServerTest extends AbstractJournalTest {
             throw e;
         }
     }
+
+    private static class BinaryResponse {
+        private final int status;
+        private final List<String> ids = new ArrayList<>();
+        private int columnCount;
+        private ColumnType[] types;
+        private int batches;
+        private boolean moreExist;
+        private long totalCount;
+        private int errorPosition;
+        private String error;
+
+        private BinaryResponse(int status, ByteBuffer buf) {
+            this.status = status;
+            byte tag = buf.get();
+            if (tag == 'X') {
+                errorPosition = buf.getInt();
+                error = readStr(buf);
+                return;
+            }
+
+            Assert.assertEquals('H', tag);
+            columnCount = buf.getInt();
+            types = new ColumnType[columnCount];
+            List<List<String>> dictionaries = new ArrayList<>();
+            for (int i = 0; i < columnCount; i++) {
+                types[i] = ColumnType.values()[buf.get()];
+                readStr(buf);
+                dictionaries.add(new ArrayList<String>());
+            }
+
+            while ((tag = buf.get()) == 'B') {
+                batches++;
+                int rows = buf.getInt();
+                for (int i = 0; i < columnCount; i++) {
+                    switch (types[i]) {
+                        case SYMBOL:
+                            List<String> dictionary = dictionaries.get(i);
+                            for (int k = 0, n = buf.getInt(); k < n; k++) {
+                                dictionary.add(readStr(buf));
+                            }
+                            for (int k = 0; k < rows; k++) {
+                                int key = buf.getInt();
+                                if (i == 0) {
+                                    ids.add(key == -1 ? null : dictionary.get(key));
+                                }
+                            }
+                            break;
+                        case STRING:
+                            for (int k = 0; k < rows; k++) {
+                                readStr(buf);
+                            }
+                            break;
+                        case BINARY:
+                            for (int k = 0; k < rows; k++) {
+                                int len = buf.getInt();
+                                buf.position(buf.position() + Math.max(len, 0));
+                            }
+                            break;
+                        default:
+                            buf.position(buf.position() + rows * types[i].size());
+                            break;
+                    }
+                }
+            }
+
+            Assert.assertEquals('E', tag);
+            moreExist = buf.get() == 1;
+            totalCount = buf.getLong();
+            Assert.assertFalse(buf.hasRemaining());
+        }
+
+        private static String readStr(ByteBuffer buf) {
+            int len = buf.getInt();
+            if (len == -1) {
+                return null;
+            }
+            char[] chars = new char[len];
+            for (int i = 0; i < len; i++) {
+                chars[i] = buf.getChar();
+            }
+            return new String(chars);
+        }
+    }
 }
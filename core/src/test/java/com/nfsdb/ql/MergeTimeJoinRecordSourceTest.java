@@ -0,0 +1,119 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql;
+
+import com.nfsdb.JournalEntryWriter;
+import com.nfsdb.JournalWriter;
+import com.nfsdb.ex.ParserException;
+import com.nfsdb.factory.configuration.JournalStructure;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.ql.impl.join.MergeTimeJoinRecordSource;
+import com.nfsdb.ql.parser.AbstractOptimiserTest;
+import com.nfsdb.ql.parser.QueryError;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MergeTimeJoinRecordSourceTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-10T00:00:00.000Z");
+
+        JournalWriter mw = factory.writer(new JournalStructure("mx").$ts().$int("v").$());
+        for (int i = 0; i < 6; i++) {
+            JournalEntryWriter w = mw.entryWriter();
+            w.putDate(0, ts + i * 10000);
+            w.putInt(1, i);
+            w.append();
+        }
+        mw.commit();
+
+        JournalWriter sw = factory.writer(new JournalStructure("my").$ts().$int("v").$());
+        for (int i = 0; i < 5; i++) {
+            JournalEntryWriter w = sw.entryWriter();
+            w.putDate(0, ts + i * 15000);
+            w.putInt(1, 100 + i);
+            w.append();
+        }
+        sw.commit();
+    }
+
+    @Test
+    public void testInnerJoin() throws Exception {
+        final String expected = "2015-03-10T00:00:00.000Z\t0\t2015-03-10T00:00:00.000Z\t100\n" +
+                "2015-03-10T00:00:30.000Z\t3\t2015-03-10T00:00:30.000Z\t102\n";
+        assertThat(expected, "mx join my on mx.timestamp = my.timestamp");
+        Assert.assertTrue(compiler.compile(factory, "mx join my on mx.timestamp = my.timestamp") instanceof MergeTimeJoinRecordSource);
+    }
+
+    @Test
+    public void testOuterJoin() throws Exception {
+        final String expected = "2015-03-10T00:00:00.000Z\t0\t2015-03-10T00:00:00.000Z\t100\n" +
+                "2015-03-10T00:00:10.000Z\t1\t\tNaN\n" +
+                "2015-03-10T00:00:20.000Z\t2\t\tNaN\n" +
+                "2015-03-10T00:00:30.000Z\t3\t2015-03-10T00:00:30.000Z\t102\n" +
+                "2015-03-10T00:00:40.000Z\t4\t\tNaN\n" +
+                "2015-03-10T00:00:50.000Z\t5\t\tNaN\n";
+        assertThat(expected, "mx outer join my on mx.timestamp = my.timestamp");
+    }
+
+    @Test
+    public void testToleranceMustBeTimeJoin() throws Exception {
+        try {
+            compiler.compile(factory, "mx join my on mx.v = my.v within 5s");
+            Assert.fail();
+        } catch (ParserException e) {
+            Assert.assertEquals(33, QueryError.getPosition());
+        }
+    }
+
+    @Test
+    public void testWithinTolerance() throws Exception {
+        final String expected = "2015-03-10T00:00:00.000Z\t0\t2015-03-10T00:00:00.000Z\t100\n" +
+                "2015-03-10T00:00:10.000Z\t1\t2015-03-10T00:00:15.000Z\t101\n" +
+                "2015-03-10T00:00:20.000Z\t2\t2015-03-10T00:00:15.000Z\t101\n" +
+                "2015-03-10T00:00:30.000Z\t3\t2015-03-10T00:00:30.000Z\t102\n" +
+                "2015-03-10T00:00:40.000Z\t4\t2015-03-10T00:00:45.000Z\t103\n" +
+                "2015-03-10T00:00:50.000Z\t5\t2015-03-10T00:00:45.000Z\t103\n";
+        assertThat(expected, "mx join my on mx.timestamp = my.timestamp within 5s");
+    }
+
+    @Test
+    public void testWithinWideTolerance() throws Exception {
+        // slave records are shared between adjacent master records
+        final String expected = "2015-03-10T00:00:00.000Z\t0\t2015-03-10T00:00:00.000Z\t100\n" +
+                "2015-03-10T00:00:00.000Z\t0\t2015-03-10T00:00:15.000Z\t101\n" +
+                "2015-03-10T00:00:10.000Z\t1\t2015-03-10T00:00:00.000Z\t100\n" +
+                "2015-03-10T00:00:10.000Z\t1\t2015-03-10T00:00:15.000Z\t101\n" +
+                "2015-03-10T00:00:20.000Z\t2\t2015-03-10T00:00:15.000Z\t101\n" +
+                "2015-03-10T00:00:20.000Z\t2\t2015-03-10T00:00:30.000Z\t102\n" +
+                "2015-03-10T00:00:30.000Z\t3\t2015-03-10T00:00:15.000Z\t101\n" +
+                "2015-03-10T00:00:30.000Z\t3\t2015-03-10T00:00:30.000Z\t102\n" +
+                "2015-03-10T00:00:30.000Z\t3\t2015-03-10T00:00:45.000Z\t103\n" +
+                "2015-03-10T00:00:40.000Z\t4\t2015-03-10T00:00:30.000Z\t102\n" +
+                "2015-03-10T00:00:40.000Z\t4\t2015-03-10T00:00:45.000Z\t103\n" +
+                "2015-03-10T00:00:50.000Z\t5\t2015-03-10T00:00:45.000Z\t103\n" +
+                "2015-03-10T00:00:50.000Z\t5\t2015-03-10T00:01:00.000Z\t104\n";
+        assertThat(expected, "mx outer join my on mx.timestamp = my.timestamp within 15000");
+    }
+}
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql;
+
+import com.nfsdb.JournalEntryWriter;
+import com.nfsdb.JournalWriter;
+import com.nfsdb.PartitionType;
+import com.nfsdb.ex.ParserException;
+import com.nfsdb.factory.configuration.JournalStructure;
+import com.nfsdb.io.sink.StringSink;
+import com.nfsdb.misc.Chars;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.misc.Rnd;
+import com.nfsdb.ql.impl.AllRowSource;
+import com.nfsdb.ql.impl.JournalSource;
+import com.nfsdb.ql.impl.sort.SortedRecordSource;
+import com.nfsdb.ql.parser.AbstractOptimiserTest;
+import com.nfsdb.ql.parser.QueryError;
+import com.nfsdb.std.IntList;
+import com.nfsdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SortedRecordSourceTest extends AbstractOptimiserTest {
+
+    private static final int N = 1000;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-10T00:00:00.000Z");
+
+        JournalWriter w = factory.writer(new JournalStructure("so").$ts().$str("s").$sym("k").$int("v").$double("d").$());
+        String[] s = {"abcdef", "abcd", null, "abcdeg", "b", "abcdef"};
+        String[] k = {"x", "y", "x", "z", "y", "x"};
+        int[] v = {3, 1, 2, 3, 5, -1};
+        double[] d = {1.5, -2.0, 0.0, -0.5, 10.0, 3.0};
+        for (int i = 0; i < s.length; i++) {
+            JournalEntryWriter e = w.entryWriter();
+            e.putDate(0, ts + i * 1000);
+            e.putStr(1, s[i]);
+            e.putSym(2, k[i]);
+            e.putInt(3, v[i]);
+            e.putDouble(4, d[i]);
+            e.append();
+        }
+        w.commit();
+
+        // strings of few distinct characters, so that many share four character prefix
+        Rnd rnd = new Rnd();
+        StringBuilder b = new StringBuilder();
+        // rows span several partitions
+        JournalWriter sw = factory.writer(new JournalStructure("sx").$ts().$str("s").$int("v").$().partitionBy(PartitionType.DAY));
+        for (int i = 0; i < N; i++) {
+            JournalEntryWriter e = sw.entryWriter();
+            e.putDate(0, ts + i * Dates.HOUR_MILLIS);
+            if (i % 7 == 0) {
+                e.putNull(1);
+            } else {
+                b.setLength(0);
+                for (int j = 0, n = rnd.nextPositiveInt() % 8; j < n; j++) {
+                    b.append((char) ('a' + rnd.nextPositiveInt() % 3));
+                }
+                e.putStr(1, b);
+            }
+            e.putInt(2, rnd.nextInt() % 10);
+            e.append();
+        }
+        sw.commit();
+    }
+
+    @Test
+    public void testGetByRowIdBeforeIteration() throws Exception {
+        // row ids of "sx" span partitions, cursor is not iterated before lookup
+        RecordCursor cursor = compiler.compile(factory, "sx");
+        long[] rowIds = new long[N];
+        String[] expected = new String[N];
+        int n = 0;
+        while (cursor.hasNext()) {
+            Record r = cursor.next();
+            rowIds[n] = r.getRowId();
+            expected[n++] = r.getInt(2) + ":" + r.getStr(1);
+        }
+
+        // new source, compiled ones are cached and have been iterated
+        JournalSource src = new JournalSource(((JournalSource) compiler.compileSource(factory, "sx")).getPartitionSource(), new AllRowSource());
+        cursor = src.prepareCursor(factory);
+        for (int i = n - 1; i >= 0; i--) {
+            Record r = cursor.getByRowId(rowIds[i]);
+            Assert.assertEquals(expected[i], r.getInt(2) + ":" + r.getStr(1));
+        }
+    }
+
+    @Test
+    public void testInvalidColumn() throws Exception {
+        try {
+            compiler.compile(factory, "so order by z");
+            Assert.fail();
+        } catch (ParserException e) {
+            Assert.assertEquals(12, QueryError.getPosition());
+        }
+    }
+
+    @Test
+    public void testOrderByDoubleDesc() throws Exception {
+        final String expected = "2015-03-10T00:00:04.000Z\tb\ty\t5\t10.000000000000\n" +
+                "2015-03-10T00:00:05.000Z\tabcdef\tx\t-1\t3.000000000000\n" +
+                "2015-03-10T00:00:00.000Z\tabcdef\tx\t3\t1.500000000000\n" +
+                "2015-03-10T00:00:02.000Z\tnull\tx\t2\t0.000000000000\n" +
+                "2015-03-10T00:00:03.000Z\tabcdeg\tz\t3\t-0.500000000000\n" +
+                "2015-03-10T00:00:01.000Z\tabcd\ty\t1\t-2.000000000000\n";
+        assertThat(expected, "so order by d desc");
+    }
+
+    @Test
+    public void testOrderByMultipleColumns() throws Exception {
+        final String expected = "2015-03-10T00:00:00.000Z\tabcdef\tx\t3\t1.500000000000\n" +
+                "2015-03-10T00:00:02.000Z\tnull\tx\t2\t0.000000000000\n" +
+                "2015-03-10T00:00:05.000Z\tabcdef\tx\t-1\t3.000000000000\n" +
+                "2015-03-10T00:00:04.000Z\tb\ty\t5\t10.000000000000\n" +
+                "2015-03-10T00:00:01.000Z\tabcd\ty\t1\t-2.000000000000\n" +
+                "2015-03-10T00:00:03.000Z\tabcdeg\tz\t3\t-0.500000000000\n";
+        assertThat(expected, "so order by k asc, v desc");
+    }
+
+    @Test
+    public void testOrderByStr() throws Exception {
+        final String expected = "2015-03-10T00:00:02.000Z\tnull\tx\t2\t0.000000000000\n" +
+                "2015-03-10T00:00:01.000Z\tabcd\ty\t1\t-2.000000000000\n" +
+                "2015-03-10T00:00:00.000Z\tabcdef\tx\t3\t1.500000000000\n" +
+                "2015-03-10T00:00:05.000Z\tabcdef\tx\t-1\t3.000000000000\n" +
+                "2015-03-10T00:00:03.000Z\tabcdeg\tz\t3\t-0.500000000000\n" +
+                "2015-03-10T00:00:04.000Z\tb\ty\t5\t10.000000000000\n";
+        assertThat(expected, "so order by s");
+    }
+
+    @Test
+    public void testOrderBySubQuery() throws Exception {
+        // aggregated records have no row ids and are copied off-heap
+        final String expected = "5\t10.000000000000\n" +
+                "-1\t3.000000000000\n" +
+                "3\t1.000000000000\n" +
+                "2\t0.000000000000\n" +
+                "1\t-2.000000000000\n";
+        assertThat(expected, "(select v, sum(d) t from so) order by t desc");
+    }
+
+    @Test
+    public void testOrderWithLimit() throws Exception {
+        final String expected = "2015-03-10T00:00:05.000Z\tabcdef\tx\t-1\t3.000000000000\n" +
+                "2015-03-10T00:00:01.000Z\tabcd\ty\t1\t-2.000000000000\n";
+        assertThat(expected, "so order by v limit 2");
+    }
+
+    @Test
+    public void testOrderWithLimitRange() throws Exception {
+        // bounded heap keeps 20 entries, the same records full sort has at these positions
+        sink.clear();
+        printer.printCursor(compiler.compile(factory, "sx order by s, v desc"), false);
+        String[] lines = sink.toString().split("\n");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 10; i < 20; i++) {
+            expected.append(lines[i]).append('\n');
+        }
+        assertThat(expected.toString(), "sx order by s, v desc limit 10,20");
+    }
+
+    @Test
+    public void testOrderWithLimitSubQuery() throws Exception {
+        final String expected = "5\t10.000000000000\n" +
+                "-1\t3.000000000000\n";
+        assertThat(expected, "(select v, sum(d) t from so) order by t desc limit 2");
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        IntList columns = new IntList();
+        columns.add(1);
+        columns.add(2);
+        IntList descending = new IntList();
+        descending.add(0);
+        descending.add(1);
+
+        // budget of 1KB fits 62 entries, which makes 17 runs
+        try (SortedRecordSource rs = new SortedRecordSource(compiler.compileSource(factory, "sx"), columns, descending, 1024, 4096)) {
+            StringSink prev = new StringSink();
+            boolean first = true;
+            boolean prevNull = false;
+            int prevV = 0;
+            int count = 0;
+
+            RecordCursor cursor = rs.prepareCursor(factory);
+            while (cursor.hasNext()) {
+                Record r = cursor.next();
+                CharSequence s = r.getFlyweightStr(1);
+                int v = r.getInt(2);
+                if (!first) {
+                    int d = Chars.compare(prevNull ? null : prev, s);
+                    Assert.assertTrue(d <= 0);
+                    Assert.assertTrue(d < 0 || prevV >= v);
+                }
+                first = false;
+                prev.clear();
+                prevNull = s == null;
+                if (s != null) {
+                    prev.put(s);
+                }
+                prevV = v;
+                count++;
+            }
+            Assert.assertEquals(N, count);
+
+            // spilled and in-memory sorts agree, including order of equal keys
+            sink.clear();
+            printer.printCursor(rs.prepareCursor(factory), false);
+            String spilled = sink.toString();
+            sink.clear();
+            printer.printCursor(compiler.compile(factory, "sx order by s, v desc"), false);
+            TestUtils.assertEquals(spilled, sink);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql;
+
+import com.nfsdb.JournalEntryWriter;
+import com.nfsdb.JournalWriter;
+import com.nfsdb.PartitionType;
+import com.nfsdb.factory.configuration.JournalStructure;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.misc.Rnd;
+import com.nfsdb.ql.impl.TailRecordSource;
+import com.nfsdb.ql.parser.AbstractOptimiserTest;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TailRecordSourceTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        long ts = Dates.parseDateTime("2015-03-10T00:00:00.000Z");
+
+        Rnd rnd = new Rnd();
+        JournalWriter w = factory.writer(new JournalStructure("tx").$ts().$sym("k").$int("v").$().partitionBy(PartitionType.DAY));
+        for (int i = 0; i < 100; i++) {
+            JournalEntryWriter e = w.entryWriter();
+            e.putDate(0, ts + i * Dates.HOUR_MILLIS);
+            e.putSym(1, rnd.nextString(2));
+            e.putInt(2, rnd.nextInt() % 100);
+            e.append();
+        }
+        w.commit();
+    }
+
+    @Test
+    public void testFiltered() throws Exception {
+        assertThat(tail("tx where v > 0", 7), "tx where v > 0 limit -7");
+    }
+
+    @Test
+    public void testHugeLimit() throws Exception {
+        // ring buffer is not sized by limit upfront
+        assertThat(tail("tx where v > 0", Integer.MAX_VALUE), "tx where v > 0 limit -2000000000");
+    }
+
+    @Test
+    public void testJournal() throws Exception {
+        // tail spans partitions of last two days
+        assertThat(tail("tx", 30), "tx limit -30");
+        Assert.assertTrue(compiler.compileSource(factory, "tx limit -30") instanceof TailRecordSource);
+    }
+
+    @Test
+    public void testMoreThanAvailable() throws Exception {
+        assertThat(tail("tx", 100), "tx limit -500");
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        assertThat(tail("tx order by v", 5), "tx order by v limit -5");
+    }
+
+    @Test
+    public void testSubQuery() throws Exception {
+        // aggregated records are copied off-heap, 13 records wrap ring buffer several times
+        assertThat(tail("(select k, count() c from tx)", 13), "(select k, count() c from tx) limit -13");
+    }
+
+    private String tail(String query, int n) throws Exception {
+        sink.clear();
+        printer.printCursor(compiler.compile(factory, query), false);
+        String[] lines = sink.toString().split("\n");
+        StringBuilder b = new StringBuilder();
+        for (int i = Math.max(0, lines.length - n); i < lines.length; i++) {
+            b.append(lines[i]).append('\n');
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl;
+
+import com.nfsdb.JournalEntryWriter;
+import com.nfsdb.JournalWriter;
+import com.nfsdb.factory.configuration.JournalStructure;
+import com.nfsdb.io.RecordSourcePrinter;
+import com.nfsdb.io.sink.StringSink;
+import com.nfsdb.misc.Rnd;
+import com.nfsdb.test.tools.AbstractTest;
+import com.nfsdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BitmapIndexRowSourceTest extends AbstractTest {
+
+    private final StringSink expected = new StringSink();
+    private final StringSink actual = new StringSink();
+
+    @Before
+    public void setUp() throws Exception {
+        JournalWriter w = factory.writer(
+                new JournalStructure("tab").
+                        $sym("sym").bitmapIndex().
+                        $sym("exch").bitmapIndex().
+                        $int("x").
+                        $ts()
+        );
+
+        // last chunk is incomplete and has to be scanned
+        Rnd rnd = new Rnd();
+        String[] syms = {"AGK.L", "BP.L", "TLW.L", "ABF.L", null};
+        for (int i = 0; i < 150000; i++) {
+            JournalEntryWriter ew = w.entryWriter();
+            ew.putSym(0, i % 3 == 0 ? "BP.L" : syms[rnd.nextPositiveInt() % syms.length]);
+            ew.putSym(1, i % 1000 == 0 ? "LSE" : "NYSE");
+            ew.putInt(2, i);
+            ew.append();
+        }
+        w.commit();
+    }
+
+    @Test
+    public void testAcrossColumns() throws Exception {
+        assertBitmapFiltered("(sym = 'AGK.L' or exch = 'LSE') and sym in ('AGK.L', 'BP.L')");
+    }
+
+    @Test
+    public void testEquals() throws Exception {
+        assertBitmapFiltered("sym = 'TLW.L'");
+        Assert.assertTrue(compiler.compile(factory, "tab where sym = 'TLW.L'").toString().contains("BitmapIndexRowSource"));
+    }
+
+    @Test
+    public void testIntersection() throws Exception {
+        assertBitmapFiltered("sym = 'BP.L' and exch = 'LSE' and x > 100");
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        assertBitmapFiltered("sym = null and exch = 'LSE'");
+    }
+
+    @Test
+    public void testUnknownValue() throws Exception {
+        assertBitmapFiltered("sym in ('XYZ', 'ABF.L') or sym = 'QQQ'");
+        assertBitmapFiltered("sym = 'XYZ'");
+        Assert.assertEquals(0, actual.length());
+    }
+
+    private void assertBitmapFiltered(String filter) throws Exception {
+        expected.clear();
+        // bitmap clauses are not extracted from under "not", which makes it a good reference
+        new RecordSourcePrinter(expected).printCursor(compiler.compile(factory, "tab where not(not(" + filter + "))"));
+
+        actual.clear();
+        new RecordSourcePrinter(actual).printCursor(compiler.compile(factory, "tab where " + filter));
+        TestUtils.assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl;
+
+import com.nfsdb.JournalWriter;
+import com.nfsdb.io.RecordSourcePrinter;
+import com.nfsdb.io.sink.StringSink;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.model.Quote;
+import com.nfsdb.test.tools.AbstractTest;
+import com.nfsdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FilteredRowSourceTest extends AbstractTest {
+
+    private final StringSink expected = new StringSink();
+    private final StringSink actual = new StringSink();
+
+    @Before
+    public void setUp() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        // 10 second increments keep all rows in one partition, so that columns span multiple pages
+        TestUtils.generateQuoteData(w, 100000, Dates.parseDateTime("2015-01-01T00:00:00.000Z"), 10000L);
+        w.commit();
+    }
+
+    @Test
+    public void testAndWithNonBatchOperand() throws Exception {
+        assertBatch("sym = 'BP.L' and bid > ask");
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        assertBatch("bid * 2 > ask + 0.5 and bidSize * 3 < askSize + 100");
+    }
+
+    @Test
+    public void testDoubleCompare() throws Exception {
+        assertBatch("bid > ask");
+    }
+
+    @Test
+    public void testIntCompare() throws Exception {
+        assertBatch("bidSize < askSize and askSize > 1000");
+    }
+
+    @Test
+    public void testLongCompare() throws Exception {
+        assertBatch("dtol(timestamp) > 1420500000000 and dtol(timestamp) < 1420600000000 + 1");
+    }
+
+    private void assertBatch(String filter) throws Exception {
+        expected.clear();
+        // "not" is evaluated row by row, double negation gives reference result
+        new RecordSourcePrinter(expected).printCursor(compiler.compile(factory, "quote where not(not(" + filter + "))"));
+        Assert.assertTrue(expected.length() > 0);
+
+        actual.clear();
+        new RecordSourcePrinter(actual).printCursor(compiler.compile(factory, "quote where " + filter));
+        TestUtils.assertEquals(expected, actual);
+    }
+}
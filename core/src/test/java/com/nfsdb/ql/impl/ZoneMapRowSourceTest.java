@@ -0,0 +1,122 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.ql.impl;
+
+import com.nfsdb.Journal;
+import com.nfsdb.JournalWriter;
+import com.nfsdb.io.RecordSourcePrinter;
+import com.nfsdb.io.sink.StringSink;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.model.Quote;
+import com.nfsdb.ql.PartitionSlice;
+import com.nfsdb.ql.RowCursor;
+import com.nfsdb.ql.model.ZoneRange;
+import com.nfsdb.std.ObjList;
+import com.nfsdb.test.tools.AbstractTest;
+import com.nfsdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZoneMapRowSourceTest extends AbstractTest {
+
+    private final StringSink expected = new StringSink();
+    private final StringSink actual = new StringSink();
+
+    @Before
+    public void setUp() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        long ts = Dates.parseDateTime("2015-01-01T00:00:00.000Z");
+        String[] syms = {"AGK.L", "BP.L", "TLW.L"};
+        for (int i = 0; i < 100000; i++) {
+            w.append(new Quote()
+                    .setSym(syms[i % syms.length])
+                    .setTimestamp(ts + i * 10000L)
+                    .setBid(i * 0.25)
+                    .setAsk(i * 0.25 + 1)
+                    .setBidSize(i)
+                    .setAskSize(i % 1000));
+        }
+        w.commit();
+    }
+
+    @Test
+    public void testBlocksAreSkipped() throws Exception {
+        ObjList<ZoneRange> ranges = new ObjList<>();
+        ranges.add(ZoneRange.ofLong("bidSize", 95000, Long.MAX_VALUE));
+
+        Journal<Quote> r = factory.reader(Quote.class);
+        ZoneMapRowSource rs = new ZoneMapRowSource(null, ranges);
+        rs.configure(r.getMetadata());
+
+        PartitionSlice slice = new PartitionSlice();
+        slice.partition = r.getPartition(0, true);
+        slice.lo = 0;
+        slice.calcHi = true;
+
+        RowCursor cursor = rs.prepareCursor(slice);
+        long count = 0;
+        long first = -1;
+        while (cursor.hasNext()) {
+            long row = cursor.next();
+            if (first == -1) {
+                first = row;
+            }
+            count++;
+        }
+
+        // only block containing 95000 and subsequent ones are scanned
+        Assert.assertEquals(95000 & ~4095, first);
+        Assert.assertEquals(100000 - first, count);
+    }
+
+    @Test
+    public void testDoubleRange() throws Exception {
+        assertZoneFiltered("bid >= 24000.0 and bid < 24100");
+    }
+
+    @Test
+    public void testEquals() throws Exception {
+        assertZoneFiltered("askSize = 99 and bidSize = 50099");
+    }
+
+    @Test
+    public void testNoMatch() throws Exception {
+        assertZoneFiltered("bidSize > 200000");
+        Assert.assertEquals(0, actual.length());
+    }
+
+    @Test
+    public void testReversedOperands() throws Exception {
+        assertZoneFiltered("99990 < bidSize and sym = 'BP.L'");
+    }
+
+    private void assertZoneFiltered(String filter) throws Exception {
+        expected.clear();
+        // ranges are not extracted from under "not" and "or", which makes it a good reference
+        new RecordSourcePrinter(expected).printCursor(compiler.compile(factory, "quote where not(not(" + filter + "))"));
+
+        actual.clear();
+        new RecordSourcePrinter(actual).printCursor(compiler.compile(factory, "quote where " + filter));
+        TestUtils.assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.nfsdb.ql.impl.parallel;
+
+import com.nfsdb.JournalWriter;
+import com.nfsdb.io.RecordSourcePrinter;
+import com.nfsdb.io.sink.StringSink;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.model.Quote;
+import com.nfsdb.ql.RecordSource;
+import com.nfsdb.ql.parser.QueryCompiler;
+import com.nfsdb.test.tools.AbstractTest;
+import com.nfsdb.test.tools.TestUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelAggregatedRecordSourceTest extends AbstractTest {
+
+    private static ScanWorkerPool pool;
+    private final StringSink expected = new StringSink();
+    private final StringSink actual = new StringSink();
+    private QueryCompiler parallelCompiler;
+
+    @BeforeClass
+    public static void setUpClass() {
+        pool = new ScanWorkerPool(4, 64);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        pool.close();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        parallelCompiler = new QueryCompiler(pool);
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        TestUtils.generateQuoteData(w, 100000, Dates.parseDateTime("2015-01-01T00:00:00.000Z"), 10 * 60 * 1000L);
+        w.commit();
+    }
+
+    @Test
+    public void testCompositeKey() throws Exception {
+        assertParallel("select sym, ex, count(), lsum(bidSize), max(askSize) from quote");
+    }
+
+    @Test
+    public void testFilteredGroupBy() throws Exception {
+        assertParallel("select sym, count(), min(bid), max(ask), first(bidSize), last(askSize) from quote where bid > 0.5 and askSize < 1000000000");
+    }
+
+    @Test
+    public void testFirstLast() throws Exception {
+        assertParallel("select sym, first(bid), last(ask), first(timestamp), last(timestamp), min(timestamp), max(timestamp) from quote");
+    }
+
+    @Test
+    public void testGroupBy() throws Exception {
+        RecordSource rs = parallelCompiler.compileSource(factory, "select sym, count(), sum(bidSize), min(ask), max(bid) from quote");
+        Assert.assertTrue(rs.toString().contains("ParallelAggregatedRecordSource"));
+        assertParallel("select sym, count(), sum(bidSize), min(ask), max(bid) from quote");
+    }
+
+    @Test
+    public void testIntervalGroupBy() throws Exception {
+        assertParallel("select sym, count(), avg(bidSize), sum(askSize) from quote where timestamp in (\"2015-03-02T12:30:00.000Z\", \"2015-07-04T06:00:00.000Z\") and bidSize > 10");
+    }
+
+    @Test
+    public void testNoKeys() throws Exception {
+        assertParallel("select count(), min(bid), max(bid), first(ask), last(ask) from quote");
+    }
+
+    private void assertParallel(String query) throws Exception {
+        expected.clear();
+        new RecordSourcePrinter(expected).printCursor(compiler.compile(factory, query));
+        Assert.assertTrue(expected.length() > 0);
+
+        for (int i = 0; i < 2; i++) {
+            actual.clear();
+            new RecordSourcePrinter(actual).printCursor(parallelCompiler.compile(factory, query));
+            TestUtils.assertEquals(expected, actual);
+        }
+    }
+}
@@ -739,6 +739,13 @@ public class QueryFilterAnalyserTest extends AbstractTest {
         TestUtils.assertEquals(expected, toRpn(m.filter));
     }
 
+    @Test
+    public void testZoneRanges() throws Exception {
+        IntrinsicModel m = modelOf("bid > 100 and 5 >= askSize and (bidSize = 10 or ask < 3) and sym = 'x'");
+        Assert.assertEquals("[ZoneRange{column='askSize', lo=-9223372036854775808, hi=5},ZoneRange{column='bid', lo=100.0, hi=Infinity}]", m.zoneRanges.toString());
+        assertFilter(m, "3ask<10bidSize=oraskSize5>=100bid>andand");
+    }
+
     private IntrinsicModel modelOf(CharSequence seq) throws ParserException {
         return modelOf(seq, null);
     }
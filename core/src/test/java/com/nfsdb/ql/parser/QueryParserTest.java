@@ -375,6 +375,18 @@ public class QueryParserTest extends AbstractTest {
         Assert.assertEquals("z", TestUtils.toRpn(statement.getQueryModel().getOrderBy().getQuick(2)));
     }
 
+    @Test
+    public void testOrderByDirection() throws Exception {
+        Statement statement = parser.parse("select x,y from tab order by x desc, y asc, z limit 10");
+        QueryModel model = statement.getQueryModel();
+        Assert.assertEquals(3, model.getOrderBy().size());
+        Assert.assertEquals("z", TestUtils.toRpn(model.getOrderBy().getQuick(2)));
+        Assert.assertEquals(QueryModel.ORDER_DIRECTION_DESCENDING, model.getOrderByDirection().getQuick(0));
+        Assert.assertEquals(QueryModel.ORDER_DIRECTION_ASCENDING, model.getOrderByDirection().getQuick(1));
+        Assert.assertEquals(QueryModel.ORDER_DIRECTION_ASCENDING, model.getOrderByDirection().getQuick(2));
+        Assert.assertEquals("10", TestUtils.toRpn(model.getLimitLo()));
+    }
+
     @Test
     public void testOuterJoin() throws Exception {
         Statement statement = parser.parse("select x from a a outer join b on b.x = a.x");
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.store;
+
+import com.nfsdb.JournalEntryWriter;
+import com.nfsdb.JournalWriter;
+import com.nfsdb.Partition;
+import com.nfsdb.factory.configuration.JournalStructure;
+import com.nfsdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BitmapIndexTest extends AbstractTest {
+
+    private final long[] words = new long[BitmapIndex.BITMAP_WORDS];
+
+    @Test
+    public void testNoIndexForPlainSymbol() throws Exception {
+        JournalWriter w = createWriter();
+        append(w, 0, 10);
+        w.commit();
+        Partition p = w.getPartition(0, true);
+        Assert.assertNotNull(p.getBitmapIndex(w.getMetadata().getColumnIndex("sym")));
+        Assert.assertNull(p.getBitmapIndex(w.getMetadata().getColumnIndex("plain")));
+    }
+
+    @Test
+    public void testOnlyCompleteChunksAreIndexed() throws Exception {
+        JournalWriter w = createWriter();
+        append(w, 0, 100000);
+        w.commit();
+
+        BitmapIndex index = w.getPartition(0, true).getBitmapIndex(w.getMetadata().getColumnIndex("sym"));
+        Assert.assertEquals(1, index.getChunkCount());
+        Assert.assertEquals(BitmapIndex.CHUNK_SIZE, index.getCoveredRows());
+
+        append(w, 100000, 150000);
+        w.commit();
+        Assert.assertEquals(2, index.getChunkCount());
+        assertIndex(w, index);
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        JournalWriter w = createWriter();
+        append(w, 0, 70000);
+        w.commit();
+        long txn = w.getTxn();
+        long pin = w.getTxPin();
+
+        append(w, 70000, 140000);
+        w.commit();
+
+        BitmapIndex index = w.getPartition(0, true).getBitmapIndex(w.getMetadata().getColumnIndex("sym"));
+        Assert.assertEquals(2, index.getChunkCount());
+
+        w.rollback(txn, pin);
+        index = w.getPartition(0, true).getBitmapIndex(w.getMetadata().getColumnIndex("sym"));
+        Assert.assertEquals(1, index.getChunkCount());
+
+        // re-index second chunk with different content
+        append(w, 1000000, 1070000);
+        w.commit();
+        Assert.assertEquals(2, index.getChunkCount());
+        assertIndex(w, index);
+    }
+
+    private static void append(JournalWriter w, int lo, int hi) throws Exception {
+        for (int i = lo; i < hi; i++) {
+            JournalEntryWriter ew = w.entryWriter();
+            // dense, sparse and null values produce both kinds of containers
+            ew.putSym(0, i % 2 == 0 ? "A" : i % 100 == 1 ? null : "S" + (i % 7));
+            ew.putSym(1, "P");
+            ew.append();
+        }
+    }
+
+    private void assertIndex(JournalWriter w, BitmapIndex index) throws Exception {
+        Partition p = w.getPartition(0, true);
+        int col = w.getMetadata().getColumnIndex("sym");
+        FixedColumn column = p.fixCol(col);
+        SymbolTable tab = w.getSymbolTable("sym");
+
+        for (long chunk = 0; chunk < index.getChunkCount(); chunk++) {
+            for (int key = -1; key < tab.size(); key++) {
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = 0;
+                }
+                index.or(chunk, key, words);
+
+                for (int i = 0; i < BitmapIndex.CHUNK_SIZE; i++) {
+                    int v = column.getInt((chunk << BitmapIndex.CHUNK_BITS) + i);
+                    boolean expected = key < 0 ? v < 0 : v == key;
+                    Assert.assertEquals(expected, (words[i >>> 6] & (1L << i)) != 0);
+                }
+            }
+        }
+    }
+
+    private JournalWriter createWriter() throws Exception {
+        return factory.writer(
+                new JournalStructure("tab").
+                        $sym("sym").bitmapIndex().
+                        $sym("plain").
+                        $ts()
+        );
+    }
+}
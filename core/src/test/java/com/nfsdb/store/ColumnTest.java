@@ -25,7 +25,9 @@ import com.nfsdb.JournalMode;
 import com.nfsdb.ex.JournalException;
 import com.nfsdb.misc.ByteBuffers;
 import com.nfsdb.misc.Files;
+import com.nfsdb.misc.Os;
 import com.nfsdb.misc.Rnd;
+import com.nfsdb.std.Path;
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
 
@@ -50,6 +52,107 @@ public class ColumnTest {
         Files.deleteOrException(indexFile);
     }
 
+    @Test
+    public void testCompressedColumns() throws JournalException {
+        Rnd rnd = new Rnd();
+        try (
+                FixedColumn longs = new FixedColumn(new MemoryFile(dataFile, 12, JournalMode.APPEND), 8);
+                VariableColumn strings = new VariableColumn(new MemoryFile(new File(temporaryFolder.getRoot(), "str.d"), 12, JournalMode.APPEND), new MemoryFile(indexFile, 12, JournalMode.APPEND))
+        ) {
+            for (int i = 0; i < 5000; i++) {
+                longs.putLong(i * 3);
+                longs.commit();
+                strings.putStr(i % 7 == 0 ? null : rnd.nextString(i % 50));
+                strings.commit();
+            }
+        }
+
+        // small blocks make sure that values straddle block boundaries
+        File z1 = new File(temporaryFolder.getRoot(), "col.d.zl");
+        File z2 = new File(temporaryFolder.getRoot(), "str.d.zl");
+        File z3 = new File(temporaryFolder.getRoot(), "col.i.zl");
+        CompressedFile.compress(dataFile, z1, 6);
+        CompressedFile.compress(new File(temporaryFolder.getRoot(), "str.d"), z2, 7);
+        CompressedFile.compress(indexFile, z3, 6);
+
+        rnd = new Rnd();
+        try (
+                FixedColumn longs = new FixedColumn(new CompressedFile(z1), 8);
+                VariableColumn strings = new VariableColumn(new CompressedFile(z2), new CompressedFile(z3))
+        ) {
+            Assert.assertEquals(5000, longs.size());
+            Assert.assertEquals(5000, strings.size());
+
+            for (int i = 0; i < 5000; i++) {
+                Assert.assertEquals(i * 3, longs.getLong(i));
+                String expected = i % 7 == 0 ? null : rnd.nextString(i % 50);
+                Assert.assertEquals(expected, strings.getStr(i));
+            }
+
+            // random access goes through block cache
+            Assert.assertEquals(4999 * 3, longs.getLong(4999));
+            Assert.assertEquals(3, longs.getLong(1));
+
+            long rows[] = {0, 7, 8, 15, 16, 100, 2000, 4999};
+            long out[] = new long[rows.length];
+            longs.getLongs(rows, rows.length, out);
+            for (int i = 0; i < rows.length; i++) {
+                Assert.assertEquals(rows[i] * 3, out[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testAdvice() throws Exception {
+        if (Os.type != Os.LINUX) {
+            // binaries for other platforms do not have advice functions yet
+            return;
+        }
+        Assert.assertTrue(Files.isAdviceSupported());
+
+        try (MemoryFile mf = new MemoryFile(dataFile, 12, JournalMode.APPEND)) {
+            mf.setAppendOffset(8192);
+            Assert.assertTrue(Files.madvise(mf.addressOf(0, 8), 8192, Files.MADV_RANDOM));
+            Assert.assertTrue(Files.madvise(mf.addressOf(4096, 8), 4096, Files.MADV_SEQUENTIAL));
+        }
+
+        try (Path path = new Path(dataFile.getAbsolutePath())) {
+            long fd = Files.openRO(path);
+            Assert.assertTrue(fd > 0);
+            try {
+                Assert.assertTrue(Files.fadvise(fd, 0, 8192, Files.MADV_WILLNEED));
+                Assert.assertTrue(Files.fadvise(fd, 0, 8192, Files.MADV_DONTNEED));
+            } finally {
+                Files.close(fd);
+            }
+        }
+        // advice is not silently taken for invalid descriptor
+        Assert.assertFalse(Files.fadvise(-1, 0, 8192, Files.MADV_WILLNEED));
+    }
+
+    @Test
+    public void testAdvisedColumns() throws JournalException {
+        try (FixedColumn pcc = new FixedColumn(new MemoryFile(dataFile, 12, JournalMode.APPEND, false, true), 8)) {
+            for (int i = 0; i < 100000; i++) {
+                pcc.putLong(i);
+                pcc.commit();
+            }
+        }
+
+        // bulk scan moves across many windows, each of them advised and released behind the scan
+        try (FixedColumn pcc = new FixedColumn(new MemoryFile(dataFile, 12, JournalMode.BULK_READ), 8)) {
+            for (int i = 0; i < 100000; i++) {
+                Assert.assertEquals(i, pcc.getLong(i));
+            }
+        }
+
+        try (FixedColumn pcc = new FixedColumn(new MemoryFile(dataFile, 12, JournalMode.READ, true, false), 8)) {
+            Assert.assertEquals(99999, pcc.getLong(99999));
+            Assert.assertEquals(7, pcc.getLong(7));
+            Assert.assertEquals(51234, pcc.getLong(51234));
+        }
+    }
+
     @Test
     public void testFixedWidthColumns() throws JournalException {
 
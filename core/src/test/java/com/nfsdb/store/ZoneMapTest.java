@@ -0,0 +1,150 @@
+/*******************************************************************************
+ *  _  _ ___ ___     _ _
+ * | \| | __/ __| __| | |__
+ * | .` | _|\__ \/ _` | '_ \
+ * |_|\_|_| |___/\__,_|_.__/
+ *
+ * Copyright (c) 2014-2016. The NFSdb project and its contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.nfsdb.store;
+
+import com.nfsdb.JournalWriter;
+import com.nfsdb.Partition;
+import com.nfsdb.misc.Dates;
+import com.nfsdb.model.Quote;
+import com.nfsdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZoneMapTest extends AbstractTest {
+
+    @Test
+    public void testNullsAreIgnored() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        long ts = Dates.parseDateTime("2015-01-01T00:00:00.000Z");
+        for (int i = 0; i < 10000; i++) {
+            w.append(new Quote().setSym("A").setTimestamp(ts + i).setBid(i % 2 == 0 ? Double.NaN : i).setBidSize(i % 2 == 0 ? Integer.MIN_VALUE : i));
+        }
+        w.commit();
+
+        Partition<Quote> p = w.getPartition(0, true);
+        ZoneMap bid = p.getZoneMap(w.getMetadata().getColumnIndex("bid"));
+        ZoneMap bidSize = p.getZoneMap(w.getMetadata().getColumnIndex("bidSize"));
+
+        Assert.assertEquals(1, bid.getDoubleMin(0), 0);
+        Assert.assertEquals(4095, bid.getDoubleMax(0), 0);
+        Assert.assertEquals(1, bidSize.getLongMin(0));
+        Assert.assertEquals(4095, bidSize.getLongMax(0));
+        Assert.assertEquals(8193, bidSize.getLongMin(2));
+        Assert.assertEquals(9999, bidSize.getLongMax(2));
+    }
+
+    @Test
+    public void testNoZoneMapForSymbol() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        w.append(new Quote().setSym("A").setTimestamp(Dates.parseDateTime("2015-01-01T00:00:00.000Z")));
+        w.commit();
+        Partition<Quote> p = w.getPartition(0, true);
+        Assert.assertNull(p.getZoneMap(w.getMetadata().getColumnIndex("sym")));
+        Assert.assertNull(p.getZoneMap(w.getMetadata().getTimestampIndex()));
+        Assert.assertNotNull(p.getZoneMap(w.getMetadata().getColumnIndex("askSize")));
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        long ts = Dates.parseDateTime("2015-01-01T00:00:00.000Z");
+        append(w, ts, 0, 10000);
+        w.commit();
+        long txn = w.getTxn();
+        long pin = w.getTxPin();
+
+        // discarded rows have larger values than anything that comes after
+        for (int i = 10000; i < 15000; i++) {
+            w.append(new Quote().setSym("A").setTimestamp(ts + i).setBidSize(1000000 + i).setBid(1000000 + i));
+        }
+        w.commit();
+        w.rollback(txn, pin);
+
+        append(w, ts, 10000, 13000);
+        w.commit();
+
+        Partition<Quote> p = w.getPartition(0, true);
+        Assert.assertEquals(13000, p.size());
+        assertSummary(p, w.getMetadata().getColumnIndex("bidSize"));
+        assertSummary(p, w.getMetadata().getColumnIndex("bid"));
+    }
+
+    @Test
+    public void testSummaryIsIncremental() throws Exception {
+        JournalWriter<Quote> w = factory.writer(Quote.class);
+        long ts = Dates.parseDateTime("2015-01-01T00:00:00.000Z");
+        for (int i = 0; i < 10; i++) {
+            append(w, ts, i * 3000, (i + 1) * 3000);
+            w.commit();
+        }
+
+        Partition<Quote> p = w.getPartition(0, true);
+        Assert.assertEquals(30000, p.getZoneMap(w.getMetadata().getColumnIndex("bidSize")).getCoveredRows());
+        assertSummary(p, w.getMetadata().getColumnIndex("bidSize"));
+        assertSummary(p, w.getMetadata().getColumnIndex("askSize"));
+        assertSummary(p, w.getMetadata().getColumnIndex("bid"));
+        assertSummary(p, w.getMetadata().getColumnIndex("ask"));
+    }
+
+    private static void append(JournalWriter<Quote> w, long ts, int lo, int hi) throws Exception {
+        for (int i = lo; i < hi; i++) {
+            w.append(new Quote()
+                    .setSym("A")
+                    .setTimestamp(ts + i)
+                    .setBid(i * 0.5)
+                    .setAsk((i * 7919) % 10007)
+                    .setBidSize(i)
+                    .setAskSize((i * 31) % 1000));
+        }
+    }
+
+    private static void assertSummary(Partition<Quote> p, int columnIndex) {
+        ZoneMap z = p.getZoneMap(columnIndex);
+        FixedColumn col = p.fixCol(columnIndex);
+        long size = p.size();
+        Assert.assertEquals(size, z.getCoveredRows());
+
+        for (long block = 0, n = (size + ZoneMap.BLOCK_SIZE - 1) / ZoneMap.BLOCK_SIZE; block < n; block++) {
+            long lo = block * ZoneMap.BLOCK_SIZE;
+            long hi = Math.min(lo + ZoneMap.BLOCK_SIZE, size);
+            if (z.isFloating()) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (long r = lo; r < hi; r++) {
+                    min = Math.min(min, col.getDouble(r));
+                    max = Math.max(max, col.getDouble(r));
+                }
+                Assert.assertEquals(min, z.getDoubleMin(block), 0);
+                Assert.assertEquals(max, z.getDoubleMax(block), 0);
+            } else {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (long r = lo; r < hi; r++) {
+                    min = Math.min(min, col.getInt(r));
+                    max = Math.max(max, col.getInt(r));
+                }
+                Assert.assertEquals(min, z.getLongMin(block));
+                Assert.assertEquals(max, z.getLongMax(block));
+            }
+        }
+    }
+}
@@ -130,8 +130,8 @@ public final class TestUtils {
             Partition<T> ep = expected.getPartition(i, true);
             Partition<T> ap = actual.getPartition(i, true);
 
-            // compare names
-            Assert.assertEquals(ep.getName(), ap.getName());
+            // compare names without version, rewritten partitions are named after transaction of their own journal
+            Assert.assertEquals(unversionedName(ep), unversionedName(ap));
             // compare sizes
             Assert.assertEquals(ep.size(), ap.size());
             // compare intervals
@@ -445,4 +445,10 @@ public final class TestUtils {
             p.out(o);
         }
     }
+
+    private static String unversionedName(Partition p) {
+        String name = p.getName();
+        int sep = name.indexOf(Partition.VERSION_SEPARATOR);
+        return sep == -1 ? name : name.substring(0, sep);
+    }
 }